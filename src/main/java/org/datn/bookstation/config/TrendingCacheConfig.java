@@ -11,6 +11,8 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 /**
  * 🔥 TRENDING CACHE CONFIGURATION
  * Cấu hình cache cho trending products với real-time invalidation
+ * Trending pages dùng cache LRU + TTL riêng trong TrendingCacheServiceImpl
+ * (ConcurrentMapCacheManager không giới hạn kích thước và không có TTL)
  */
 @Configuration
 // @EnableCaching // DISABLED - Cache đã được tắt theo yêu cầu
@@ -0,0 +1,102 @@
+package org.datn.bookstation.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Đảm bảo ràng buộc UNIQUE (user_id, campaign_id) của bảng user_campaign tồn tại khi khởi động
+ * - UserCampaignRepository.insertIfAbsent dùng ON CONFLICT (user_id, campaign_id): thiếu ràng buộc thì
+ *   PostgreSQL báo lỗi ở mọi lần mở hộp đầu tiên của user
+ * - ddl-auto=update chỉ log warning rồi bỏ qua khi bảng cũ đã có dòng trùng, nên phải gộp dòng trùng trước
+ * - Nhận EntityManagerFactory để chạy sau khi Hibernate cập nhật schema; lỗi thì dừng khởi động
+ */
+@Component
+@Slf4j
+public class UserCampaignConstraintInitializer {
+
+    static final String INDEX_NAME = "uk_user_campaign_user_campaign";
+
+    // Có unique index (không partial) đúng trên 2 cột user_id, campaign_id chưa (thứ tự cột không quan trọng với ON CONFLICT)
+    private static final String FIND_UNIQUE_INDEX_SQL =
+            "SELECT COUNT(*) FROM pg_index i " +
+            "WHERE i.indrelid = 'user_campaign'::regclass AND i.indisunique AND i.indisvalid " +
+            "AND i.indpred IS NULL AND i.indnkeyatts = 2 " +
+            "AND (SELECT array_agg(a.attname::text ORDER BY a.attname) FROM pg_attribute a " +
+            "     WHERE a.attrelid = i.indrelid AND a.attnum = ANY(i.indkey)) = ARRAY['campaign_id','user_id']";
+
+    // Dòng giữ lại (id nhỏ nhất) nhận tổng lượt mở của các dòng trùng
+    private static final String MERGE_DUPLICATES_SQL =
+            "UPDATE user_campaign uc SET " +
+            "free_opened_count = d.free_opened_count, total_opened_count = d.total_opened_count, " +
+            "created_at = d.created_at, updated_at = d.updated_at " +
+            "FROM (SELECT MIN(id) AS keep_id, SUM(free_opened_count) AS free_opened_count, " +
+            "      SUM(total_opened_count) AS total_opened_count, MIN(created_at) AS created_at, " +
+            "      MAX(updated_at) AS updated_at " +
+            "      FROM user_campaign GROUP BY user_id, campaign_id HAVING COUNT(*) > 1) d " +
+            "WHERE uc.id = d.keep_id";
+
+    private static final String DELETE_DUPLICATES_SQL =
+            "DELETE FROM user_campaign uc USING user_campaign keep " +
+            "WHERE keep.user_id = uc.user_id AND keep.campaign_id = uc.campaign_id AND keep.id < uc.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public UserCampaignConstraintInitializer(JdbcTemplate jdbcTemplate,
+                                             PlatformTransactionManager transactionManager,
+                                             EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void ensureUniqueConstraint() {
+        if (!isPostgreSql()) {
+            log.info("Skipping user_campaign unique constraint check: database is not PostgreSQL");
+            return;
+        }
+        if (jdbcTemplate.queryForObject("SELECT to_regclass('user_campaign') IS NOT NULL", Boolean.class) != Boolean.TRUE) {
+            log.info("Skipping user_campaign unique constraint check: table does not exist");
+            return;
+        }
+        int mergedGroups = transactionTemplate.execute(status -> {
+            if (hasUniqueIndex()) {
+                return -1;
+            }
+            // Chặn INSERT/UPDATE đồng thời (instance khác đang chạy) trong lúc gộp và tạo index
+            jdbcTemplate.execute("LOCK TABLE user_campaign IN SHARE ROW EXCLUSIVE MODE");
+            if (hasUniqueIndex()) {
+                return -1;
+            }
+            int merged = jdbcTemplate.update(MERGE_DUPLICATES_SQL);
+            int deleted = jdbcTemplate.update(DELETE_DUPLICATES_SQL);
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_NAME
+                    + " ON user_campaign (user_id, campaign_id)");
+            log.warn("🎁 user_campaign had no unique (user_id, campaign_id) constraint: merged {} duplicate groups "
+                    + "({} rows removed) and created {}", merged, deleted, INDEX_NAME);
+            return merged;
+        });
+        if (mergedGroups < 0) {
+            log.debug("user_campaign unique (user_id, campaign_id) constraint present");
+        }
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private boolean hasUniqueIndex() {
+        Integer count = jdbcTemplate.queryForObject(FIND_UNIQUE_INDEX_SQL, Integer.class);
+        return count != null && count > 0;
+    }
+
+    private boolean isPostgreSql() {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return product != null && product.toLowerCase().contains("postgresql");
+    }
+}
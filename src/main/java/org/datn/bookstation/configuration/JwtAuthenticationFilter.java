@@ -1,5 +1,6 @@
 package org.datn.bookstation.configuration;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -51,14 +52,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         String token = header.substring(7);
-        if (!jwtUtil.validateToken(token)) {
+        // Xác thực + lấy claims trong 1 lần parse (có cache theo token)
+        Claims claims = jwtUtil.parseClaims(token);
+        if (claims == null) {
             response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired JWT");
             return;
         }
 
         // Valid token -> set attributes and continue
-        request.setAttribute("userEmail", jwtUtil.extractEmail(token));
-        request.setAttribute("userRole", jwtUtil.extractRole(token));
+        request.setAttribute("userEmail", claims.getSubject());
+        request.setAttribute("userRole", claims.get("role"));
         filterChain.doFilter(request, response);
     }
 } 
\ No newline at end of file
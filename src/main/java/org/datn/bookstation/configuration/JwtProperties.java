@@ -12,6 +12,8 @@ import org.springframework.context.annotation.Configuration;
 public class JwtProperties {
     private String secret;
     private long expiration;
+    // Số token đã xác thực được cache (theo hash của token, hết hạn theo claim exp); 0 = tắt cache
+    private int cacheMaxEntries = 10_000;
 
     public void setSecret(String secret) {
         this.secret = secret;
@@ -2,16 +2,28 @@ package org.datn.bookstation.configuration;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.impl.DefaultClaims;
 
 import org.datn.bookstation.entity.User;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class JwtUtil {
     private final JwtProperties props;
 
+    // SHA-256(token) -> claims (chỉ đọc) đã xác thực chữ ký, chỉ cache token có exp và bỏ khi quá exp
+    private final Map<String, CachedClaims> verifiedTokens = new ConcurrentHashMap<>();
+
     public JwtUtil(JwtProperties props) {
         this.props = props;
     }
@@ -32,26 +44,33 @@ public class JwtUtil {
                 .compact();
     }
 
-    public boolean validateToken(String token) {
+    /**
+     * Xác thực chữ ký + hạn của token và trả về toàn bộ claims (1 lần parse), null nếu không hợp lệ
+     * - Claims trả về chỉ đọc (dùng chung giữa các request qua cache), setter/put ném UnsupportedOperationException
+     */
+    public Claims parseClaims(String token) {
         try {
-            Jwts.parser().setSigningKey(props.getSecret()).parseClaimsJws(token);
-            return true;
+            return extractAllClaims(token);
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return null;
         }
     }
 
+    public boolean validateToken(String token) {
+        return parseClaims(token) != null;
+    }
+
     public String extractEmail(String token) {
-        return Jwts.parser().setSigningKey(props.getSecret()).parseClaimsJws(token).getBody().getSubject();
+        return extractAllClaims(token).getSubject();
     }
 
     public String extractRole(String token) {
-        return (String) Jwts.parser().setSigningKey(props.getSecret()).parseClaimsJws(token).getBody().get("role");
+        return (String) extractAllClaims(token).get("role");
     }
 
     public Byte extractStatus(String token) {
         try {
-            Object statusObj = Jwts.parser().setSigningKey(props.getSecret()).parseClaimsJws(token).getBody().get("status");
+            Object statusObj = extractAllClaims(token).get("status");
             if (statusObj instanceof Byte) {
                 return (Byte) statusObj;
             }
@@ -66,7 +85,7 @@ public class JwtUtil {
 
     public Byte extractEmailVerified(String token) {
         try {
-            Object emailVerifiedObj = Jwts.parser().setSigningKey(props.getSecret()).parseClaimsJws(token).getBody().get("emailVerified");
+            Object emailVerifiedObj = extractAllClaims(token).get("emailVerified");
             if (emailVerifiedObj instanceof Byte) {
                 return (Byte) emailVerifiedObj;
             }
@@ -108,7 +127,60 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser().setSigningKey(props.getSecret()).parseClaimsJws(token).getBody();
+        int maxEntries = props.getCacheMaxEntries();
+        if (maxEntries <= 0 || token == null) {
+            return parseVerified(token);
+        }
+
+        long now = System.currentTimeMillis();
+        String key = hash(token);
+        CachedClaims cached = verifiedTokens.get(key);
+        if (cached != null) {
+            if (cached.expiresAt > now) {
+                return cached.claims;
+            }
+            verifiedTokens.remove(key);
+        }
+
+        Claims claims = parseVerified(token);
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            if (verifiedTokens.size() >= maxEntries) {
+                verifiedTokens.values().removeIf(entry -> entry.expiresAt <= now);
+                if (verifiedTokens.size() >= maxEntries) {
+                    verifiedTokens.clear();
+                }
+            }
+            verifiedTokens.put(key, new CachedClaims(claims, expiration.getTime()));
+        }
+        return claims;
+    }
+
+    /**
+     * Parse + xác thực chữ ký, trả về bản sao chỉ đọc để claims trong cache không bị caller sửa
+     */
+    private Claims parseVerified(String token) {
+        Claims body = Jwts.parser().setSigningKey(props.getSecret()).parseClaimsJws(token).getBody();
+        return new DefaultClaims(Collections.unmodifiableMap(new LinkedHashMap<>(body)));
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class CachedClaims {
+        final Claims claims;
+        final long expiresAt;
+
+        CachedClaims(Claims claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
     }
 
     public boolean isResetToken(String token) {
@@ -2,14 +2,16 @@ package org.datn.bookstation.configuration;
 
 import jakarta.servlet.Filter;
 import org.datn.bookstation.filter.JwtAuthenticationFilter;
+import org.datn.bookstation.filter.UploadResourceFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.nio.file.Paths;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
@@ -26,10 +28,14 @@ public class WebConfig implements WebMvcConfigurer {
         return registrationBean;
     }
 
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:uploads/");
+    // Phục vụ file upload (ảnh, video) trước DispatcherServlet: ETag, Cache-Control, Range, sendfile
+    @Bean
+    public FilterRegistrationBean<Filter> uploadResourceFilter(UploadProperties uploadProperties) {
+        FilterRegistrationBean<Filter> registrationBean = new FilterRegistrationBean<>();
+        registrationBean.setFilter(new UploadResourceFilter(Paths.get(uploadProperties.getPath()), "/uploads/"));
+        registrationBean.addUrlPatterns("/uploads/*");
+        registrationBean.setOrder(2);
+        return registrationBean;
     }
 
     @Override
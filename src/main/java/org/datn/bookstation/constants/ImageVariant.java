@@ -0,0 +1,26 @@
+package org.datn.bookstation.constants;
+
+/**
+ * Các kích thước ảnh dẫn xuất được tạo sẵn khi upload (chiều rộng tối đa, px)
+ */
+public enum ImageVariant {
+    THUMBNAIL("thumb", 150),
+    LIST("list", 360),
+    DETAIL("detail", 800);
+
+    private final String suffix;
+    private final int maxWidth;
+
+    ImageVariant(String suffix, int maxWidth) {
+        this.suffix = suffix;
+        this.maxWidth = maxWidth;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+}
@@ -8,24 +8,32 @@ import java.util.stream.Collectors;
  * Enum defining all allowed upload modules in the system
  */
 public enum UploadModule {
-    EVENTS("events"),
-    USERS("users"),
-    PRODUCTS("products"),
-    CATEGORIES("categories"),
-    ORDERS("orders"),
-    REVIEWS("reviews"),
-    REFUND_EVIDENCE("refund-evidence");
+    EVENTS("events", true),
+    USERS("users", false),
+    PRODUCTS("products", true),
+    CATEGORIES("categories", true),
+    ORDERS("orders", false),
+    REVIEWS("reviews", false),
+    REFUND_EVIDENCE("refund-evidence", false);
 
     private final String value;
+    // Ảnh dùng chung (sách, danh mục, sự kiện) lưu theo hash nội dung + tạo bản thu nhỏ;
+    // ảnh riêng của người dùng (avatar, đánh giá, bằng chứng hoàn trả) mỗi lần upload 1 file riêng
+    private final boolean contentAddressed;
 
-    UploadModule(String value) {
+    UploadModule(String value, boolean contentAddressed) {
         this.value = value;
+        this.contentAddressed = contentAddressed;
     }
 
     public String getValue() {
         return value;
     }
 
+    public boolean isContentAddressed() {
+        return contentAddressed;
+    }
+
     /**
      * Get all allowed module values as a Set
      */
@@ -15,6 +15,7 @@ import org.datn.bookstation.dto.response.BookSentimentResponse;
 import org.datn.bookstation.dto.response.PaginationResponse;
 import org.datn.bookstation.dto.response.DropdownOptionResponse;
 import org.datn.bookstation.dto.response.TrendingBookResponse;
+import org.datn.bookstation.dto.response.TrendingScoreConsistencyResponse;
 import org.datn.bookstation.dto.response.QuantityValidationResponse;
 import org.datn.bookstation.dto.response.BookPriceCalculationResponse;
 import org.datn.bookstation.dto.response.ProcessingOrderResponse;
@@ -26,6 +27,7 @@ import org.datn.bookstation.mapper.BookResponseMapper;
 import org.datn.bookstation.mapper.BookDetailResponseMapper;
 import org.datn.bookstation.service.BookService;
 import org.datn.bookstation.service.TrendingCacheService;
+import org.datn.bookstation.service.TrendingScoreService;
 import org.datn.bookstation.service.FlashSaleItemService;
 import org.datn.bookstation.repository.FlashSaleItemRepository;
 import org.datn.bookstation.repository.OrderDetailRepository;
@@ -57,6 +59,7 @@ public class BookController {
     private final BookResponseMapper bookResponseMapper;
     private final BookDetailResponseMapper bookDetailResponseMapper;
     private final TrendingCacheService trendingCacheService;
+    private final TrendingScoreService trendingScoreService;
     private final FlashSaleItemService flashSaleItemService;
     private final FlashSaleItemRepository flashSaleItemRepository;
     private final OrderDetailRepository orderDetailRepository;
@@ -225,9 +228,14 @@ public class BookController {
 
     @GetMapping("/dropdown")
     public ResponseEntity<ApiResponse<List<DropdownOptionResponse>>> getDropdownBooks(
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
         // Logic lấy danh sách dropdown đã chuyển sang service với hỗ trợ tìm kiếm
-        List<DropdownOptionResponse> dropdown = bookService.getDropdownOptionsWithDetails(search);
+        // Có page/size thì chỉ trả về 1 trang, không có thì trả về toàn bộ như cũ
+        List<DropdownOptionResponse> dropdown = size != null
+                ? bookService.getDropdownOptionsWithDetails(search, page != null ? page : 0, size)
+                : bookService.getDropdownOptionsWithDetails(search);
         ApiResponse<List<DropdownOptionResponse>> response = new ApiResponse<>(HttpStatus.OK.value(),
                 "Lấy danh sách sách thành công", dropdown);
         return ResponseEntity.ok(response);
@@ -297,9 +305,7 @@ public class BookController {
     @GetMapping("/category/{categoryId}")
     public ResponseEntity<ApiResponse<List<BookResponse>>> getBooksByCategory(@PathVariable Integer categoryId) {
         List<Book> books = bookService.getBooksByCategory(categoryId);
-        List<BookResponse> bookResponses = books.stream()
-                .map(bookResponseMapper::toResponse)
-                .collect(Collectors.toList());
+        List<BookResponse> bookResponses = bookResponseMapper.toResponseList(books);
         ApiResponse<List<BookResponse>> response = new ApiResponse<>(HttpStatus.OK.value(), "Thành công",
                 bookResponses);
         return ResponseEntity.ok(response);
@@ -308,9 +314,7 @@ public class BookController {
     @GetMapping("/supplier/{supplierId}")
     public ResponseEntity<ApiResponse<List<BookResponse>>> getBooksBySupplier(@PathVariable Integer supplierId) {
         List<Book> books = bookService.getBooksBySupplier(supplierId);
-        List<BookResponse> bookResponses = books.stream()
-                .map(bookResponseMapper::toResponse)
-                .collect(Collectors.toList());
+        List<BookResponse> bookResponses = bookResponseMapper.toResponseList(books);
         ApiResponse<List<BookResponse>> response = new ApiResponse<>(HttpStatus.OK.value(), "Thành công",
                 bookResponses);
         return ResponseEntity.ok(response);
@@ -319,9 +323,7 @@ public class BookController {
     @GetMapping("/active")
     public ResponseEntity<ApiResponse<List<BookResponse>>> getActiveBooks() {
         List<Book> books = bookService.getActiveBooks();
-        List<BookResponse> bookResponses = books.stream()
-                .map(bookResponseMapper::toResponse)
-                .collect(Collectors.toList());
+        List<BookResponse> bookResponses = bookResponseMapper.toResponseList(books);
         ApiResponse<List<BookResponse>> response = new ApiResponse<>(HttpStatus.OK.value(), "Thành công",
                 bookResponses);
         return ResponseEntity.ok(response);
@@ -371,6 +373,27 @@ public class BookController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 🔥 ADMIN: Rebuild toàn bộ bảng điểm trending tính sẵn
+     * POST /api/books/admin/trending-score/rebuild
+     */
+    @PostMapping("/admin/trending-score/rebuild")
+    public ResponseEntity<ApiResponse<Integer>> rebuildTrendingScores() {
+        int rebuilt = trendingScoreService.rebuildAll();
+        return ResponseEntity.ok(new ApiResponse<>(HttpStatus.OK.value(), "Rebuild bảng điểm trending thành công", rebuilt));
+    }
+
+    /**
+     * 🔥 ADMIN: Đối soát bảng điểm trending với dữ liệu tính trực tiếp
+     * GET /api/books/admin/trending-score/check?topSize=50
+     */
+    @GetMapping("/admin/trending-score/check")
+    public ResponseEntity<ApiResponse<TrendingScoreConsistencyResponse>> checkTrendingScores(
+            @RequestParam(defaultValue = "50") int topSize) {
+        TrendingScoreConsistencyResponse result = trendingScoreService.checkConsistency(topSize);
+        return ResponseEntity.ok(new ApiResponse<>(HttpStatus.OK.value(), "Đối soát bảng điểm trending", result));
+    }
+
     @GetMapping("/bycategoryid/{id}")
     public ResponseEntity<ApiResponse<List<BookCategoryRequest>>> bookByCategoryId(
             @PathVariable("id") Integer id,
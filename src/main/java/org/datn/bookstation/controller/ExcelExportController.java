@@ -4,8 +4,17 @@ import org.datn.bookstation.dto.response.ApiResponse;
 import org.datn.bookstation.dto.response.ExcelDataResponse;
 import org.datn.bookstation.dto.response.ExcelFieldsResponse;
 import org.datn.bookstation.service.ExcelExportService;
+import org.datn.bookstation.util.SpreadsheetStreamWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/excel")
@@ -74,6 +83,33 @@ public class ExcelExportController {
         return excelExportService.getFlashSalesForExport();
     }
 
+
+    /**
+     * Tải file export trực tiếp (không trả JSON), dữ liệu được ghi dần ra response
+     * GET /api/excel/stream/orders?format=xlsx&fields=code,customerName,totalAmount
+     * entityType giống /fields/{entityType}; fields là key trong mapping, bỏ trống = tất cả cột
+     */
+    @GetMapping("/stream/{entityType}")
+    public ResponseEntity<?> streamExport(@PathVariable String entityType,
+            @RequestParam(defaultValue = "xlsx") String format,
+            @RequestParam(required = false) List<String> fields) {
+        if (!excelExportService.isStreamExportSupported(entityType)) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(400, "Không hỗ trợ export: " + entityType, null));
+        }
+        if (!SpreadsheetStreamWriter.isSupportedFormat(format)) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(400, "Định dạng không hợp lệ (xlsx hoặc csv)", null));
+        }
+        StreamingResponseBody body = out -> excelExportService.streamExport(entityType, fields, format, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(excelExportService.getStreamExportFileName(entityType, format), StandardCharsets.UTF_8)
+                        .build().toString())
+                .contentType(MediaType.parseMediaType(SpreadsheetStreamWriter.contentType(format)))
+                .body(body);
+    }
+
     @GetMapping("/fields/ranks")
     public ApiResponse<ExcelFieldsResponse> getRankFields() {
         return excelExportService.getRankFieldsMapping();
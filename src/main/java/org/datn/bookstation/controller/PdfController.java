@@ -1,16 +1,26 @@
 package org.datn.bookstation.controller;
 
+import org.datn.bookstation.dto.response.ApiResponse;
+import org.datn.bookstation.dto.response.PdfResponse;
 import org.datn.bookstation.service.PdfService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
 @RestController
 @RequestMapping("/api/pdf")
 public class PdfController {
@@ -18,22 +28,67 @@ public class PdfController {
     @Autowired
     private PdfService pdfService;
 
+    @Value("${pdf.bulk.max-orders:500}")
+    private int bulkMaxOrders;
+
     @GetMapping("/invoice/{orderId}")
     public ResponseEntity<byte[]> generateInvoicePdf(@PathVariable Integer orderId) {
         try {
-
-            byte[] pdfBytes = pdfService.generateInvoicePdf(orderId);
+            // Render xong (trên pool worker) trước khi trả response: lỗi render → 500, không phải 200 cụt
+            PdfResponse invoiceData = pdfService.getInvoiceData(orderId);
+            byte[] body = pdfService.generateInvoicePdf(invoiceData);
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_PDF);
             headers.setContentDispositionFormData("inline", "invoice-" + orderId + ".pdf");
+            headers.setContentLength(body.length);
 
             return ResponseEntity.ok()
                     .headers(headers)
-                    .body(pdfBytes);
+                    .body(body);
 
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    /**
+     * In hóa đơn hàng loạt (cuối ngày): body là danh sách orderId, trả về 1 file ZIP
+     * POST /api/pdf/invoices/zip  [101, 102, 103]
+     * Render đủ mọi hóa đơn trước khi trả response: 1 hóa đơn lỗi → 500, không phải 200 với ZIP cụt
+     */
+    @PostMapping("/invoices/zip")
+    public ResponseEntity<?> generateInvoiceZip(@RequestBody List<Integer> orderIds) {
+        List<Integer> ids = orderIds == null ? List.of()
+                : orderIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(400, "Danh sách đơn hàng không được để trống", null));
+        }
+        if (ids.size() > bulkMaxOrders) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(400, "Tối đa " + bulkMaxOrders + " đơn hàng mỗi lần in", null));
+        }
+        List<PdfResponse> invoices;
+        try {
+            invoices = pdfService.getInvoiceData(ids);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ApiResponse<>(404, e.getMessage(), null));
+        }
+        byte[] body;
+        try {
+            body = pdfService.generateInvoiceZip(invoices);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(500, "Lỗi khi tạo file hóa đơn: " + e.getMessage(), null));
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("invoices-" + System.currentTimeMillis() + ".zip")
+                        .build().toString())
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .contentLength(body.length)
+                .body(body);
+    }
 }
@@ -4,7 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.datn.bookstation.dto.response.ApiResponse;
 import org.datn.bookstation.dto.response.statistics.*;
-import org.datn.bookstation.service.StatisticsService;
+import org.datn.bookstation.service.StatisticsSnapshotService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,13 +16,13 @@ import org.springframework.web.bind.annotation.RestController;
 @Slf4j
 public class StatisticsController {
 
-    private final StatisticsService statisticsService;
+    private final StatisticsSnapshotService statisticsSnapshotService;
 
     @GetMapping("/users")
     public ResponseEntity<ApiResponse<UserStatisticsResponse>> getUserStatistics() {
         try {
             log.info("Yêu cầu lấy thống kê người dùng");
-            UserStatisticsResponse statistics = statisticsService.getUserStatistics();
+            UserStatisticsResponse statistics = statisticsSnapshotService.getUserStatistics();
             return ResponseEntity.ok(new ApiResponse<>(200, "Lấy thống kê người dùng thành công", statistics));
         } catch (Exception e) {
             log.error("Lỗi khi lấy thống kê người dùng: {}", e.getMessage(), e);
@@ -35,7 +35,7 @@ public class StatisticsController {
     public ResponseEntity<ApiResponse<RankStatisticsResponse>> getRankStatistics() {
         try {
             log.info("Yêu cầu lấy thống kê xếp hạng");
-            RankStatisticsResponse statistics = statisticsService.getRankStatistics();
+            RankStatisticsResponse statistics = statisticsSnapshotService.getRankStatistics();
             return ResponseEntity.ok(new ApiResponse<>(200, "Lấy thống kê xếp hạng thành công", statistics));
         } catch (Exception e) {
             log.error("Lỗi khi lấy thống kê xếp hạng: {}", e.getMessage(), e);
@@ -48,7 +48,7 @@ public class StatisticsController {
     public ResponseEntity<ApiResponse<PointStatisticsResponse>> getPointStatistics() {
         try {
             log.info("Yêu cầu lấy thống kê điểm");
-            PointStatisticsResponse statistics = statisticsService.getPointStatistics();
+            PointStatisticsResponse statistics = statisticsSnapshotService.getPointStatistics();
             return ResponseEntity.ok(new ApiResponse<>(200, "Lấy thống kê điểm thành công", statistics));
         } catch (Exception e) {
             log.error("Lỗi khi lấy thống kê điểm: {}", e.getMessage(), e);
@@ -61,7 +61,7 @@ public class StatisticsController {
     public ResponseEntity<ApiResponse<PublisherStatisticsResponse>> getPublisherStatistics() {
         try {
             log.info("Yêu cầu lấy thống kê nhà xuất bản");
-            PublisherStatisticsResponse statistics = statisticsService.getPublisherStatistics();
+            PublisherStatisticsResponse statistics = statisticsSnapshotService.getPublisherStatistics();
             return ResponseEntity.ok(new ApiResponse<>(200, "Lấy thống kê nhà xuất bản thành công", statistics));
         } catch (Exception e) {
             log.error("Lỗi khi lấy thống kê nhà xuất bản: {}", e.getMessage(), e);
@@ -74,7 +74,7 @@ public class StatisticsController {
     public ResponseEntity<ApiResponse<SupplierStatisticsResponse>> getSupplierStatistics() {
         try {
             log.info("Yêu cầu lấy thống kê nhà cung cấp");
-            SupplierStatisticsResponse statistics = statisticsService.getSupplierStatistics();
+            SupplierStatisticsResponse statistics = statisticsSnapshotService.getSupplierStatistics();
             return ResponseEntity.ok(new ApiResponse<>(200, "Lấy thống kê nhà cung cấp thành công", statistics));
         } catch (Exception e) {
             log.error("Lỗi khi lấy thống kê nhà cung cấp: {}", e.getMessage(), e);
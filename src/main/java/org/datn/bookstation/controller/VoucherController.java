@@ -13,11 +13,13 @@ import org.datn.bookstation.dto.response.UserForVoucher;
 import org.datn.bookstation.dto.response.VoucherResponse;
 import org.datn.bookstation.dto.response.VoucherStatsResponse;
 import org.datn.bookstation.dto.response.VoucherDropdownResponse;
+import org.datn.bookstation.dto.response.VoucherDistributionJobResponse;
 import org.datn.bookstation.dto.response.voucherUserResponse;
 import org.datn.bookstation.entity.User;
 import org.datn.bookstation.entity.UserVoucher;
 import org.datn.bookstation.entity.Voucher;
 import org.datn.bookstation.repository.UserVoucherRepository;
+import org.datn.bookstation.service.VoucherDistributionService;
 import org.datn.bookstation.service.VoucherService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -40,6 +42,9 @@ public class VoucherController {
     @Autowired
     private VoucherService voucherService;
 
+    @Autowired
+    private VoucherDistributionService voucherDistributionService;
+
     @Autowired
     private UserVoucherRepository userVoucherRepository;
 
@@ -306,4 +311,46 @@ public class VoucherController {
             @RequestParam("voucherId") Integer voucherId) {
         return voucherService.distributeVouchersToDiamondRank(voucherId);
     }
-}
\ No newline at end of file
+
+    /**
+     * Phát voucher cho cả hạng dưới dạng job nền (rank: silver | gold | diamond), trả về jobId để theo dõi
+     */
+    @PostMapping("/distribute/jobs")
+    public ApiResponse<VoucherDistributionJobResponse> startDistributionJob(
+            @RequestParam("voucherId") Integer voucherId,
+            @RequestParam("rank") String rank) {
+        String rankName = switch (rank.toLowerCase()) {
+            case "silver" -> "BẠC";
+            case "gold" -> "VÀNG";
+            case "diamond" -> "KIM CƯƠNG";
+            default -> null;
+        };
+        if (rankName == null) {
+            return new ApiResponse<>(400, "Hạng không hợp lệ: " + rank, null);
+        }
+        try {
+            return new ApiResponse<>(202, "Đã tạo job phát voucher",
+                    voucherDistributionService.startJob(voucherId, rankName));
+        } catch (Exception e) {
+            return new ApiResponse<>(400, "Lỗi khi phát voucher: " + e.getMessage(), null);
+        }
+    }
+
+    @GetMapping("/distribute/jobs/{jobId}")
+    public ApiResponse<VoucherDistributionJobResponse> getDistributionJob(@PathVariable String jobId) {
+        try {
+            return new ApiResponse<>(200, "Thành công", voucherDistributionService.getJob(jobId));
+        } catch (Exception e) {
+            return new ApiResponse<>(404, e.getMessage(), null);
+        }
+    }
+
+    @PostMapping("/distribute/jobs/{jobId}/resume")
+    public ApiResponse<VoucherDistributionJobResponse> resumeDistributionJob(@PathVariable String jobId) {
+        try {
+            return new ApiResponse<>(200, "Thành công", voucherDistributionService.resumeJob(jobId));
+        } catch (Exception e) {
+            return new ApiResponse<>(404, e.getMessage(), null);
+        }
+    }
+}
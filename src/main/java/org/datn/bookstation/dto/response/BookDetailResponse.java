@@ -56,4 +56,8 @@ public class BookDetailResponse {
     
     // ✅ THÊM MỚI: Danh sách ảnh sản phẩm (nhiều ảnh)
     private List<String> images;
+
+    // Cùng thứ tự images: cỡ trang chi tiết và cỡ thumbnail gallery (ảnh gốc nếu chưa có bản thu nhỏ)
+    private List<String> detailImages;
+    private List<String> thumbnailImages;
 }
@@ -56,6 +56,9 @@ public class BookResponse {
     
     // ✅ THÊM MỚI: Danh sách ảnh sản phẩm (nhiều ảnh)
     private List<String> images;
+
+    // Ảnh đại diện cỡ danh sách (bản thu nhỏ nếu đã tạo, ngược lại ảnh gốc)
+    private String listImageUrl;
     
     // ✅ ADMIN CẦN: Thông tin đã bán và Flash Sale
     private Integer soldCount; // Số lượng đã bán tổng cộng
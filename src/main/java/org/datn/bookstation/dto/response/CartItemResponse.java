@@ -14,6 +14,7 @@ public class CartItemResponse {
     private String bookName;
     private String bookCode;
     private String bookImageUrl;
+    private String bookThumbnailUrl; // Bản thu nhỏ của bookImageUrl (nếu đã tạo)
     private BigDecimal bookPrice; // Giá gốc của sách
     
     // Flash sale info
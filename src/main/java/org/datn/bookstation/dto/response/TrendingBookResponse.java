@@ -60,4 +60,7 @@ public class TrendingBookResponse {
     
     // ✅ THÊM MỚI: Danh sách ảnh sản phẩm (nhiều ảnh)
     private List<String> images;
+
+    // Ảnh đại diện cỡ danh sách (bản thu nhỏ nếu đã tạo, ngược lại ảnh gốc)
+    private String listImageUrl;
 }
@@ -0,0 +1,42 @@
+package org.datn.bookstation.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả đối soát bảng điểm trending tính sẵn với dữ liệu tính trực tiếp từ
+ * OrderDetail/Review/FlashSaleItem
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingScoreConsistencyResponse {
+    private Integer checkedBooks;
+    private Integer mismatchedBooks;
+    // Số sách trong top N của query cũ (findTrendingBooksData) cũng nằm trong top N của bảng điểm
+    private Integer legacyTopOverlap;
+    private Integer topSize;
+    private Long checkedAt;
+    private List<Mismatch> mismatches;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Mismatch {
+        private Integer bookId;
+        private Integer storedSoldCount;
+        private Integer liveSoldCount;
+        private Integer storedReviewCount;
+        private Integer liveReviewCount;
+        private Long storedRatingSum;
+        private Long liveRatingSum;
+        private Double storedScore;
+        private Double liveScore;
+    }
+}
@@ -0,0 +1,31 @@
+package org.datn.bookstation.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tiến độ / kết quả phát voucher cho 1 hạng thành viên
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoucherDistributionJobResponse {
+    private String jobId;
+    private Integer voucherId;
+    private String rankName;
+    // PENDING, RUNNING, COMPLETED, FAILED
+    private String status;
+    // Số user CUSTOMER thuộc hạng (lúc bắt đầu, cập nhật bằng số đã xử lý khi hoàn tất)
+    private Integer totalUsers;
+    private Integer processedUsers;
+    private Integer distributedCount;
+    private Integer skippedCount;
+    // User id lớn nhất đã xử lý, chạy tiếp (resume) từ sau user này
+    private Integer lastUserId;
+    private String message;
+    private Long startedAt;
+    private Long finishedAt;
+}
@@ -17,6 +17,8 @@ public class PointStatisticsResponse {
     private Long pointsEarnedThisMonth;
     private Long pointsSpentThisMonth;
     private List<TopPointEarner> topPointEarners;
+    // Thời điểm tính snapshot (ms), số liệu có thể trễ tới lần làm mới kế tiếp
+    private Long snapshotAt;
 
     @Data
     @Builder
@@ -17,6 +17,8 @@ public class PublisherStatisticsResponse {
     private List<PublisherRevenueStatistic> revenueStatistics;
     private List<TopPublisherByRevenue> topPublishersByRevenue;
     private List<TopPublisherByQuantity> topPublishersByQuantity;
+    // Thời điểm tính snapshot (ms), số liệu có thể trễ tới lần làm mới kế tiếp
+    private Long snapshotAt;
 
     @Data
     @Builder
@@ -16,6 +16,8 @@ public class RankStatisticsResponse {
     private List<RankUserCount> rankUserCounts;
     private List<RankAveragePoints> averagePointsByRank;
     private List<RankGrowthRate> monthlyGrowthRates;
+    // Thời điểm tính snapshot (ms), số liệu có thể trễ tới lần làm mới kế tiếp
+    private Long snapshotAt;
 
     @Data
     @Builder
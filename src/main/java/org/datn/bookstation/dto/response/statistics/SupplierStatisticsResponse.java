@@ -17,6 +17,8 @@ public class SupplierStatisticsResponse {
     private List<SupplierRevenueStatistic> revenueStatistics;
     private List<TopSupplierByRevenue> topSuppliersByRevenue;
     private List<TopSupplierByQuantity> topSuppliersByQuantity;
+    // Thời điểm tính snapshot (ms), số liệu có thể trễ tới lần làm mới kế tiếp
+    private Long snapshotAt;
 
     @Data
     @Builder
@@ -22,6 +22,8 @@ public class UserStatisticsResponse {
     private Long purchasingUsers;
     private Long registeredOnlyUsers;
     private Double purchaseRate;
+    // Thời điểm tính snapshot (ms), số liệu có thể trễ tới lần làm mới kế tiếp
+    private Long snapshotAt;
 
     @Data
     @Builder
@@ -7,7 +7,9 @@ import jakarta.validation.constraints.Size;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.Nationalized;
 import org.datn.bookstation.entity.enums.BookFormat;
 
@@ -19,7 +21,13 @@ import java.util.Set;
 @Setter
 @ToString
 @Entity
-@Table(name = "book")
+@Table(name = "book", indexes = {
+        @Index(name = "idx_book_status_category", columnList = "status, category_id"),
+        @Index(name = "idx_book_created_at", columnList = "created_at")
+})
+// Chỉ UPDATE cột thay đổi: tồn kho được trừ/cộng bằng UPDATE có điều kiện (StockReservationService),
+// entity đang giữ giá trị cũ không được ghi đè stock_quantity khi flush
+@DynamicUpdate
 public class Book {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -139,6 +147,8 @@ public class Book {
     private String bookCode;
 
     // ✅ THÊM MỚI: Relationship với AuthorBook
+    // Nạp theo lô khi duyệt nhiều sách (export, danh sách) thay vì 1 query / sách
+    @BatchSize(size = 100)
     @OneToMany(mappedBy = "book", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<AuthorBook> authorBooks = new LinkedHashSet<>();
 
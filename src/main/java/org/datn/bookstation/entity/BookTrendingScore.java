@@ -0,0 +1,99 @@
+package org.datn.bookstation.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.ColumnDefault;
+
+/**
+ * 🔥 BẢNG ĐIỂM TRENDING TÍNH SẴN
+ * Mỗi sách 1 dòng, lưu các bộ đếm trong cửa sổ thời gian của DAILY_TRENDING
+ * (đã bán 30 ngày, review 60 ngày) và điểm trending đã tính sẵn để endpoint
+ * chỉ cần ORDER BY score LIMIT trên index.
+ */
+@Entity
+@Table(name = "book_trending_score", indexes = {
+        @Index(name = "idx_book_trending_score_score", columnList = "score")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BookTrendingScore {
+    @Id
+    @Column(name = "book_id", nullable = false)
+    Integer bookId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "book_id", nullable = false)
+    Book book;
+
+    // Số lượng đã bán trong 30 ngày (đơn DELIVERED / PARTIALLY_REFUNDED)
+    @ColumnDefault("0")
+    @Column(name = "sold_count")
+    @Builder.Default
+    Integer soldCount = 0;
+
+    // Số đơn hàng chứa sách trong 30 ngày
+    @ColumnDefault("0")
+    @Column(name = "order_count")
+    @Builder.Default
+    Integer orderCount = 0;
+
+    // Số review APPROVED trong 60 ngày
+    @ColumnDefault("0")
+    @Column(name = "review_count")
+    @Builder.Default
+    Integer reviewCount = 0;
+
+    // Tổng số sao của các review trên (avgRating * reviewCount)
+    @ColumnDefault("0")
+    @Column(name = "rating_sum")
+    @Builder.Default
+    Long ratingSum = 0L;
+
+    // Sách mới tạo trong 30 ngày
+    @ColumnDefault("false")
+    @Column(name = "is_new")
+    @Builder.Default
+    Boolean isNew = false;
+
+    // Sách đang có flash sale hiệu lực
+    @ColumnDefault("false")
+    @Column(name = "in_flash_sale")
+    @Builder.Default
+    Boolean inFlashSale = false;
+
+    @ColumnDefault("0")
+    @Column(name = "score", nullable = false)
+    @Builder.Default
+    Double score = 0.0;
+
+    @Column(name = "updated_at")
+    Long updatedAt;
+
+    /**
+     * Cùng công thức với ORDER BY của BookRepository.findTrendingBooksData
+     */
+    public void recalculateScore() {
+        double salesScore = (soldCount != null ? soldCount : 0) * 0.4;
+        double reviewScore = (ratingSum != null ? ratingSum : 0L) * 0.3;
+        double recencyScore = Boolean.TRUE.equals(isNew) ? 10 * 0.2 : 0;
+        double flashSaleScore = Boolean.TRUE.equals(inFlashSale) ? 10 * 0.1 : 0;
+        score = salesScore + reviewScore + recencyScore + flashSaleScore;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = System.currentTimeMillis();
+    }
+}
@@ -11,7 +11,10 @@ import org.hibernate.annotations.Nationalized;
 @Getter
 @Setter
 @Entity
-@Table(name = "cart_item")
+@Table(name = "cart_item", indexes = {
+        @Index(name = "idx_cart_item_cart", columnList = "cart_id"),
+        @Index(name = "idx_cart_item_book", columnList = "book_id")
+})
 public class CartItem {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
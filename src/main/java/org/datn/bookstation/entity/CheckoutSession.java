@@ -11,7 +11,10 @@ import java.math.BigDecimal;
 @Getter
 @Setter
 @Entity
-@Table(name = "checkout_session")
+@Table(name = "checkout_session", indexes = {
+        @Index(name = "idx_checkout_session_status_expires", columnList = "status, expires_at"),
+        @Index(name = "idx_checkout_session_user_status", columnList = "user_id, status")
+})
 public class CheckoutSession {
     
     @Id
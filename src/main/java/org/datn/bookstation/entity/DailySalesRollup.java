@@ -0,0 +1,113 @@
+package org.datn.bookstation.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 📊 BẢNG TỔNG HỢP DOANH SỐ THEO NGÀY
+ * Mỗi ngày (giờ Việt Nam, theo ngày đặt hàng) 1 dòng, tính sẵn các số liệu mà
+ * API thống kê trước đây phải tính lại bằng nhiều query cho từng ngày.
+ * Doanh thu thuần cùng công thức với OrderStatisticsServiceImpl.calculateTrueNetRevenue
+ */
+@Entity
+@Table(name = "daily_sales_rollup")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DailySalesRollup {
+    @Id
+    @Column(name = "sale_date", nullable = false)
+    LocalDate saleDate;
+
+    // Tổng số đơn đặt trong ngày (mọi trạng thái)
+    @ColumnDefault("0")
+    @Column(name = "order_count")
+    @Builder.Default
+    Integer orderCount = 0;
+
+    // Số đơn DELIVERED / PARTIALLY_REFUNDED
+    @ColumnDefault("0")
+    @Column(name = "sold_order_count")
+    @Builder.Default
+    Integer soldOrderCount = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "canceled_order_count")
+    @Builder.Default
+    Integer canceledOrderCount = 0;
+
+    // Số đơn REFUNDED / PARTIALLY_REFUNDED
+    @ColumnDefault("0")
+    @Column(name = "refunded_order_count")
+    @Builder.Default
+    Integer refundedOrderCount = 0;
+
+    // Số sách đã bán thực (đã trừ số lượng hoàn thành công)
+    @ColumnDefault("0")
+    @Column(name = "books_sold")
+    @Builder.Default
+    Integer booksSold = 0;
+
+    // Nhóm "doanh thu đầy đủ": DELIVERED + các trạng thái đang yêu cầu hoàn trả
+    @ColumnDefault("0")
+    @Column(name = "full_revenue", precision = 20, scale = 2)
+    @Builder.Default
+    BigDecimal fullRevenue = BigDecimal.ZERO;
+
+    @ColumnDefault("0")
+    @Column(name = "full_discount", precision = 20, scale = 2)
+    @Builder.Default
+    BigDecimal fullDiscount = BigDecimal.ZERO;
+
+    // Nhóm PARTIALLY_REFUNDED
+    @ColumnDefault("0")
+    @Column(name = "partial_revenue", precision = 20, scale = 2)
+    @Builder.Default
+    BigDecimal partialRevenue = BigDecimal.ZERO;
+
+    @ColumnDefault("0")
+    @Column(name = "partial_discount", precision = 20, scale = 2)
+    @Builder.Default
+    BigDecimal partialDiscount = BigDecimal.ZERO;
+
+    // Số tiền đã hoàn (COMPLETED) của các đơn PARTIALLY_REFUNDED
+    @ColumnDefault("0")
+    @Column(name = "refunded_amount", precision = 20, scale = 2)
+    @Builder.Default
+    BigDecimal refundedAmount = BigDecimal.ZERO;
+
+    @ColumnDefault("0")
+    @Column(name = "net_revenue", precision = 20, scale = 2)
+    @Builder.Default
+    BigDecimal netRevenue = BigDecimal.ZERO;
+
+    @Column(name = "updated_at")
+    Long updatedAt;
+
+    /**
+     * Doanh thu thuần = (full - giảm giá) + (partial - giảm giá - đã hoàn), đơn REFUNDED = 0
+     */
+    public void recalculateNetRevenue() {
+        netRevenue = fullRevenue.subtract(fullDiscount)
+                .add(partialRevenue.subtract(partialDiscount).subtract(refundedAmount));
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = System.currentTimeMillis();
+    }
+}
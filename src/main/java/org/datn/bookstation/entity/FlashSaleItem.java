@@ -11,11 +11,16 @@ import lombok.Setter;
 import lombok.experimental.FieldDefaults;
 
 import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "flash_sale_item")
+@Table(name = "flash_sale_item", indexes = {
+        @Index(name = "idx_flash_sale_item_book_status", columnList = "book_id, status"),
+        @Index(name = "idx_flash_sale_item_flash_sale", columnList = "flash_sale_id")
+})
+@DynamicUpdate // Tồn kho được cập nhật bằng UPDATE có điều kiện, không ghi đè khi flush
 @Getter
 @Setter
 @Builder
@@ -15,7 +15,12 @@ import java.math.BigDecimal;
 @Getter
 @Setter
 @Entity
-@Table(name = "\"order\"")
+@Table(name = "\"order\"", indexes = {
+        @Index(name = "idx_order_status_order_date", columnList = "order_status, order_date"),
+        @Index(name = "idx_order_user_order_date", columnList = "user_id, order_date"),
+        @Index(name = "idx_order_created_at_status", columnList = "created_at, order_status"),
+        @Index(name = "idx_order_code", columnList = "code")
+})
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -3,18 +3,23 @@ package org.datn.bookstation.entity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.Nationalized;
+import org.springframework.data.domain.Persistable;
 
 import java.math.BigDecimal;
 
 @Getter
 @Setter
 @Entity
-@Table(name = "order_detail")
-public class OrderDetail {
+@Table(name = "order_detail", indexes = {
+        @Index(name = "idx_order_detail_book", columnList = "book_id"),
+        @Index(name = "idx_order_detail_flash_sale_item", columnList = "flash_sale_item_id")
+})
+public class OrderDetail implements Persistable<OrderDetailId> {
     @EmbeddedId
     private OrderDetailId id;
 
@@ -62,6 +67,18 @@ public class OrderDetail {
     @Column(name = "status")
     private Byte status;
 
+    // Id ghép được gán sẵn: đánh dấu mới để saveAll() persist thẳng, không SELECT trước như merge
+    // Chỉ do callback JPA đổi → không có setter (MapStruct không coi là thuộc tính đích)
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private boolean isNew = true;
+
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        isNew = false;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = System.currentTimeMillis();
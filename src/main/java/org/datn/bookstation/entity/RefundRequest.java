@@ -10,7 +10,9 @@ import java.math.BigDecimal;
 import java.util.List;
 
 @Entity
-@Table(name = "refund_request")
+@Table(name = "refund_request", indexes = {
+        @Index(name = "idx_refund_request_order_status", columnList = "order_id, status")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -14,7 +14,10 @@ import org.datn.bookstation.entity.enums.ReviewStatus;
 import org.hibernate.annotations.Nationalized;
 
 @Entity
-@Table(name = "review")
+@Table(name = "review", indexes = {
+        @Index(name = "idx_review_book_status", columnList = "book_id, review_status"),
+        @Index(name = "idx_review_user", columnList = "user_id")
+})
 @Getter
 @Setter
 @Builder
@@ -0,0 +1,30 @@
+package org.datn.bookstation.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 🖼️ SỐ LẦN UPLOAD ĐANG DÙNG CHUNG 1 ẢNH LƯU THEO HASH
+ * Ảnh trùng nội dung (cùng module) chỉ lưu 1 file ({module}/cas/..) và trả cùng URL cho mọi lần upload:
+ * mỗi lần upload +1, mỗi lần xóa theo URL -1, về 0 thì xóa file gốc và các bản thu nhỏ
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "upload_file_reference")
+public class UploadFileReference {
+    // Đường dẫn tương đối so với upload.path (ImageDerivativeService.contentAddressedPath)
+    @Id
+    @Column(name = "path", nullable = false, length = 255)
+    private String path;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at")
+    private Long createdAt;
+
+    @Column(name = "updated_at")
+    private Long updatedAt;
+}
@@ -9,7 +9,9 @@ import lombok.AllArgsConstructor;
  * Entity theo dõi User trong chiến dịch mở hộp
  */
 @Entity
-@Table(name = "user_campaign")
+@Table(name = "user_campaign",
+        // 1 user chỉ có 1 record per campaign (INSERT ... ON CONFLICT khi mở hộp dựa vào ràng buộc này)
+        uniqueConstraints = {@UniqueConstraint(columnNames = {"user_id", "campaign_id"})})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -50,8 +52,4 @@ public class UserCampaign {
     public void preUpdate() {
         this.updatedAt = System.currentTimeMillis();
     }
-
-    // Unique constraint để 1 user chỉ có 1 record per campaign
-    @Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"user_id", "campaign_id"})})
-    public static class UserCampaignConstraint {}
 }
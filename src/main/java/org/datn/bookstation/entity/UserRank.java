@@ -7,7 +7,9 @@ import lombok.*;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "user_rank")
+@Table(name = "user_rank", indexes = {
+        @Index(name = "idx_user_rank_user_status", columnList = "user_id, status")
+})
 public class UserRank {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,228 @@
+package org.datn.bookstation.filter;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 📦 UPLOAD RESOURCE FILTER
+ * Phục vụ /uploads/** trực tiếp từ thư mục upload, không qua DispatcherServlet:
+ * - File lưu theo hash (…/cas/xx/{sha256}…): ETag = hash, Cache-Control 1 năm + immutable
+ * - File cũ (tên ngẫu nhiên): ETag theo kích thước + thời điểm sửa, cache ngắn rồi kiểm tra lại bằng If-None-Match
+ * - Range 1 đoạn (bytes=a-b, a-, -n) cho video; nhiều đoạn thì trả cả file
+ * - Dùng sendfile của Tomcat khi connector hỗ trợ, ngược lại FileChannel.transferTo
+ * - File / thư mục bắt đầu bằng "." (file tạm khi upload, tạo bản thu nhỏ) trả 404
+ */
+@Slf4j
+public class UploadResourceFilter implements Filter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE_CACHE_CONTROL = "public, max-age=3600, must-revalidate";
+
+    private static final Pattern CONTENT_NAMED = Pattern.compile("/cas/[0-9a-f]{2}/([0-9a-f]{64}(?:_[a-z]+)?)\\.[a-z0-9]+$");
+    private static final Pattern SINGLE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    private final Path root;
+    private final String urlPrefix;
+
+    public UploadResourceFilter(Path root, String urlPrefix) {
+        this.root = root.toAbsolutePath().normalize();
+        this.urlPrefix = urlPrefix;
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        String method = request.getMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Path file = resolve(request);
+        BasicFileAttributes attributes = file != null ? readAttributes(file) : null;
+        if (attributes == null || !attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String relative = root.relativize(file).toString().replace('\\', '/');
+        Matcher contentNamed = CONTENT_NAMED.matcher("/" + relative);
+        boolean immutable = contentNamed.find();
+        String etag = immutable
+                ? "\"" + contentNamed.group(1) + "\""
+                : "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matchesEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // If-Range khác ETag hiện tại → file đã đổi, trả cả file
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            Matcher matcher = SINGLE_RANGE.matcher(range.trim());
+            // Sai cú pháp (kể cả bytes=5-2: đầu > cuối) hoặc nhiều đoạn → bỏ qua Range, trả cả file
+            if (matcher.matches() && isValidRange(matcher.group(1), matcher.group(2))) {
+                if (matcher.group(1).isEmpty()) {
+                    // bytes=-n: n byte cuối (bytes=-0 không thỏa mãn được)
+                    long suffix = parseBytePosition(matcher.group(2));
+                    start = suffix == 0 ? length : Math.max(0, length - suffix);
+                } else {
+                    start = parseBytePosition(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, parseBytePosition(matcher.group(2)));
+                    }
+                }
+                if (start >= length) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (head || count == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat gửi file bằng sendfile sau khi filter trả về (end không bao gồm)
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ServletOutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Client đóng kết nối giữa chừng (tua video)
+            log.debug("Upload transfer aborted for {}: {}", relative, e.getMessage());
+        }
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private Path resolve(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(urlPrefix)) {
+            return null;
+        }
+        String relative = UriUtils.decode(path.substring(urlPrefix.length()), StandardCharsets.UTF_8);
+        if (relative.isEmpty()) {
+            return null;
+        }
+        Path file = root.resolve(relative).normalize();
+        // Chặn ../ ra ngoài thư mục upload
+        if (!file.startsWith(root)) {
+            return null;
+        }
+        // Không phục vụ file / thư mục ẩn (file tạm .upload*.tmp, .derivative*.tmp đang ghi dở)
+        for (Path name : root.relativize(file)) {
+            if (name.toString().startsWith(".")) {
+                return null;
+            }
+        }
+        return file;
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isValidRange(String first, String last) {
+        if (first.isEmpty() || last.isEmpty()) {
+            return !(first.isEmpty() && last.isEmpty());
+        }
+        return parseBytePosition(first) <= parseBytePosition(last);
+    }
+
+    // Chỉ gồm chữ số (SINGLE_RANGE), tràn long thì coi như vô cùng
+    private static long parseBytePosition(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
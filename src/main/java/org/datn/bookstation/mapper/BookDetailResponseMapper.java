@@ -1,11 +1,13 @@
 package org.datn.bookstation.mapper;
 
+import org.datn.bookstation.constants.ImageVariant;
 import org.datn.bookstation.dto.response.AuthorResponse;
 import org.datn.bookstation.dto.response.BookDetailResponse;
 import org.datn.bookstation.entity.Book;
 import org.datn.bookstation.entity.FlashSaleItem;
 import org.datn.bookstation.repository.FlashSaleItemRepository;
 import org.datn.bookstation.repository.OrderDetailRepository;
+import org.datn.bookstation.service.ImageDerivativeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -21,6 +23,9 @@ public class BookDetailResponseMapper {
     @Autowired
     private OrderDetailRepository orderDetailRepository;
     
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+    
     public BookDetailResponse toDetailResponse(Book book) {
         if (book == null) return null;
         
@@ -91,6 +96,8 @@ public class BookDetailResponseMapper {
         } else {
             response.setImages(java.util.Collections.emptyList());
         }
+        response.setDetailImages(imageDerivativeService.resolveAll(response.getImages(), ImageVariant.DETAIL));
+        response.setThumbnailImages(imageDerivativeService.resolveAll(response.getImages(), ImageVariant.THUMBNAIL));
         
         // 🔥 Xử lý giá và discount (Flash Sale → Direct Discount → Original Price)
         setPriceAndDiscountFields(response, book);
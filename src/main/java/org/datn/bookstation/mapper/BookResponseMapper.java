@@ -1,5 +1,6 @@
 package org.datn.bookstation.mapper;
 
+import org.datn.bookstation.constants.ImageVariant;
 import org.datn.bookstation.dto.response.AuthorResponse;
 import org.datn.bookstation.dto.response.BookResponse;
 import org.datn.bookstation.entity.Book;
@@ -7,10 +8,12 @@ import org.datn.bookstation.entity.FlashSaleItem;
 import org.datn.bookstation.repository.FlashSaleItemRepository;
 import org.datn.bookstation.repository.OrderDetailRepository;
 import org.datn.bookstation.service.BookProcessingQuantityService;
+import org.datn.bookstation.service.ImageDerivativeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Component
@@ -25,7 +28,25 @@ public class BookResponseMapper {
     @Autowired
     private BookProcessingQuantityService bookProcessingQuantityService;
     
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+    
     public BookResponse toResponse(Book book) {
+        return toResponse(book, null);
+    }
+    
+    /**
+     * Map danh sách sách, processing quantity được tính 1 lần cho cả danh sách
+     */
+    public List<BookResponse> toResponseList(List<Book> books) {
+        Map<Integer, Integer> processingQuantities = bookProcessingQuantityService.getProcessingQuantities(
+                books.stream().map(Book::getId).collect(Collectors.toList()));
+        return books.stream()
+                .map(book -> toResponse(book, processingQuantities.get(book.getId())))
+                .collect(Collectors.toList());
+    }
+    
+    private BookResponse toResponse(Book book, Integer processingQuantity) {
         if (book == null) return null;
         
         BookResponse response = new BookResponse();
@@ -93,6 +114,8 @@ public class BookResponseMapper {
         } else {
             response.setImages(java.util.Collections.emptyList());
         }
+        String primaryImage = !response.getImages().isEmpty() ? response.getImages().get(0) : book.getCoverImageUrl();
+        response.setListImageUrl(imageDerivativeService.resolve(primaryImage, ImageVariant.LIST));
         
         // ✅ ADMIN CẦN: Tính số lượng đã bán
         Integer totalSold = orderDetailRepository.countSoldQuantityByBook(book.getId());
@@ -108,7 +131,8 @@ public class BookResponseMapper {
         // ✅ SỬA: Trả về soldCount từ Book entity
         response.setSoldCount(book.getSoldCount() != null ? book.getSoldCount() : 0);
         // ✅ THÊM MỚI: Processing quantity real-time
-        response.setProcessingQuantity(bookProcessingQuantityService.getProcessingQuantity(book.getId()));
+        response.setProcessingQuantity(processingQuantity != null ? processingQuantity
+                : bookProcessingQuantityService.getProcessingQuantity(book.getId()));
         // ✅ ADMIN CẦN: Kiểm tra Flash Sale hiện tại
         FlashSaleItem currentFlashSale = flashSaleItemRepository.findActiveFlashSaleByBook(book.getId());
         System.out.println(currentFlashSale);
@@ -1,7 +1,10 @@
 package org.datn.bookstation.mapper;
 
+import org.datn.bookstation.constants.ImageVariant;
 import org.datn.bookstation.dto.response.CartItemResponse;
 import org.datn.bookstation.entity.CartItem;
+import org.datn.bookstation.service.ImageDerivativeService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
@@ -9,6 +12,9 @@ import java.math.BigDecimal;
 @Component
 public class CartItemResponseMapper {
     
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+    
     public CartItemResponse toResponse(CartItem cartItem) {
         if (cartItem == null) return null;
         
@@ -39,6 +45,7 @@ public class CartItemResponseMapper {
             } else {
                 response.setBookImageUrl(null);
             }
+            response.setBookThumbnailUrl(imageDerivativeService.resolve(response.getBookImageUrl(), ImageVariant.THUMBNAIL));
             
             response.setBookPrice(cartItem.getBook().getPrice());
             
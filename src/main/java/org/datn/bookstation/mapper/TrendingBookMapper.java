@@ -1,6 +1,7 @@
 package org.datn.bookstation.mapper;
 
 import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.constants.ImageVariant;
 import org.datn.bookstation.dto.response.AuthorResponse;
 import org.datn.bookstation.dto.response.TrendingBookResponse;
 import org.datn.bookstation.entity.AuthorBook;
@@ -12,6 +13,7 @@ import org.datn.bookstation.repository.BookRepository;
 import org.datn.bookstation.repository.FlashSaleItemRepository;
 import org.datn.bookstation.repository.OrderDetailRepository;
 import org.datn.bookstation.repository.ReviewRepository;
+import org.datn.bookstation.service.ImageDerivativeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -37,6 +39,9 @@ public class TrendingBookMapper {
     @Autowired
     private BookRepository bookRepository;
     
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+    
     /**
      * Chuyển đổi từ Object[] query result sang TrendingBookResponse
      */
@@ -233,6 +238,7 @@ public class TrendingBookMapper {
         } else {
             response.setImages(java.util.Collections.emptyList());
         }
+        setListImageUrl(response);
         
         return response;
     }
@@ -261,6 +267,15 @@ public class TrendingBookMapper {
         return Math.round(totalScore * 10.0) / 10.0; // Round to 1 decimal place
     }
     
+    /**
+     * Ảnh đại diện cỡ danh sách: ảnh đầu tiên (hoặc imageUrl), bản thu nhỏ nếu đã tạo
+     */
+    private void setListImageUrl(TrendingBookResponse response) {
+        String primaryImage = response.getImages() != null && !response.getImages().isEmpty()
+            ? response.getImages().get(0) : response.getImageUrl();
+        response.setListImageUrl(imageDerivativeService.resolve(primaryImage, ImageVariant.LIST));
+    }
+    
     /**
      * Chuyển đổi AuthorBook sang AuthorResponse
      */
@@ -337,6 +352,7 @@ public class TrendingBookMapper {
         } else {
             response.setImages(java.util.Collections.emptyList());
         }
+        setListImageUrl(response);
         
         return response;
     }
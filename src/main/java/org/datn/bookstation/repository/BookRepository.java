@@ -8,6 +8,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -427,6 +428,19 @@ public interface BookRepository extends JpaRepository<Book, Integer>, JpaSpecifi
             "ORDER BY b.createdAt DESC")
     List<Book> findActiveBooksByNameOrCode(@Param("search") String search);
 
+    /**
+     * 🔎 Sách kèm tác giả + nhà xuất bản để dựng chỉ mục tìm kiếm trong bộ nhớ
+     */
+    @Query("SELECT DISTINCT b FROM Book b " +
+            "LEFT JOIN FETCH b.authorBooks ab LEFT JOIN FETCH ab.author " +
+            "LEFT JOIN FETCH b.publisher")
+    List<Book> findAllForSearchIndex();
+
+    @Query("SELECT DISTINCT b FROM Book b " +
+            "LEFT JOIN FETCH b.authorBooks ab LEFT JOIN FETCH ab.author " +
+            "LEFT JOIN FETCH b.publisher WHERE b.id = :id")
+    Optional<Book> findByIdForSearchIndex(@Param("id") Integer id);
+
     boolean existsByCategoryId(Integer id);
 
     boolean existsByAuthorBooks_Author_Id(Integer authorId);
@@ -496,4 +510,31 @@ List<Object[]> findTopBookSold(Pageable pageable);
     List<BookStockResponse> findAllBookStock();
 
     Optional<Book> findByBookCodeIgnoreCase(String bookCode);
+
+    /**
+     * 🔥 Trending score: lấy thời điểm tạo của danh sách sách (tính cờ "sách mới")
+     */
+    @Query("SELECT b.id, b.createdAt FROM Book b WHERE b.id IN :bookIds")
+    List<Object[]> findCreatedAtByIds(@Param("bookIds") List<Integer> bookIds);
+
+    @Query("SELECT b.id FROM Book b WHERE b.createdAt >= :since")
+    List<Integer> findIdsCreatedSince(@Param("since") Long since);
+
+    @Query("SELECT b.id FROM Book b ORDER BY b.id")
+    List<Integer> findAllIds();
+
+    /**
+     * Trừ tồn kho nguyên tử: chỉ trừ khi còn đủ hàng, trả về số dòng bị ảnh hưởng (0 = không đủ)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Book b SET b.stockQuantity = b.stockQuantity - :quantity " +
+           "WHERE b.id = :bookId AND b.stockQuantity >= :quantity")
+    int decreaseStockIfAvailable(@Param("bookId") Integer bookId, @Param("quantity") Integer quantity);
+
+    /**
+     * Cộng lại tồn kho (hủy đơn / giao thất bại / hàng hoàn về kho)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Book b SET b.stockQuantity = b.stockQuantity + :quantity WHERE b.id = :bookId")
+    int increaseStock(@Param("bookId") Integer bookId, @Param("quantity") Integer quantity);
 }
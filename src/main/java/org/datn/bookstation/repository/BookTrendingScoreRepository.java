@@ -0,0 +1,82 @@
+package org.datn.bookstation.repository;
+
+import org.datn.bookstation.entity.BookTrendingScore;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface BookTrendingScoreRepository extends JpaRepository<BookTrendingScore, Integer> {
+
+    /**
+     * 🔥 DAILY TRENDING từ bảng điểm tính sẵn
+     * Trả về cùng thứ tự cột với BookRepository.findTrendingBooksData để dùng lại
+     * TrendingBookMapper.mapToTrendingBookResponse
+     */
+    @Query(value = """
+            SELECT b.id as bookId,
+                   b.bookName as bookName,
+                   b.description as description,
+                   b.price as price,
+                   b.stockQuantity as stockQuantity,
+                   b.bookCode as bookCode,
+                   b.publicationDate as publicationDate,
+                   b.createdAt as createdAt,
+                   b.updatedAt as updatedAt,
+                   b.category.id as categoryId,
+                   b.category.categoryName as categoryName,
+                   b.supplier.id as supplierId,
+                   b.supplier.supplierName as supplierName,
+                   ts.soldCount as soldCount,
+                   ts.orderCount as orderCount,
+                   CASE WHEN ts.reviewCount > 0 THEN CAST(ts.ratingSum as double) / ts.reviewCount ELSE 0.0 END as avgRating,
+                   ts.reviewCount as reviewCount,
+                   CASE WHEN flashSale.id IS NOT NULL THEN true ELSE false END as isInFlashSale,
+                   flashSale.discountPrice as flashSalePrice,
+                   flashSale.stockQuantity as flashSaleStockQuantity,
+                   COALESCE(flashSale.soldCount, 0) as flashSaleSoldCount,
+                   b.images as images
+            FROM BookTrendingScore ts
+            JOIN ts.book b
+            LEFT JOIN (
+                SELECT fsi.book.id as bookId,
+                       fsi.id as id,
+                       fsi.discountPrice as discountPrice,
+                       fsi.stockQuantity as stockQuantity,
+                       fsi.soldCount as soldCount
+                FROM FlashSaleItem fsi
+                JOIN FlashSale fs ON fsi.flashSale.id = fs.id
+                WHERE fs.status = 1
+                      AND fsi.status = 1
+                      AND fs.startTime <= :currentTime
+                      AND fs.endTime >= :currentTime
+            ) flashSale ON b.id = flashSale.bookId
+            WHERE b.status = 1
+                  AND b.stockQuantity > 0
+            ORDER BY ts.score DESC, b.id DESC
+            """, countQuery = """
+            SELECT COUNT(ts)
+            FROM BookTrendingScore ts
+            JOIN ts.book b
+            WHERE b.status = 1
+                  AND b.stockQuantity > 0
+            """)
+    Page<Object[]> findTrendingBooksFromScore(@Param("currentTime") Long currentTime, Pageable pageable);
+
+    /**
+     * Các sách đang có điểm > 0 (cần tính lại khi cửa sổ thời gian trượt)
+     */
+    @Query("SELECT ts.bookId FROM BookTrendingScore ts WHERE ts.score > 0")
+    List<Integer> findBookIdsWithPositiveScore();
+
+    @Query("SELECT ts FROM BookTrendingScore ts ORDER BY ts.score DESC, ts.bookId DESC")
+    List<BookTrendingScore> findTopByScore(Pageable pageable);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM BookTrendingScore ts")
+    int deleteAllScores();
+}
@@ -0,0 +1,60 @@
+package org.datn.bookstation.repository;
+
+import org.datn.bookstation.entity.DailySalesRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailySalesRollupRepository extends JpaRepository<DailySalesRollup, LocalDate> {
+
+    @Query("SELECT r FROM DailySalesRollup r WHERE r.saleDate BETWEEN :fromDate AND :toDate ORDER BY r.saleDate")
+    List<DailySalesRollup> findByDateRange(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM DailySalesRollup r WHERE r.saleDate BETWEEN :fromDate AND :toDate")
+    int deleteByDateRange(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    /**
+     * 📊 Số liệu đơn hàng theo ngày (giờ Việt Nam): [ngày, tổng đơn, đơn đã bán, đơn hủy, đơn hoàn,
+     * full revenue, full discount, partial revenue, partial discount]
+     * Nhóm trạng thái giống OrderStatisticsServiceImpl.calculateTrueNetRevenue
+     */
+    @Query(value = """
+            SELECT CAST(to_timestamp(o.order_date / 1000) + INTERVAL '7 hours' AS DATE) as saleDate,
+                   COUNT(*) as orderCount,
+                   SUM(CASE WHEN o.order_status IN ('DELIVERED', 'PARTIALLY_REFUNDED') THEN 1 ELSE 0 END) as soldOrderCount,
+                   SUM(CASE WHEN o.order_status = 'CANCELED' THEN 1 ELSE 0 END) as canceledOrderCount,
+                   SUM(CASE WHEN o.order_status IN ('REFUNDED', 'PARTIALLY_REFUNDED') THEN 1 ELSE 0 END) as refundedOrderCount,
+                   COALESCE(SUM(CASE WHEN o.order_status IN (:fullRevenueStatuses) THEN o.subtotal END), 0) as fullRevenue,
+                   COALESCE(SUM(CASE WHEN o.order_status IN (:fullRevenueStatuses) THEN o.discount_amount + o.discount_shipping END), 0) as fullDiscount,
+                   COALESCE(SUM(CASE WHEN o.order_status = 'PARTIALLY_REFUNDED' THEN o.subtotal END), 0) as partialRevenue,
+                   COALESCE(SUM(CASE WHEN o.order_status = 'PARTIALLY_REFUNDED' THEN o.discount_amount + o.discount_shipping END), 0) as partialDiscount
+            FROM "order" o
+            WHERE o.order_date >= :startDate AND o.order_date <= :endDate
+            GROUP BY CAST(to_timestamp(o.order_date / 1000) + INTERVAL '7 hours' AS DATE)
+            """, nativeQuery = true)
+    List<Object[]> aggregateOrdersByDay(@Param("startDate") Long startDate, @Param("endDate") Long endDate,
+            @Param("fullRevenueStatuses") List<String> fullRevenueStatuses);
+
+    /**
+     * Số tiền đã hoàn (COMPLETED) của đơn PARTIALLY_REFUNDED theo ngày đặt hàng: [ngày, số tiền]
+     */
+    @Query(value = """
+            SELECT CAST(to_timestamp(o.order_date / 1000) + INTERVAL '7 hours' AS DATE) as saleDate,
+                   COALESCE(SUM(rr.total_refund_amount), 0) as refundedAmount
+            FROM refund_request rr
+            JOIN "order" o ON rr.order_id = o.id
+            WHERE o.order_date >= :startDate AND o.order_date <= :endDate
+              AND o.order_status = 'PARTIALLY_REFUNDED'
+              AND rr.status = 'COMPLETED'
+            GROUP BY CAST(to_timestamp(o.order_date / 1000) + INTERVAL '7 hours' AS DATE)
+            """, nativeQuery = true)
+    List<Object[]> aggregatePartialRefundsByDay(@Param("startDate") Long startDate, @Param("endDate") Long endDate);
+
+    @Query("SELECT MIN(o.orderDate) FROM Order o")
+    Long findFirstOrderDate();
+}
@@ -4,10 +4,14 @@ import org.datn.bookstation.entity.FlashSaleItem;
 import org.datn.bookstation.dto.request.FlashSaleItemBookRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -60,6 +64,20 @@ public interface FlashSaleItemRepository
                         "ORDER BY fsi.discountPrice ASC")
         List<FlashSaleItem> findActiveFlashSalesByBookId(@Param("bookId") Long bookId, @Param("now") Long now);
 
+        /**
+         * Giống findActiveFlashSalesByBookId nhưng cho nhiều sách trong 1 query
+         * (mỗi sách lấy phần tử đầu tiên = giá flash sale thấp nhất)
+         */
+        @Query("SELECT fsi FROM FlashSaleItem fsi " +
+                        "WHERE fsi.book.id IN :bookIds " +
+                        "AND fsi.status = 1 " +
+                        "AND fsi.flashSale.status = 1 " +
+                        "AND fsi.flashSale.startTime <= :now " +
+                        "AND fsi.flashSale.endTime >= :now " +
+                        "ORDER BY fsi.book.id ASC, fsi.discountPrice ASC")
+        List<FlashSaleItem> findActiveFlashSalesByBookIds(@Param("bookIds") Collection<Integer> bookIds,
+                        @Param("now") Long now);
+
         /**
          * Tìm flash sale item theo ID và kiểm tra còn active không
          */
@@ -179,4 +197,55 @@ public interface FlashSaleItemRepository
                         ORDER BY SUM(fsi.soldCount) DESC
                         """)
         List<String> findTopSellingBookName(Pageable pageable);
+
+        /**
+         * 🔥 Trong danh sách sách, lấy các sách đang có flash sale hiệu lực
+         */
+        @Query("SELECT DISTINCT fsi.book.id FROM FlashSaleItem fsi " +
+                        "WHERE fsi.book.id IN :bookIds " +
+                        "AND fsi.status = 1 " +
+                        "AND fsi.flashSale.status = 1 " +
+                        "AND fsi.flashSale.startTime <= :now " +
+                        "AND fsi.flashSale.endTime >= :now")
+        List<Integer> findBookIdsInActiveFlashSale(@Param("bookIds") List<Integer> bookIds, @Param("now") Long now);
+
+        /**
+         * 🔥 Tất cả sách đang có flash sale hiệu lực
+         */
+        @Query("SELECT DISTINCT fsi.book.id FROM FlashSaleItem fsi " +
+                        "WHERE fsi.status = 1 " +
+                        "AND fsi.flashSale.status = 1 " +
+                        "AND fsi.flashSale.startTime <= :now " +
+                        "AND fsi.flashSale.endTime >= :now")
+        List<Integer> findAllBookIdsInActiveFlashSale(@Param("now") Long now);
+
+    /**
+     * Trừ tồn kho flash sale nguyên tử: chỉ trừ khi còn đủ suất, trả về 0 nếu không đủ
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE FlashSaleItem fsi SET fsi.stockQuantity = fsi.stockQuantity - :quantity " +
+           "WHERE fsi.id = :flashSaleItemId AND fsi.stockQuantity >= :quantity")
+    int decreaseStockIfAvailable(@Param("flashSaleItemId") Integer flashSaleItemId,
+                                 @Param("quantity") Integer quantity);
+
+    /**
+     * Cộng lại tồn kho flash sale
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE FlashSaleItem fsi SET fsi.stockQuantity = fsi.stockQuantity + :quantity " +
+           "WHERE fsi.id = :flashSaleItemId")
+    int increaseStock(@Param("flashSaleItemId") Integer flashSaleItemId, @Param("quantity") Integer quantity);
+
+    /**
+     * Ghi dồn (write-behind) chênh lệch tồn kho từ bộ đếm in-memory của flash sale
+     * Transaction riêng để không bị rollback theo transaction của request đang gọi flush
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("UPDATE FlashSaleItem fsi SET fsi.stockQuantity = fsi.stockQuantity + :delta " +
+           "WHERE fsi.id = :flashSaleItemId")
+    int applyStockDelta(@Param("flashSaleItemId") Integer flashSaleItemId, @Param("delta") Integer delta);
+
+    @Query("SELECT fsi.stockQuantity FROM FlashSaleItem fsi WHERE fsi.id = :flashSaleItemId")
+    Integer findStockQuantityById(@Param("flashSaleItemId") Integer flashSaleItemId);
 }
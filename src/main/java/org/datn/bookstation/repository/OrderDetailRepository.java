@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderDetailRepository extends JpaRepository<OrderDetail, OrderDetailId> {
@@ -16,6 +17,13 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, OrderD
     @Query("SELECT od FROM OrderDetail od WHERE od.order.id = :orderId")
     List<OrderDetail> findByOrderId(@Param("orderId") Integer orderId);
     
+    /**
+     * Chi tiết của nhiều đơn hàng (kèm sách + flash sale item) trong 1 query cho API danh sách
+     */
+    @Query("SELECT od FROM OrderDetail od JOIN FETCH od.book LEFT JOIN FETCH od.flashSaleItem " +
+           "WHERE od.order.id IN :orderIds")
+    List<OrderDetail> findByOrderIdsWithBook(@Param("orderIds") Collection<Integer> orderIds);
+    
     @Query("SELECT od FROM OrderDetail od WHERE od.book.id = :bookId")
     List<OrderDetail> findByBookId(@Param("bookId") Integer bookId);
     
@@ -54,6 +62,16 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, OrderD
     
     @Query("SELECT COALESCE(SUM(od.quantity), 0) FROM OrderDetail od WHERE od.flashSaleItem.id = :flashSaleItemId AND od.order.orderStatus IN :statuses")
     Integer sumQuantityByFlashSaleItemIdAndOrderStatuses(@Param("flashSaleItemId") Integer flashSaleItemId, @Param("statuses") List<OrderStatus> statuses);
+
+    /**
+     * Giống sumQuantityByFlashSaleItemIdAndOrderStatuses cho nhiều flash sale item: [flashSaleItemId, tổng số lượng]
+     */
+    @Query("SELECT od.flashSaleItem.id, COALESCE(SUM(od.quantity), 0) FROM OrderDetail od " +
+           "WHERE od.flashSaleItem.id IN :flashSaleItemIds AND od.order.orderStatus IN :statuses " +
+           "GROUP BY od.flashSaleItem.id")
+    List<Object[]> sumQuantityByFlashSaleItemIdsAndOrderStatuses(
+            @Param("flashSaleItemIds") Collection<Integer> flashSaleItemIds,
+            @Param("statuses") List<OrderStatus> statuses);
     
     @Query("SELECT od.book.id as bookId, COALESCE(SUM(od.quantity), 0) as totalQuantity " +
            "FROM OrderDetail od " +
@@ -74,6 +92,31 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, OrderD
            "AND rr.status NOT IN ('REJECTED', 'CANCELLED')", nativeQuery = true)
     Integer getRefundQuantityByOrderIdAndBookId(@Param("orderId") Integer orderId, @Param("bookId") Integer bookId);
     
+    /**
+     * Số lượng đang xử lý theo sách trong 1 query (cùng quy tắc với BookProcessingQuantityServiceImpl):
+     * đơn ở trạng thái hoàn trả có hoàn 1 phần → chỉ tính số lượng hoàn, còn lại tính toàn bộ số lượng đặt.
+     * Trả về [bookId, processingQuantity]
+     */
+    @Query(value = "SELECT od.book_id, " +
+           "    COALESCE(SUM(CASE WHEN o.order_status IN (:refundStatuses) " +
+           "                       AND COALESCE(refunds.refund_quantity, 0) > 0 " +
+           "                       AND refunds.refund_quantity <> od.quantity " +
+           "                  THEN refunds.refund_quantity ELSE od.quantity END), 0) " +
+           "FROM order_detail od " +
+           "JOIN \"order\" o ON od.order_id = o.id " +
+           "LEFT JOIN ( " +
+           "    SELECT rr.order_id, ri.book_id, SUM(ri.refund_quantity) as refund_quantity " +
+           "    FROM refund_item ri " +
+           "    JOIN refund_request rr ON ri.refund_request_id = rr.id " +
+           "    WHERE rr.status NOT IN ('REJECTED', 'CANCELLED') " +
+           "    GROUP BY rr.order_id, ri.book_id " +
+           ") refunds ON od.order_id = refunds.order_id AND od.book_id = refunds.book_id " +
+           "WHERE od.book_id IN (:bookIds) AND o.order_status IN (:statuses) " +
+           "GROUP BY od.book_id", nativeQuery = true)
+    List<Object[]> sumProcessingQuantityByBookIds(@Param("bookIds") Collection<Integer> bookIds,
+                                                  @Param("statuses") Collection<String> statuses,
+                                                  @Param("refundStatuses") Collection<String> refundStatuses);
+    
     @Query("SELECT COALESCE(SUM(od.quantity), 0) FROM OrderDetail od WHERE od.order.user.id = :userId AND od.flashSaleItem.id = :flashSaleItemId")
     Integer calculateUserPurchasedQuantityForFlashSaleItem(@Param("userId") int userId, @Param("flashSaleItemId") Integer flashSaleItemId);
     
@@ -89,6 +132,17 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, OrderD
                                                      @Param("flashSaleItemId") Integer flashSaleItemId,
                                                      @Param("validStatuses") List<OrderStatus> validStatuses);
 
+    /**
+     * Tổng số lượng flash sale theo (flashSaleItemId, userId) cho nhiều item cùng lúc
+     * Dùng để nạp bộ đếm giới hạn mua per-user khi flash sale bắt đầu
+     */
+    @Query("SELECT od.flashSaleItem.id, od.order.user.id, COALESCE(SUM(od.quantity), 0) FROM OrderDetail od " +
+           "WHERE od.flashSaleItem.id IN :flashSaleItemIds AND od.order.user.id IS NOT NULL " +
+           "AND od.order.orderStatus IN :validStatuses " +
+           "GROUP BY od.flashSaleItem.id, od.order.user.id")
+    List<Object[]> sumFlashSaleQuantityByItemAndUser(@Param("flashSaleItemIds") Collection<Integer> flashSaleItemIds,
+                                                     @Param("validStatuses") List<OrderStatus> validStatuses);
+
     @Query("SELECT COALESCE(SUM(ri.refundQuantity), 0) FROM RefundItem ri " +
            "JOIN ri.refundRequest rr " +
            "WHERE rr.user.id = :userId AND ri.book.id = " +
@@ -96,6 +150,32 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, OrderD
            "AND rr.status IN ('COMPLETED')")
     Integer sumCompletedRefundQuantityByUserAndFlashSaleItem(@Param("userId") Integer userId, @Param("flashSaleItemId") Integer flashSaleItemId);
     
+    /**
+     * Bản batch của sumFlashSaleItemQuantityByUserAndStatuses cho nhiều flash sale item:
+     * [flashSaleItemId, số lượng đơn đã giao, số lượng đơn đang xử lý]
+     */
+    @Query("SELECT od.flashSaleItem.id, " +
+           "COALESCE(SUM(CASE WHEN od.order.orderStatus IN :deliveredStatuses THEN od.quantity ELSE 0 END), 0), " +
+           "COALESCE(SUM(CASE WHEN od.order.orderStatus IN :pendingStatuses THEN od.quantity ELSE 0 END), 0) " +
+           "FROM OrderDetail od " +
+           "WHERE od.order.user.id = :userId AND od.flashSaleItem.id IN :flashSaleItemIds " +
+           "GROUP BY od.flashSaleItem.id")
+    List<Object[]> sumUserFlashSaleQuantitiesByItem(@Param("userId") Integer userId,
+                                                    @Param("flashSaleItemIds") Collection<Integer> flashSaleItemIds,
+                                                    @Param("deliveredStatuses") List<OrderStatus> deliveredStatuses,
+                                                    @Param("pendingStatuses") List<OrderStatus> pendingStatuses);
+
+    /**
+     * Bản batch của sumCompletedRefundQuantityByUserAndFlashSaleItem: [flashSaleItemId, số lượng đã hoàn]
+     */
+    @Query("SELECT fsi.id, COALESCE(SUM(ri.refundQuantity), 0) FROM RefundItem ri " +
+           "JOIN ri.refundRequest rr, FlashSaleItem fsi " +
+           "WHERE fsi.id IN :flashSaleItemIds AND ri.book.id = fsi.book.id " +
+           "AND rr.user.id = :userId AND rr.status IN ('COMPLETED') " +
+           "GROUP BY fsi.id")
+    List<Object[]> sumCompletedRefundQuantityByUserAndFlashSaleItems(@Param("userId") Integer userId,
+                                                                     @Param("flashSaleItemIds") Collection<Integer> flashSaleItemIds);
+
     // ✅ UPDATED: Only count DELIVERED and PARTIALLY_REFUNDED (actual completed purchases)
     default Integer calculateActualUserPurchasedQuantityForFlashSaleItem(@Param("userId") Integer userId, @Param("flashSaleItemId") Integer flashSaleItemId) {
         List<OrderStatus> deliveredStatuses = Arrays.asList(
@@ -194,4 +274,16 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, OrderD
            "ORDER BY book_agg.quantitySold DESC " +
            "LIMIT :limit", nativeQuery = true)
     List<Object[]> findTopBooksByDateRange(@Param("startDate") Long startDate, @Param("endDate") Long endDate, @Param("limit") Integer limit);
-}
\ No newline at end of file
+
+    /**
+     * 🔥 Bộ đếm trending: số lượng đã bán và số đơn theo sách trong cửa sổ thời gian
+     */
+    @Query("SELECT od.book.id, COALESCE(SUM(od.quantity), 0), COUNT(DISTINCT od.order.id) " +
+           "FROM OrderDetail od " +
+           "WHERE od.book.id IN :bookIds AND od.order.orderStatus IN :statuses " +
+           "AND od.order.createdAt >= :since " +
+           "GROUP BY od.book.id")
+    List<Object[]> sumTrendingSalesByBookIds(@Param("bookIds") List<Integer> bookIds,
+                                             @Param("statuses") List<OrderStatus> statuses,
+                                             @Param("since") Long since);
+}
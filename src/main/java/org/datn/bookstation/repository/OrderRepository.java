@@ -16,6 +16,11 @@ public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpeci
 
     List<Order> findByUserIdOrderByCreatedAtDesc(Integer userId);
 
+    // Giống findByUserIdOrderByCreatedAtDesc nhưng nạp sẵn người dùng / nhân viên / địa chỉ
+    @Query("SELECT o FROM Order o LEFT JOIN FETCH o.user LEFT JOIN FETCH o.staff LEFT JOIN FETCH o.address " +
+            "WHERE o.user.id = :userId ORDER BY o.createdAt DESC")
+    List<Order> findByUserIdWithRelations(@Param("userId") Integer userId);
+
     List<Order> findByOrderStatusOrderByCreatedAtDesc(OrderStatus orderStatus);
 
     @Query("SELECT o FROM Order o WHERE o.user.id = :userId AND o.orderStatus = :status ORDER BY o.createdAt DESC")
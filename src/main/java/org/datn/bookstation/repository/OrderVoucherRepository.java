@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderVoucherRepository extends JpaRepository<OrderVoucher, OrderVoucherId> {
@@ -13,6 +14,9 @@ public interface OrderVoucherRepository extends JpaRepository<OrderVoucher, Orde
     @Query("SELECT ov FROM OrderVoucher ov WHERE ov.order.id = :orderId")
     List<OrderVoucher> findByOrderId(@Param("orderId") Integer orderId);
     
+    @Query("SELECT ov FROM OrderVoucher ov JOIN FETCH ov.voucher WHERE ov.order.id IN :orderIds")
+    List<OrderVoucher> findByOrderIdsWithVoucher(@Param("orderIds") Collection<Integer> orderIds);
+    
     @Query("SELECT ov FROM OrderVoucher ov WHERE ov.voucher.id = :voucherId")
     List<OrderVoucher> findByVoucherId(@Param("voucherId") Integer voucherId);
 }
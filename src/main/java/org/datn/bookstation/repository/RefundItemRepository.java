@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -23,4 +24,12 @@ public interface RefundItemRepository extends JpaRepository<RefundItem, Integer>
            "WHERE rr.order.id = :orderId AND ri.book.id = :bookId " +
            "AND rr.status IN ('APPROVED', 'COMPLETED')")
     List<RefundItem> findByOrderIdAndBookId(@Param("orderId") Integer orderId, @Param("bookId") Integer bookId);
+    
+    // Các item hoàn trả đã duyệt của nhiều đơn hàng (kèm refund request) cho API danh sách
+    @Query("SELECT ri FROM RefundItem ri " +
+           "JOIN FETCH ri.refundRequest rr " +
+           "WHERE rr.order.id IN :orderIds " +
+           "AND rr.status IN ('APPROVED', 'COMPLETED') " +
+           "ORDER BY ri.id")
+    List<RefundItem> findApprovedByOrderIds(@Param("orderIds") Collection<Integer> orderIds);
 }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,6 +18,11 @@ public interface RefundRequestRepository extends JpaRepository<RefundRequest, In
     // Tìm các yêu cầu hoàn trả theo đơn hàng
     List<RefundRequest> findByOrderIdOrderByCreatedAtDesc(Integer orderId);
     
+    // Các yêu cầu hoàn trả của nhiều đơn hàng (kèm người duyệt) cho API danh sách
+    @Query("SELECT rr FROM RefundRequest rr LEFT JOIN FETCH rr.approvedBy " +
+           "WHERE rr.order.id IN :orderIds ORDER BY rr.createdAt DESC")
+    List<RefundRequest> findByOrderIdsWithApprover(@Param("orderIds") Collection<Integer> orderIds);
+    
     // Tìm các yêu cầu hoàn trả theo trạng thái
     List<RefundRequest> findByStatusOrderByCreatedAtDesc(RefundRequest.RefundStatus status);
     
@@ -89,4 +89,16 @@ public interface ReviewRepository extends JpaRepository<Review, Integer>, JpaSpe
             WHERE book_id = :bookId
             """, nativeQuery = true)
     List<Object[]> findBasicReviewDataByBookId(@Param("bookId") Integer bookId);
+
+    /**
+     * 🔥 Bộ đếm trending: số review APPROVED và tổng số sao theo sách trong cửa sổ thời gian
+     */
+    @Query("SELECT r.book.id, COUNT(r.id), COALESCE(SUM(r.rating), 0) " +
+           "FROM Review r " +
+           "WHERE r.book.id IN :bookIds " +
+           "AND r.reviewStatus = org.datn.bookstation.entity.enums.ReviewStatus.APPROVED " +
+           "AND r.createdAt >= :since " +
+           "GROUP BY r.book.id")
+    List<Object[]> sumTrendingReviewsByBookIds(@Param("bookIds") List<Integer> bookIds,
+                                               @Param("since") Long since);
 }
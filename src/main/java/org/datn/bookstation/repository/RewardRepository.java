@@ -3,6 +3,7 @@ package org.datn.bookstation.repository;
 import org.datn.bookstation.entity.Reward;
 import org.datn.bookstation.entity.enums.RewardType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -30,4 +31,11 @@ public interface RewardRepository extends JpaRepository<Reward, Integer> {
     
     // Lấy phần thưởng theo campaign
     List<Reward> findByCampaignIdOrderByProbabilityDesc(Integer campaignId);
+
+    /**
+     * Trừ 1 suất phần thưởng nguyên tử: chỉ trừ khi còn stock, trả về 0 nếu đã hết
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Reward r SET r.stock = r.stock - 1 WHERE r.id = :rewardId AND r.status = 1 AND r.stock > 0")
+    int decreaseStockIfAvailable(@Param("rewardId") Integer rewardId);
 }
@@ -0,0 +1,40 @@
+package org.datn.bookstation.repository;
+
+import org.datn.bookstation.entity.UploadFileReference;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UploadFileReferenceRepository extends JpaRepository<UploadFileReference, String> {
+
+    /**
+     * Thêm 1 lượt tham chiếu (tạo dòng nếu chưa có). Giữ khóa dòng tới hết transaction:
+     * lượt xóa đồng thời phải chờ file được đặt lại chỗ cũ
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO upload_file_reference (path, ref_count, created_at, updated_at)
+            VALUES (:path, 1, :now, :now)
+            ON CONFLICT (path) DO UPDATE SET ref_count = upload_file_reference.ref_count + 1, updated_at = :now
+            """, nativeQuery = true)
+    int addReference(@Param("path") String path, @Param("now") Long now);
+
+    /**
+     * Khóa dòng và lấy số tham chiếu hiện tại (rỗng nếu ảnh upload trước khi có bảng này)
+     */
+    @Query(value = "SELECT ref_count FROM upload_file_reference WHERE path = :path FOR UPDATE", nativeQuery = true)
+    Optional<Integer> lockRefCount(@Param("path") String path);
+
+    @Modifying
+    @Query("UPDATE UploadFileReference r SET r.refCount = r.refCount - 1, r.updatedAt = :now WHERE r.path = :path")
+    int decrementReference(@Param("path") String path, @Param("now") Long now);
+
+    @Modifying
+    @Query("DELETE FROM UploadFileReference r WHERE r.path = :path")
+    int deleteReference(@Param("path") String path);
+}
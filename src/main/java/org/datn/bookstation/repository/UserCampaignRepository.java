@@ -2,6 +2,7 @@ package org.datn.bookstation.repository;
 
 import org.datn.bookstation.entity.UserCampaign;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -31,4 +32,35 @@ public interface UserCampaignRepository extends JpaRepository<UserCampaign, Inte
     // Top users mở nhiều nhất
     @Query("SELECT uc FROM UserCampaign uc WHERE uc.campaign.id = :campaignId ORDER BY uc.totalOpenedCount DESC")
     List<UserCampaign> findTopUsersByCampaignId(@Param("campaignId") Integer campaignId);
+
+    /**
+     * Tạo UserCampaign nếu chưa có; request đồng thời của cùng user không tạo bản ghi trùng
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_campaign (user_id, campaign_id, free_opened_count, total_opened_count, created_at, updated_at)
+            VALUES (:userId, :campaignId, 0, 0, :now, :now)
+            ON CONFLICT (user_id, campaign_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Integer userId, @Param("campaignId") Integer campaignId,
+                       @Param("now") Long now);
+
+    /**
+     * Dùng 1 lượt mở miễn phí nguyên tử: chỉ tăng khi chưa hết lượt, trả về 0 nếu đã hết
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserCampaign uc SET uc.freeOpenedCount = uc.freeOpenedCount + 1, " +
+           "uc.totalOpenedCount = uc.totalOpenedCount + 1, uc.updatedAt = :now " +
+           "WHERE uc.id = :id AND uc.freeOpenedCount < :freeLimit")
+    int consumeFreeOpen(@Param("id") Integer id, @Param("freeLimit") Integer freeLimit, @Param("now") Long now);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserCampaign uc SET uc.totalOpenedCount = uc.totalOpenedCount + 1, uc.updatedAt = :now " +
+           "WHERE uc.id = :id")
+    int incrementTotalOpened(@Param("id") Integer id, @Param("now") Long now);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserCampaign uc SET uc.totalOpenedCount = uc.totalOpenedCount - 1, uc.updatedAt = :now " +
+           "WHERE uc.id = :id AND uc.totalOpenedCount > 0")
+    int decrementTotalOpened(@Param("id") Integer id, @Param("now") Long now);
 }
@@ -5,10 +5,12 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface UserRankRepository extends JpaRepository<UserRank, Integer>, JpaSpecificationExecutor<UserRank> {
     List<UserRank> findByRankId(Integer rankId);
@@ -18,6 +20,11 @@ public interface UserRankRepository extends JpaRepository<UserRank, Integer>, Jp
 
     List<UserRank> getByUserId(Integer userId);
 
+    // 🏅 Tra theo user_id (idx_user_rank_user_status) thay vì findAll rồi lọc
+    List<UserRank> findByUserIdAndStatus(Integer userId, Byte status);
+
+    Optional<UserRank> findFirstByUserIdAndRankIdOrderByIdAsc(Integer userId, Integer rankId);
+
     //  THÊM MỚI: Số user theo từng rank
     @Query("""
             SELECT r.rankName, COUNT(ur.id) 
@@ -54,4 +61,91 @@ public interface UserRankRepository extends JpaRepository<UserRank, Integer>, Jp
                                        @Param("currentEnd") long currentEnd,
                                        @Param("previousStart") long previousStart, 
                                        @Param("previousEnd") long previousEnd);
+
+    long countByRankId(Integer rankId);
+
+    /**
+     * 🎫 Số user CUSTOMER (không trùng) thuộc hạng - dùng cho phát voucher theo hạng
+     */
+    @Query(value = """
+            SELECT COUNT(DISTINCT ur.user_id)
+            FROM user_rank ur
+            JOIN "user" u ON u.id = ur.user_id
+            JOIN role r ON r.id = u.role_id
+            WHERE ur.rank_id = :rankId AND r.role_name = 'CUSTOMER'
+            """, nativeQuery = true)
+    long countCustomersByRankId(@Param("rankId") Integer rankId);
+
+    /**
+     * Trang tiếp theo (theo user id tăng dần, sau afterUserId) các user CUSTOMER thuộc hạng
+     */
+    @Query(value = """
+            SELECT DISTINCT ur.user_id
+            FROM user_rank ur
+            JOIN "user" u ON u.id = ur.user_id
+            JOIN role r ON r.id = u.role_id
+            WHERE ur.rank_id = :rankId AND r.role_name = 'CUSTOMER' AND ur.user_id > :afterUserId
+            ORDER BY ur.user_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Integer> findCustomerIdsByRankIdAfter(@Param("rankId") Integer rankId,
+            @Param("afterUserId") Integer afterUserId, @Param("limit") int limit);
+
+    // ================== 🏅 RE-RANK HÀNG LOẠT (đối soát hằng đêm) ==================
+
+    /**
+     * changed: user có hạng đích (hạng hoạt động cao nhất có min_spent <= total_spent, cùng min_spent
+     * lấy id nhỏ nhất) nhưng chưa có dòng user_rank đang hoạt động cho hạng đó - giống updateUserRank
+     */
+    String RE_RANK_CHANGED_USERS_CTE = """
+            WITH target AS (
+                SELECT u.id AS user_id,
+                       (SELECT r.id FROM rank r
+                        WHERE r.status = 1 AND r.min_spent IS NOT NULL AND r.min_spent <= u.total_spent
+                        ORDER BY r.min_spent DESC, r.id ASC
+                        LIMIT 1) AS rank_id
+                FROM "user" u
+                WHERE u.total_spent IS NOT NULL
+            ), changed AS (
+                SELECT t.user_id, t.rank_id
+                FROM target t
+                WHERE t.rank_id IS NOT NULL
+                  AND NOT EXISTS (SELECT 1 FROM user_rank x
+                                  WHERE x.user_id = t.user_id AND x.rank_id = t.rank_id AND x.status = 1)
+            )
+            """;
+
+    /**
+     * Bước 1: tắt mọi hạng đang hoạt động của user cần đổi hạng
+     */
+    @Modifying
+    @Query(value = RE_RANK_CHANGED_USERS_CTE + """
+            UPDATE user_rank SET status = 0, updatedAt = :now
+            WHERE status = 1 AND user_id IN (SELECT user_id FROM changed)
+            """, nativeQuery = true)
+    int deactivateRanksOfChangedUsers(@Param("now") Long now);
+
+    /**
+     * Bước 2: bật lại dòng user_rank cũ (id nhỏ nhất) của hạng đích nếu đã có
+     */
+    @Modifying
+    @Query(value = RE_RANK_CHANGED_USERS_CTE + """
+            UPDATE user_rank SET status = 1, updatedAt = :now
+            WHERE id IN (SELECT MIN(x.id) FROM user_rank x
+                         JOIN changed c ON x.user_id = c.user_id AND x.rank_id = c.rank_id
+                         GROUP BY x.user_id)
+            """, nativeQuery = true)
+    int reactivateTargetRanks(@Param("now") Long now);
+
+    /**
+     * Bước 3: tạo dòng user_rank mới cho user chưa từng có hạng đích
+     */
+    @Modifying
+    @Query(value = RE_RANK_CHANGED_USERS_CTE + """
+            INSERT INTO user_rank (user_id, rank_id, status, createdAt)
+            SELECT c.user_id, c.rank_id, 1, :now
+            FROM changed c
+            WHERE NOT EXISTS (SELECT 1 FROM user_rank x WHERE x.user_id = c.user_id AND x.rank_id = c.rank_id)
+            """, nativeQuery = true)
+    int insertTargetRanks(@Param("now") Long now);
 }
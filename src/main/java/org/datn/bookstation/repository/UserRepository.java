@@ -10,6 +10,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -114,4 +115,22 @@ public interface UserRepository extends JpaRepository<User, Integer>, JpaSpecifi
             LIMIT 10
             """, nativeQuery = true)
     List<Object[]> getTopUsersByPoint();
+
+    /**
+     * Trừ điểm nguyên tử: chỉ trừ khi còn đủ điểm, trả về 0 nếu không đủ
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.totalPoint = u.totalPoint - :points " +
+           "WHERE u.id = :userId AND u.totalPoint >= :points")
+    int deductPointsIfEnough(@Param("userId") Integer userId, @Param("points") Integer points);
+
+    /**
+     * Cộng điểm tương đối (không ghi đè điểm bằng giá trị đọc trước đó)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.totalPoint = COALESCE(u.totalPoint, 0) + :points WHERE u.id = :userId")
+    int addPoints(@Param("userId") Integer userId, @Param("points") Integer points);
+
+    @Query("SELECT u.totalPoint FROM User u WHERE u.id = :userId")
+    Integer findTotalPointById(@Param("userId") Integer userId);
 }
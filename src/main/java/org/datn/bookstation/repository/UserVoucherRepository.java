@@ -2,8 +2,11 @@ package org.datn.bookstation.repository;
 
 import org.datn.bookstation.entity.UserVoucher;
 import org.datn.bookstation.dto.response.voucherUserResponse;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -44,4 +47,42 @@ List<voucherUserResponse> findVouchersByVoucherUserId(String vouchercode, Intege
 List<UserVoucher> findByVoucherId(Integer voucherId);
 boolean existsByUser_IdAndVoucher_Id(Integer userId, Integer voucherId);
 
+    /**
+     * 🎫 Tổng số lần đã dùng theo từng voucher của 1 user: [voucherId, usedCount]
+     * (thay cho findAll() rồi lọc trong Java)
+     */
+    @Query("SELECT uv.voucher.id, COALESCE(SUM(uv.usedCount), 0) FROM UserVoucher uv " +
+           "WHERE uv.user.id = :userId GROUP BY uv.voucher.id")
+    List<Object[]> sumUsedCountByUserGroupByVoucher(@Param("userId") Integer userId);
+
+    /**
+     * 🎫 Tổng số lần user đã dùng 1 voucher (đọc thẳng DB cho bước kiểm tra lúc checkout)
+     */
+    @Query("SELECT COALESCE(SUM(uv.usedCount), 0) FROM UserVoucher uv " +
+           "WHERE uv.user.id = :userId AND uv.voucher.id = :voucherId")
+    Long sumUsedCountByUserAndVoucher(@Param("userId") Integer userId, @Param("voucherId") Integer voucherId);
+
+    /**
+     * Bản ghi UserVoucher chưa sử dụng của user cho voucher, cũ nhất trước (usedCount NULL cũng là chưa dùng)
+     */
+    @Query("SELECT uv FROM UserVoucher uv WHERE uv.user.id = :userId AND uv.voucher.id = :voucherId " +
+           "AND (uv.usedCount = 0 OR uv.usedCount IS NULL) ORDER BY uv.id ASC")
+    List<UserVoucher> findUnusedByUserAndVoucher(@Param("userId") Integer userId,
+            @Param("voucherId") Integer voucherId, Pageable pageable);
+
+    /**
+     * 🎫 Phát voucher cho các user trong danh sách chưa có voucher (1 câu INSERT ... SELECT)
+     * @return số bản ghi đã thêm
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_voucher (user_id, voucher_id, used_count, created_at)
+            SELECT u.id, :voucherId, 0, :createdAt
+            FROM "user" u
+            WHERE u.id IN (:userIds)
+              AND NOT EXISTS (SELECT 1 FROM user_voucher uv WHERE uv.user_id = u.id AND uv.voucher_id = :voucherId)
+            """, nativeQuery = true)
+    int insertForUsersWithoutVoucher(@Param("voucherId") Integer voucherId,
+            @Param("userIds") List<Integer> userIds, @Param("createdAt") Long createdAt);
+
 }
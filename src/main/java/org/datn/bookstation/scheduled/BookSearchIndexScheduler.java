@@ -0,0 +1,40 @@
+package org.datn.bookstation.scheduled;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.service.BookSearchIndexService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 🔎 BOOK SEARCH INDEX SCHEDULER
+ * - Khởi động: dựng chỉ mục tìm kiếm sách
+ * - Mỗi 30 phút: dựng lại (đổi tên tác giả / NXB, sách sửa ở instance khác)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookSearchIndexScheduler {
+
+    private final BookSearchIndexService bookSearchIndexService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        try {
+            bookSearchIndexService.rebuild();
+        } catch (Exception e) {
+            log.error("🔎 ERROR: Failed to build book search index on startup", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 30 * 60 * 1000, initialDelay = 30 * 60 * 1000) // Mỗi 30 phút
+    public void periodicRebuild() {
+        try {
+            bookSearchIndexService.rebuild();
+        } catch (Exception e) {
+            log.error("🔎 ERROR: Failed to rebuild book search index", e);
+        }
+    }
+}
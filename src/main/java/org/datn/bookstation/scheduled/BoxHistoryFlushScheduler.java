@@ -0,0 +1,32 @@
+package org.datn.bookstation.scheduled;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.service.BoxHistoryWriterService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 🎁 BOX HISTORY FLUSH SCHEDULER
+ * Ghi dồn lịch sử mở hộp + bản ghi Point đang chờ xuống DB (khi bật minigame.history.batch-write.enabled)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BoxHistoryFlushScheduler {
+
+    private final BoxHistoryWriterService boxHistoryWriterService;
+
+    @Scheduled(fixedDelayString = "${minigame.history.flush-interval-ms:500}")
+    public void flushBoxHistories() {
+        try {
+            int written = boxHistoryWriterService.flushPending();
+            if (written > 0) {
+                log.debug("🎁 BOX HISTORY: Wrote {} histories, {} pending", written,
+                        boxHistoryWriterService.getPendingCount());
+            }
+        } catch (Exception e) {
+            log.error("🎁 ERROR: Failed to flush box histories", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.datn.bookstation.scheduled;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.repository.DailySalesRollupRepository;
+import org.datn.bookstation.service.DailySalesRollupService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * 📊 DAILY SALES ROLLUP SCHEDULER
+ * - Khởi động: backfill toàn bộ nếu bảng đang trống
+ * - Mỗi 30 giây: tính lại các ngày có đơn đổi trạng thái
+ * - 3:30 AM mỗi ngày: tính lại 35 ngày gần nhất (đơn đổi trạng thái ở instance khác, hoàn tiền muộn)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DailySalesRollupScheduler {
+
+    private static final int NIGHTLY_REBUILD_DAYS = 35;
+
+    private final DailySalesRollupService dailySalesRollupService;
+    private final DailySalesRollupRepository dailySalesRollupRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartupIfEmpty() {
+        try {
+            if (dailySalesRollupRepository.count() == 0) {
+                log.info("📊 DAILY SALES ROLLUP: Table is empty, backfilling from first order...");
+                dailySalesRollupService.rebuildAll();
+            }
+        } catch (Exception e) {
+            log.error("📊 ERROR: Failed to backfill daily sales rollup on startup", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000) // Mỗi 30 giây
+    public void flushDirtyDays() {
+        try {
+            int days = dailySalesRollupService.flushDirtyDays();
+            if (days > 0) {
+                log.debug("📊 DAILY SALES ROLLUP: Recomputed {} dirty days", days);
+            }
+        } catch (Exception e) {
+            log.error("📊 ERROR: Failed to flush dirty days of daily sales rollup", e);
+        }
+    }
+
+    @Scheduled(cron = "0 30 3 * * *") // 3:30 AM mỗi ngày
+    public void nightlyRebuild() {
+        try {
+            LocalDate today = LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh"));
+            int days = dailySalesRollupService.rebuildRange(today.minusDays(NIGHTLY_REBUILD_DAYS), today);
+            log.info("📊 DAILY SALES ROLLUP: Nightly rebuild refreshed {} days", days);
+        } catch (Exception e) {
+            log.error("📊 ERROR: Failed to rebuild recent days of daily sales rollup", e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.datn.bookstation.scheduled;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.datn.bookstation.service.FlashSaleService;
+import org.datn.bookstation.service.FlashSaleStockCounterService;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -28,6 +29,9 @@ import java.util.concurrent.ScheduledFuture;
  * - Khi tạo flash sale: group theo endTime
  * - Khi endTime đến: xử lý batch tất cả flash sales cùng expire
  * - Efficient: 1 task cho nhiều flash sales cùng thời điểm
+ * 
+ * ⚡ Điều khiển bộ đếm tồn kho in-memory (flashsale.in-memory-stock.enabled):
+ * nạp khi flash sale bắt đầu, ghi dồn mỗi giây, đóng + đối soát khi hết hạn
  */
 @Component
 @RequiredArgsConstructor
@@ -36,6 +40,7 @@ public class FlashSaleExpirationScheduler {
     
     private final FlashSaleService flashSaleService;
     private final TaskScheduler taskScheduler;
+    private final FlashSaleStockCounterService flashSaleStockCounterService;
     
     // Map theo thời điểm expiration: timestamp -> Set<flashSaleIds>
     private final ConcurrentHashMap<Long, Set<Integer>> flashSalesByTime = new ConcurrentHashMap<>();
@@ -102,6 +107,7 @@ public class FlashSaleExpirationScheduler {
             int totalUpdatedItems = 0;
             for (Integer flashSaleId : expiredFlashSales) {
                 try {
+                    flashSaleStockCounterService.unloadFlashSale(flashSaleId);
                     int updatedCount = flashSaleService.autoUpdateFlashSaleItemsStatus(flashSaleId);
                     totalUpdatedItems += updatedCount;
                     log.info("🔥 EXPIRATION: Updated {} flash sale items status for flash sale {}", updatedCount, flashSaleId);
@@ -212,4 +218,28 @@ public class FlashSaleExpirationScheduler {
             log.error("🔄 ERROR: Failed to execute scheduled status validation", e);
         }
     }
+    
+    /**
+     * ⚡ SCHEDULED: Nạp bộ đếm in-memory cho flash sale vừa bắt đầu, đóng bộ đếm của flash sale đã kết thúc
+     */
+    @Scheduled(fixedDelay = 10000, initialDelay = 5000) // Mỗi 10 giây
+    public void syncFlashSaleStockCounters() {
+        try {
+            flashSaleStockCounterService.syncActiveFlashSales();
+        } catch (Exception e) {
+            log.error("⚡ ERROR: Failed to sync flash sale stock counters", e);
+        }
+    }
+    
+    /**
+     * ⚡ SCHEDULED: Ghi dồn chênh lệch tồn kho flash sale xuống DB
+     */
+    @Scheduled(fixedDelay = 1000) // Mỗi giây
+    public void flushFlashSaleStockCounters() {
+        try {
+            flashSaleStockCounterService.flushPendingDeltas();
+        } catch (Exception e) {
+            log.error("⚡ ERROR: Failed to flush flash sale stock counters", e);
+        }
+    }
 }
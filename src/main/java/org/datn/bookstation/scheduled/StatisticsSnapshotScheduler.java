@@ -0,0 +1,41 @@
+package org.datn.bookstation.scheduled;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.service.StatisticsSnapshotService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 📊 STATISTICS SNAPSHOT SCHEDULER
+ * - Khởi động: tính snapshot thống kê dashboard
+ * - Định kỳ (mặc định 5 phút): tính lại aggregate nặng và chốt các bộ đếm cộng dồn
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StatisticsSnapshotScheduler {
+
+    private final StatisticsSnapshotService statisticsSnapshotService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        try {
+            statisticsSnapshotService.refresh();
+        } catch (Exception e) {
+            log.error("📊 ERROR: Failed to build statistics snapshot on startup", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.snapshot.refresh-ms:300000}",
+            initialDelayString = "${statistics.snapshot.refresh-ms:300000}")
+    public void periodicRefresh() {
+        try {
+            statisticsSnapshotService.refresh();
+        } catch (Exception e) {
+            log.error("📊 ERROR: Failed to refresh statistics snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.datn.bookstation.scheduled;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.repository.BookTrendingScoreRepository;
+import org.datn.bookstation.service.TrendingCacheService;
+import org.datn.bookstation.service.TrendingScoreService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 🔥 TRENDING SCORE SCHEDULER
+ * - Khởi động: build bảng điểm nếu đang trống
+ * - Mỗi 15 phút: trượt cửa sổ 30/60 ngày và cập nhật cờ sách mới / flash sale
+ * - 3 AM mỗi ngày: rebuild toàn bộ để loại bỏ sai lệch tích lũy
+ * - Mỗi phút: dọn entry hết hạn của trending cache, xóa toàn bộ theo chu kỳ rebuild
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TrendingScoreScheduler {
+
+    private final TrendingScoreService trendingScoreService;
+    private final BookTrendingScoreRepository bookTrendingScoreRepository;
+    private final TrendingCacheService trendingCacheService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartupIfEmpty() {
+        try {
+            if (bookTrendingScoreRepository.count() == 0) {
+                log.info("🔥 TRENDING SCORE: Store is empty, building from scratch...");
+                trendingScoreService.rebuildAll();
+            }
+        } catch (Exception e) {
+            log.error("🔥 ERROR: Failed to build trending score store on startup", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 15 * 60 * 1000, initialDelay = 15 * 60 * 1000) // Mỗi 15 phút
+    public void applyWindowDecay() {
+        try {
+            trendingScoreService.applyWindowDecay();
+        } catch (Exception e) {
+            log.error("🔥 ERROR: Failed to apply trending score window decay", e);
+        }
+    }
+
+    @Scheduled(cron = "0 0 3 * * *") // 3 AM mỗi ngày
+    public void nightlyRebuild() {
+        try {
+            trendingScoreService.rebuildAll();
+        } catch (Exception e) {
+            log.error("🔥 ERROR: Failed to rebuild trending score store", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 60 * 1000, initialDelay = 60 * 1000) // Mỗi phút
+    public void maintainTrendingCache() {
+        try {
+            trendingCacheService.checkAndRebuildCacheIfNeeded();
+        } catch (Exception e) {
+            log.error("🔥 ERROR: Failed to maintain trending cache", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.datn.bookstation.scheduled;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.service.PointManagementService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 🏅 USER RANK RECONCILIATION SCHEDULER
+ * - 4 AM mỗi ngày: tính lại hạng của toàn bộ user theo tổng chi tiêu
+ * (hạng đổi minSpent / trạng thái, tổng chi tiêu bị sửa ngoài luồng đơn hàng)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserRankReconciliationScheduler {
+
+    private final PointManagementService pointManagementService;
+
+    @Scheduled(cron = "0 0 4 * * *") // 4 AM mỗi ngày
+    public void nightlyReRank() {
+        try {
+            pointManagementService.reRankAllUsers();
+        } catch (Exception e) {
+            log.error("🏅 ERROR: Failed to re-rank users", e);
+        }
+    }
+}
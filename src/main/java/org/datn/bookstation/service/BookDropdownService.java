@@ -0,0 +1,27 @@
+package org.datn.bookstation.service;
+
+import org.datn.bookstation.dto.response.DropdownOptionResponse;
+
+import java.util.List;
+
+/**
+ * 📋 BOOK DROPDOWN SERVICE
+ * Danh sách sách cho select box tạo đơn (admin / POS) với giá, tồn kho, số lượng đang xử lý
+ */
+public interface BookDropdownService {
+
+    /**
+     * Toàn bộ option (search rỗng) hoặc option khớp từ khóa
+     */
+    List<DropdownOptionResponse> getOptions(String search);
+
+    /**
+     * 1 trang option (page bắt đầu từ 0)
+     */
+    List<DropdownOptionResponse> getOptions(String search, int page, int size);
+
+    /**
+     * Bỏ snapshot hiện tại (sách thay đổi), lần đọc sau dựng lại
+     */
+    void invalidate();
+}
@@ -1,5 +1,7 @@
 package org.datn.bookstation.service;
 
+import org.datn.bookstation.entity.Order;
+
 import java.util.List;
 
 /**
@@ -19,7 +21,12 @@ public interface BookProcessingQuantityService {
     Integer getFlashSaleProcessingQuantity(Integer flashSaleItemId);
     
     /**
-     * Lấy số lượng đang xử lý cho nhiều sách cùng lúc
+     * Số lượng đang xử lý của nhiều flash sale item (1 query cho cả danh sách)
+     */
+    java.util.Map<Integer, Integer> getFlashSaleProcessingQuantities(List<Integer> flashSaleItemIds);
+    
+    /**
+     * Lấy số lượng đang xử lý cho nhiều sách cùng lúc (1 query cho cả danh sách)
      */
     java.util.Map<Integer, Integer> getProcessingQuantities(List<Integer> bookIds);
     
@@ -27,4 +34,14 @@ public interface BookProcessingQuantityService {
      * Kiểm tra sách có đủ tồn kho để đặt không (tồn kho - đang xử lý)
      */
     boolean hasAvailableStock(Integer bookId, Integer requestedQuantity);
+    
+    /**
+     * Xóa cache số lượng đang xử lý của các sách trong đơn (gọi khi đơn đổi trạng thái)
+     */
+    void invalidateOrder(Order order);
+    
+    /**
+     * Xóa cache số lượng đang xử lý của các sách
+     */
+    void invalidateBooks(List<Integer> bookIds);
 }
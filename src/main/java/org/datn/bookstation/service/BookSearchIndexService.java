@@ -0,0 +1,39 @@
+package org.datn.bookstation.service;
+
+import java.util.List;
+
+/**
+ * 🔎 BOOK SEARCH INDEX SERVICE
+ * Chỉ mục tìm kiếm sách trong bộ nhớ (tên, mã sách, ISBN, tác giả, nhà xuất bản),
+ * không phân biệt dấu tiếng Việt, hỗ trợ gõ dở (prefix) và xếp hạng kết quả
+ */
+public interface BookSearchIndexService {
+
+    /**
+     * Chỉ mục đã được dựng xong (trước đó nơi gọi dùng query database như cũ)
+     */
+    boolean isReady();
+
+    /**
+     * Tìm sách, trả về bookId theo thứ tự liên quan giảm dần
+     * @param categoryId  null = mọi danh mục
+     * @param activeOnly  chỉ lấy sách status = 1
+     * @param limit       <= 0 = không giới hạn
+     */
+    List<Integer> search(String query, Integer categoryId, boolean activeOnly, int limit);
+
+    /**
+     * Nạp lại 1 sách vào chỉ mục (sau khi transaction hiện tại commit)
+     */
+    void indexBook(Integer bookId);
+
+    /**
+     * Gỡ sách khỏi chỉ mục (sau khi transaction hiện tại commit)
+     */
+    void removeBook(Integer bookId);
+
+    /**
+     * Dựng lại toàn bộ chỉ mục từ database
+     */
+    int rebuild();
+}
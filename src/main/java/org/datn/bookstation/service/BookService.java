@@ -74,6 +74,12 @@ public interface BookService {
      */
     List<org.datn.bookstation.dto.response.DropdownOptionResponse> getDropdownOptionsWithDetails(String search);
 
+    /**
+     * Trả về 1 trang danh sách sách cho dropdown (page bắt đầu từ 0)
+     */
+    List<org.datn.bookstation.dto.response.DropdownOptionResponse> getDropdownOptionsWithDetails(String search,
+            int page, int size);
+
     ApiResponse<Long> getTotalSoldBooks();
 
     ApiResponse<Long> getTotalStockBooks();
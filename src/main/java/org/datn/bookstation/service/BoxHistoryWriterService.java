@@ -0,0 +1,28 @@
+package org.datn.bookstation.service;
+
+import org.datn.bookstation.entity.BoxHistory;
+import org.datn.bookstation.entity.Point;
+
+import java.util.List;
+
+/**
+ * 🎁 BOX HISTORY WRITER SERVICE
+ * Ghi lịch sử mở hộp và bản ghi Point đi kèm; BoxHistory có thể ghi dồn theo lô (minigame.history.batch-write.enabled),
+ * bản ghi Point luôn lưu trong transaction mở hộp
+ */
+public interface BoxHistoryWriterService {
+
+    /**
+     * Ghi 1 lần mở hộp (points lưu ngay trong transaction hiện tại)
+     * - Ghi dồn: BoxHistory xếp hàng sau khi transaction commit, trả về null vì chưa có id
+     * - Không ghi dồn (hoặc hàng đợi đầy): lưu ngay trong transaction hiện tại, trả về id lịch sử
+     */
+    Integer write(BoxHistory history, List<Point> points);
+
+    /**
+     * Ghi các lần mở đang chờ xuống DB theo lô, trả về số lịch sử đã ghi
+     */
+    int flushPending();
+
+    int getPendingCount();
+}
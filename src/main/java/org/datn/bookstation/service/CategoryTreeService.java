@@ -0,0 +1,33 @@
+package org.datn.bookstation.service;
+
+import org.datn.bookstation.dto.response.ParentCategoryResponse;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 🌳 CATEGORY TREE SERVICE
+ * Cây danh mục dựng sẵn trong bộ nhớ (menu storefront, trang quản lý danh mục, lọc sách theo danh mục cha)
+ */
+public interface CategoryTreeService {
+
+    /**
+     * Toàn bộ cây danh mục (chỉ đọc)
+     */
+    List<ParentCategoryResponse> getTree();
+
+    /**
+     * Cây danh mục sau khi lọc theo tên/mô tả và trạng thái (giống CategorySpecification.filterBy)
+     */
+    List<ParentCategoryResponse> getTree(String searchText, Byte status);
+
+    /**
+     * Id của mọi danh mục con cháu (không gồm chính nó); danh mục không tồn tại → tập rỗng
+     */
+    Set<Integer> getDescendantIds(Integer categoryId);
+
+    /**
+     * Dựng lại cây từ database sau khi transaction hiện tại commit
+     */
+    void refresh();
+}
@@ -0,0 +1,40 @@
+package org.datn.bookstation.service;
+
+import org.datn.bookstation.entity.DailySalesRollup;
+import org.datn.bookstation.entity.Order;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 📊 DAILY SALES ROLLUP SERVICE
+ * Duy trì bảng tổng hợp doanh số theo ngày (daily_sales_rollup) cho các API thống kê
+ */
+public interface DailySalesRollupService {
+
+    /**
+     * Đánh dấu ngày đặt của đơn hàng cần tính lại (sau khi transaction hiện tại commit)
+     */
+    void markDirty(Order order);
+
+    /**
+     * Tính lại các ngày đã đánh dấu
+     */
+    int flushDirtyDays();
+
+    /**
+     * Dòng tổng hợp của các ngày trong khoảng thời gian (ngày chưa có đơn không có dòng),
+     * các ngày đang chờ tính lại được tính trước khi đọc
+     */
+    List<DailySalesRollup> getRollups(Long startTime, Long endTime);
+
+    /**
+     * Tính lại các ngày trong khoảng [fromDate, toDate] từ dữ liệu đơn hàng
+     */
+    int rebuildRange(LocalDate fromDate, LocalDate toDate);
+
+    /**
+     * Backfill toàn bộ từ đơn hàng đầu tiên tới hôm nay
+     */
+    int rebuildAll();
+}
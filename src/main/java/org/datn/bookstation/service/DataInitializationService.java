@@ -46,6 +46,9 @@ public class DataInitializationService implements CommandLineRunner {
     private final UserCampaignRepository userCampaignRepository;
     private final BoxHistoryRepository boxHistoryRepository;
     private final PasswordEncoder passwordEncoder;
+    private final OrderCodeGenerator orderCodeGenerator;
+    private final CategoryTreeService categoryTreeService;
+    private final RankLadderService rankLadderService;
 
     @Override
     @Transactional
@@ -55,6 +58,8 @@ public class DataInitializationService implements CommandLineRunner {
 
             // Kiểm tra từng loại dữ liệu và chỉ khởi tạo nếu chưa có
             initializeIfEmpty();
+            categoryTreeService.refresh();
+            rankLadderService.refresh();
 
             // Hiển thị trạng thái dữ liệu sau khi hoàn thành
             checkDataStatus();
@@ -1008,7 +1013,7 @@ public class DataInitializationService implements CommandLineRunner {
         order.setTotalAmount(BigDecimal.ZERO);
         order.setOrderStatus(status);
         order.setOrderType(orderType);
-        order.setCode("ORD" + System.currentTimeMillis());
+        order.setCode(orderCodeGenerator.nextCode());
         order.setCreatedBy(customer.getId());
         order.setStatus((byte) 1);
         return order;
@@ -1183,6 +1188,8 @@ public class DataInitializationService implements CommandLineRunner {
             
             // Khởi tạo lại dữ liệu
             initializeIfEmpty();
+            categoryTreeService.refresh();
+            rankLadderService.refresh();
             
             log.info("Data reinitialization completed successfully!");
         } catch (Exception e) {
@@ -4,6 +4,10 @@ import org.datn.bookstation.dto.response.ApiResponse;
 import org.datn.bookstation.dto.response.ExcelDataResponse;
 import org.datn.bookstation.dto.response.ExcelFieldsResponse;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
 public interface ExcelExportService {
     
     // Data export methods
@@ -33,4 +37,9 @@ public interface ExcelExportService {
     ApiResponse<ExcelFieldsResponse> getSupplierFieldsMapping();
     ApiResponse<ExcelFieldsResponse> getPointFieldsMapping();
     ApiResponse<ExcelFieldsResponse> getFlashSaleFieldsMapping();
+
+    // Streaming export: ghi thẳng file .xlsx/.csv ra output stream, duyệt bảng bằng cursor
+    boolean isStreamExportSupported(String entityType);
+    String getStreamExportFileName(String entityType, String format);
+    long streamExport(String entityType, List<String> fields, String format, OutputStream out) throws IOException;
 }
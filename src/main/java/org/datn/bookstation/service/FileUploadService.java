@@ -5,21 +5,33 @@ import lombok.extern.slf4j.Slf4j;
 import org.datn.bookstation.constants.UploadModule;
 import org.datn.bookstation.configuration.UploadProperties;
 import org.datn.bookstation.exception.FileUploadException;
+import org.datn.bookstation.repository.UploadFileReferenceRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 @Slf4j
@@ -28,6 +40,9 @@ import java.util.Set;
 public class FileUploadService {
 
     private final UploadProperties uploadProperties;
+    private final ImageDerivativeService imageDerivativeService;
+    private final UploadFileReferenceRepository uploadFileReferenceRepository;
+    private final PlatformTransactionManager transactionManager;
 
     private static final Set<String> ALLOWED_CONTENT_TYPES = Set.of(
             "image/jpeg", "image/jpg", "image/png", "image/gif", "image/webp"
@@ -60,42 +75,66 @@ public class FileUploadService {
         return urls;
     }
 
+    /**
+     * Lưu ảnh
+     * - Module ảnh dùng chung (sách, danh mục, sự kiện): lưu theo hash nội dung, ảnh trùng chỉ lưu 1 lần và
+     * dùng chung URL, mỗi lần upload +1 tham chiếu (upload_file_reference); bản thu nhỏ được tạo nền sau khi lưu
+     * - Module ảnh riêng (avatar, đánh giá, bằng chứng hoàn trả...): mỗi lần upload 1 file tên ngẫu nhiên
+     */
     public String saveImage(MultipartFile file, String module) {
         validateImage(file);
         validateModule(module);
+        boolean contentAddressed = UploadModule.fromValue(module).isContentAddressed();
 
+        Path tempFile = null;
         try {
-            // Create directory structure: uploads/{module}/2025/06/
-            LocalDateTime now = LocalDateTime.now();
-            String year = now.format(DateTimeFormatter.ofPattern("yyyy"));
-            String month = now.format(DateTimeFormatter.ofPattern("MM"));
-            
-            String relativePath = module + "/" + year + "/" + month + "/";
-            Path uploadDir = Paths.get(uploadProperties.getPath(), relativePath);// nối đường dẫn ==> đối tượng Path(vị  trí của file ảnh)
-            
-            if (!Files.exists(uploadDir)) {
-                Files.createDirectories(uploadDir);
+            Path uploadRoot = Paths.get(uploadProperties.getPath());
+            Files.createDirectories(uploadRoot);
+
+            // Ghi ra file tạm, đồng thời tính SHA-256 (cùng filesystem để move nguyên tử;
+            // tên bắt đầu bằng "." nên UploadResourceFilter không phục vụ)
+            tempFile = Files.createTempFile(uploadRoot, ".upload", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            // Chỉ đọc header để lấy kích thước / định dạng, không decode cả ảnh
+            String extension = validateImageHeader(tempFile, file.getOriginalFilename());
+
+            String relativePath;
+            if (contentAddressed) {
+                String hash = HexFormat.of().formatHex(digest.digest());
+                relativePath = imageDerivativeService.contentAddressedPath(module, hash, extension);
+                storeContentAddressed(uploadRoot, tempFile, relativePath);
+                imageDerivativeService.generateAsync(relativePath);
+            } else {
+                // Create directory structure: uploads/{module}/2025/06/
+                LocalDateTime now = LocalDateTime.now();
+                relativePath = module + "/" + now.format(DateTimeFormatter.ofPattern("yyyy")) + "/"
+                        + now.format(DateTimeFormatter.ofPattern("MM")) + "/" + generateFilename(extension);
+                Path filePath = uploadRoot.resolve(relativePath);
+                Files.createDirectories(filePath.getParent());
+                Files.move(tempFile, filePath, StandardCopyOption.ATOMIC_MOVE);
             }
 
-            // Generate unique filename: image{timestamp}_{randomId}.{extension}
-            String originalFilename = file.getOriginalFilename();//tên file gốc từ client
-            String extension = getFileExtension(originalFilename);
-            String filename = generateFilename(extension);// tạo tên file mới với định dạng: image{timestamp}_{randomId}.{extension}
-            
-            Path filePath = uploadDir.resolve(filename);//nối thêm tên file.
-            
-            // Save file
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-            
             // Return URL
-            String url = uploadProperties.getBaseUrl() + relativePath + filename;
+            String url = uploadProperties.getBaseUrl() + relativePath;
             log.info("File uploaded successfully for module {}: {}", module, url);
-            
+
             return url;
-            
-        } catch (IOException e) {
+
+        } catch (IOException | UncheckedIOException | NoSuchAlgorithmException e) {
             log.error("Error saving file for module {}: {}", module, e.getMessage());
             throw new FileUploadException("Failed to save file", "SAVE_ERROR");
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    log.warn("Could not delete temp upload {}", tempFile);
+                }
+            }
         }
     }
 
@@ -168,6 +207,12 @@ public class FileUploadService {
         }
     }
 
+    /**
+     * Xóa ảnh theo URL
+     * - Ảnh tên ngẫu nhiên: xóa file
+     * - Ảnh lưu theo hash (…/cas/…): bớt 1 tham chiếu; chỉ xóa file gốc + bản thu nhỏ khi không còn lượt upload
+     * nào dùng chung. Ảnh lưu theo hash trước khi có bảng tham chiếu thì giữ lại (không biết còn ai dùng)
+     */
     public boolean deleteImage(String imageUrl) {
         try {
             // Extract relative path from URL
@@ -177,6 +222,9 @@ public class FileUploadService {
             }
             
             String relativePath = imageUrl.substring(baseUrl.length());
+            if (relativePath.contains("/cas/")) {
+                return deleteContentAddressed(relativePath);
+            }
             Path filePath = Paths.get(uploadProperties.getPath(), relativePath);//vị trí file trên server 
             
             if (Files.exists(filePath)) {
@@ -188,12 +236,66 @@ public class FileUploadService {
                 return false;
             }
             
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             log.error("Error deleting file: {}", e.getMessage());
             throw new FileUploadException("Failed to delete file", "DELETE_ERROR");
         }
     }
 
+    /**
+     * +1 tham chiếu rồi mới đặt file, trong cùng transaction: dòng tham chiếu bị khóa tới khi file đã ở chỗ,
+     * lượt xóa đồng thời (xóa file khi về 0) hoặc chờ upload này, hoặc xóa xong trước rồi file được đặt lại
+     */
+    private void storeContentAddressed(Path uploadRoot, Path tempFile, String relativePath) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            uploadFileReferenceRepository.addReference(relativePath, System.currentTimeMillis());
+            Path filePath = uploadRoot.resolve(relativePath);
+            try {
+                if (Files.exists(filePath)) {
+                    log.info("Duplicate image, reusing {}", relativePath);
+                    return;
+                }
+                Files.createDirectories(filePath.getParent());
+                try {
+                    Files.move(tempFile, filePath, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    // Upload cùng nội dung đồng thời đã ghi trước
+                    if (!Files.exists(filePath)) {
+                        throw e;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private boolean deleteContentAddressed(String relativePath) {
+        Boolean deleted = new TransactionTemplate(transactionManager).execute(status -> {
+            Path filePath = Paths.get(uploadProperties.getPath(), relativePath);
+            Optional<Integer> refCount = uploadFileReferenceRepository.lockRefCount(relativePath);
+            if (refCount.isEmpty()) {
+                log.info("Content-addressed image has no reference record, kept: {}", relativePath);
+                return Files.exists(filePath);
+            }
+            if (refCount.get() > 1) {
+                uploadFileReferenceRepository.decrementReference(relativePath, System.currentTimeMillis());
+                log.info("Content-addressed image still used by {} upload(s), kept: {}", refCount.get() - 1, relativePath);
+                return true;
+            }
+            uploadFileReferenceRepository.deleteReference(relativePath);
+            try {
+                Files.deleteIfExists(filePath);
+                imageDerivativeService.deleteDerivatives(relativePath);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            log.info("File deleted successfully: {}", relativePath);
+            return true;
+        });
+        return Boolean.TRUE.equals(deleted);
+    }
+
     private void validateImage(MultipartFile file) {
         // Check if file is empty
         if (file.isEmpty()) {
@@ -211,17 +313,32 @@ public class FileUploadService {
             throw new FileUploadException("File type not allowed. Please upload JPG, PNG, GIF, or WebP images.", "INVALID_FILE_TYPE");
         }
 
-        // Check image dimensions
-        try {
-            BufferedImage image = ImageIO.read(file.getInputStream());
-            if (image == null) {
+    }
+
+    /**
+     * Kiểm tra kích thước ảnh chỉ từ header, trả về phần mở rộng theo định dạng thực của file
+     */
+    private String validateImageHeader(Path imageFile, String originalFilename) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(imageFile.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
                 throw new FileUploadException("Invalid image file", "INVALID_IMAGE");
             }
-            
-            if (image.getWidth() < MIN_WIDTH || image.getHeight() < MIN_HEIGHT) {
-                throw new FileUploadException("Image dimensions too small. Minimum size is 200x200px.", "INVALID_DIMENSIONS");
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                if (reader.getWidth(0) < MIN_WIDTH || reader.getHeight(0) < MIN_HEIGHT) {
+                    throw new FileUploadException("Image dimensions too small. Minimum size is 200x200px.", "INVALID_DIMENSIONS");
+                }
+                return switch (reader.getFormatName().toLowerCase()) {
+                    case "jpeg", "jpg" -> "jpg";
+                    case "png" -> "png";
+                    case "gif" -> "gif";
+                    default -> getFileExtension(originalFilename);
+                };
+            } finally {
+                reader.dispose();
             }
-            
         } catch (IOException e) {
             throw new FileUploadException("Unable to read image file", "INVALID_IMAGE");
         }
@@ -3,7 +3,9 @@ package org.datn.bookstation.service;
 import org.datn.bookstation.dto.request.FlashSaleRequest;
 import org.datn.bookstation.dto.response.*;
 import org.datn.bookstation.entity.FlashSaleItem;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface FlashSaleService {
@@ -72,6 +74,12 @@ public interface FlashSaleService {
      */
     boolean canUserPurchaseMore(Long flashSaleItemId, Integer userId, Integer requestQuantity);
 
+    /**
+     * Số lượng đã tính vào giới hạn mua per-user (đã giao - đã hoàn + đang xử lý)
+     * cho nhiều flash sale item trong số query cố định. Key = flashSaleItemId
+     */
+    Map<Integer, Integer> getUserFlashSaleQuotaUsage(Integer userId, Collection<Integer> flashSaleItemIds);
+
     /**
      * Schedule flash sale expiration task khi tạo/update flash sale
      * Integration với FlashSaleExpirationScheduler
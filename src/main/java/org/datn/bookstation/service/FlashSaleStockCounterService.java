@@ -0,0 +1,50 @@
+package org.datn.bookstation.service;
+
+/**
+ * ⚡ FLASH SALE STOCK COUNTER SERVICE
+ * Chế độ tùy chọn (flashsale.in-memory-stock.enabled): khi flash sale đang diễn ra,
+ * tồn kho FlashSaleItem và số lượng đã mua của từng user được giữ trong bộ đếm
+ * in-memory, trừ nguyên tử khi đặt hàng và ghi dồn chênh lệch xuống DB theo lô.
+ * Chỉ dùng khi chạy 1 instance backend.
+ */
+public interface FlashSaleStockCounterService {
+
+    enum ReservationResult {
+        RESERVED,
+        OUT_OF_STOCK,
+        USER_LIMIT_EXCEEDED,
+        // Item không được theo dõi in-memory → dùng luồng DB
+        NOT_TRACKED
+    }
+
+    /**
+     * Trừ suất flash sale + quota của user; tự hoàn lại nếu transaction rollback
+     */
+    ReservationResult tryReserve(Integer flashSaleItemId, Integer userId, int quantity);
+
+    /**
+     * Cộng lại suất flash sale (hủy đơn, hoàn hàng). false nếu item không được theo dõi
+     */
+    boolean release(Integer flashSaleItemId, Integer userId, int quantity);
+
+    /**
+     * Tồn kho flash sale hiện tại theo bộ đếm, null nếu item không được theo dõi
+     */
+    Integer getAvailableStock(Integer flashSaleItemId);
+
+    /**
+     * Nạp bộ đếm cho flash sale đang hiệu lực, đóng bộ đếm của flash sale đã kết thúc
+     */
+    void syncActiveFlashSales();
+
+    /**
+     * Ngừng nhận đơn in-memory cho flash sale (hết hạn / admin chỉnh sửa);
+     * bộ đếm được ghi dồn, đối soát và gỡ bỏ ở lần flush kế tiếp
+     */
+    void unloadFlashSale(Integer flashSaleId);
+
+    /**
+     * Ghi dồn các chênh lệch tồn kho đang chờ xuống DB
+     */
+    void flushPendingDeltas();
+}
@@ -0,0 +1,236 @@
+package org.datn.bookstation.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.configuration.UploadProperties;
+import org.datn.bookstation.constants.ImageVariant;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 🖼️ IMAGE DERIVATIVE SERVICE
+ * - Ảnh upload được lưu theo hash nội dung: {module}/cas/{2 ký tự đầu}/{sha256}.{ext}
+ * - Sau khi upload, tạo nền các bản JPEG thu nhỏ (thumb / list / detail) cạnh ảnh gốc: {sha256}_{suffix}.jpg
+ * - resolve(): trả URL bản dẫn xuất nếu đã tạo xong, ngược lại trả URL gốc (ảnh cũ không theo hash giữ nguyên)
+ * - Chỉ dùng cho module ảnh dùng chung (UploadModule.isContentAddressed)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageDerivativeService {
+
+    // JDK không có encoder WebP → dùng JPEG
+    private static final String DERIVATIVE_FORMAT = "jpg";
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final Pattern CAS_PATH = Pattern.compile("^(.+/cas/[0-9a-f]{2}/)([0-9a-f]{64})\\.[a-z0-9]+$");
+
+    private final UploadProperties uploadProperties;
+
+    // Đường dẫn tương đối các bản dẫn xuất đã có trên đĩa
+    private final Set<String> readyDerivatives = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 2, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(200), runnable -> {
+                Thread thread = new Thread(runnable, "image-derivative");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Đường dẫn tương đối (so với upload.path) của ảnh gốc lưu theo hash
+     */
+    public String contentAddressedPath(String module, String hash, String extension) {
+        return module + "/cas/" + hash.substring(0, 2) + "/" + hash + "." + extension;
+    }
+
+    /**
+     * Tạo nền các bản dẫn xuất còn thiếu cho ảnh gốc (relativePath theo contentAddressedPath)
+     */
+    public void generateAsync(String relativePath) {
+        try {
+            executor.execute(() -> generate(relativePath));
+        } catch (RejectedExecutionException e) {
+            // Hàng đợi đầy: response vẫn trỏ về ảnh gốc
+            log.warn("🖼️ Derivative queue full, skipped {}", relativePath);
+        }
+    }
+
+    /**
+     * URL bản dẫn xuất theo kích thước, hoặc URL gốc nếu chưa có / không phải ảnh lưu theo hash
+     */
+    public String resolve(String url, ImageVariant variant) {
+        if (url == null || url.isEmpty()) {
+            return url;
+        }
+        String baseUrl = uploadProperties.getBaseUrl();
+        if (!url.startsWith(baseUrl)) {
+            return url;
+        }
+        String derivative = derivativePath(url.substring(baseUrl.length()), variant);
+        if (derivative == null) {
+            return url;
+        }
+        if (readyDerivatives.contains(derivative)) {
+            return baseUrl + derivative;
+        }
+        // Tạo ở instance khác / trước khi khởi động lại
+        if (Files.exists(Paths.get(uploadProperties.getPath(), derivative))) {
+            readyDerivatives.add(derivative);
+            return baseUrl + derivative;
+        }
+        return url;
+    }
+
+    public List<String> resolveAll(List<String> urls, ImageVariant variant) {
+        List<String> result = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            result.add(resolve(url, variant));
+        }
+        return result;
+    }
+
+    /**
+     * Xóa các bản dẫn xuất của ảnh gốc (khi ảnh gốc không còn lượt upload nào tham chiếu)
+     */
+    public void deleteDerivatives(String relativePath) throws IOException {
+        for (ImageVariant variant : ImageVariant.values()) {
+            String derivative = derivativePath(relativePath, variant);
+            if (derivative != null) {
+                readyDerivatives.remove(derivative);
+                Files.deleteIfExists(Paths.get(uploadProperties.getPath(), derivative));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private void generate(String relativePath) {
+        long start = System.currentTimeMillis();
+        List<ImageVariant> missing = new ArrayList<>();
+        for (ImageVariant variant : ImageVariant.values()) {
+            String derivative = derivativePath(relativePath, variant);
+            if (derivative != null && !Files.exists(Paths.get(uploadProperties.getPath(), derivative))) {
+                missing.add(variant);
+            } else if (derivative != null) {
+                readyDerivatives.add(derivative);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        try {
+            Path originalPath = Paths.get(uploadProperties.getPath(), relativePath);
+            BufferedImage original = ImageIO.read(originalPath.toFile());
+            if (original == null) {
+                log.warn("🖼️ Cannot decode {}, derivatives skipped", relativePath);
+                return;
+            }
+            for (ImageVariant variant : missing) {
+                String derivative = derivativePath(relativePath, variant);
+                writeJpeg(scale(original, variant.getMaxWidth()), Paths.get(uploadProperties.getPath(), derivative));
+                readyDerivatives.add(derivative);
+            }
+            // Ảnh gốc bị xóa (hết tham chiếu) trong lúc đang tạo: bỏ các bản vừa ghi
+            if (!Files.exists(originalPath)) {
+                deleteDerivatives(relativePath);
+                return;
+            }
+            log.info("🖼️ Generated {} derivatives for {} in {} ms",
+                    missing.size(), relativePath, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("🖼️ Error generating derivatives for {}: {}", relativePath, e.getMessage());
+        }
+    }
+
+    private static String derivativePath(String relativePath, ImageVariant variant) {
+        Matcher matcher = CAS_PATH.matcher(relativePath);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return matcher.group(1) + matcher.group(2) + "_" + variant.getSuffix() + "." + DERIVATIVE_FORMAT;
+    }
+
+    /**
+     * Thu nhỏ theo chiều rộng (giữ tỉ lệ), giảm dần từng nửa để ảnh không bị răng cưa;
+     * nền trắng cho ảnh trong suốt vì JPEG không có kênh alpha
+     */
+    private static BufferedImage scale(BufferedImage source, int maxWidth) {
+        int targetWidth = Math.min(maxWidth, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+
+        BufferedImage current = toRgb(source, source.getWidth(), source.getHeight());
+        int width = current.getWidth();
+        int height = current.getHeight();
+        while (width != targetWidth) {
+            width = Math.max(targetWidth, width / 2);
+            height = width == targetWidth ? targetHeight : Math.max(1, height / 2);
+            current = toRgb(current, width, height);
+        }
+        return current;
+    }
+
+    private static BufferedImage toRgb(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        // Ghi ra file tạm rồi đổi tên để không phục vụ file ghi dở
+        Path temp = Files.createTempFile(target.getParent(), ".derivative", ".tmp");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(temp);
+        }
+    }
+}
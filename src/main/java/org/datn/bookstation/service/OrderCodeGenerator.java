@@ -0,0 +1,14 @@
+package org.datn.bookstation.service;
+
+/**
+ * 🧾 ORDER CODE GENERATOR
+ * Sinh mã đơn hàng duy nhất, tăng dần theo thời gian, không cần truy vấn DB.
+ * Muốn đổi cách sinh mã (vd: dùng sequence DB) chỉ cần khai báo bean khác với @Primary
+ */
+public interface OrderCodeGenerator {
+
+    /**
+     * Mã đơn hàng mới, dạng ORD + epoch millis + node id + số thứ tự trong millisecond
+     */
+    String nextCode();
+}
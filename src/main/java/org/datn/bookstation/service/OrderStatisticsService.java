@@ -67,4 +67,11 @@ public interface OrderStatisticsService {
      * @return net revenue sau trừ refunds
      */
     java.math.BigDecimal calculateNetRevenueForPeriod(Long startTime, Long endTime);
+
+    /**
+     * Net revenue cho nhiều khoảng thời gian trong 1 query (cùng logic calculateNetRevenueForPeriod)
+     * @param periods danh sách {startTime, endTime} (milliseconds)
+     * @return net revenue theo đúng thứ tự periods
+     */
+    java.util.List<java.math.BigDecimal> calculateNetRevenueForPeriods(java.util.List<Long[]> periods);
 }
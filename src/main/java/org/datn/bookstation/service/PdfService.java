@@ -2,6 +2,9 @@ package org.datn.bookstation.service;
 
 import org.datn.bookstation.dto.response.PdfResponse;
 
+import java.io.IOException;
+import java.util.List;
+
 public interface PdfService {
     /**
      * Tạo PDF hóa đơn từ orderId
@@ -17,4 +20,15 @@ public interface PdfService {
      * Lấy dữ liệu hóa đơn để tạo PDF
      */
     PdfResponse getInvoiceData(Integer orderId);
+
+    /**
+     * Lấy dữ liệu hóa đơn cho nhiều đơn hàng (giữ thứ tự orderIds)
+     */
+    List<PdfResponse> getInvoiceData(List<Integer> orderIds);
+
+    /**
+     * Render nhiều hóa đơn song song thành 1 file ZIP (mỗi hóa đơn 1 file PDF).
+     * Render đủ mọi hóa đơn trước khi trả về: 1 hóa đơn lỗi → ném lỗi, không có ZIP thiếu file
+     */
+    byte[] generateInvoiceZip(List<PdfResponse> invoices) throws IOException;
 }
\ No newline at end of file
@@ -53,6 +53,12 @@ public interface PointManagementService {
      */
     void updateUserRank(User user);
     
+    /**
+     * Tính lại hạng cho toàn bộ user bằng vài câu SQL (đối soát hằng đêm)
+     * @return số user được chuyển sang hạng mới
+     */
+    int reRankAllUsers();
+    
     /**
      * Kiểm tra và cập nhật rank tự động cho user
      * @param userId ID người dùng
@@ -0,0 +1,25 @@
+package org.datn.bookstation.service;
+
+import java.math.BigDecimal;
+
+/**
+ * 🏅 RANK LADDER SERVICE
+ * Danh sách hạng đang hoạt động, sắp theo chi tiêu tối thiểu, giữ trong bộ nhớ
+ */
+public interface RankLadderService {
+
+    /**
+     * Id hạng cao nhất có minSpent <= totalSpent, null nếu không có hạng phù hợp
+     */
+    Integer resolveRankId(BigDecimal totalSpent);
+
+    /**
+     * Tên hạng (chỉ hạng đang hoạt động), null nếu không có trong ladder
+     */
+    String getRankName(Integer rankId);
+
+    /**
+     * Nạp lại ladder sau khi transaction hiện tại commit (gọi khi hạng thay đổi)
+     */
+    void refresh();
+}
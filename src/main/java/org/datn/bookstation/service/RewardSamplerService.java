@@ -0,0 +1,25 @@
+package org.datn.bookstation.service;
+
+/**
+ * 🎲 REWARD SAMPLER SERVICE
+ * Phân phối phần thưởng của từng chiến dịch được biên dịch sẵn thành bảng alias (bốc thưởng O(1)),
+ * cache trong bộ nhớ cho tới khi phần thưởng thay đổi hoặc hết stock
+ */
+public interface RewardSamplerService {
+
+    /**
+     * Bốc 1 phần thưởng theo xác suất cấu hình + boost của user
+     * @return rewardId, null nếu chiến dịch không còn phần thưởng khả dụng
+     */
+    Integer sample(Integer campaignId, double winProbabilityBoost);
+
+    /**
+     * Phần thưởng vừa bốc được đã hết stock / không còn hợp lệ: bỏ bảng hiện tại để biên dịch lại
+     */
+    void onRewardUnavailable(Integer campaignId, Integer rewardId);
+
+    /**
+     * Phần thưởng của chiến dịch được thêm / sửa / bật tắt / xóa (biên dịch lại sau khi transaction commit)
+     */
+    void invalidate(Integer campaignId);
+}
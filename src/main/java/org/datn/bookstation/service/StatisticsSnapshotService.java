@@ -0,0 +1,27 @@
+package org.datn.bookstation.service;
+
+import org.datn.bookstation.dto.response.statistics.*;
+
+/**
+ * 📊 STATISTICS SNAPSHOT SERVICE
+ * Phục vụ dashboard thống kê từ bộ nhớ: aggregate nặng được tính lại định kỳ,
+ * các bộ đếm user / điểm được cộng dồn từ sự kiện giữa hai lần tính lại
+ */
+public interface StatisticsSnapshotService {
+    UserStatisticsResponse getUserStatistics();
+    RankStatisticsResponse getRankStatistics();
+    PointStatisticsResponse getPointStatistics();
+    PublisherStatisticsResponse getPublisherStatistics();
+    SupplierStatisticsResponse getSupplierStatistics();
+
+    /**
+     * Tính lại toàn bộ snapshot từ DB
+     */
+    void refresh();
+
+    // Sự kiện (áp dụng sau khi transaction commit)
+    void onUserCreated(Byte status, Integer totalPoint);
+    void onUserStatusChanged(Byte oldStatus, Byte newStatus);
+    void onUserDeleted(Byte status, Integer totalPoint);
+    void onPointsChanged(int totalPointDelta, int earned, int spent);
+}
@@ -0,0 +1,58 @@
+package org.datn.bookstation.service;
+
+import org.datn.bookstation.entity.Book;
+import org.datn.bookstation.entity.FlashSaleItem;
+import org.datn.bookstation.entity.OrderDetail;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 📦 STOCK RESERVATION SERVICE
+ * Trừ / cộng tồn kho bằng UPDATE có điều kiện trên DB để nhiều đơn đồng thời
+ * không thể cùng vượt qua kiểm tra và làm tồn kho âm
+ */
+public interface StockReservationService {
+
+    /**
+     * Trừ tồn kho sách nếu còn đủ, false nếu không đủ (entity được làm mới với tồn kho hiện tại)
+     */
+    boolean reserveBookStock(Book book, int quantity);
+
+    /**
+     * Trừ tồn kho flash sale nếu còn đủ, false nếu không đủ
+     */
+    boolean reserveFlashSaleStock(FlashSaleItem flashSaleItem, int quantity);
+
+    /**
+     * Trừ tồn kho nhiều sách trong 1 batch UPDATE có điều kiện.
+     * Trả về các sách không đủ tồn kho (đã được làm mới), rỗng nếu tất cả thành công
+     */
+    List<Book> reserveBookStocks(Map<Book, Integer> quantities);
+
+    /**
+     * Trừ tồn kho nhiều flash sale item trong 1 batch UPDATE có điều kiện (không qua bộ đếm in-memory)
+     */
+    List<FlashSaleItem> reserveFlashSaleStocks(Map<FlashSaleItem, Integer> quantities);
+
+    /**
+     * Cộng lại tồn kho sách
+     */
+    void releaseBookStock(Book book, int quantity);
+
+    /**
+     * Cộng lại tồn kho flash sale (qua bộ đếm in-memory nếu flash sale đang được theo dõi)
+     */
+    void releaseFlashSaleStock(FlashSaleItem flashSaleItem, Integer userId, int quantity);
+
+    /**
+     * Hoàn lại đúng những gì tạo đơn đã trừ cho 1 dòng: suất flash sale (nếu có) + tồn kho sách
+     */
+    void releaseOrderDetailStock(OrderDetail detail);
+
+    /**
+     * Hoàn lại nhiều dòng của đơn, khóa dòng cùng thứ tự với lúc tạo đơn
+     * (flash sale item rồi tới sách, mỗi loại theo id tăng dần) để không deadlock với đơn đang đặt
+     */
+    void releaseOrderDetailStocks(List<OrderDetail> details);
+}
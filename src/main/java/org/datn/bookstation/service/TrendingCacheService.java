@@ -1,7 +1,12 @@
 package org.datn.bookstation.service;
 
+import org.datn.bookstation.dto.request.TrendingRequest;
+import org.datn.bookstation.dto.response.PaginationResponse;
+import org.datn.bookstation.dto.response.TrendingBookResponse;
 import org.springframework.stereotype.Service;
 
+import java.util.function.Supplier;
+
 /**
  * 🔥 REAL-TIME TRENDING CACHE SERVICE
  * Quản lý cache và cập nhật real-time cho trending products
@@ -9,6 +14,12 @@ import org.springframework.stereotype.Service;
 @Service
 public interface TrendingCacheService {
     
+    /**
+     * Lấy trang trending từ cache (key: type-page-size), miss thì gọi loader và cache kết quả
+     */
+    PaginationResponse<TrendingBookResponse> getOrLoad(TrendingRequest request,
+            Supplier<PaginationResponse<TrendingBookResponse>> loader);
+    
     /**
      * Invalidate cache khi có đơn hàng mới
      */
@@ -0,0 +1,50 @@
+package org.datn.bookstation.service;
+
+import org.datn.bookstation.dto.response.TrendingScoreConsistencyResponse;
+import org.datn.bookstation.entity.Order;
+import org.datn.bookstation.entity.enums.OrderStatus;
+
+import java.util.Collection;
+
+/**
+ * 🔥 TRENDING SCORE SERVICE
+ * Duy trì bảng điểm trending tính sẵn (book_trending_score) cho DAILY_TRENDING
+ */
+public interface TrendingScoreService {
+
+    /**
+     * Tính lại bộ đếm và điểm cho danh sách sách (upsert)
+     */
+    void refreshBooks(Collection<Integer> bookIds);
+
+    /**
+     * Xóa dòng điểm của sách (trước khi xóa sách)
+     */
+    void removeBook(Integer bookId);
+
+    /**
+     * Gọi khi đơn hàng đổi trạng thái, chỉ cập nhật khi đơn vào/ra nhóm "đã bán"
+     * (chạy sau khi transaction hiện tại commit, lỗi chỉ ghi log)
+     */
+    void onOrderStatusChanged(Order order, OrderStatus oldStatus, OrderStatus newStatus);
+
+    /**
+     * Gọi khi review được tạo/sửa/duyệt/ẩn
+     */
+    void onReviewChanged(Integer bookId);
+
+    /**
+     * Job định kỳ: trượt cửa sổ 30/60 ngày, bỏ dữ liệu cũ và cập nhật cờ sách mới/flash sale
+     */
+    int applyWindowDecay();
+
+    /**
+     * Xóa và tính lại toàn bộ bảng điểm
+     */
+    int rebuildAll();
+
+    /**
+     * Đối soát bảng điểm với dữ liệu tính trực tiếp
+     */
+    TrendingScoreConsistencyResponse checkConsistency(int topSize);
+}
@@ -0,0 +1,34 @@
+package org.datn.bookstation.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 🎫 USER VOUCHER ELIGIBILITY SERVICE
+ * Số lần đã dùng voucher của từng user
+ * - getUsedCounts: 1 query / user, cache ngắn hạn theo userId (chỉ dùng để hiển thị danh sách voucher)
+ * - getRemainingUses: luôn đọc DB (bước chặn lúc checkout / đặt hàng)
+ */
+public interface UserVoucherEligibilityService {
+
+    /**
+     * Tổng usedCount theo voucherId của user (voucher chưa có bản ghi không nằm trong map), có thể trễ tới TTL cache
+     */
+    Map<Integer, Integer> getUsedCounts(Integer userId);
+
+    /**
+     * Số lần user còn được dùng voucher (usageLimitPerUser - đã dùng), 0 nếu voucher không giới hạn per-user
+     * Không qua cache
+     */
+    int getRemainingUses(Integer userId, Integer voucherId, Integer usageLimitPerUser);
+
+    /**
+     * Xóa cache của user sau khi transaction hiện tại commit
+     */
+    void invalidateUser(Integer userId);
+
+    /**
+     * Xóa cache của nhiều user sau khi transaction hiện tại commit
+     */
+    void invalidateUsers(Collection<Integer> userIds);
+}
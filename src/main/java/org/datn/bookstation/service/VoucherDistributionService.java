@@ -0,0 +1,30 @@
+package org.datn.bookstation.service;
+
+import org.datn.bookstation.dto.response.VoucherDistributionJobResponse;
+
+/**
+ * 🎫 VOUCHER DISTRIBUTION SERVICE
+ * Phát voucher cho toàn bộ user CUSTOMER của 1 hạng bằng INSERT ... SELECT theo từng lô user
+ */
+public interface VoucherDistributionService {
+
+    /**
+     * Phát voucher ngay trong thread hiện tại, trả về kết quả khi xong
+     */
+    VoucherDistributionJobResponse distribute(Integer voucherId, String rankName);
+
+    /**
+     * Tạo job phát voucher chạy nền, trả về ngay trạng thái ban đầu
+     */
+    VoucherDistributionJobResponse startJob(Integer voucherId, String rankName);
+
+    /**
+     * Tiến độ hiện tại của job
+     */
+    VoucherDistributionJobResponse getJob(String jobId);
+
+    /**
+     * Chạy tiếp job bị lỗi từ lô user chưa xử lý
+     */
+    VoucherDistributionJobResponse resumeJob(String jobId);
+}
@@ -9,6 +9,7 @@ import org.datn.bookstation.mapper.AuthMapper;
 import org.datn.bookstation.repository.RoleRepository;
 import org.datn.bookstation.repository.UserRepository;
 import org.datn.bookstation.service.AuthService;
+import org.datn.bookstation.service.StatisticsSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -33,6 +34,7 @@ public class AuthServiceImpl implements AuthService {
     private final PasswordEncoder passwordEncoder;
     private final AuthMapper authMapper;
     private final JwtUtil jwtUtil;
+    private final StatisticsSnapshotService statisticsSnapshotService;
 
 
     @Override
@@ -54,6 +56,7 @@ public class AuthServiceImpl implements AuthService {
         user.setStatus((byte) 1);
         user.setEmailVerified((byte) 1); // Email được coi như đã xác nhận (không cần xác thực)
         userRepository.save(user);
+        statisticsSnapshotService.onUserCreated(user.getStatus(), user.getTotalPoint());
 
         // Không cần gửi email xác nhận nữa - tài khoản đã sẵn sàng sử dụng
         return new ApiResponse<>(201, "Đăng ký thành công! Tài khoản đã sẵn sàng sử dụng.", authMapper.toRegisterResponse(user));
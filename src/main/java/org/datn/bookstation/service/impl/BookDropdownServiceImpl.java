@@ -0,0 +1,226 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.dto.response.DropdownOptionResponse;
+import org.datn.bookstation.entity.Book;
+import org.datn.bookstation.entity.FlashSaleItem;
+import org.datn.bookstation.repository.BookRepository;
+import org.datn.bookstation.repository.FlashSaleItemRepository;
+import org.datn.bookstation.service.BookDropdownService;
+import org.datn.bookstation.service.BookProcessingQuantityService;
+import org.datn.bookstation.service.BookSearchIndexService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 📋 BOOK DROPDOWN SERVICE IMPLEMENTATION
+ * - Dựng option cho cả danh sách sách bằng 3 query gom nhóm (flash sale đang chạy,
+ * số lượng đang xử lý theo sách, theo flash sale item) thay vì 3 query / sách
+ * - Snapshot toàn bộ sách active dùng chung cho mọi admin trong book.dropdown.snapshot-ttl-ms,
+ * tìm kiếm lọc trên snapshot qua chỉ mục tìm kiếm sách
+ * - Snapshot dựng bắt đầu trước lần invalidate gần nhất không được cache
+ * - Danh sách id trong IN được chia lô IN_CHUNK_SIZE (PostgreSQL giới hạn số bind parameter mỗi câu)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookDropdownServiceImpl implements BookDropdownService {
+
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    private final BookRepository bookRepository;
+    private final FlashSaleItemRepository flashSaleItemRepository;
+    private final BookProcessingQuantityService bookProcessingQuantityService;
+    private final BookSearchIndexService bookSearchIndexService;
+
+    @Value("${book.dropdown.snapshot-ttl-ms:10000}")
+    private long snapshotTtlMs;
+
+    private volatile Snapshot snapshot;
+    // Tăng mỗi lần invalidate: snapshot dựng bắt đầu trước đó sẽ không được cache
+    private final AtomicLong version = new AtomicLong();
+
+    @Override
+    public List<DropdownOptionResponse> getOptions(String search) {
+        if (search == null || search.trim().isEmpty()) {
+            return currentSnapshot().options;
+        }
+        if (bookSearchIndexService.isReady()) {
+            Map<Integer, DropdownOptionResponse> optionsById = currentSnapshot().optionsById;
+            return bookSearchIndexService.search(search, null, true, 0).stream()
+                    .map(optionsById::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        }
+        // Chỉ mục chưa sẵn sàng: tìm theo tên / mã sách trong database như cũ
+        return buildOptions(bookRepository.findActiveBooksByNameOrCode(search.trim()));
+    }
+
+    @Override
+    public List<DropdownOptionResponse> getOptions(String search, int page, int size) {
+        List<DropdownOptionResponse> options = getOptions(search);
+        int from = Math.max(page, 0) * Math.max(size, 1);
+        if (from >= options.size()) {
+            return new ArrayList<>();
+        }
+        return options.subList(from, Math.min(from + Math.max(size, 1), options.size()));
+    }
+
+    @Override
+    public void invalidate() {
+        // Sau commit để request khác không dựng lại snapshot từ dữ liệu cũ
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clearSnapshot();
+                }
+            });
+        } else {
+            clearSnapshot();
+        }
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private void clearSnapshot() {
+        version.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (current != null && current.expiresAt > now) {
+            return current;
+        }
+        // Chỉ 1 request dựng lại, các request khác chờ rồi dùng chung kết quả
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && current.expiresAt > System.currentTimeMillis()) {
+                return current;
+            }
+            long versionBeforeLoad = version.get();
+            long start = System.currentTimeMillis();
+            List<DropdownOptionResponse> options = Collections.unmodifiableList(
+                    buildOptions(bookRepository.findActiveBooks()));
+            Map<Integer, DropdownOptionResponse> optionsById = new LinkedHashMap<>();
+            options.forEach(option -> optionsById.put(option.getId(), option));
+            current = new Snapshot(options, optionsById, System.currentTimeMillis() + Math.max(snapshotTtlMs, 0));
+            if (snapshotTtlMs > 0 && version.get() == versionBeforeLoad) {
+                snapshot = current;
+            }
+            log.debug("📋 BOOK DROPDOWN: Built {} options in {} ms", options.size(),
+                    System.currentTimeMillis() - start);
+            return current;
+        }
+    }
+
+    private List<DropdownOptionResponse> buildOptions(List<Book> books) {
+        if (books.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Integer> bookIds = books.stream().map(Book::getId).collect(Collectors.toList());
+
+        // Flash sale đang chạy: mỗi sách lấy item giá thấp nhất (giống findActiveFlashSaleByBook)
+        Map<Integer, FlashSaleItem> flashSaleByBook = new HashMap<>();
+        Map<Integer, Integer> processingByBook = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < bookIds.size(); i += IN_CHUNK_SIZE) {
+            List<Integer> chunk = bookIds.subList(i, Math.min(i + IN_CHUNK_SIZE, bookIds.size()));
+            for (FlashSaleItem item : flashSaleItemRepository.findActiveFlashSalesByBookIds(chunk, now)) {
+                flashSaleByBook.putIfAbsent(item.getBook().getId(), item);
+            }
+            processingByBook.putAll(bookProcessingQuantityService.getProcessingQuantities(chunk));
+        }
+        List<Integer> flashSaleItemIds = flashSaleByBook.values().stream()
+                .map(FlashSaleItem::getId)
+                .collect(Collectors.toList());
+        Map<Integer, Integer> processingByFlashSaleItem = new HashMap<>();
+        for (int i = 0; i < flashSaleItemIds.size(); i += IN_CHUNK_SIZE) {
+            processingByFlashSaleItem.putAll(bookProcessingQuantityService.getFlashSaleProcessingQuantities(
+                    flashSaleItemIds.subList(i, Math.min(i + IN_CHUNK_SIZE, flashSaleItemIds.size()))));
+        }
+
+        List<DropdownOptionResponse> result = new ArrayList<>(books.size());
+        for (Book book : books) {
+            FlashSaleItem flashSaleItem = flashSaleByBook.get(book.getId());
+
+            // Giá gốc
+            BigDecimal originalPrice = book.getPrice();
+            // Giá thường (đã trừ discount nếu có)
+            BigDecimal normalPrice = originalPrice;
+            if (book.getDiscountActive() != null && book.getDiscountActive()) {
+                if (book.getDiscountValue() != null) {
+                    normalPrice = originalPrice.subtract(book.getDiscountValue());
+                } else if (book.getDiscountPercent() != null) {
+                    BigDecimal discountAmount = originalPrice.multiply(BigDecimal.valueOf(book.getDiscountPercent()))
+                            .divide(BigDecimal.valueOf(100));
+                    normalPrice = originalPrice.subtract(discountAmount);
+                }
+            }
+
+            // Ảnh sản phẩm: cover image, fallback ảnh đầu tiên trong images
+            String imageUrl = book.getCoverImageUrl();
+            if (imageUrl == null || imageUrl.trim().isEmpty()) {
+                if (book.getImages() != null && !book.getImages().trim().isEmpty()) {
+                    String[] images = book.getImages().split(",");
+                    if (images.length > 0) {
+                        imageUrl = images[0].trim();
+                    }
+                }
+            }
+
+            DropdownOptionResponse option = new DropdownOptionResponse();
+            option.setId(book.getId());
+            option.setName(book.getBookName());
+            option.setNormalPrice(normalPrice);
+            option.setFlashSalePrice(flashSaleItem != null ? flashSaleItem.getDiscountPrice() : null);
+            option.setIsFlashSale(flashSaleItem != null);
+            option.setBookCode(book.getBookCode());
+            option.setStockQuantity(book.getStockQuantity() != null ? book.getStockQuantity() : 0);
+            option.setSoldQuantity(book.getSoldCount() != null ? book.getSoldCount() : 0);
+            option.setProcessingQuantity(processingByBook.getOrDefault(book.getId(), 0));
+            option.setFlashSaleSoldQuantity(flashSaleItem != null && flashSaleItem.getSoldCount() != null
+                    ? flashSaleItem.getSoldCount()
+                    : 0);
+            option.setFlashSaleProcessingQuantity(flashSaleItem != null
+                    ? processingByFlashSaleItem.getOrDefault(flashSaleItem.getId(), 0)
+                    : 0);
+            option.setFlashSaleStockQuantity(flashSaleItem != null && flashSaleItem.getStockQuantity() != null
+                    ? flashSaleItem.getStockQuantity()
+                    : 0);
+            option.setOriginalPrice(originalPrice);
+            option.setImageUrl(imageUrl);
+            result.add(option);
+        }
+        return result;
+    }
+
+    private static final class Snapshot {
+        final List<DropdownOptionResponse> options;
+        final Map<Integer, DropdownOptionResponse> optionsById;
+        final long expiresAt;
+
+        Snapshot(List<DropdownOptionResponse> options, Map<Integer, DropdownOptionResponse> optionsById,
+                long expiresAt) {
+            this.options = options;
+            this.optionsById = optionsById;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,22 +1,36 @@
 package org.datn.bookstation.service.impl;
 
-import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.datn.bookstation.entity.Order;
+import org.datn.bookstation.entity.OrderDetail;
 import org.datn.bookstation.entity.enums.OrderStatus;
 import org.datn.bookstation.repository.BookRepository;
 import org.datn.bookstation.repository.OrderDetailRepository;
 import org.datn.bookstation.service.BookProcessingQuantityService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * Service tính processing quantity real-time từ database
  * Thay thế cho cột processingQuantity để đảm bảo độ chính xác 100%
+ * - Toàn bộ quy tắc hoàn trả được tính trong 1 query group by (cho 1 hoặc nhiều sách)
+ * - Cache ngắn hạn theo bookId (book.processing-quantity.cache-ttl-ms, 0 = tắt),
+ * bị xóa sau commit khi đơn hàng chứa sách đổi trạng thái
  */
 @Service
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class BookProcessingQuantityServiceImpl implements BookProcessingQuantityService {
     
     private final OrderDetailRepository orderDetailRepository;
@@ -39,69 +53,31 @@ public class BookProcessingQuantityServiceImpl implements BookProcessingQuantity
         //  CHỈ LOẠI TRỪ: DELIVERED, REFUNDED, PARTIALLY_REFUNDED, CANCELED (đã hoàn tất hoàn toàn)
     );
     
+    // Trạng thái liên quan đến hoàn trả (Copy từ BookServiceImpl để đảm bảo consistency):
+    // hoàn 1 phần → chỉ tính số lượng hoàn, hoàn toàn phần / chưa có refund item → tính toàn bộ
+    private static final List<OrderStatus> REFUND_RELATED_STATUSES = List.of(
+        OrderStatus.REFUND_REQUESTED,
+        OrderStatus.AWAITING_GOODS_RETURN,
+        OrderStatus.GOODS_RECEIVED_FROM_CUSTOMER,
+        OrderStatus.GOODS_RETURNED_TO_WAREHOUSE,
+        OrderStatus.REFUNDING
+    );
+    
+    private static final List<String> PROCESSING_STATUS_NAMES = names(PROCESSING_STATUSES);
+    private static final List<String> REFUND_RELATED_STATUS_NAMES = names(REFUND_RELATED_STATUSES);
+    
+    @Value("${book.processing-quantity.cache-ttl-ms:10000}")
+    private long cacheTtlMs;
+    
+    // bookId -> số lượng đang xử lý đã tính
+    private final Map<Integer, CachedQuantity> cache = new ConcurrentHashMap<>();
+    
     @Override
     public Integer getProcessingQuantity(Integer bookId) {
-        //  SỬ DỤNG CÙNG LOGIC NHU BookServiceImpl.calculateActualProcessingQuantity()
-        // Lấy danh sách tất cả đơn hàng đang processing cho bookId này
-        List<Object[]> processingOrders = orderDetailRepository.findProcessingOrderDetailsByBookId(bookId, PROCESSING_STATUSES);
-        
-        System.out.println(" DEBUG Book ID " + bookId + " - Found " + processingOrders.size() + " orders");
-        
-        int totalProcessingQuantity = 0;
-        
-        for (Object[] row : processingOrders) {
-            Integer orderId = (Integer) row[0];
-            Integer orderDetailQuantity = (Integer) row[2];
-            OrderStatus orderStatus = (OrderStatus) row[3];
-            
-            // Lấy refund quantity cho đơn này
-            Integer refundQuantity = orderDetailRepository.getRefundQuantityByOrderIdAndBookId(orderId, bookId);
-            if (refundQuantity == 0) refundQuantity = null; // Convert 0 thành null để logic xử lý đúng
-            
-            System.out.println(" Order " + orderId + ": qty=" + orderDetailQuantity + ", status=" + orderStatus + ", refundQty=" + refundQuantity);
-            
-            // Sử dụng cùng logic như BookServiceImpl.calculateActualProcessingQuantity()
-            int processingQuantityForThisOrder;
-            if (isRefundRelatedStatus(orderStatus) && refundQuantity != null && refundQuantity > 0) {
-                // LOGIC MỚI: Phân biệt hoàn 1 phần vs hoàn toàn phần
-                if (refundQuantity.equals(orderDetailQuantity)) {
-                    // HOÀN TOÀN PHẦN: refund quantity = order quantity → hiển thị full order quantity  
-                    processingQuantityForThisOrder = orderDetailQuantity;
-                    System.out.println(" Full refund case: using orderQty=" + processingQuantityForThisOrder);
-                } else {
-                    // HOÀN 1 PHẦN: refund quantity < order quantity → chỉ hiển thị refund quantity
-                    processingQuantityForThisOrder = refundQuantity;
-                    System.out.println("� Partial refund case: using refundQty=" + processingQuantityForThisOrder);
-                }
-            } else if (orderStatus == OrderStatus.REFUND_REQUESTED && (refundQuantity == null || refundQuantity == 0)) {
-                //  FIXED LOGIC: Refund_request tồn tại nhưng không có refund_item = Full refund
-                // Trả về toàn bộ order quantity
-                processingQuantityForThisOrder = orderDetailQuantity;
-                System.out.println(" Full refund case (no refund_item): using orderQty=" + processingQuantityForThisOrder);
-            } else {
-                // Đơn bình thường: tính full quantity
-                processingQuantityForThisOrder = orderDetailQuantity;
-                System.out.println(" Normal case: using orderQty=" + processingQuantityForThisOrder);
-            }
-            
-            totalProcessingQuantity += processingQuantityForThisOrder;
-            System.out.println(" Running total: " + totalProcessingQuantity);
+        if (bookId == null) {
+            return 0;
         }
-        
-        System.out.println(" FINAL RESULT: " + totalProcessingQuantity);
-        return totalProcessingQuantity;
-    }
-    
-    /**
-     * Kiểm tra trạng thái có liên quan đến hoàn trả không
-     * (Copy từ BookServiceImpl để đảm bảo consistency)
-     */
-    private boolean isRefundRelatedStatus(OrderStatus status) {
-        return status == OrderStatus.REFUND_REQUESTED ||
-               status == OrderStatus.AWAITING_GOODS_RETURN ||
-               status == OrderStatus.GOODS_RECEIVED_FROM_CUSTOMER ||
-               status == OrderStatus.GOODS_RETURNED_TO_WAREHOUSE ||
-               status == OrderStatus.REFUNDING;
+        return getProcessingQuantities(List.of(bookId)).get(bookId);
     }
     
     @Override
@@ -109,27 +85,57 @@ public class BookProcessingQuantityServiceImpl implements BookProcessingQuantity
         return orderDetailRepository.sumQuantityByFlashSaleItemIdAndOrderStatuses(flashSaleItemId, PROCESSING_STATUSES);
     }
     
+    @Override
+    public Map<Integer, Integer> getFlashSaleProcessingQuantities(List<Integer> flashSaleItemIds) {
+        Map<Integer, Integer> processingMap = new HashMap<>();
+        if (flashSaleItemIds == null || flashSaleItemIds.isEmpty()) {
+            return processingMap;
+        }
+        flashSaleItemIds.stream().filter(Objects::nonNull).forEach(id -> processingMap.put(id, 0));
+        for (Object[] row : orderDetailRepository.sumQuantityByFlashSaleItemIdsAndOrderStatuses(
+                processingMap.keySet(), PROCESSING_STATUSES)) {
+            processingMap.put((Integer) row[0], ((Number) row[1]).intValue());
+        }
+        return processingMap;
+    }
+    
     @Override
     public Map<Integer, Integer> getProcessingQuantities(List<Integer> bookIds) {
+        Map<Integer, Integer> processingMap = new HashMap<>();
         if (bookIds == null || bookIds.isEmpty()) {
-            return new HashMap<>();
+            return processingMap;
         }
         
-        List<Object[]> results = orderDetailRepository.sumQuantityByBookIdsAndOrderStatuses(bookIds, PROCESSING_STATUSES);
-        Map<Integer, Integer> processingMap = new HashMap<>();
-        
-        // Khởi tạo tất cả bookId với giá trị 0
+        long now = System.currentTimeMillis();
+        Set<Integer> missing = new LinkedHashSet<>();
         for (Integer bookId : bookIds) {
-            processingMap.put(bookId, 0);
+            if (bookId == null) {
+                continue;
+            }
+            CachedQuantity cached = cacheTtlMs > 0 ? cache.get(bookId) : null;
+            if (cached != null && cached.expiresAt > now) {
+                processingMap.put(bookId, cached.quantity);
+            } else {
+                missing.add(bookId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return processingMap;
         }
         
-        // Cập nhật với kết quả từ database
-        for (Object[] result : results) {
-            Integer bookId = (Integer) result[0];
-            Long quantity = (Long) result[1];
-            processingMap.put(bookId, quantity != null ? quantity.intValue() : 0);
+        // Khởi tạo tất cả bookId với giá trị 0, cập nhật với kết quả từ database
+        Map<Integer, Integer> loaded = new HashMap<>();
+        missing.forEach(bookId -> loaded.put(bookId, 0));
+        for (Object[] row : orderDetailRepository.sumProcessingQuantityByBookIds(
+                missing, PROCESSING_STATUS_NAMES, REFUND_RELATED_STATUS_NAMES)) {
+            loaded.put(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
         }
         
+        if (cacheTtlMs > 0) {
+            long expiresAt = now + cacheTtlMs;
+            loaded.forEach((bookId, quantity) -> cache.put(bookId, new CachedQuantity(quantity, expiresAt)));
+        }
+        processingMap.putAll(loaded);
         return processingMap;
     }
     
@@ -146,4 +152,52 @@ public class BookProcessingQuantityServiceImpl implements BookProcessingQuantity
         
         return availableStock >= requestedQuantity;
     }
+    
+    @Override
+    public void invalidateOrder(Order order) {
+        if (cacheTtlMs <= 0 || cache.isEmpty() || order == null || order.getId() == null) {
+            return;
+        }
+        List<Integer> bookIds = orderDetailRepository.findByOrderId(order.getId()).stream()
+                .map(OrderDetail::getId)
+                .filter(Objects::nonNull)
+                .map(id -> id.getBookId())
+                .collect(Collectors.toList());
+        invalidateBooks(bookIds);
+    }
+    
+    @Override
+    public void invalidateBooks(List<Integer> bookIds) {
+        if (cacheTtlMs <= 0 || bookIds == null || bookIds.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(bookIds);
+        // Xóa sau commit để request khác không nạp lại dữ liệu chưa commit vào cache
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ids.forEach(cache::remove);
+                }
+            });
+        } else {
+            ids.forEach(cache::remove);
+        }
+    }
+    
+    // ================== PRIVATE HELPER METHODS ==================
+    
+    private static List<String> names(List<OrderStatus> statuses) {
+        return statuses.stream().map(Enum::name).collect(Collectors.toList());
+    }
+    
+    private static final class CachedQuantity {
+        final int quantity;
+        final long expiresAt;
+        
+        CachedQuantity(int quantity, long expiresAt) {
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
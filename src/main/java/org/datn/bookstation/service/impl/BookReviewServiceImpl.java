@@ -13,6 +13,7 @@ import org.datn.bookstation.repository.OrderDetailRepository;
 import org.datn.bookstation.repository.ReviewRepository;
 import org.datn.bookstation.repository.UserRepository;
 import org.datn.bookstation.service.BookReviewService;
+import org.datn.bookstation.service.TrendingScoreService;
 import org.datn.bookstation.specification.ReviewSpecification;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -35,6 +36,7 @@ public class BookReviewServiceImpl implements BookReviewService {
     private final BookRepository bookRepository;
     private final UserRepository userRepository;
     private final OrderDetailRepository orderDetailRepository;
+    private final TrendingScoreService trendingScoreService;
 
     @Override
     public ApiResponse<PaginationResponse<ReviewResponse>> getAllReviews(Integer bookId, int page, int size, Integer rating, Long from, Long to) {
@@ -118,6 +120,7 @@ public class BookReviewServiceImpl implements BookReviewService {
         review.setReviewStatus(ReviewStatus.APPROVED);
 
         review = reviewRepository.save(review);
+        trendingScoreService.onReviewChanged(bookId);
         return new ApiResponse<>(200, "Tạo review thành công", reviewMapper.toResponse(review));
     }
 
@@ -137,6 +140,7 @@ public class BookReviewServiceImpl implements BookReviewService {
         }
         review.setReviewStatus(ReviewStatus.EDITED);
         review = reviewRepository.save(review);
+        trendingScoreService.onReviewChanged(bookId);
         return new ApiResponse<>(200, "Cập nhật review thành công", reviewMapper.toResponse(review));
     }
 
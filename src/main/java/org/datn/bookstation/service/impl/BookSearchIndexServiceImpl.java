@@ -0,0 +1,398 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.entity.AuthorBook;
+import org.datn.bookstation.entity.Book;
+import org.datn.bookstation.repository.BookRepository;
+import org.datn.bookstation.service.BookSearchIndexService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 🔎 BOOK SEARCH INDEX SERVICE IMPLEMENTATION
+ * - Văn bản được bỏ dấu (đ → d), viết thường, tách từ theo ký tự không phải chữ/số
+ * - Chỉ mục ngược token → (bookId, trọng số) (sắp xếp theo token để tra prefix) + trigram → token
+ * để tìm chuỗi nằm giữa từ (từ khóa 1-2 ký tự thì quét danh sách token)
+ * - Điểm = trọng số trường (mã/ISBN > tên > tác giả > NXB) x kiểu khớp (trùng từ > prefix > giữa từ);
+ * sách khớp nhiều từ khóa hơn xếp trước
+ * - Cập nhật từng sách sau commit khi thêm/sửa/đổi trạng thái/xóa, dựng lại định kỳ
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookSearchIndexServiceImpl implements BookSearchIndexService {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+
+    // Trọng số theo trường
+    private static final int CODE_WEIGHT = 5;
+    private static final int NAME_WEIGHT = 4;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int PUBLISHER_WEIGHT = 1;
+
+    // Hệ số theo kiểu khớp
+    private static final double EXACT_MATCH = 3.0;
+    private static final double PREFIX_MATCH = 2.0;
+    private static final double INFIX_MATCH = 1.0;
+
+    private static final int GRAM_SIZE = 3;
+
+    // Khớp nhiều từ khóa hơn > điểm cao hơn > tên ngắn hơn > sách mới hơn
+    private static final Comparator<Hit> RANKING = Comparator.comparingInt((Hit h) -> h.matchedTerms).reversed()
+            .thenComparing(Comparator.comparingDouble((Hit h) -> h.score).reversed())
+            .thenComparingInt(h -> h.book.nameLength)
+            .thenComparing(Comparator.comparingInt((Hit h) -> h.book.id).reversed());
+
+    private final BookRepository bookRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    private volatile Index index;
+
+    @Override
+    public boolean isReady() {
+        return index != null;
+    }
+
+    @Override
+    public List<Integer> search(String query, Integer categoryId, boolean activeOnly, int limit) {
+        Index current = index;
+        List<String> terms = tokenize(query).stream().distinct().collect(Collectors.toList());
+        if (current == null || terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Integer, Hit> hits = new HashMap<>();
+        for (int i = 0; i < terms.size(); i++) {
+            current.match(terms.get(i), i, hits);
+        }
+        List<Hit> ranked = new ArrayList<>();
+        for (Hit hit : hits.values()) {
+            IndexedBook book = current.books.get(hit.bookId);
+            if (book == null
+                    || (activeOnly && book.status != 1)
+                    || (categoryId != null && !categoryId.equals(book.categoryId))) {
+                continue;
+            }
+            hit.book = book;
+            ranked.add(hit);
+        }
+
+        // Có limit: chỉ giữ limit kết quả tốt nhất trong heap thay vì sắp xếp toàn bộ (từ khóa ngắn khớp hàng nghìn sách)
+        if (limit > 0 && ranked.size() > limit) {
+            PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+            for (Hit hit : ranked) {
+                if (best.size() < limit) {
+                    best.offer(hit);
+                } else if (RANKING.compare(hit, best.peek()) < 0) {
+                    best.poll();
+                    best.offer(hit);
+                }
+            }
+            ranked = new ArrayList<>(best);
+        }
+        ranked.sort(RANKING);
+        return ranked.stream().map(h -> h.bookId).collect(Collectors.toList());
+    }
+
+    @Override
+    public void indexBook(Integer bookId) {
+        if (bookId != null) {
+            afterCommit(() -> {
+                if (index == null) {
+                    return;
+                }
+                // Transaction mới: không lấy lại entity cũ (chưa có tác giả) từ persistence context vừa commit
+                TransactionTemplate template = new TransactionTemplate(transactionManager);
+                template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                template.setReadOnly(true);
+                IndexedBook book = template.execute(status -> bookRepository.findByIdForSearchIndex(bookId)
+                        .map(this::toIndexedBook)
+                        .orElse(null));
+                // Đọc index trong khối synchronized: rebuild (synchronized) đang chạy thì chờ nó
+                // đổi sang index mới rồi mới áp dụng, không cập nhật vào index sắp bị bỏ
+                synchronized (this) {
+                    Index current = index;
+                    if (current == null) {
+                        return;
+                    }
+                    if (book == null) {
+                        current.remove(bookId);
+                    } else {
+                        current.put(book);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void removeBook(Integer bookId) {
+        if (bookId != null) {
+            afterCommit(() -> {
+                synchronized (this) {
+                    Index current = index;
+                    if (current != null) {
+                        current.remove(bookId);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public synchronized int rebuild() {
+        long start = System.currentTimeMillis();
+        Index fresh = new Index();
+        for (Book book : bookRepository.findAllForSearchIndex()) {
+            fresh.put(toIndexedBook(book));
+        }
+        index = fresh;
+        log.info("🔎 BOOK SEARCH INDEX: Indexed {} books ({} tokens) in {} ms",
+                fresh.books.size(), fresh.tokens.size(), System.currentTimeMillis() - start);
+        return fresh.books.size();
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    /**
+     * Bỏ dấu tiếng Việt, viết thường, thay ký tự đặc biệt bằng khoảng trắng
+     */
+    static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text.replace('đ', 'd').replace('Đ', 'D'), Normalizer.Form.NFD);
+        normalized = COMBINING_MARKS.matcher(normalized).replaceAll("").toLowerCase(Locale.ROOT);
+        return NON_ALPHANUMERIC.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    static List<String> tokenize(String text) {
+        String folded = fold(text);
+        if (folded.isEmpty()) {
+            return List.of();
+        }
+        return List.of(folded.split(" "));
+    }
+
+    private IndexedBook toIndexedBook(Book book) {
+        Map<String, Integer> tokenWeights = new HashMap<>();
+        addField(tokenWeights, book.getBookName(), NAME_WEIGHT);
+        addCodeField(tokenWeights, book.getBookCode());
+        addCodeField(tokenWeights, book.getIsbn());
+        if (book.getAuthorBooks() != null) {
+            for (AuthorBook authorBook : book.getAuthorBooks()) {
+                if (authorBook.getAuthor() != null) {
+                    addField(tokenWeights, authorBook.getAuthor().getAuthorName(), AUTHOR_WEIGHT);
+                }
+            }
+        }
+        if (book.getPublisher() != null) {
+            addField(tokenWeights, book.getPublisher().getPublisherName(), PUBLISHER_WEIGHT);
+        }
+        return new IndexedBook(book.getId(),
+                book.getStatus() != null ? book.getStatus() : 0,
+                book.getCategory() != null ? book.getCategory().getId() : null,
+                book.getBookName() != null ? book.getBookName().length() : 0,
+                tokenWeights);
+    }
+
+    private static void addField(Map<String, Integer> tokenWeights, String text, int weight) {
+        for (String token : tokenize(text)) {
+            tokenWeights.merge(token, weight, Math::max);
+        }
+    }
+
+    /**
+     * Mã sách / ISBN: thêm cả dạng viết liền (BK-001 → "bk001") để gõ không dấu gạch vẫn khớp
+     */
+    private static void addCodeField(Map<String, Integer> tokenWeights, String code) {
+        addField(tokenWeights, code, CODE_WEIGHT);
+        String compact = fold(code).replace(" ", "");
+        if (!compact.isEmpty()) {
+            tokenWeights.merge(compact, CODE_WEIGHT, Math::max);
+        }
+    }
+
+    private static Set<String> grams(String token) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= token.length(); i++) {
+            grams.add(token.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Index {
+        final Map<Integer, IndexedBook> books = new ConcurrentHashMap<>();
+        // token -> (bookId -> trọng số trường): chấm điểm không cần tra lại từng sách
+        final NavigableMap<String, Map<Integer, Integer>> tokens = new ConcurrentSkipListMap<>();
+        // trigram -> các token chứa trigram đó (số token nhỏ hơn nhiều so với số sách)
+        final Map<String, Set<String>> grams = new ConcurrentHashMap<>();
+
+        void put(IndexedBook book) {
+            remove(book.id);
+            books.put(book.id, book);
+            for (Map.Entry<String, Integer> entry : book.tokenWeights.entrySet()) {
+                String token = entry.getKey();
+                tokens.computeIfAbsent(token, k -> new ConcurrentHashMap<>()).put(book.id, entry.getValue());
+                for (String gram : grams(token)) {
+                    grams.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(token);
+                }
+            }
+        }
+
+        void remove(Integer bookId) {
+            IndexedBook old = books.remove(bookId);
+            if (old == null) {
+                return;
+            }
+            for (String token : old.tokenWeights.keySet()) {
+                Map<Integer, Integer> postings = tokens.get(token);
+                if (postings == null) {
+                    continue;
+                }
+                postings.remove(bookId);
+                if (postings.isEmpty()) {
+                    tokens.remove(token, postings);
+                    for (String gram : grams(token)) {
+                        Set<String> gramTokens = grams.get(gram);
+                        if (gramTokens != null) {
+                            gramTokens.remove(token);
+                            if (gramTokens.isEmpty()) {
+                                grams.remove(gram, gramTokens);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Cộng điểm tốt nhất của từng sách cho từ khóa thứ termIndex vào hits
+         */
+        void match(String term, int termIndex, Map<Integer, Hit> hits) {
+            // Trùng từ hoặc prefix (gõ dở)
+            for (Map.Entry<String, Map<Integer, Integer>> entry
+                    : tokens.subMap(term, true, term + Character.MAX_VALUE, true).entrySet()) {
+                score(hits, entry.getValue(), termIndex, entry.getKey().equals(term) ? EXACT_MATCH : PREFIX_MATCH);
+            }
+            // Nằm giữa từ, từ khóa 1-2 ký tự: không có trigram nên quét danh sách token
+            // (giống LIKE '%x%' cũ; số token nhỏ hơn nhiều so với số sách x số trường)
+            if (term.length() < GRAM_SIZE) {
+                for (Map.Entry<String, Map<Integer, Integer>> entry : tokens.entrySet()) {
+                    String token = entry.getKey();
+                    if (!token.startsWith(term) && token.contains(term)) {
+                        score(hits, entry.getValue(), termIndex, INFIX_MATCH);
+                    }
+                }
+                return;
+            }
+            // Nằm giữa từ: lọc token ứng viên bằng trigram (bắt đầu từ trigram hiếm nhất) rồi kiểm tra lại
+            List<Set<String>> gramPostings = new ArrayList<>();
+            for (String gram : grams(term)) {
+                Set<String> gramTokens = grams.get(gram);
+                if (gramTokens == null) {
+                    return;
+                }
+                gramPostings.add(gramTokens);
+            }
+            gramPostings.sort(Comparator.comparingInt(Set::size));
+            Set<String> candidates = new HashSet<>(gramPostings.get(0));
+            for (int i = 1; i < gramPostings.size() && !candidates.isEmpty(); i++) {
+                candidates.retainAll(gramPostings.get(i));
+            }
+            for (String token : candidates) {
+                Map<Integer, Integer> postings = tokens.get(token);
+                if (postings != null && !token.startsWith(term) && token.contains(term)) {
+                    score(hits, postings, termIndex, INFIX_MATCH);
+                }
+            }
+        }
+
+        private static void score(Map<Integer, Hit> hits, Map<Integer, Integer> postings, int termIndex, double kind) {
+            for (Map.Entry<Integer, Integer> posting : postings.entrySet()) {
+                hits.computeIfAbsent(posting.getKey(), Hit::new).add(termIndex, posting.getValue() * kind);
+            }
+        }
+    }
+
+    private static final class IndexedBook {
+        final Integer id;
+        final byte status;
+        final Integer categoryId;
+        final int nameLength;
+        // token -> trọng số trường cao nhất chứa token
+        final Map<String, Integer> tokenWeights;
+
+        IndexedBook(Integer id, byte status, Integer categoryId, int nameLength, Map<String, Integer> tokenWeights) {
+            this.id = id;
+            this.status = status;
+            this.categoryId = categoryId;
+            this.nameLength = nameLength;
+            this.tokenWeights = tokenWeights;
+        }
+    }
+
+    private static final class Hit {
+        final Integer bookId;
+        IndexedBook book;
+        int matchedTerms;
+        double score;
+        // Từ khóa đang chấm và điểm tốt nhất của nó (1 sách có thể khớp 1 từ khóa qua nhiều token)
+        int term = -1;
+        double termScore;
+
+        Hit(Integer bookId) {
+            this.bookId = bookId;
+        }
+
+        void add(int termIndex, double value) {
+            if (term != termIndex) {
+                term = termIndex;
+                termScore = value;
+                matchedTerms++;
+                score += value;
+            } else if (value > termScore) {
+                score += value - termScore;
+                termScore = value;
+            }
+        }
+    }
+}
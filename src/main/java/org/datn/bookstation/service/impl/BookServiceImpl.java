@@ -16,8 +16,10 @@ import org.datn.bookstation.entity.AuthorBook;
 import org.datn.bookstation.entity.AuthorBookId;
 import org.datn.bookstation.entity.FlashSaleItem;
 import org.datn.bookstation.entity.RefundRequest;
+import org.datn.bookstation.entity.DailySalesRollup;
 import org.datn.bookstation.mapper.*;
 import org.datn.bookstation.repository.BookRepository;
+import org.datn.bookstation.repository.BookTrendingScoreRepository;
 import org.datn.bookstation.repository.CategoryRepository;
 import org.datn.bookstation.repository.SupplierRepository;
 import org.datn.bookstation.repository.PublisherRepository;
@@ -27,7 +29,6 @@ import org.datn.bookstation.repository.FlashSaleItemRepository;
 import org.datn.bookstation.repository.OrderDetailRepository;
 import org.datn.bookstation.service.*;
 import org.datn.bookstation.specification.BookSpecification;
-// import org.springframework.cache.annotation.Cacheable; // DISABLED - Cache đã được tắt
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -70,10 +71,16 @@ public class BookServiceImpl implements BookService {
     private final FlashSaleItemRepository flashSaleItemRepository;
     private final OrderDetailRepository orderDetailRepository;
     private final BookProcessingQuantityService bookProcessingQuantityService;
+    private final DailySalesRollupService dailySalesRollupService;
+    private final BookSearchIndexService bookSearchIndexService;
+    private final BookDropdownService bookDropdownService;
+    private final CategoryTreeService categoryTreeService;
     private final FlashSaleService flashSaleService;
     private final org.datn.bookstation.repository.ReviewRepository reviewRepository;
     private final BookSentimentMapper bookSentimentMapper;
     private final org.datn.bookstation.service.OrderStatisticsService orderStatisticsService;
+    private final BookTrendingScoreRepository bookTrendingScoreRepository;
+    private final TrendingScoreService trendingScoreService;
 
     @Override
     public PaginationResponse<BookResponse> getAllWithPagination(int page, int size, String bookName,
@@ -85,9 +92,7 @@ public class BookServiceImpl implements BookService {
                 minPrice, maxPrice, status, bookCode);
         Page<Book> bookPage = bookRepository.findAll(specification, pageable);
 
-        List<BookResponse> bookResponses = bookPage.getContent().stream()
-                .map(bookResponseMapper::toResponse)
-                .collect(Collectors.toList());
+        List<BookResponse> bookResponses = bookResponseMapper.toResponseList(bookPage.getContent());
 
         return PaginationResponse.<BookResponse>builder()
                 .content(bookResponses)
@@ -103,7 +108,10 @@ public class BookServiceImpl implements BookService {
             Integer parentId,
             Integer categoryId, List<Integer> authorId, Integer publisherId, BigDecimal minPrice, BigDecimal maxPrice) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Specification<Book> specification = BookSpecification.filterBy(bookName, parentId, categoryId, authorId,
+        // Danh mục cha: lấy sách thuộc mọi danh mục con cháu (tra từ cây danh mục trong bộ nhớ)
+        Set<Integer> parentDescendantIds = parentId != null ? categoryTreeService.getDescendantIds(parentId) : null;
+        Specification<Book> specification = BookSpecification.filterBy(bookName, parentDescendantIds, categoryId,
+                authorId,
                 publisherId,
                 minPrice, maxPrice);
         Page<Book> bookPage = bookRepository.findAll(specification, pageable);
@@ -230,6 +238,11 @@ public class BookServiceImpl implements BookService {
                 authorBookRepository.save(authorBook);
             }
 
+            // Tạo dòng điểm trending cho sách mới (cờ "sách mới")
+            trendingScoreService.refreshBooks(List.of(savedBook.getId()));
+            bookSearchIndexService.indexBook(savedBook.getId());
+            bookDropdownService.invalidate();
+
             return new ApiResponse<>(201, "Tạo sách thành công", savedBook);
         } catch (Exception e) {
             return new ApiResponse<>(500, "Lỗi khi tạo sách: " + e.getMessage(), null);
@@ -243,90 +256,14 @@ public class BookServiceImpl implements BookService {
 
     @Override
     public List<org.datn.bookstation.dto.response.DropdownOptionResponse> getDropdownOptionsWithDetails(String search) {
-        List<Book> books;
-        if (search != null && !search.trim().isEmpty()) {
-            // Tìm kiếm theo tên sách hoặc mã sách
-            books = bookRepository.findActiveBooksByNameOrCode(search.trim());
-        } else {
-            books = getActiveBooks();
-        }
-
-        List<org.datn.bookstation.dto.response.DropdownOptionResponse> result = new ArrayList<>();
-
-        for (Book book : books) {
-            // Lấy thông tin flash sale nếu có
-            FlashSaleItem flashSaleItem = flashSaleItemRepository.findActiveFlashSaleByBook(book.getId());
-
-            // Giá gốc
-            BigDecimal originalPrice = book.getPrice();
-            // Giá thường (đã trừ discount nếu có)
-            BigDecimal normalPrice = originalPrice;
-            if (book.getDiscountActive() != null && book.getDiscountActive()) {
-                if (book.getDiscountValue() != null) {
-                    normalPrice = originalPrice.subtract(book.getDiscountValue());
-                } else if (book.getDiscountPercent() != null) {
-                    BigDecimal discountAmount = originalPrice.multiply(BigDecimal.valueOf(book.getDiscountPercent()))
-                            .divide(BigDecimal.valueOf(100));
-                    normalPrice = originalPrice.subtract(discountAmount);
-                }
-            }
-
-            // Giá flash sale nếu có
-            BigDecimal flashSalePrice = flashSaleItem != null ? flashSaleItem.getDiscountPrice() : null;
-            boolean isFlashSale = flashSaleItem != null;
-
-            // Số lượng đã bán của sách
-            int soldQuantity = book.getSoldCount() != null ? book.getSoldCount() : 0;
-            // Số lượng tồn kho
-            int stockQuantity = book.getStockQuantity() != null ? book.getStockQuantity() : 0;
-            // SỬ DỤNG SERVICE MỚI: Tính processing quantity real-time
-            int processingQuantity = bookProcessingQuantityService.getProcessingQuantity(book.getId());
-
-            // Flash sale related data
-            int flashSaleSold = flashSaleItem != null && flashSaleItem.getSoldCount() != null
-                    ? flashSaleItem.getSoldCount()
-                    : 0;
-            // SỬ DỤNG SERVICE MỚI: Tính flash sale processing quantity real-time
-            int flashSaleProcessing = flashSaleItem != null
-                    ? bookProcessingQuantityService.getFlashSaleProcessingQuantity(flashSaleItem.getId())
-                    : 0;
-            int flashSaleStock = flashSaleItem != null && flashSaleItem.getStockQuantity() != null
-                    ? flashSaleItem.getStockQuantity()
-                    : 0;
-
-            // ✅ THÊM MỚI: Lấy ảnh sản phẩm
-            String imageUrl = book.getCoverImageUrl();
-            // Fallback nếu không có cover image, lấy ảnh đầu tiên từ images
-            if (imageUrl == null || imageUrl.trim().isEmpty()) {
-                if (book.getImages() != null && !book.getImages().trim().isEmpty()) {
-                    String[] images = book.getImages().split(",");
-                    if (images.length > 0) {
-                        imageUrl = images[0].trim();
-                    }
-                }
-            }
+        // Dựng option theo lô + snapshot dùng chung (BookDropdownService)
+        return bookDropdownService.getOptions(search);
+    }
 
-            org.datn.bookstation.dto.response.DropdownOptionResponse option = new org.datn.bookstation.dto.response.DropdownOptionResponse();
-            option.setId(book.getId());
-            option.setName(book.getBookName());
-            option.setNormalPrice(normalPrice);
-            option.setFlashSalePrice(flashSalePrice);
-            option.setIsFlashSale(isFlashSale);
-            // Bổ sung các trường mới
-            option.setBookCode(book.getBookCode());
-            option.setStockQuantity(stockQuantity);
-            option.setSoldQuantity(soldQuantity);
-            option.setProcessingQuantity(processingQuantity);
-            option.setFlashSaleSoldQuantity(flashSaleSold);
-            option.setFlashSaleProcessingQuantity(flashSaleProcessing);
-            option.setFlashSaleStockQuantity(flashSaleStock);
-            option.setOriginalPrice(originalPrice);
-            // ✅ THÊM MỚI: Set ảnh sản phẩm
-            option.setImageUrl(imageUrl);
-
-            result.add(option);
-        }
-        return result;
+    @Override
+    public List<org.datn.bookstation.dto.response.DropdownOptionResponse> getDropdownOptionsWithDetails(String search,
+            int page, int size) {
+        return bookDropdownService.getOptions(search, page, size);
     }
 
     @Override
@@ -483,6 +420,8 @@ public class BookServiceImpl implements BookService {
 
             // INVALIDATE TRENDING CACHE ON UPDATE
             trendingCacheService.invalidateAllTrendingCache();
+            bookSearchIndexService.indexBook(saved.getId());
+            bookDropdownService.invalidate();
 
             return new ApiResponse<>(200, "Cập nhật sách thành công", saved);
 
@@ -493,7 +432,11 @@ public class BookServiceImpl implements BookService {
 
     @Override
     public void delete(Integer id) {
+        trendingScoreService.removeBook(id);
         bookRepository.deleteById(id);
+        trendingCacheService.invalidateAllTrendingCache();
+        bookSearchIndexService.removeBook(id);
+        bookDropdownService.invalidate();
     }
 
     @Override
@@ -513,6 +456,8 @@ public class BookServiceImpl implements BookService {
 
             // INVALIDATE TRENDING CACHE ON STATUS CHANGE
             trendingCacheService.invalidateAllTrendingCache();
+            bookSearchIndexService.indexBook(saved.getId());
+            bookDropdownService.invalidate();
 
             return new ApiResponse<>(200, "Cập nhật trạng thái thành công", saved);
 
@@ -530,11 +475,9 @@ public class BookServiceImpl implements BookService {
     /**
      * NEW MAIN METHOD: Trending books với TrendingRequest
      * Hỗ trợ 2 loại: DAILY_TRENDING và HOT_DISCOUNT
-     * Cache đã được tắt theo yêu cầu
+     * Cache theo type-page-size qua TrendingCacheService (LRU + TTL, invalidate theo sự kiện)
      */
     @Override
-    // @Cacheable(value = "trending-books", key = "#request.type + '-' +
-    // #request.page + '-' + #request.size") // DISABLED
     public PaginationResponse<TrendingBookResponse> getTrendingBooks(TrendingRequest request) {
         try {
             // Validate request
@@ -543,24 +486,7 @@ public class BookServiceImpl implements BookService {
                         "Loại xu hướng không hợp lệ. Phải là DAILY_TRENDING hoặc HOT_DISCOUNT");
             }
 
-            PaginationResponse<TrendingBookResponse> result;
-            if (request.isHotDiscount()) {
-                result = getHotDiscountBooks(request);
-            } else {
-                result = getDailyTrendingBooks(request);
-            }
-
-            // ULTIMATE FINAL FIX: Force fix soldCount for Book ID 1 regardless of source
-            for (TrendingBookResponse book : result.getContent()) {
-                if (book.getId() == 1) {
-                    Integer realSoldCount = orderDetailRepository.countSoldQuantityByBook(1);
-                    System.out.println(" ULTIMATE FINAL - Book ID 1 soldCount: " + realSoldCount);
-                    book.setSoldCount(realSoldCount != null ? realSoldCount : 0);
-                    book.setOrderCount(book.getSoldCount());
-                }
-            }
-
-            return result;
+            return trendingCacheService.getOrLoad(request, () -> loadTrendingBooks(request));
 
         } catch (Exception e) {
             System.err.println("Lỗi khi lấy sách xu hướng: " + e.getMessage());
@@ -569,6 +495,30 @@ public class BookServiceImpl implements BookService {
         }
     }
 
+    /**
+     * Load trending thật từ DB (được gọi khi cache miss)
+     */
+    private PaginationResponse<TrendingBookResponse> loadTrendingBooks(TrendingRequest request) {
+        PaginationResponse<TrendingBookResponse> result;
+        if (request.isHotDiscount()) {
+            result = getHotDiscountBooks(request);
+        } else {
+            result = getDailyTrendingBooks(request);
+        }
+
+        // ULTIMATE FINAL FIX: Force fix soldCount for Book ID 1 regardless of source
+        for (TrendingBookResponse book : result.getContent()) {
+            if (book.getId() == 1) {
+                Integer realSoldCount = orderDetailRepository.countSoldQuantityByBook(1);
+                log.debug("ULTIMATE FINAL - Book ID 1 soldCount: {}", realSoldCount);
+                book.setSoldCount(realSoldCount != null ? realSoldCount : 0);
+                book.setOrderCount(book.getSoldCount());
+            }
+        }
+
+        return result;
+    }
+
     /**
      * DAILY TRENDING: Xu hướng theo ngày (sales + reviews + recency)
      * KHÔNG sử dụng categoryId - lấy xu hướng tổng thể
@@ -580,8 +530,8 @@ public class BookServiceImpl implements BookService {
         long sixtyDaysAgo = currentTime - (60L * 24 * 60 * 60 * 1000);
         Pageable pageable = PageRequest.of(request.getPage(), request.getSize());
         // Không truyền filter, chỉ lấy tổng thể
-        Page<Object[]> trendingData = bookRepository.findTrendingBooksData(
-                thirtyDaysAgo, sixtyDaysAgo, currentTime, pageable);
+        // Đọc từ bảng điểm tính sẵn (book_trending_score) thay vì query 4 subquery
+        Page<Object[]> trendingData = bookTrendingScoreRepository.findTrendingBooksFromScore(currentTime, pageable);
         log.info(" DAILY TRENDING - Found {} records, need {} records", trendingData.getTotalElements(),
                 request.getSize());
         if (trendingData.getTotalElements() < request.getSize()) {
@@ -807,17 +757,27 @@ public class BookServiceImpl implements BookService {
 
     @Override
     public ApiResponse<List<BookCategoryRequest>> getBooksByCategoryId(Integer id, String text) {
-        Specification<Book> bookSpecification = BookSpecification.filterBy(id, text);
-        List<Book> books = bookRepository.findAll(bookSpecification);
+        List<Book> books;
+        if (text != null && !text.isBlank() && bookSearchIndexService.isReady()) {
+            books = findBooksInOrder(bookSearchIndexService.search(text, id != null && id != 0 ? id : null, true, 0));
+        } else {
+            Specification<Book> bookSpecification = BookSpecification.filterBy(id, text);
+            books = bookRepository.findAll(bookSpecification);
+        }
 
         return new ApiResponse<>(200, "Đã nhập được list search từ ", bookCategoryMapper.booksMapper(books));
     }
 
     @Override
     public ApiResponse<List<FlashSaleItemBookRequest>> getBookByName(String text) {
-        Specification<Book> bookSpecification = BookSpecification.filterBy(text);
-        Pageable pageable = PageRequest.of(0, 5); // Trang đầu tiên (0), 5 bản ghi
-        List<Book> books = bookRepository.findAll(bookSpecification, pageable).getContent();
+        List<Book> books;
+        if (text != null && !text.isBlank() && bookSearchIndexService.isReady()) {
+            books = findBooksInOrder(bookSearchIndexService.search(text, null, true, 5));
+        } else {
+            Specification<Book> bookSpecification = BookSpecification.filterBy(text);
+            Pageable pageable = PageRequest.of(0, 5); // Trang đầu tiên (0), 5 bản ghi
+            books = bookRepository.findAll(bookSpecification, pageable).getContent();
+        }
 
         List<FlashSaleItemBookRequest> bookResponses = books.stream()
                 .map(book -> BookFlashSaleMapper.mapToFlashSaleItemBookRequest(book, flashSaleItemRepository,
@@ -1281,14 +1241,21 @@ public ApiResponse<List<TopBookSoldResponse>> getTopBookSold(int limit) {
     }
 
     /**
-     * SEARCH BOOKS FOR DROPDOWN - STUB IMPLEMENTATION
+     * SEARCH BOOKS FOR DROPDOWN - tìm qua chỉ mục trong bộ nhớ, xếp theo độ liên quan
      */
     @Override
     public ApiResponse<List<BookSearchResponse>> searchBooksForDropdown(String query, Integer limit) {
         try {
-            List<Book> books = bookRepository.findAll(PageRequest.of(0, limit != null ? limit : 10)).getContent();
+            int size = limit != null ? limit : 10;
+            List<Book> books;
+            if (query != null && !query.isBlank() && bookSearchIndexService.isReady()) {
+                books = findBooksInOrder(bookSearchIndexService.search(query, null, false, size));
+            } else {
+                books = bookRepository.findAll(PageRequest.of(0, size)).getContent().stream()
+                        .filter(book -> query == null || book.getBookName().toLowerCase().contains(query.toLowerCase()))
+                        .collect(Collectors.toList());
+            }
             List<BookSearchResponse> searchResults = books.stream()
-                    .filter(book -> query == null || book.getBookName().toLowerCase().contains(query.toLowerCase()))
                     .map(book -> BookSearchResponse.builder()
                             .bookId(book.getId())
                             .bookName(book.getBookName())
@@ -1303,6 +1270,21 @@ public ApiResponse<List<TopBookSoldResponse>> getTopBookSold(int limit) {
         }
     }
 
+    /**
+     * Nạp sách theo danh sách id, giữ nguyên thứ tự (thứ tự xếp hạng của chỉ mục tìm kiếm)
+     */
+    private List<Book> findBooksInOrder(List<Integer> bookIds) {
+        if (bookIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Book> booksById = bookRepository.findAllById(bookIds).stream()
+                .collect(Collectors.toMap(Book::getId, book -> book));
+        return bookIds.stream()
+                .map(booksById::get)
+                .filter(java.util.Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     /**
      * COMPARE BOOKS - STUB IMPLEMENTATION
      */
@@ -1351,35 +1333,20 @@ public ApiResponse<List<TopBookSoldResponse>> getTopBookSold(int limit) {
             log.info(" Final period: {}, timeRange: {} to {}", finalPeriodType,
                     new java.util.Date(startTime), new java.util.Date(endTime));
 
-            // 3. Query dữ liệu từ database
-            List<Object[]> rawData = orderDetailRepository.findBookSalesSummaryByDateRange(startTime, endTime);
+            // 3. Đọc bảng tổng hợp theo ngày (daily_sales_rollup) thay vì query chi tiết + tính
+            // net revenue riêng cho từng ngày
+            List<DailySalesRollup> rollups = dailySalesRollupService.getRollups(startTime, endTime);
 
-            // 4. Convert raw data thành Map với cả netBooksSold và netRevenue
-            // 🔧 UNIFIED FIX: Recalculate netRevenue using calculateNetRevenueForPeriod for
-            // consistency
+            // 4. Convert thành Map với cả netBooksSold và netRevenue (chỉ ngày có đơn đã bán như trước)
             Map<String, Map<String, Object>> dataMap = new HashMap<>();
-            for (Object[] row : rawData) {
-                String date = row[0].toString(); // Date string từ DB
-                Integer netBooksSold = ((Number) row[1]).intValue(); // net revenue (after voucher discount)
-
-                // OLD: BigDecimal netRevenue = row[2] != null ? new
-                // BigDecimal(row[2].toString()) : BigDecimal.ZERO; // net revenue (after
-                // voucher discount)
-
-                // 🔧 NEW: Use unified calculation - convert date string to day start/end
-                // timestamps
-                java.time.LocalDate localDate = java.time.LocalDate.parse(date);
-                long dayStart = localDate.atStartOfDay().atZone(java.time.ZoneId.of("Asia/Ho_Chi_Minh")).toInstant()
-                        .toEpochMilli();
-                long dayEnd = dayStart + 24 * 60 * 60 * 1000 - 1;
-
-                BigDecimal netRevenue = orderStatisticsService.calculateNetRevenueForPeriod(dayStart, dayEnd);
-                log.info("🔧 UNIFIED FIX: Date {} -> netRevenue recalculated = {}", date, netRevenue);
-
+            for (DailySalesRollup rollup : rollups) {
+                if (rollup.getSoldOrderCount() == null || rollup.getSoldOrderCount() == 0) {
+                    continue;
+                }
                 Map<String, Object> dayData = new HashMap<>();
-                dayData.put("totalBooksSold", netBooksSold);
-                dayData.put("netRevenue", netRevenue);
-                dataMap.put(date, dayData);
+                dayData.put("totalBooksSold", rollup.getBooksSold());
+                dayData.put("netRevenue", rollup.getNetRevenue());
+                dataMap.put(rollup.getSaleDate().toString(), dayData);
             }
 
             // 5. Generate full date range với 0 cho ngày không có data
@@ -5,13 +5,11 @@ import org.datn.bookstation.dto.response.ApiResponse;
 import org.datn.bookstation.dto.response.PaginationResponse;
 import org.datn.bookstation.dto.response.ParentCategoryResponse;
 import org.datn.bookstation.entity.Category;
-import org.datn.bookstation.mapper.CategoryMap;
 import org.datn.bookstation.repository.BookRepository;
 import org.datn.bookstation.repository.CategoryRepository;
 import org.datn.bookstation.service.CategoryService;
-import org.datn.bookstation.specification.CategorySpecification;
+import org.datn.bookstation.service.CategoryTreeService;
 
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -22,7 +20,7 @@ import java.util.List;
 @AllArgsConstructor
 public class CategoryServiceImpl implements CategoryService {
     private CategoryRepository categoryRepository;
-    private CategoryMap categoryMap;
+    private CategoryTreeService categoryTreeService;
 
     @Autowired
     private BookRepository bookRepository;
@@ -81,6 +79,7 @@ public class CategoryServiceImpl implements CategoryService {
             }
 
             Category savedCategory = categoryRepository.save(category);
+            categoryTreeService.refresh();
             return new ApiResponse<>(201, "Thêm danh mục thành công", savedCategory);
 
         } catch (Exception e) {
@@ -150,6 +149,7 @@ public class CategoryServiceImpl implements CategoryService {
 
             categoryById.setId(id);
             Category updatedCategory = categoryRepository.save(categoryById);
+            categoryTreeService.refresh();
             return new ApiResponse<>(200, "Cập nhật danh mục thành công", updatedCategory);
         } catch (Exception e) {
             return new ApiResponse<>(400, "Cập nhật danh mục thất bại: " + e.getMessage(), null);
@@ -177,6 +177,7 @@ public class CategoryServiceImpl implements CategoryService {
             }
 
             categoryRepository.delete(categoryById);
+            categoryTreeService.refresh();
             return new ApiResponse<>(200, "Xóa danh mục thành công", categoryById);
         } catch (Exception e) {
             return new ApiResponse<>(500, "Xóa danh mục thất bại: " + e.getMessage(), null);
@@ -207,11 +208,8 @@ public class CategoryServiceImpl implements CategoryService {
     public ApiResponse<PaginationResponse<ParentCategoryResponse>> getAllCategoryPagination(Integer page, Integer size,
             String name, Byte status) {
         try {
-            Specification<Category> spec = CategorySpecification.filterBy(name, status);
-            List<Category> categoriesSpec = categoryRepository.findAll(spec);
-
-            // Tạo cây danh mục
-            List<ParentCategoryResponse> parentCategoryResponseList = categoryMap.mapToCategoryTreeList(categoriesSpec);
+            // Cây danh mục đã lọc, lấy từ snapshot trong bộ nhớ
+            List<ParentCategoryResponse> parentCategoryResponseList = categoryTreeService.getTree(name, status);
 
             // Phân trang thủ công
             int totalElements = parentCategoryResponseList.size();
@@ -248,8 +246,7 @@ public class CategoryServiceImpl implements CategoryService {
     @Override
     public ApiResponse<List<ParentCategoryResponse>> getAllCategoryPagination() {
         try {
-            List<Category> getAll = categoryRepository.findAll();
-            List<ParentCategoryResponse> parentCategoryResponseList = categoryMap.mapToCategoryTreeList(getAll);
+            List<ParentCategoryResponse> parentCategoryResponseList = categoryTreeService.getTree();
 
             return new ApiResponse<>(200, "Lấy danh sách danh mục phân trang thành công", parentCategoryResponseList);
 
@@ -275,6 +272,7 @@ public class CategoryServiceImpl implements CategoryService {
 
             category.setUpdatedBy(1);
             Category updatedCategory = categoryRepository.save(category);
+            categoryTreeService.refresh();
 
             return new ApiResponse<>(200, "Cập nhật trạng thái category thành công", updatedCategory);
         } catch (Exception e) {
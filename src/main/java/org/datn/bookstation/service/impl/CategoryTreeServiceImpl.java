@@ -0,0 +1,202 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.dto.response.ParentCategoryResponse;
+import org.datn.bookstation.entity.Category;
+import org.datn.bookstation.repository.CategoryRepository;
+import org.datn.bookstation.service.CategoryTreeService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * 🌳 CATEGORY TREE SERVICE IMPLEMENTATION
+ * - Snapshot bất biến: danh sách danh mục, con theo cha, cây dựng sẵn và tập con cháu của từng danh mục
+ * - Nạp lần đầu khi được đọc, dựng lại toàn bộ rồi thay snapshot sau mỗi lần thêm/sửa/xóa/đổi trạng thái
+ * - Lọc + phân trang chạy trên snapshot, không query database
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CategoryTreeServiceImpl implements CategoryTreeService {
+
+    private final CategoryRepository categoryRepository;
+
+    private volatile Snapshot snapshot;
+
+    @Override
+    public List<ParentCategoryResponse> getTree() {
+        return currentSnapshot().tree;
+    }
+
+    @Override
+    public List<ParentCategoryResponse> getTree(String searchText, Byte status) {
+        boolean hasSearch = searchText != null && !searchText.trim().isEmpty();
+        if (!hasSearch && status == null) {
+            return getTree();
+        }
+        String keyword = hasSearch ? searchText.toLowerCase() : null;
+        Predicate<Node> filter = node -> (keyword == null
+                || node.categoryName.toLowerCase().contains(keyword)
+                || (node.description != null && node.description.toLowerCase().contains(keyword)))
+                && (status == null || status.equals(node.status));
+        return buildTree(currentSnapshot(), filter);
+    }
+
+    @Override
+    public Set<Integer> getDescendantIds(Integer categoryId) {
+        return currentSnapshot().descendantIds.getOrDefault(categoryId, Collections.emptySet());
+    }
+
+    @Override
+    public void refresh() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload();
+                }
+            });
+        } else {
+            reload();
+        }
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                reload();
+            }
+            return snapshot;
+        }
+    }
+
+    private synchronized void reload() {
+        try {
+            snapshot = buildSnapshot(categoryRepository.findAll());
+            log.debug("🌳 CATEGORY TREE: Loaded {} categories", snapshot.nodes.size());
+        } catch (Exception e) {
+            // Giữ snapshot cũ (nếu có), lần refresh sau sẽ thử lại
+            log.error("🌳 ERROR: Failed to load category tree", e);
+            if (snapshot == null) {
+                throw e;
+            }
+        }
+    }
+
+    private Snapshot buildSnapshot(List<Category> categories) {
+        List<Node> nodes = categories.stream()
+                .map(c -> new Node(c.getId(), c.getCategoryName(), c.getDescription(), c.getStatus(),
+                        c.getParentCategory() != null ? c.getParentCategory().getId() : null))
+                .sorted(Comparator.comparing(n -> n.id))
+                .collect(Collectors.toList());
+
+        Map<Integer, List<Node>> childrenByParent = new HashMap<>();
+        for (Node node : nodes) {
+            if (node.parentId != null) {
+                childrenByParent.computeIfAbsent(node.parentId, k -> new ArrayList<>()).add(node);
+            }
+        }
+
+        Map<Integer, Set<Integer>> descendantIds = new HashMap<>();
+        for (Node node : nodes) {
+            Set<Integer> descendants = new HashSet<>();
+            collectDescendants(node.id, childrenByParent, descendants);
+            descendants.remove(node.id);
+            descendantIds.put(node.id, Collections.unmodifiableSet(descendants));
+        }
+
+        Snapshot built = new Snapshot(Collections.unmodifiableList(nodes), childrenByParent, descendantIds);
+        built.tree = buildTree(built, node -> true);
+        return built;
+    }
+
+    private void collectDescendants(Integer id, Map<Integer, List<Node>> childrenByParent, Set<Integer> result) {
+        for (Node child : childrenByParent.getOrDefault(id, Collections.emptyList())) {
+            // add() trả về false khi gặp lại (dữ liệu cha-con bị vòng) → dừng
+            if (result.add(child.id)) {
+                collectDescendants(child.id, childrenByParent, result);
+            }
+        }
+    }
+
+    /**
+     * Giống CategoryMap.mapToCategoryTreeList: gốc là danh mục không có cha
+     * hoặc có cha nằm ngoài tập đã lọc
+     */
+    private List<ParentCategoryResponse> buildTree(Snapshot source, Predicate<Node> filter) {
+        Set<Integer> included = source.nodes.stream()
+                .filter(filter)
+                .map(n -> n.id)
+                .collect(Collectors.toSet());
+        List<ParentCategoryResponse> tree = new ArrayList<>();
+        for (Node node : source.nodes) {
+            if (included.contains(node.id) && (node.parentId == null || !included.contains(node.parentId))) {
+                tree.add(toResponse(node, source.childrenByParent, included, new HashSet<>()));
+            }
+        }
+        return Collections.unmodifiableList(tree);
+    }
+
+    private ParentCategoryResponse toResponse(Node node, Map<Integer, List<Node>> childrenByParent,
+            Set<Integer> included, Set<Integer> path) {
+        path.add(node.id);
+        List<ParentCategoryResponse> children = new ArrayList<>();
+        for (Node child : childrenByParent.getOrDefault(node.id, Collections.emptyList())) {
+            if (included.contains(child.id) && !path.contains(child.id)) {
+                children.add(toResponse(child, childrenByParent, included, path));
+            }
+        }
+        path.remove(node.id);
+        return new ParentCategoryResponse(node.id, node.categoryName, node.description, node.status,
+                Collections.unmodifiableList(children));
+    }
+
+    private static final class Node {
+        final Integer id;
+        final String categoryName;
+        final String description;
+        final Byte status;
+        final Integer parentId;
+
+        Node(Integer id, String categoryName, String description, Byte status, Integer parentId) {
+            this.id = id;
+            this.categoryName = categoryName;
+            this.description = description;
+            this.status = status;
+            this.parentId = parentId;
+        }
+    }
+
+    private static final class Snapshot {
+        final List<Node> nodes;
+        final Map<Integer, List<Node>> childrenByParent;
+        final Map<Integer, Set<Integer>> descendantIds;
+        List<ParentCategoryResponse> tree;
+
+        Snapshot(List<Node> nodes, Map<Integer, List<Node>> childrenByParent,
+                Map<Integer, Set<Integer>> descendantIds) {
+            this.nodes = nodes;
+            this.childrenByParent = childrenByParent;
+            this.descendantIds = descendantIds;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.entity.DailySalesRollup;
+import org.datn.bookstation.entity.Order;
+import org.datn.bookstation.entity.enums.OrderStatus;
+import org.datn.bookstation.repository.DailySalesRollupRepository;
+import org.datn.bookstation.repository.OrderDetailRepository;
+import org.datn.bookstation.service.DailySalesRollupService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 📊 DAILY SALES ROLLUP SERVICE IMPLEMENTATION
+ * - Đơn hàng đổi trạng thái → ngày đặt của đơn được đánh dấu "cần tính lại" sau commit
+ * - Job định kỳ (và API đọc, cho các ngày nằm trong khoảng đọc) tính lại các ngày đã đánh dấu
+ * bằng 3 query group by theo ngày, không phụ thuộc số ngày
+ * - Có backfill toàn bộ khi bảng trống và rebuild hằng đêm để đồng bộ giữa các instance
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class DailySalesRollupServiceImpl implements DailySalesRollupService {
+
+    // Cùng múi giờ với các query thống kê (order_date + 7 giờ)
+    private static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    // Nhóm "doanh thu đầy đủ" giống OrderStatisticsServiceImpl.calculateTrueNetRevenue
+    private static final List<String> FULL_REVENUE_STATUSES = List.of(
+            OrderStatus.DELIVERED.name(),
+            OrderStatus.REFUND_REQUESTED.name(),
+            OrderStatus.AWAITING_GOODS_RETURN.name(),
+            OrderStatus.REFUNDING.name(),
+            OrderStatus.GOODS_RECEIVED_FROM_CUSTOMER.name(),
+            OrderStatus.GOODS_RETURNED_TO_WAREHOUSE.name());
+
+    private final DailySalesRollupRepository dailySalesRollupRepository;
+    private final OrderDetailRepository orderDetailRepository;
+
+    // Các ngày đang chờ tính lại
+    private final Set<LocalDate> dirtyDays = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void markDirty(Order order) {
+        if (order == null || order.getOrderDate() == null) {
+            return;
+        }
+        LocalDate day = toSaleDate(order.getOrderDate());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirtyDays.add(day);
+                }
+            });
+        } else {
+            dirtyDays.add(day);
+        }
+    }
+
+    @Override
+    public synchronized int flushDirtyDays() {
+        return flush(new TreeSet<>(dirtyDays));
+    }
+
+    @Override
+    public List<DailySalesRollup> getRollups(Long startTime, Long endTime) {
+        LocalDate fromDate = toSaleDate(startTime);
+        LocalDate toDate = toSaleDate(endTime);
+        TreeSet<LocalDate> pending = dirtyDays.stream()
+                .filter(day -> !day.isBefore(fromDate) && !day.isAfter(toDate))
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!pending.isEmpty()) {
+            synchronized (this) {
+                flush(pending);
+            }
+        }
+        return dailySalesRollupRepository.findByDateRange(fromDate, toDate);
+    }
+
+    @Override
+    public int rebuildRange(LocalDate fromDate, LocalDate toDate) {
+        long startTime = fromDate.atStartOfDay(VIETNAM_ZONE).toInstant().toEpochMilli();
+        long endTime = toDate.plusDays(1).atStartOfDay(VIETNAM_ZONE).toInstant().toEpochMilli() - 1;
+
+        Map<LocalDate, DailySalesRollup> computed = new HashMap<>();
+        for (Object[] row : dailySalesRollupRepository.aggregateOrdersByDay(startTime, endTime,
+                FULL_REVENUE_STATUSES)) {
+            DailySalesRollup rollup = computed.computeIfAbsent(toLocalDate(row[0]), this::emptyRollup);
+            rollup.setOrderCount(((Number) row[1]).intValue());
+            rollup.setSoldOrderCount(((Number) row[2]).intValue());
+            rollup.setCanceledOrderCount(((Number) row[3]).intValue());
+            rollup.setRefundedOrderCount(((Number) row[4]).intValue());
+            rollup.setFullRevenue(toBigDecimal(row[5]));
+            rollup.setFullDiscount(toBigDecimal(row[6]));
+            rollup.setPartialRevenue(toBigDecimal(row[7]));
+            rollup.setPartialDiscount(toBigDecimal(row[8]));
+        }
+        for (Object[] row : dailySalesRollupRepository.aggregatePartialRefundsByDay(startTime, endTime)) {
+            computed.computeIfAbsent(toLocalDate(row[0]), this::emptyRollup).setRefundedAmount(toBigDecimal(row[1]));
+        }
+        // Cùng công thức "netBooksSold" của API thống kê sách (đã trừ số lượng hoàn COMPLETED)
+        for (Object[] row : orderDetailRepository.findBookSalesSummaryByDateRange(startTime, endTime)) {
+            computed.computeIfAbsent(toLocalDate(row[0]), this::emptyRollup)
+                    .setBooksSold(((Number) row[1]).intValue());
+        }
+
+        // Upsert: cập nhật dòng đã có, thêm dòng mới, xóa ngày không còn đơn
+        List<DailySalesRollup> toSave = new ArrayList<>();
+        List<DailySalesRollup> toDelete = new ArrayList<>();
+        for (DailySalesRollup existing : dailySalesRollupRepository.findByDateRange(fromDate, toDate)) {
+            DailySalesRollup fresh = computed.remove(existing.getSaleDate());
+            if (fresh == null) {
+                toDelete.add(existing);
+            } else {
+                copyCounters(fresh, existing);
+                toSave.add(existing);
+            }
+        }
+        toSave.addAll(computed.values());
+        toSave.forEach(DailySalesRollup::recalculateNetRevenue);
+        dailySalesRollupRepository.deleteAll(toDelete);
+        dailySalesRollupRepository.saveAll(toSave);
+        return toSave.size();
+    }
+
+    @Override
+    public int rebuildAll() {
+        long start = System.currentTimeMillis();
+        Long firstOrderDate = dailySalesRollupRepository.findFirstOrderDate();
+        if (firstOrderDate == null) {
+            return 0;
+        }
+        LocalDate today = LocalDate.now(VIETNAM_ZONE);
+        int days = rebuildRange(toSaleDate(firstOrderDate), today);
+        log.info("📊 DAILY SALES ROLLUP: Rebuilt {} days in {} ms", days, System.currentTimeMillis() - start);
+        return days;
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    /**
+     * Tính lại khoảng [ngày nhỏ nhất, ngày lớn nhất] của các ngày đang chờ, lỗi thì giữ lại để lần sau
+     */
+    private int flush(TreeSet<LocalDate> days) {
+        if (days.isEmpty()) {
+            return 0;
+        }
+        dirtyDays.removeAll(days);
+        try {
+            rebuildRange(days.first(), days.last());
+            return days.size();
+        } catch (RuntimeException e) {
+            dirtyDays.addAll(days);
+            throw e;
+        }
+    }
+
+    private DailySalesRollup emptyRollup(LocalDate day) {
+        return DailySalesRollup.builder().saleDate(day).build();
+    }
+
+    private void copyCounters(DailySalesRollup from, DailySalesRollup to) {
+        to.setOrderCount(from.getOrderCount());
+        to.setSoldOrderCount(from.getSoldOrderCount());
+        to.setCanceledOrderCount(from.getCanceledOrderCount());
+        to.setRefundedOrderCount(from.getRefundedOrderCount());
+        to.setBooksSold(from.getBooksSold());
+        to.setFullRevenue(from.getFullRevenue());
+        to.setFullDiscount(from.getFullDiscount());
+        to.setPartialRevenue(from.getPartialRevenue());
+        to.setPartialDiscount(from.getPartialDiscount());
+        to.setRefundedAmount(from.getRefundedAmount());
+    }
+
+    private static LocalDate toSaleDate(Long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(VIETNAM_ZONE).toLocalDate();
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate localDate) {
+            return localDate;
+        }
+        if (value instanceof java.sql.Date sqlDate) {
+            return sqlDate.toLocalDate();
+        }
+        return LocalDate.parse(value.toString());
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+    }
+}
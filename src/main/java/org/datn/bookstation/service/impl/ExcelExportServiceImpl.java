@@ -1,5 +1,8 @@
 package org.datn.bookstation.service.impl;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
 import org.datn.bookstation.dto.response.ApiResponse;
 import org.datn.bookstation.dto.response.ExcelDataResponse;
 import org.datn.bookstation.dto.response.ExcelFieldsResponse;
@@ -7,16 +10,26 @@ import org.datn.bookstation.entity.*;
 import org.datn.bookstation.entity.enums.ReviewStatus;
 import org.datn.bookstation.repository.*;
 import org.datn.bookstation.service.ExcelExportService;
+import org.datn.bookstation.util.SpreadsheetStreamWriter;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Slf4j
 public class ExcelExportServiceImpl implements ExcelExportService {
 
     @Autowired
@@ -55,6 +68,49 @@ public class ExcelExportServiceImpl implements ExcelExportService {
     @Autowired
     private FlashSaleRepository flashSaleRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Số dòng mỗi lần fetch từ cursor; sau mỗi lô persistence context được clear để bộ nhớ không tăng
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // entityType (giống ExcelFieldsResponse.entityType) -> cách đọc + ghi
+    private final Map<String, StreamExport<?>> streamExports = Map.ofEntries(
+            streamExport("ranks", Rank.class, "SELECT r FROM Rank r ORDER BY r.id",
+                    this::getRankFieldsMap, this::mapRankToExcelData,
+                    "danh-sach-hang-thanh-vien", "Hạng Thành Viên"),
+            streamExport("books", Book.class,
+                    "SELECT b FROM Book b LEFT JOIN FETCH b.category LEFT JOIN FETCH b.publisher ORDER BY b.id",
+                    this::getBookFieldsMap, this::mapBookToExcelData, "danh-sach-sach", "Sách"),
+            streamExport("users", User.class, "SELECT u FROM User u ORDER BY u.id",
+                    this::getUserFieldsMap, this::mapUserToExcelData, "danh-sach-nguoi-dung", "Người Dùng"),
+            streamExport("orders", Order.class, "SELECT o FROM Order o LEFT JOIN FETCH o.user ORDER BY o.id",
+                    this::getOrderFieldsMap, this::mapOrderToExcelData, "danh-sach-don-hang", "Đơn Hàng"),
+            streamExport("reviews", Review.class,
+                    "SELECT r FROM Review r LEFT JOIN FETCH r.book LEFT JOIN FETCH r.user ORDER BY r.id",
+                    this::getReviewFieldsMap, this::mapReviewToExcelData, "danh-sach-danh-gia", "Đánh Giá"),
+            streamExport("categories", Category.class, "SELECT c FROM Category c ORDER BY c.id",
+                    this::getCategoryFieldsMap, this::mapCategoryToExcelData, "danh-sach-the-loai", "Thể Loại"),
+            streamExport("authors", Author.class, "SELECT a FROM Author a ORDER BY a.id",
+                    this::getAuthorFieldsMap, this::mapAuthorToExcelData, "danh-sach-tac-gia", "Tác Giả"),
+            streamExport("publishers", Publisher.class, "SELECT p FROM Publisher p ORDER BY p.id",
+                    this::getPublisherFieldsMap, this::mapPublisherToExcelData,
+                    "danh-sach-nha-xuat-ban", "Nhà Xuất Bản"),
+            streamExport("vouchers", Voucher.class, "SELECT v FROM Voucher v ORDER BY v.id",
+                    this::getVoucherFieldsMap, this::mapVoucherToExcelData, "danh-sach-voucher", "Voucher"),
+            streamExport("suppliers", Supplier.class, "SELECT s FROM Supplier s ORDER BY s.id",
+                    this::getSupplierFieldsMap, this::mapSupplierToExcelData,
+                    "danh-sach-nha-cung-cap", "Nhà Cung Cấp"),
+            streamExport("points", Point.class,
+                    "SELECT p FROM Point p LEFT JOIN FETCH p.user LEFT JOIN FETCH p.order ORDER BY p.id",
+                    this::getPointFieldsMap, this::mapPointToExcelData, "danh-sach-diem", "Điểm"),
+            streamExport("flashsales", FlashSale.class, "SELECT f FROM FlashSale f ORDER BY f.id",
+                    this::getFlashSaleFieldsMap, this::mapFlashSaleToExcelData,
+                    "danh-sach-giam-gia-nhanh", "Giảm Giá Nhanh"));
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     
@@ -436,6 +492,46 @@ public class ExcelExportServiceImpl implements ExcelExportService {
         return new ApiResponse<>(200, "Lấy mapping fields flashsales thành công", response);
     }
 
+    // ==================== STREAMING EXPORT METHODS ====================
+
+    @Override
+    public boolean isStreamExportSupported(String entityType) {
+        return entityType != null && streamExports.containsKey(entityType);
+    }
+
+    @Override
+    public String getStreamExportFileName(String entityType, String format) {
+        return streamExports.get(entityType).fileName + "." + format.toLowerCase();
+    }
+
+    @Override
+    public long streamExport(String entityType, List<String> fields, String format, OutputStream out)
+            throws IOException {
+        StreamExport<?> export = streamExports.get(entityType);
+        if (export == null) {
+            throw new IllegalArgumentException("Không hỗ trợ export: " + entityType);
+        }
+        long start = System.currentTimeMillis();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        long rows;
+        try {
+            rows = readOnly.execute(status -> {
+                try {
+                    return writeStream(export, fields, format, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long elapsedMs = Math.max(System.currentTimeMillis() - start, 1);
+        log.info("📤 EXCEL EXPORT: {} - {} rows ({}) in {} ms, {} rows/sec",
+                entityType, rows, format, elapsedMs, rows * 1000 / elapsedMs);
+        return rows;
+    }
+
     // ==================== PRIVATE HELPER METHODS ====================
 
     private Map<String, Object> mapRankToExcelData(Rank rank) {
@@ -829,4 +925,63 @@ public class ExcelExportServiceImpl implements ExcelExportService {
             default: return status.name();
         }
     }
+
+    // Streaming export helpers
+    private static <T> Map.Entry<String, StreamExport<?>> streamExport(String entityType, Class<T> type, String jpql,
+            java.util.function.Supplier<Map<String, String>> fields, Function<T, Map<String, Object>> mapper,
+            String fileName, String sheetName) {
+        return Map.entry(entityType, new StreamExport<>(type, jpql, fields, mapper, fileName, sheetName));
+    }
+
+    private <T> long writeStream(StreamExport<T> export, List<String> fields, String format, OutputStream out)
+            throws IOException {
+        // Cột được chọn theo key trong *FieldsMap (giữ thứ tự yêu cầu), không chọn → toàn bộ cột
+        Map<String, String> labelByKey = new LinkedHashMap<>();
+        export.fields.get().forEach((label, key) -> labelByKey.put(key, label));
+        List<String> keys = fields == null || fields.isEmpty()
+                ? new ArrayList<>(labelByKey.keySet())
+                : fields.stream().filter(labelByKey::containsKey).distinct().collect(Collectors.toList());
+
+        long rows = 0;
+        try (SpreadsheetStreamWriter writer = SpreadsheetStreamWriter.open(format, out, export.sheetName);
+                Stream<T> stream = entityManager.createQuery(export.jpql, export.type)
+                        .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                        .setHint(HibernateHints.HINT_READ_ONLY, true)
+                        .getResultStream()) {
+            writer.writeRow(keys.stream().map(labelByKey::get).collect(Collectors.toList()));
+            List<Object> values = new ArrayList<>(keys.size());
+            Iterator<T> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                Map<String, Object> data = export.mapper.apply(iterator.next());
+                values.clear();
+                for (String key : keys) {
+                    values.add(data.get(key));
+                }
+                writer.writeRow(values);
+                if (++rows % STREAM_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static final class StreamExport<T> {
+        final Class<T> type;
+        final String jpql;
+        final java.util.function.Supplier<Map<String, String>> fields;
+        final Function<T, Map<String, Object>> mapper;
+        final String fileName;
+        final String sheetName;
+
+        StreamExport(Class<T> type, String jpql, java.util.function.Supplier<Map<String, String>> fields,
+                Function<T, Map<String, Object>> mapper, String fileName, String sheetName) {
+            this.type = type;
+            this.jpql = jpql;
+            this.fields = fields;
+            this.mapper = mapper;
+            this.fileName = fileName;
+            this.sheetName = sheetName;
+        }
+    }
 }
@@ -20,7 +20,9 @@ import org.datn.bookstation.repository.FlashSaleItemRepository;
 import org.datn.bookstation.repository.FlashSaleRepository;
 import org.datn.bookstation.repository.OrderDetailRepository;
 import org.datn.bookstation.service.FlashSaleItemService;
+import org.datn.bookstation.service.FlashSaleStockCounterService;
 import org.datn.bookstation.service.CartItemService;
+import org.datn.bookstation.service.TrendingCacheService;
 import org.datn.bookstation.specification.FlashSaleItemSpecification;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
@@ -56,6 +58,12 @@ public class FlashSaleItemServiceImpl implements FlashSaleItemService {
     @Autowired
     private OrderDetailRepository orderDetailRepository;
 
+    @Autowired
+    private TrendingCacheService trendingCacheService;
+
+    @Autowired
+    private FlashSaleStockCounterService flashSaleStockCounterService;
+
     @Override
     public FlashSaleItem findActiveFlashSaleByBook(Integer bookId) {
         // Giả sử có phương thức findActiveFlashSaleByBook trong repository
@@ -134,6 +142,8 @@ public class FlashSaleItemServiceImpl implements FlashSaleItemService {
         item.setFlashSale(flashSale);
         item.setBook(book);
         FlashSaleItem savedItem = flashSaleItemRepository.save(item);
+        trendingCacheService.invalidateCacheOnFlashSaleChange(book.getId(),
+                savedItem.getStatus() != null && savedItem.getStatus() == 1);
 
         // AUTO-SYNC: Tự động đồng bộ cart items khi tạo flash sale item mới
         try {
@@ -171,6 +181,8 @@ public class FlashSaleItemServiceImpl implements FlashSaleItemService {
 
         // Lấy thông tin book hiện tại hoặc book mới (nếu thay đổi)
         Book targetBook = existing.getBook(); // Book hiện tại
+        Integer previousBookId = existing.getBook().getId();
+        Integer previousFlashSaleId = existing.getFlashSale().getId();
         if (request.getBookId() != null) {
             Book newBook = bookRepository.findById(request.getBookId()).orElse(null);
             if (newBook == null) {
@@ -199,6 +211,10 @@ public class FlashSaleItemServiceImpl implements FlashSaleItemService {
         if (exists) {
             return new ApiResponse<>(400, "Sách này đã có trong flash sale này!", null);
         }
+        // Admin sửa tồn kho/giới hạn → đóng bộ đếm in-memory, lần sync sau sẽ nạp lại từ DB
+        flashSaleStockCounterService.unloadFlashSale(previousFlashSaleId);
+        flashSaleStockCounterService.unloadFlashSale(flashSaleId);
+        reloadStockQuantity(existing);
         if (request.getFlashSaleId() != null) {
             FlashSale flashSale = flashSaleRepository.findById(request.getFlashSaleId()).orElse(null);
             if (flashSale == null) {
@@ -230,6 +246,11 @@ public class FlashSaleItemServiceImpl implements FlashSaleItemService {
         }
         existing.setUpdatedAt(System.currentTimeMillis());
         FlashSaleItem updatedItem = flashSaleItemRepository.save(existing);
+        boolean itemActive = updatedItem.getStatus() != null && updatedItem.getStatus() == 1;
+        trendingCacheService.invalidateCacheOnFlashSaleChange(updatedItem.getBook().getId(), itemActive);
+        if (!previousBookId.equals(updatedItem.getBook().getId())) {
+            trendingCacheService.invalidateCacheOnFlashSaleChange(previousBookId, false);
+        }
 
         // AUTO-SYNC: Đồng bộ cart nếu admin thay đổi bookId hoặc flashSaleId
         if (request.getBookId() != null || request.getFlashSaleId() != null) {
@@ -254,9 +275,12 @@ public class FlashSaleItemServiceImpl implements FlashSaleItemService {
         if (item == null) {
             return new ApiResponse<>(404, "Flash sale item không tồn tại", null);
         }
+        flashSaleStockCounterService.unloadFlashSale(item.getFlashSale().getId());
+        reloadStockQuantity(item);
         item.setStatus(item.getStatus() != null && item.getStatus() == 1 ? (byte) 0 : (byte) 1);
         item.setUpdatedAt(System.currentTimeMillis());
         flashSaleItemRepository.save(item);
+        trendingCacheService.invalidateCacheOnFlashSaleChange(item.getBook().getId(), item.getStatus() == 1);
         return new ApiResponse<>(200, "Cập nhật trạng thái thành công", flashSaleItemMapper.toResponse(item));
     }
 
@@ -292,4 +316,15 @@ public class FlashSaleItemServiceImpl implements FlashSaleItemService {
 
         return new ApiResponse<>(200, "Thành công", stats);
     }
-}
\ No newline at end of file
+
+    /**
+     * unloadFlashSale vừa ghi dồn chênh lệch tồn kho bằng transaction riêng → đọc lại tồn kho
+     * trước khi sửa entity, để save không ghi đè bằng giá trị cũ đã nạp từ đầu request
+     */
+    private void reloadStockQuantity(FlashSaleItem item) {
+        Integer current = flashSaleItemRepository.findStockQuantityById(item.getId());
+        if (current != null) {
+            item.setStockQuantity(current);
+        }
+    }
+}
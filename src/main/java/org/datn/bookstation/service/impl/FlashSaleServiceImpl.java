@@ -3,7 +3,10 @@ package org.datn.bookstation.service.impl;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -16,6 +19,7 @@ import org.datn.bookstation.dto.response.PaginationResponse;
 import org.datn.bookstation.dto.response.FlashSaleStatsResponse;
 import org.datn.bookstation.entity.FlashSale;
 import org.datn.bookstation.entity.FlashSaleItem;
+import org.datn.bookstation.entity.enums.OrderStatus;
 import org.datn.bookstation.mapper.FlashSaleCustomMapper;
 import org.datn.bookstation.mapper.FlashSaleMapper;
 import org.datn.bookstation.repository.FlashSaleItemRepository;
@@ -23,6 +27,8 @@ import org.datn.bookstation.repository.FlashSaleRepository;
 import org.datn.bookstation.repository.OrderDetailRepository;
 import org.datn.bookstation.service.CartItemService;
 import org.datn.bookstation.service.FlashSaleService;
+import org.datn.bookstation.service.FlashSaleStockCounterService;
+import org.datn.bookstation.service.TrendingCacheService;
 import org.datn.bookstation.specification.FlashSaleSpecification;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
@@ -39,6 +45,24 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class FlashSaleServiceImpl implements FlashSaleService {
 
+    // Trạng thái đã giao (tính vào giới hạn sau khi trừ số lượng đã hoàn)
+    private static final List<OrderStatus> DELIVERED_QUOTA_STATUSES = List.of(
+            OrderStatus.DELIVERED, OrderStatus.PARTIALLY_REFUNDED);
+
+    // Trạng thái đang xử lý (chưa delivered/cancelled) vẫn tính vào giới hạn per-user
+    private static final List<OrderStatus> PENDING_QUOTA_STATUSES = List.of(
+            OrderStatus.PENDING,
+            OrderStatus.CONFIRMED,
+            OrderStatus.SHIPPED,
+            OrderStatus.DELIVERY_FAILED,
+            OrderStatus.REDELIVERING,
+            OrderStatus.RETURNING_TO_WAREHOUSE,
+            OrderStatus.REFUND_REQUESTED,
+            OrderStatus.AWAITING_GOODS_RETURN,
+            OrderStatus.GOODS_RECEIVED_FROM_CUSTOMER,
+            OrderStatus.GOODS_RETURNED_TO_WAREHOUSE,
+            OrderStatus.REFUNDING);
+
     @Autowired
     private FlashSaleRepository flashSaleRepository;
 
@@ -60,6 +84,12 @@ public class FlashSaleServiceImpl implements FlashSaleService {
     @Lazy
     private CartItemService cartItemService;
 
+    @Autowired
+    private TrendingCacheService trendingCacheService;
+
+    @Autowired
+    private FlashSaleStockCounterService flashSaleStockCounterService;
+
     @Override
     public ApiResponse<PaginationResponse<FlashSaleResponse>> getAllFlashSaleWithPagination(int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
@@ -189,6 +219,9 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             flashSale.setUpdatedAt(System.currentTimeMillis());
 
             FlashSale updatedFlashSale = flashSaleRepository.save(flashSale);
+            trendingCacheService.invalidateCacheOnFlashSaleChange(null, updatedFlashSale.getStatus() == 1);
+            // Thời gian/trạng thái đổi → đóng bộ đếm in-memory, lần sync sau tự nạp lại nếu còn hiệu lực
+            flashSaleStockCounterService.unloadFlashSale(id);
 
             // Schedule lại task mới với thời gian mới
             if (updatedFlashSale.getStatus() == 1 && updatedFlashSale.getEndTime() > System.currentTimeMillis()) {
@@ -223,6 +256,7 @@ public class FlashSaleServiceImpl implements FlashSaleService {
 
             // Cancel scheduled task trước khi toggle status
             cancelFlashSaleExpirationSchedule(id);
+            flashSaleStockCounterService.unloadFlashSale(id);
 
             flashSale.setStatus((byte) (flashSale.getStatus() == 1 ? 0 : 1));
             flashSale.setUpdatedAt(System.currentTimeMillis());
@@ -373,6 +407,8 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             }
 
             flashSaleItemRepository.saveAll(flashSaleItems);
+            flashSaleItems.forEach(item -> trendingCacheService.invalidateCacheOnFlashSaleChange(
+                    item.getBook().getId(), item.getStatus() == 1));
             return flashSaleItems.size();
 
         } catch (Exception e) {
@@ -397,6 +433,8 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             }
 
             flashSaleItemRepository.saveAll(flashSaleItems);
+            flashSaleItems.forEach(item -> trendingCacheService.invalidateCacheOnFlashSaleChange(
+                    item.getBook().getId(), item.getStatus() == 1));
             return flashSaleItems.size();
 
         } catch (Exception e) {
@@ -453,6 +491,7 @@ public class FlashSaleServiceImpl implements FlashSaleService {
                     item.setUpdatedAt(currentTime);
                     item.setUpdatedBy(1L); // System user
                     flashSaleItemRepository.save(item);
+                    trendingCacheService.invalidateCacheOnFlashSaleChange(item.getBook().getId(), newStatus == 1);
                     updatedCount++;
 
                     log.info("AUTO-UPDATE: FlashSaleItem {} status = {} ({})",
@@ -532,6 +571,8 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             if (!itemsToUpdate.isEmpty()) {
                 flashSaleItemRepository.saveAll(itemsToUpdate);
                 updatedCount = itemsToUpdate.size();
+                itemsToUpdate.forEach(item -> trendingCacheService.invalidateCacheOnFlashSaleChange(
+                        item.getBook().getId(), item.getStatus() == 1));
                 
                 // Log chi tiết từng item được update
                 for (FlashSaleItem item : itemsToUpdate) {
@@ -603,6 +644,8 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             if (!itemsToUpdate.isEmpty()) {
                 flashSaleItemRepository.saveAll(itemsToUpdate);
                 updatedCount = itemsToUpdate.size();
+                itemsToUpdate.forEach(item -> trendingCacheService.invalidateCacheOnFlashSaleChange(
+                        item.getBook().getId(), item.getStatus() == 1));
             }
 
             log.info("TIME-BASED UPDATE: FlashSale {} → {} items updated, status = {} ({})",
@@ -678,22 +721,8 @@ public class FlashSaleServiceImpl implements FlashSaleService {
             if (actualPurchased == null) actualPurchased = 0;
 
             // Tính số lượng đang pending (chờ xử lý, chưa delivered/cancelled)
-            List<org.datn.bookstation.entity.enums.OrderStatus> pendingStatuses = List.of(
-                org.datn.bookstation.entity.enums.OrderStatus.PENDING,
-                org.datn.bookstation.entity.enums.OrderStatus.CONFIRMED,
-                org.datn.bookstation.entity.enums.OrderStatus.SHIPPED,
-                org.datn.bookstation.entity.enums.OrderStatus.DELIVERY_FAILED,
-                org.datn.bookstation.entity.enums.OrderStatus.REDELIVERING,
-                org.datn.bookstation.entity.enums.OrderStatus.RETURNING_TO_WAREHOUSE,
-                org.datn.bookstation.entity.enums.OrderStatus.REFUND_REQUESTED,
-                org.datn.bookstation.entity.enums.OrderStatus.AWAITING_GOODS_RETURN,
-                org.datn.bookstation.entity.enums.OrderStatus.GOODS_RECEIVED_FROM_CUSTOMER,
-                org.datn.bookstation.entity.enums.OrderStatus.GOODS_RETURNED_TO_WAREHOUSE,
-                org.datn.bookstation.entity.enums.OrderStatus.REFUNDING
-            );
-            
             Integer pendingQuantity = orderDetailRepository.sumFlashSaleItemQuantityByUserAndStatuses(
-                    userId, flashSaleItemId.intValue(), pendingStatuses);
+                    userId, flashSaleItemId.intValue(), PENDING_QUOTA_STATUSES);
             if (pendingQuantity == null) pendingQuantity = 0;
 
             int maxAllowed = flashSaleItem.getMaxPurchasePerUser();
@@ -716,6 +745,27 @@ public class FlashSaleServiceImpl implements FlashSaleService {
         }
     }
 
+    @Override
+    public Map<Integer, Integer> getUserFlashSaleQuotaUsage(Integer userId, Collection<Integer> flashSaleItemIds) {
+        Map<Integer, Integer> usage = new HashMap<>();
+        if (userId == null || flashSaleItemIds == null || flashSaleItemIds.isEmpty()) {
+            return usage;
+        }
+        Map<Integer, Integer> refunded = new HashMap<>();
+        for (Object[] row : orderDetailRepository.sumCompletedRefundQuantityByUserAndFlashSaleItems(
+                userId, flashSaleItemIds)) {
+            refunded.put((Integer) row[0], ((Number) row[1]).intValue());
+        }
+        for (Object[] row : orderDetailRepository.sumUserFlashSaleQuantitiesByItem(
+                userId, flashSaleItemIds, DELIVERED_QUOTA_STATUSES, PENDING_QUOTA_STATUSES)) {
+            Integer itemId = (Integer) row[0];
+            // Giống canUserPurchaseMore: max(0, đã giao - đã hoàn) + đang xử lý
+            int actualPurchased = Math.max(0, ((Number) row[1]).intValue() - refunded.getOrDefault(itemId, 0));
+            usage.put(itemId, actualPurchased + ((Number) row[2]).intValue());
+        }
+        return usage;
+    }
+
     @Override
     public ApiResponse<FlashSaleStatsResponse> getFlashSaleStats() {
         long totalFlashSales = flashSaleRepository.count();
@@ -0,0 +1,316 @@
+package org.datn.bookstation.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.entity.FlashSale;
+import org.datn.bookstation.entity.FlashSaleItem;
+import org.datn.bookstation.entity.enums.OrderStatus;
+import org.datn.bookstation.repository.FlashSaleItemRepository;
+import org.datn.bookstation.repository.FlashSaleRepository;
+import org.datn.bookstation.repository.OrderDetailRepository;
+import org.datn.bookstation.service.FlashSaleStockCounterService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * ⚡ FLASH SALE STOCK COUNTER SERVICE IMPLEMENTATION
+ * - Nạp tồn kho + số lượng đã mua per-user khi flash sale bắt đầu (FlashSaleExpirationScheduler)
+ * - tryReserve: CAS trên AtomicInteger, không chạm DB; hoàn lại nếu transaction rollback
+ * - Chênh lệch đã commit được ghi dồn xuống DB mỗi giây bằng 1 UPDATE tương đối / item
+ * - Khi flash sale kết thúc: đóng bộ đếm, chờ đơn đang xử lý, flush lần cuối rồi đối soát với DB
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FlashSaleStockCounterServiceImpl implements FlashSaleStockCounterService {
+
+    // Giống canUserPurchaseMore: mọi đơn chưa hủy / chưa hoàn tiền đều tính vào giới hạn
+    private static final List<OrderStatus> USER_QUOTA_STATUSES = new ArrayList<>(
+            EnumSet.complementOf(EnumSet.of(OrderStatus.CANCELED, OrderStatus.REFUNDED)));
+
+    private final FlashSaleRepository flashSaleRepository;
+    private final FlashSaleItemRepository flashSaleItemRepository;
+    private final OrderDetailRepository orderDetailRepository;
+
+    @Value("${flashsale.in-memory-stock.enabled:false}")
+    private boolean enabled;
+
+    // flashSaleItemId -> bộ đếm
+    private final Map<Integer, ItemCounter> counters = new ConcurrentHashMap<>();
+    // flashSaleId đang được nạp
+    private final Set<Integer> loadedFlashSales = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public ReservationResult tryReserve(Integer flashSaleItemId, Integer userId, int quantity) {
+        ItemCounter counter = counters.get(flashSaleItemId);
+        if (counter == null || !counter.enter()) {
+            return ReservationResult.NOT_TRACKED;
+        }
+        if (counter.closed) {
+            // Đang đóng (hết hạn / admin sửa): không bán thêm tới khi đồng bộ xong
+            counter.exit();
+            return ReservationResult.OUT_OF_STOCK;
+        }
+
+        AtomicInteger userQuota = null;
+        if (userId != null && counter.maxPurchasePerUser != null) {
+            userQuota = counter.purchasedByUser.computeIfAbsent(userId, k -> new AtomicInteger());
+            int current;
+            do {
+                current = userQuota.get();
+                if (current + quantity > counter.maxPurchasePerUser) {
+                    counter.exit();
+                    return ReservationResult.USER_LIMIT_EXCEEDED;
+                }
+            } while (!userQuota.compareAndSet(current, current + quantity));
+        }
+
+        int current;
+        do {
+            current = counter.remaining.get();
+            if (current < quantity) {
+                if (userQuota != null) {
+                    userQuota.addAndGet(-quantity);
+                }
+                counter.exit();
+                return ReservationResult.OUT_OF_STOCK;
+            }
+        } while (!counter.remaining.compareAndSet(current, current - quantity));
+
+        AtomicInteger quota = userQuota;
+        onCompletion(committed -> {
+            if (committed) {
+                counter.pendingDelta.addAndGet(-quantity);
+            } else {
+                counter.remaining.addAndGet(quantity);
+                if (quota != null) {
+                    quota.addAndGet(-quantity);
+                }
+            }
+            counter.exit();
+        });
+        return ReservationResult.RESERVED;
+    }
+
+    @Override
+    public boolean release(Integer flashSaleItemId, Integer userId, int quantity) {
+        ItemCounter counter = counters.get(flashSaleItemId);
+        if (counter == null || !counter.enter()) {
+            return false;
+        }
+        onCompletion(committed -> {
+            if (committed) {
+                counter.pendingDelta.addAndGet(quantity);
+                counter.remaining.addAndGet(quantity);
+                if (userId != null) {
+                    AtomicInteger quota = counter.purchasedByUser.get(userId);
+                    if (quota != null) {
+                        quota.updateAndGet(v -> Math.max(0, v - quantity));
+                    }
+                }
+            }
+            counter.exit();
+        });
+        return true;
+    }
+
+    @Override
+    public Integer getAvailableStock(Integer flashSaleItemId) {
+        ItemCounter counter = counters.get(flashSaleItemId);
+        return counter != null ? counter.remaining.get() : null;
+    }
+
+    @Override
+    public void syncActiveFlashSales() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Set<Integer> activeIds = flashSaleRepository.findByStartTimeLessThanEqualAndEndTimeGreaterThanEqual(now, now)
+                .stream()
+                .filter(fs -> fs.getStatus() != null && fs.getStatus() == 1)
+                .map(FlashSale::getId)
+                .collect(Collectors.toSet());
+
+        for (Integer flashSaleId : activeIds) {
+            if (!loadedFlashSales.contains(flashSaleId)) {
+                loadFlashSale(flashSaleId);
+            }
+        }
+        for (Integer flashSaleId : new ArrayList<>(loadedFlashSales)) {
+            if (!activeIds.contains(flashSaleId)) {
+                unloadFlashSale(flashSaleId);
+            }
+        }
+    }
+
+    @Override
+    public void unloadFlashSale(Integer flashSaleId) {
+        loadedFlashSales.remove(flashSaleId);
+        int closed = 0;
+        for (ItemCounter counter : counters.values()) {
+            if (counter.flashSaleId.equals(flashSaleId) && !counter.closed) {
+                counter.closed = true;
+                closed++;
+            }
+        }
+        if (closed == 0) {
+            return;
+        }
+        log.info("⚡ FLASH SALE COUNTER: Closing {} counters of flash sale {}", closed, flashSaleId);
+        flushPendingDeltas();
+    }
+
+    @Override
+    public void flushPendingDeltas() {
+        for (ItemCounter counter : counters.values()) {
+            flush(counter);
+            // Bộ đếm đã đóng và không còn đơn đang xử lý → flush lần cuối, đối soát, gỡ bỏ
+            if (counter.closed && counter.retire()) {
+                flush(counter);
+                counters.remove(counter.flashSaleItemId);
+                reconcile(counter);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushPendingDeltas();
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private void loadFlashSale(Integer flashSaleId) {
+        List<FlashSaleItem> items = flashSaleItemRepository.findByFlashSaleId(flashSaleId).stream()
+                .filter(item -> item.getStatus() != null && item.getStatus() == 1)
+                .collect(Collectors.toList());
+        if (items.isEmpty()) {
+            return;
+        }
+        Map<Integer, ItemCounter> loaded = new HashMap<>();
+        for (FlashSaleItem item : items) {
+            loaded.put(item.getId(), new ItemCounter(flashSaleId, item.getId(),
+                    item.getMaxPurchasePerUser(), item.getStockQuantity() != null ? item.getStockQuantity() : 0));
+        }
+        for (Object[] row : orderDetailRepository.sumFlashSaleQuantityByItemAndUser(loaded.keySet(),
+                USER_QUOTA_STATUSES)) {
+            ItemCounter counter = loaded.get((Integer) row[0]);
+            if (counter != null) {
+                counter.purchasedByUser.put((Integer) row[1], new AtomicInteger(((Number) row[2]).intValue()));
+            }
+        }
+        // Không thay bộ đếm đang đóng (còn chênh lệch chưa flush) của cùng item,
+        // flash sale sẽ được nạp lại ở lần sync sau khi bộ đếm cũ đã gỡ bỏ
+        boolean complete = true;
+        for (ItemCounter counter : loaded.values()) {
+            ItemCounter existing = counters.putIfAbsent(counter.flashSaleItemId, counter);
+            if (existing != null && existing.closed) {
+                complete = false;
+            }
+        }
+        if (!complete) {
+            return;
+        }
+        loadedFlashSales.add(flashSaleId);
+        log.info("⚡ FLASH SALE COUNTER: Loaded {} items of flash sale {} into memory", loaded.size(), flashSaleId);
+    }
+
+    private void flush(ItemCounter counter) {
+        int delta = counter.pendingDelta.getAndSet(0);
+        if (delta == 0) {
+            return;
+        }
+        try {
+            flashSaleItemRepository.applyStockDelta(counter.flashSaleItemId, delta);
+        } catch (Exception e) {
+            // Giữ lại để flush lần sau
+            counter.pendingDelta.addAndGet(delta);
+            log.error("⚡ ERROR: Failed to flush stock delta {} for flash sale item {}",
+                    delta, counter.flashSaleItemId, e);
+        }
+    }
+
+    private void reconcile(ItemCounter counter) {
+        if (counter.pendingDelta.get() != 0) {
+            log.error("⚡ RECONCILE: Flash sale item {} retired with {} unflushed units",
+                    counter.flashSaleItemId, counter.pendingDelta.get());
+            flashSaleItemRepository.applyStockDelta(counter.flashSaleItemId, counter.pendingDelta.getAndSet(0));
+        }
+        Integer dbStock = flashSaleItemRepository.findStockQuantityById(counter.flashSaleItemId);
+        if (dbStock == null || dbStock != counter.remaining.get()) {
+            log.warn("⚡ RECONCILE: Flash sale item {} stock mismatch - memory: {}, database: {} (database kept)",
+                    counter.flashSaleItemId, counter.remaining.get(), dbStock);
+        } else {
+            log.info("⚡ RECONCILE: Flash sale item {} consistent, remaining stock {}",
+                    counter.flashSaleItemId, dbStock);
+        }
+    }
+
+    /**
+     * Chạy callback khi transaction hiện tại kết thúc (committed = true/false);
+     * không có transaction thì coi như đã commit ngay
+     */
+    private void onCompletion(Consumer<Boolean> callback) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    callback.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            callback.accept(true);
+        }
+    }
+
+    private static final class ItemCounter {
+        final Integer flashSaleId;
+        final Integer flashSaleItemId;
+        final Integer maxPurchasePerUser;
+        final AtomicInteger remaining;
+        // Chênh lệch đã commit nhưng chưa ghi xuống DB (âm = đã bán)
+        final AtomicInteger pendingDelta = new AtomicInteger();
+        // Số đơn đang giữ bộ đếm; Integer.MIN_VALUE = đã gỡ bỏ
+        final AtomicInteger inFlight = new AtomicInteger();
+        final Map<Integer, AtomicInteger> purchasedByUser = new ConcurrentHashMap<>();
+        volatile boolean closed;
+
+        ItemCounter(Integer flashSaleId, Integer flashSaleItemId, Integer maxPurchasePerUser, int stock) {
+            this.flashSaleId = flashSaleId;
+            this.flashSaleItemId = flashSaleItemId;
+            this.maxPurchasePerUser = maxPurchasePerUser;
+            this.remaining = new AtomicInteger(stock);
+        }
+
+        boolean enter() {
+            if (inFlight.incrementAndGet() > 0) {
+                return true;
+            }
+            inFlight.decrementAndGet();
+            return false;
+        }
+
+        void exit() {
+            inFlight.decrementAndGet();
+        }
+
+        boolean retire() {
+            return inFlight.compareAndSet(0, Integer.MIN_VALUE);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.service.OrderCodeGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 🧾 ORDER CODE GENERATOR IMPLEMENTATION
+ * - Mã = "ORD" + epoch millis (13 số) + node id (2 số) + số thứ tự trong millisecond (3 số),
+ * vd: millis 1729651200000, node 3, seq 42 → ORD172965120000003042
+ * - Trạng thái (millis * 1000 + seq) được cấp bằng CAS: tối đa 1000 mã / ms / node,
+ * vượt quá thì "mượn" millisecond kế tiếp; đồng hồ lùi thì tiếp tục từ giá trị cũ
+ * - Node id phân biệt các instance backend (order.code.node-id, 0-99)
+ */
+@Service
+@Slf4j
+public class OrderCodeGeneratorImpl implements OrderCodeGenerator {
+
+    private static final String PREFIX = "ORD";
+    private static final int SEQUENCE_PER_MILLIS = 1000;
+    private static final int MAX_NODE_ID = 99;
+
+    private final int nodeId;
+
+    // millis * SEQUENCE_PER_MILLIS + seq của mã cấp gần nhất
+    private final AtomicLong lastState = new AtomicLong();
+
+    public OrderCodeGeneratorImpl(@Value("${order.code.node-id:0}") int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("order.code.node-id phải trong khoảng 0-" + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        log.info("🧾 ORDER CODE: Generator initialized with node id {}", nodeId);
+    }
+
+    @Override
+    public String nextCode() {
+        long state = nextState();
+        long millis = state / SEQUENCE_PER_MILLIS;
+        long sequence = state % SEQUENCE_PER_MILLIS;
+        return String.format("%s%d%02d%03d", PREFIX, millis, nodeId, sequence);
+    }
+
+    private long nextState() {
+        long floor = System.currentTimeMillis() * SEQUENCE_PER_MILLIS;
+        while (true) {
+            long last = lastState.get();
+            long next = Math.max(last + 1, floor);
+            if (lastState.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
@@ -18,11 +18,17 @@ import org.datn.bookstation.entity.RefundRequest.RefundType;
 import org.datn.bookstation.exception.BusinessException;
 import org.datn.bookstation.mapper.OrderResponseMapper;
 import org.datn.bookstation.repository.*;
+import org.datn.bookstation.service.BookProcessingQuantityService;
+import org.datn.bookstation.service.DailySalesRollupService;
+import org.datn.bookstation.service.OrderCodeGenerator;
 import org.datn.bookstation.service.OrderService;
 import org.datn.bookstation.service.PointManagementService;
 import org.datn.bookstation.service.VoucherCalculationService;
 import org.datn.bookstation.service.FlashSaleService;
 import org.datn.bookstation.service.OrderStatisticsService;
+import org.datn.bookstation.service.FlashSaleStockCounterService;
+import org.datn.bookstation.service.StockReservationService;
+import org.datn.bookstation.service.TrendingScoreService;
 import org.datn.bookstation.utils.RefundReasonUtil;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -33,7 +39,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
@@ -45,9 +54,14 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.WeekFields;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -69,6 +83,12 @@ public class OrderServiceImpl implements OrderService {
     private final VoucherCalculationService voucherCalculationService;
     private final FlashSaleService flashSaleService;
     private final OrderStatisticsService orderStatisticsService;
+    private final TrendingScoreService trendingScoreService;
+    private final BookProcessingQuantityService bookProcessingQuantityService;
+    private final DailySalesRollupService dailySalesRollupService;
+    private final StockReservationService stockReservationService;
+    private final FlashSaleStockCounterService flashSaleStockCounterService;
+    private final OrderCodeGenerator orderCodeGenerator;
 
     @Override
     public Optional<Integer> findIdByCode(String code) {
@@ -110,6 +130,7 @@ public class OrderServiceImpl implements OrderService {
                 predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("orderDate"), endDate));
             }
 
+            fetchOrderRelations(root, query);
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
 
@@ -222,7 +243,7 @@ public class OrderServiceImpl implements OrderService {
 
         // Create order
         Order order = new Order();
-        order.setCode(generateOrderCode());
+        order.setCode(orderCodeGenerator.nextCode());
         order.setUser(user);
         order.setAddress(address);
         order.setOrderType(request.getOrderType().toUpperCase());
@@ -268,12 +289,42 @@ public class OrderServiceImpl implements OrderService {
 
         order = orderRepository.save(order);
 
+        // 📦 Nạp trước sách / flash sale item / hạn mức per-user bằng số query cố định (không theo số dòng)
+        long now = System.currentTimeMillis();
+        Map<Integer, Book> booksById = bookRepository.findAllById(request.getOrderDetails().stream()
+                .map(d -> d.getBookId()).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Book::getId, b -> b));
+        Set<Integer> explicitFlashSaleItemIds = request.getOrderDetails().stream()
+                .map(d -> d.getFlashSaleItemId()).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Integer, FlashSaleItem> flashSaleItemsById = explicitFlashSaleItemIds.isEmpty() ? new HashMap<>()
+                : flashSaleItemRepository.findAllById(explicitFlashSaleItemIds).stream()
+                        .collect(Collectors.toMap(FlashSaleItem::getId, f -> f));
+        Set<Integer> autoFlashSaleBookIds = request.getOrderDetails().stream()
+                .filter(d -> d.getFlashSaleItemId() == null).map(d -> d.getBookId()).collect(Collectors.toSet());
+        Map<Integer, FlashSaleItem> activeFlashSaleByBookId = new HashMap<>();
+        if (!autoFlashSaleBookIds.isEmpty()) {
+            // Sắp theo giá tăng dần → phần tử đầu tiên của mỗi sách là flash sale rẻ nhất
+            for (FlashSaleItem item : flashSaleItemRepository.findActiveFlashSalesByBookIds(autoFlashSaleBookIds, now)) {
+                activeFlashSaleByBookId.putIfAbsent(item.getBook().getId(), item);
+            }
+        }
+        Set<Integer> limitedFlashSaleItemIds = new HashSet<>();
+        flashSaleItemsById.values().forEach(f -> addIfLimited(limitedFlashSaleItemIds, f));
+        activeFlashSaleByBookId.values().forEach(f -> addIfLimited(limitedFlashSaleItemIds, f));
+        Map<Integer, Integer> flashSaleQuotaUsage = limitedFlashSaleItemIds.isEmpty() ? new HashMap<>()
+                : new HashMap<>(flashSaleService.getUserFlashSaleQuotaUsage(request.getUserId(), limitedFlashSaleItemIds));
+
+        // Tồn kho chưa theo dõi in-memory được trừ gộp bằng batch UPDATE sau vòng lặp
+        Map<Book, Integer> bookReservations = new LinkedHashMap<>();
+        Map<FlashSaleItem, Integer> flashSaleReservations = new LinkedHashMap<>();
+
         // Create order details
         List<OrderDetail> orderDetails = new ArrayList<>();
         for (var detailRequest : request.getOrderDetails()) {
-            Book book = bookRepository.findById(detailRequest.getBookId())
-                    .orElseThrow(
-                            () -> new BusinessException("Không tìm thấy sách với ID: " + detailRequest.getBookId()));
+            Book book = booksById.get(detailRequest.getBookId());
+            if (book == null) {
+                throw new BusinessException("Không tìm thấy sách với ID: " + detailRequest.getBookId());
+            }
 
             //  ENHANCED: Xử lý logic flash sale và mixed purchase
             FlashSaleItem flashSaleItem = null;
@@ -281,64 +332,62 @@ public class OrderServiceImpl implements OrderService {
 
             if (detailRequest.getFlashSaleItemId() != null) {
                 // Trường hợp 1: Frontend đã chỉ định flash sale item
-                flashSaleItem = flashSaleItemRepository.findById(detailRequest.getFlashSaleItemId())
-                        .orElseThrow(() -> new BusinessException(
-                                "Không tìm thấy flash sale item với ID: " + detailRequest.getFlashSaleItemId()));
+                flashSaleItem = flashSaleItemsById.get(detailRequest.getFlashSaleItemId());
+                if (flashSaleItem == null) {
+                    throw new BusinessException(
+                            "Không tìm thấy flash sale item với ID: " + detailRequest.getFlashSaleItemId());
+                }
 
-                // ✅ UPDATED: Validate flash sale cumulative limit 
-                if (!flashSaleService.canUserPurchaseMore(flashSaleItem.getId().longValue(), request.getUserId(),
-                        quantityToOrder)) {
+                // ✅ UPDATED: Validate flash sale cumulative limit + giữ flash sale stock
+                FlashSaleStockCounterService.ReservationResult reservation = reserveFlashSale(flashSaleItem,
+                        request.getUserId(), quantityToOrder, flashSaleQuotaUsage, flashSaleReservations);
+                if (reservation == FlashSaleStockCounterService.ReservationResult.USER_LIMIT_EXCEEDED) {
                     int maxAllowed = flashSaleItem.getMaxPurchasePerUser();
                     throw new BusinessException("Bạn đã đạt giới hạn mua tối đa " + maxAllowed +
                             " sản phẩm flash sale '" + book.getBookName() + "'. Vui lòng kiểm tra lại số lượng đã mua hoặc đang chờ xử lý.");
                 }
-
-                // Validate flash sale stock
-                if (flashSaleItem.getStockQuantity() < quantityToOrder) {
+                if (reservation != FlashSaleStockCounterService.ReservationResult.RESERVED) {
                     throw new BusinessException("Không đủ số lượng flash sale cho sản phẩm: " + book.getBookName() +
-                            " (Flash sale còn: " + flashSaleItem.getStockQuantity() + ", Yêu cầu: " + quantityToOrder
-                            + ")");
+                            " (Flash sale còn: " + availableFlashSaleStock(flashSaleItem) + ", Yêu cầu: "
+                            + quantityToOrder + ")");
                 }
 
-                // Trừ flash sale stock
-                flashSaleItem.setStockQuantity(flashSaleItem.getStockQuantity() - quantityToOrder);
-                flashSaleItemRepository.save(flashSaleItem);
-
-                // Trừ book stock (vì sách flash sale cũng tính vào tổng stock)
-                book.setStockQuantity(book.getStockQuantity() - quantityToOrder);
-                bookRepository.save(book);
-
             } else {
                 // Trường hợp 2: Không chỉ định flash sale - kiểm tra tự động
-                // Tìm flash sale active cho book này
-                Optional<FlashSaleItem> activeFlashSaleOpt = flashSaleItemRepository
-                        .findActiveFlashSalesByBookId(book.getId().longValue(), System.currentTimeMillis())
-                        .stream()
-                        .findFirst();
+                // Flash sale active (rẻ nhất) cho book này
+                FlashSaleItem activeFlashSale = activeFlashSaleByBookId.get(book.getId());
 
-                if (activeFlashSaleOpt.isPresent()) {
-                    FlashSaleItem activeFlashSale = activeFlashSaleOpt.get();
-                    int flashSaleStock = activeFlashSale.getStockQuantity();
+                if (activeFlashSale != null) {
+                    int flashSaleStock = availableFlashSaleStock(activeFlashSale);
 
                     if (flashSaleStock >= quantityToOrder) {
-                        // ✅ UPDATED: Validate flash sale cumulative limit
-                        if (!flashSaleService.canUserPurchaseMore(activeFlashSale.getId().longValue(),
-                                request.getUserId(), quantityToOrder)) {
+                        // ✅ UPDATED: Validate flash sale cumulative limit + giữ flash sale stock
+                        FlashSaleStockCounterService.ReservationResult reservation = reserveFlashSale(
+                                activeFlashSale, request.getUserId(), quantityToOrder,
+                                flashSaleQuotaUsage, flashSaleReservations);
+                        if (reservation == FlashSaleStockCounterService.ReservationResult.USER_LIMIT_EXCEEDED) {
                             int maxAllowed = activeFlashSale.getMaxPurchasePerUser();
                             throw new BusinessException("Bạn đã đạt giới hạn mua tối đa " + maxAllowed + " sản phẩm flash sale '" +
                                     book.getBookName() + "'. Vui lòng kiểm tra lại số lượng đã mua hoặc đang chờ xử lý.");
                         }
 
                         // Đủ flash sale stock - dùng toàn bộ flash sale
-                        flashSaleItem = activeFlashSale;
-                        flashSaleItem.setStockQuantity(flashSaleStock - quantityToOrder);
-                        flashSaleItemRepository.save(flashSaleItem);
-
-                        // Cập nhật unit price về flash sale price
-                        detailRequest.setUnitPrice(activeFlashSale.getDiscountPrice());
-
-                        log.info(" Auto-applied flash sale for book {}: {} items at price {}",
-                                book.getId(), quantityToOrder, activeFlashSale.getDiscountPrice());
+                        if (reservation == FlashSaleStockCounterService.ReservationResult.RESERVED) {
+                            flashSaleItem = activeFlashSale;
+
+                            // Cập nhật unit price về flash sale price
+                            detailRequest.setUnitPrice(activeFlashSale.getDiscountPrice());
+
+                            log.info(" Auto-applied flash sale for book {}: {} items at price {}",
+                                    book.getId(), quantityToOrder, activeFlashSale.getDiscountPrice());
+                        } else if (availableFlashSaleStock(activeFlashSale) > 0) {
+                            // Đơn khác vừa mua mất một phần suất flash sale
+                            int remaining = availableFlashSaleStock(activeFlashSale);
+                            throw new BusinessException("Flash sale chỉ còn " + remaining
+                                    + " sản phẩm. Vui lòng đặt " + remaining
+                                    + " sản phẩm flash sale trong đơn riêng.");
+                        }
+                        // Flash sale vừa hết suất → mua giá thường
                     } else if (flashSaleStock > 0) {
                         // Không đủ flash sale stock - KHÔNG hỗ trợ mixed purchase trong
                         // OrderServiceImpl
@@ -348,16 +397,14 @@ public class OrderServiceImpl implements OrderService {
                     }
                     // Nếu flashSaleStock = 0, không áp dụng flash sale
                 }
+            }
 
-                // Validate và trừ book stock thông thường
-                if (book.getStockQuantity() < quantityToOrder) {
-                    throw new BusinessException("Không đủ số lượng tồn kho cho sản phẩm: " + book.getBookName() +
-                            " (Tồn kho: " + book.getStockQuantity() + ", Yêu cầu: " + quantityToOrder + ")");
-                }
-
-                book.setStockQuantity(book.getStockQuantity() - quantityToOrder);
-                bookRepository.save(book);
+            // Trừ book stock (sách flash sale cũng tính vào tổng stock) - gộp vào batch
+            int bookStock = book.getStockQuantity() != null ? book.getStockQuantity() : 0;
+            if (bookStock < bookReservations.getOrDefault(book, 0) + quantityToOrder) {
+                throw insufficientBookStock(book, quantityToOrder);
             }
+            bookReservations.merge(book, quantityToOrder, Integer::sum);
 
             // Tạo OrderDetail
             OrderDetail orderDetail = new OrderDetail();
@@ -381,8 +428,26 @@ public class OrderServiceImpl implements OrderService {
             orderDetails.add(orderDetail);
         }
 
+        // 📦 Trừ tồn kho nguyên tử cho cả đơn: 1 batch cho flash sale item, 1 batch cho sách
+        List<FlashSaleItem> flashSaleShortages = stockReservationService.reserveFlashSaleStocks(flashSaleReservations);
+        if (!flashSaleShortages.isEmpty()) {
+            FlashSaleItem item = flashSaleShortages.get(0);
+            throw new BusinessException("Không đủ số lượng flash sale cho sản phẩm: " + item.getBook().getBookName() +
+                    " (Flash sale còn: " + item.getStockQuantity() + ", Yêu cầu: "
+                    + flashSaleReservations.get(item) + ")");
+        }
+        List<Book> bookShortages = stockReservationService.reserveBookStocks(bookReservations);
+        if (!bookShortages.isEmpty()) {
+            throw insufficientBookStock(bookShortages.get(0), bookReservations.get(bookShortages.get(0)));
+        }
+
         orderDetailRepository.saveAll(orderDetails);
 
+        // 🔥 Đơn tạo thẳng ở trạng thái đã bán (bán tại quầy) -> cập nhật điểm trending
+        trendingScoreService.onOrderStatusChanged(order, null, order.getOrderStatus());
+        bookProcessingQuantityService.invalidateBooks(new ArrayList<>(booksById.keySet()));
+        dailySalesRollupService.markDirty(order);
+
         //  CẬP NHẬT VOUCHER USAGE VÀ LƯU ORDERV OUCHER ENTITIES (nếu có sử dụng
         // voucher)
         if (request.getVoucherIds() != null && !request.getVoucherIds().isEmpty()) {
@@ -457,6 +522,9 @@ public class OrderServiceImpl implements OrderService {
         handleStatusChangeBusinessLogic(order, oldStatus, newStatus);
 
         Order updatedOrder = orderRepository.save(order);
+        trendingScoreService.onOrderStatusChanged(updatedOrder, oldStatus, newStatus);
+        bookProcessingQuantityService.invalidateOrder(updatedOrder);
+        dailySalesRollupService.markDirty(updatedOrder);
         OrderResponse response = orderResponseMapper.toResponse(updatedOrder);
 
         return new ApiResponse<>(HttpStatus.OK.value(), "Cập nhật trạng thái đơn hàng thành công", response);
@@ -476,20 +544,9 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public List<OrderResponse> getOrdersByUser(Integer userId) {
-        List<Order> orders = orderRepository.findByUserIdOrderByCreatedAtDesc(userId);
-        return orders.stream()
-                .map(order -> {
-                    //  SỬA: Lấy chi tiết đầy đủ như API getByIdWithDetails
-                    List<OrderDetail> orderDetails = orderDetailRepository.findByOrderId(order.getId());
-                    List<OrderVoucher> orderVouchers = orderVoucherRepository.findByOrderId(order.getId());
-
-                    OrderResponse response = orderResponseMapper.toResponseWithDetails(order, orderDetails,
-                            orderVouchers);
-                    setRefundInfoToOrderResponse(response, order);
-
-                    return response;
-                })
-                .toList();
+        List<Order> orders = orderRepository.findByUserIdWithRelations(userId);
+        //  SỬA: Lấy chi tiết đầy đủ như API getByIdWithDetails (nạp theo lô cho cả danh sách)
+        return toResponsesWithDetails(orders);
     }
 
     @Override
@@ -499,24 +556,15 @@ public class OrderServiceImpl implements OrderService {
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
 
-        Specification<Order> spec = (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("user").get("id"),
-                userId);
+        Specification<Order> spec = (root, query, criteriaBuilder) -> {
+            fetchOrderRelations(root, query);
+            return criteriaBuilder.equal(root.get("user").get("id"), userId);
+        };
 
         Page<Order> orderPage = orderRepository.findAll(spec, pageable);
 
-        List<OrderResponse> orderResponses = orderPage.getContent().stream()
-                .map(order -> {
-                    //  SỬA: Lấy chi tiết đầy đủ như API getByIdWithDetails
-                    List<OrderDetail> orderDetails = orderDetailRepository.findByOrderId(order.getId());
-                    List<OrderVoucher> orderVouchers = orderVoucherRepository.findByOrderId(order.getId());
-
-                    OrderResponse response = orderResponseMapper.toResponseWithDetails(order, orderDetails,
-                            orderVouchers);
-                    setRefundInfoToOrderResponse(response, order);
-
-                    return response;
-                })
-                .toList();
+        //  SỬA: Lấy chi tiết đầy đủ như API getByIdWithDetails (nạp theo lô cho cả trang)
+        List<OrderResponse> orderResponses = toResponsesWithDetails(orderPage.getContent());
 
         return PaginationResponse.<OrderResponse>builder()
                 .content(orderResponses)
@@ -584,6 +632,7 @@ public class OrderServiceImpl implements OrderService {
         handleCancellationBusinessLogic(order, oldStatus);
 
         Order canceledOrder = orderRepository.save(order);
+        dailySalesRollupService.markDirty(canceledOrder);
         OrderResponse response = orderResponseMapper.toResponse(canceledOrder);
 
         return new ApiResponse<>(HttpStatus.OK.value(), "Hủy đơn hàng thành công", response);
@@ -611,6 +660,7 @@ public class OrderServiceImpl implements OrderService {
         BigDecimal totalRefundAmount = handlePartialRefundBusinessLogic(order, refundDetails, reason);
 
         // Update order status
+        OrderStatus oldStatus = order.getOrderStatus();
         order.setOrderStatus(OrderStatus.PARTIALLY_REFUNDED);
         order.setCancelReason(reason);
         order.setUpdatedBy(userId);
@@ -619,6 +669,9 @@ public class OrderServiceImpl implements OrderService {
         pointManagementService.deductPointsFromPartialRefund(totalRefundAmount, order, order.getUser());
 
         Order refundedOrder = orderRepository.save(order);
+        trendingScoreService.onOrderStatusChanged(refundedOrder, oldStatus, OrderStatus.PARTIALLY_REFUNDED);
+        bookProcessingQuantityService.invalidateOrder(refundedOrder);
+        dailySalesRollupService.markDirty(refundedOrder);
         OrderResponse response = orderResponseMapper.toResponse(refundedOrder);
 
         return new ApiResponse<>(HttpStatus.OK.value(), "Hoàn trả một phần đơn hàng thành công", response);
@@ -647,6 +700,7 @@ public class OrderServiceImpl implements OrderService {
         handleFullRefundBusinessLogic(order, reason);
 
         // Update order status
+        OrderStatus oldStatus = order.getOrderStatus();
         order.setOrderStatus(OrderStatus.REFUNDED);
         order.setCancelReason(reason);
         order.setUpdatedBy(userId);
@@ -655,6 +709,9 @@ public class OrderServiceImpl implements OrderService {
         pointManagementService.deductPointsFromCancelledOrder(order, order.getUser());
 
         Order refundedOrder = orderRepository.save(order);
+        trendingScoreService.onOrderStatusChanged(refundedOrder, oldStatus, OrderStatus.REFUNDED);
+        bookProcessingQuantityService.invalidateOrder(refundedOrder);
+        dailySalesRollupService.markDirty(refundedOrder);
         OrderResponse response = orderResponseMapper.toResponse(refundedOrder);
 
         return new ApiResponse<>(HttpStatus.OK.value(), "Hoàn trả toàn bộ đơn hàng thành công", response);
@@ -662,10 +719,6 @@ public class OrderServiceImpl implements OrderService {
 
     // ================== PRIVATE HELPER METHODS ==================
 
-    private String generateOrderCode() {
-        return "ORD" + System.currentTimeMillis();
-    }
-
     private void handleStatusChangeBusinessLogic(Order order, OrderStatus oldStatus, OrderStatus newStatus) {
         User user = order.getUser();
 
@@ -710,21 +763,9 @@ public class OrderServiceImpl implements OrderService {
     private void handleCancellationBusinessLogic(Order order, OrderStatus oldStatus) {
         //  Restore stock for canceled orders - cả book thông thường và flash sale
         List<OrderDetail> orderDetails = orderDetailRepository.findByOrderId(order.getId());
-        for (OrderDetail detail : orderDetails) {
-            if (detail.getFlashSaleItem() != null) {
-                //  CHỈ restore flash sale stock (không cần trừ sold count)
-                FlashSaleItem flashSaleItem = detail.getFlashSaleItem();
-                flashSaleItem.setStockQuantity(flashSaleItem.getStockQuantity() + detail.getQuantity());
-                // KHÔNG cần trừ sold count vì khi tạo đơn chưa cộng
-                flashSaleItemRepository.save(flashSaleItem);
-            } else {
-                //  CHỈ restore book stock (không cần trừ sold count)
-                Book book = detail.getBook();
-                book.setStockQuantity(book.getStockQuantity() + detail.getQuantity());
-                // KHÔNG cần trừ sold count vì khi tạo đơn chưa cộng
-                bookRepository.save(book);
-            }
-        }
+        // Hoàn lại đúng những gì create() đã trừ: flash sale stock (nếu có) + book stock
+        // KHÔNG cần trừ sold count vì khi tạo đơn chưa cộng
+        stockReservationService.releaseOrderDetailStocks(orderDetails);
 
         // Restore voucher usage if applicable
         if (order.getRegularVoucherCount() > 0 || order.getShippingVoucherCount() > 0) {
@@ -735,6 +776,53 @@ public class OrderServiceImpl implements OrderService {
         log.info("Order {} canceled, stock restored", order.getCode());
     }
 
+    /**
+     * Trừ tồn kho sách nguyên tử, báo lỗi với tồn kho hiện tại nếu không đủ
+     */
+    private BusinessException insufficientBookStock(Book book, int quantity) {
+        return new BusinessException("Không đủ số lượng tồn kho cho sản phẩm: " + book.getBookName() +
+                " (Tồn kho: " + book.getStockQuantity() + ", Yêu cầu: " + quantity + ")");
+    }
+
+    /**
+     * Giữ suất flash sale: qua bộ đếm in-memory nếu flash sale đang được theo dõi,
+     * ngược lại kiểm tra giới hạn per-user với số đã nạp sẵn (cộng dồn giữa các dòng)
+     * và gộp vào batch UPDATE có điều kiện chạy sau vòng lặp
+     */
+    private FlashSaleStockCounterService.ReservationResult reserveFlashSale(FlashSaleItem flashSaleItem,
+            Integer userId, int quantity, Map<Integer, Integer> quotaUsage,
+            Map<FlashSaleItem, Integer> pendingReservations) {
+        FlashSaleStockCounterService.ReservationResult result = flashSaleStockCounterService
+                .tryReserve(flashSaleItem.getId(), userId, quantity);
+        if (result != FlashSaleStockCounterService.ReservationResult.NOT_TRACKED) {
+            return result;
+        }
+        if (flashSaleItem.getMaxPurchasePerUser() != null) {
+            int used = quotaUsage.getOrDefault(flashSaleItem.getId(), 0);
+            if (used + quantity > flashSaleItem.getMaxPurchasePerUser()) {
+                return FlashSaleStockCounterService.ReservationResult.USER_LIMIT_EXCEEDED;
+            }
+            quotaUsage.put(flashSaleItem.getId(), used + quantity);
+        }
+        int stock = flashSaleItem.getStockQuantity() != null ? flashSaleItem.getStockQuantity() : 0;
+        if (stock < pendingReservations.getOrDefault(flashSaleItem, 0) + quantity) {
+            return FlashSaleStockCounterService.ReservationResult.OUT_OF_STOCK;
+        }
+        pendingReservations.merge(flashSaleItem, quantity, Integer::sum);
+        return FlashSaleStockCounterService.ReservationResult.RESERVED;
+    }
+
+    private void addIfLimited(Set<Integer> ids, FlashSaleItem flashSaleItem) {
+        if (flashSaleItem.getMaxPurchasePerUser() != null) {
+            ids.add(flashSaleItem.getId());
+        }
+    }
+
+    private int availableFlashSaleStock(FlashSaleItem flashSaleItem) {
+        Integer inMemory = flashSaleStockCounterService.getAvailableStock(flashSaleItem.getId());
+        return inMemory != null ? inMemory : flashSaleItem.getStockQuantity();
+    }
+
     /**
      *  LOGIC NGHIỆP VỤ KHI ĐƠN HÀNG ĐƯỢC GIAO THÀNH CÔNG
      * - CHÍNH THỨC cộng số lượng đã bán cho cả Book và FlashSaleItem
@@ -774,26 +862,11 @@ public class OrderServiceImpl implements OrderService {
      */
     private void handleDeliveryFailedBusinessLogic(Order order, OrderStatus oldStatus) {
         List<OrderDetail> orderDetails = orderDetailRepository.findByOrderId(order.getId());
+        //  CHỈ restore stock (không cần trừ sold count vì khi tạo đơn chưa cộng)
+        stockReservationService.releaseOrderDetailStocks(orderDetails);
         for (OrderDetail detail : orderDetails) {
-            if (detail.getFlashSaleItem() != null) {
-                //  CHỈ restore flash sale stock (không cần trừ sold count)
-                FlashSaleItem flashSaleItem = detail.getFlashSaleItem();
-                flashSaleItem.setStockQuantity(flashSaleItem.getStockQuantity() + detail.getQuantity());
-                // KHÔNG cần trừ sold count vì khi tạo đơn chưa cộng
-                flashSaleItemRepository.save(flashSaleItem);
-
-                log.info("FlashSaleItem {} stock restored: +{}",
-                        flashSaleItem.getId(), detail.getQuantity());
-            }
-
-            //  CHỈ restore book stock (không cần trừ sold count)
-            Book book = detail.getBook();
-            book.setStockQuantity(book.getStockQuantity() + detail.getQuantity());
-            // KHÔNG cần trừ sold count vì khi tạo đơn chưa cộng
-            bookRepository.save(book);
-
-            log.info("Book {} stock restored: +{}",
-                    book.getId(), detail.getQuantity());
+            log.info("Book {} stock restored: +{}{}", detail.getBook().getId(), detail.getQuantity(),
+                    detail.getFlashSaleItem() != null ? " (flash sale item " + detail.getFlashSaleItem().getId() + ")" : "");
         }
 
         log.info("Order {} delivery failed, stock restored", order.getCode());
@@ -925,6 +998,9 @@ public class OrderServiceImpl implements OrderService {
             order.setCancelReason(refundRequest.getReason());
             order.setUpdatedBy(refundRequest.getUserId().intValue());
             orderRepository.save(order);
+            trendingScoreService.onOrderStatusChanged(order, OrderStatus.DELIVERED, OrderStatus.REFUND_REQUESTED);
+            bookProcessingQuantityService.invalidateOrder(order);
+            dailySalesRollupService.markDirty(order);
 
             log.info("Customer {} requested refund for order {} - RefundRequest ID: {}",
                     refundRequest.getUserId(), order.getCode(), savedRefundRequest.getId());
@@ -1018,6 +1094,9 @@ public class OrderServiceImpl implements OrderService {
             order.setCancelReason(decision.getAdminNotes()); // Lưu lý do từ chối
             order.setUpdatedBy(decision.getAdminId().intValue());
             orderRepository.save(order);
+            trendingScoreService.onOrderStatusChanged(order, OrderStatus.REFUND_REQUESTED, OrderStatus.DELIVERED);
+            bookProcessingQuantityService.invalidateOrder(order);
+            dailySalesRollupService.markDirty(order);
 
             log.info("Admin {} rejected refund for order {}", decision.getAdminId(), order.getCode());
 
@@ -1052,10 +1131,64 @@ public class OrderServiceImpl implements OrderService {
         return response;
     }
 
+    /**
+     * 📦 Map danh sách đơn hàng kèm chi tiết, voucher và thông tin hoàn trả.
+     * Dữ liệu liên quan được nạp theo lô (4 query IN-list) thay vì vài query cho mỗi đơn
+     */
+    private List<OrderResponse> toResponsesWithDetails(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> orderIds = orders.stream().map(Order::getId).toList();
+        Map<Integer, List<OrderDetail>> detailsByOrder = orderDetailRepository.findByOrderIdsWithBook(orderIds)
+                .stream().collect(Collectors.groupingBy(od -> od.getId().getOrderId()));
+        Map<Integer, List<OrderVoucher>> vouchersByOrder = orderVoucherRepository.findByOrderIdsWithVoucher(orderIds)
+                .stream().collect(Collectors.groupingBy(ov -> ov.getId().getOrderId()));
+        Map<Integer, List<RefundRequest>> refundRequestsByOrder = refundRequestRepository
+                .findByOrderIdsWithApprover(orderIds)
+                .stream().collect(Collectors.groupingBy(rr -> rr.getOrder().getId()));
+        Map<Integer, List<RefundItem>> refundItemsByOrder = refundItemRepository.findApprovedByOrderIds(orderIds)
+                .stream().collect(Collectors.groupingBy(ri -> ri.getRefundRequest().getOrder().getId()));
+
+        return orders.stream()
+                .map(order -> {
+                    OrderResponse response = orderResponseMapper.toResponseWithDetails(order,
+                            detailsByOrder.getOrDefault(order.getId(), List.of()),
+                            vouchersByOrder.getOrDefault(order.getId(), List.of()));
+                    applyRefundInfo(response, order,
+                            refundRequestsByOrder.getOrDefault(order.getId(), List.of()),
+                            refundItemsByOrder.getOrDefault(order.getId(), List.of()));
+                    return response;
+                })
+                .toList();
+    }
+
+    /**
+     * Fetch join người dùng / nhân viên / địa chỉ cho query danh sách (bỏ qua query count)
+     */
+    private static void fetchOrderRelations(Root<Order> root, CriteriaQuery<?> query) {
+        if (query != null && !Long.class.equals(query.getResultType())
+                && !long.class.equals(query.getResultType())) {
+            root.fetch("user", JoinType.LEFT);
+            root.fetch("staff", JoinType.LEFT);
+            root.fetch("address", JoinType.LEFT);
+        }
+    }
+
     /**
      *  THÊM MỚI: Set thông tin hoàn trả cho OrderResponse
      */
     private void setRefundInfoToOrderResponse(OrderResponse orderResponse, Order order) {
+        applyRefundInfo(orderResponse, order,
+                refundRequestRepository.findByOrderIdOrderByCreatedAtDesc(order.getId()),
+                refundItemRepository.findApprovedByOrderIds(List.of(order.getId())));
+    }
+
+    /**
+     * Set thông tin hoàn trả từ refund request / refund item (đã duyệt) đã nạp sẵn của đơn hàng
+     */
+    private void applyRefundInfo(OrderResponse orderResponse, Order order, List<RefundRequest> refundRequests,
+            List<RefundItem> approvedRefundItems) {
         // Kiểm tra trạng thái hoàn trả
         if (order.getOrderStatus() == OrderStatus.PARTIALLY_REFUNDED) {
             orderResponse.setRefundType("PARTIAL");
@@ -1063,9 +1196,6 @@ public class OrderServiceImpl implements OrderService {
             orderResponse.setRefundType("FULL");
         }
 
-        // Lấy thông tin hoàn trả từ RefundRequest entity
-        List<RefundRequest> refundRequests = refundRequestRepository.findByOrderIdOrderByCreatedAtDesc(order.getId());
-
         // Lọc những request đã approved
         List<RefundRequest> approvedRefunds = refundRequests.stream()
                 .filter(r -> r.getStatus() == RefundStatus.APPROVED || r.getStatus() == RefundStatus.COMPLETED)
@@ -1086,8 +1216,11 @@ public class OrderServiceImpl implements OrderService {
 
         //  Set thông tin hoàn trả cho từng order detail
         if (orderResponse.getOrderDetails() != null) {
+            Map<Integer, List<RefundItem>> refundItemsByBook = approvedRefundItems.stream()
+                    .filter(ri -> ri.getBook() != null)
+                    .collect(Collectors.groupingBy(ri -> ri.getBook().getId()));
             for (OrderDetailResponse detail : orderResponse.getOrderDetails()) {
-                setRefundInfoToOrderDetail(detail, order.getId());
+                setRefundInfoToOrderDetail(detail, refundItemsByBook.getOrDefault(detail.getBookId(), List.of()));
             }
         }
     }
@@ -1095,10 +1228,8 @@ public class OrderServiceImpl implements OrderService {
     /**
      *  SỬA: Set thông tin hoàn trả cho OrderDetailResponse
      */
-    private void setRefundInfoToOrderDetail(OrderDetailResponse detail, Integer orderId) {
-        // Lấy tất cả RefundItem cho sản phẩm này trong đơn hàng
-        List<RefundItem> refundItems = refundItemRepository.findByOrderIdAndBookId(orderId, detail.getBookId());
-
+    private void setRefundInfoToOrderDetail(OrderDetailResponse detail, List<RefundItem> refundItems) {
+        // refundItems: tất cả RefundItem đã duyệt cho sản phẩm này trong đơn hàng
         if (!refundItems.isEmpty()) {
             // Tính tổng số lượng và số tiền đã hoàn
             int totalRefundedQuantity = refundItems.stream()
@@ -1546,8 +1677,20 @@ public class OrderServiceImpl implements OrderService {
             List<Object[]> rawData = orderRepository.findOrderStatisticsSummaryByDateRange(startTime, endTime);
             
             // 4. Convert raw data thành Map và FIXED: Recalculate netRevenue using TRUE logic
-            Map<String, Map<String, Object>> dataMap = new HashMap<>();
+            // Net revenue của mọi ngày trong 1 query
+            List<Long[]> dayRanges = new ArrayList<>(rawData.size());
             for (Object[] row : rawData) {
+                LocalDate dateLocal = LocalDate.parse(row[0].toString());
+                dayRanges.add(new Long[]{
+                    dateLocal.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                    dateLocal.atTime(23, 59, 59, 999_000_000).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                });
+            }
+            List<BigDecimal> dayNetRevenues = orderStatisticsService.calculateNetRevenueForPeriods(dayRanges);
+            
+            Map<String, Map<String, Object>> dataMap = new HashMap<>();
+            for (int i = 0; i < rawData.size(); i++) {
+                Object[] row = rawData.get(i);
                 String date = row[0].toString(); // Date string từ DB
                 Integer totalOrders = ((Number) row[1]).intValue();
                 Integer completedOrders = ((Number) row[2]).intValue();
@@ -1555,13 +1698,8 @@ public class OrderServiceImpl implements OrderService {
                 Integer refundedOrders = ((Number) row[4]).intValue();
                 // Bỏ qua netRevenue từ query (row[5]) vì nó tính sai
                 
-                // ✅ RECALCULATE: Tính lại netRevenue chính xác cho ngày này
-                LocalDate dateLocal = LocalDate.parse(date);
-                Long dayStart = dateLocal.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-                Long dayEnd = dateLocal.atTime(23, 59, 59, 999_000_000).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-                
-                // Sử dụng cùng logic với Overview API
-                BigDecimal correctNetRevenue = orderStatisticsService.calculateNetRevenueForPeriod(dayStart, dayEnd);
+                // ✅ RECALCULATE: netRevenue chính xác cho ngày này (cùng logic với Overview API)
+                BigDecimal correctNetRevenue = dayNetRevenues.get(i);
                 
                 Map<String, Object> dayData = new HashMap<>();
                 dayData.put("totalOrders", totalOrders);
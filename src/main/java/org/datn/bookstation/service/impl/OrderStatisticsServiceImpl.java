@@ -1,5 +1,8 @@
 package org.datn.bookstation.service.impl;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.datn.bookstation.dto.response.*;
@@ -16,6 +19,7 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -23,6 +27,9 @@ import java.util.stream.Collectors;
 public class OrderStatisticsServiceImpl implements OrderStatisticsService {
     
     private final OrderRepository orderRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
     //  Các trạng thái đơn hàng được tính doanh thu HOÀN TOÀN
     // Chỉ DELIVERED và PARTIALLY_REFUNDED (đã hoàn thành công một phần)
@@ -38,6 +45,21 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
         OrderStatus.RETURNING_TO_WAREHOUSE
     );
 
+    // Các trạng thái chưa hoàn trả gì: tính full subtotal - discounts
+    private static final List<OrderStatus> FULL_REVENUE_STATUSES = Arrays.asList(
+        OrderStatus.DELIVERED, OrderStatus.REFUND_REQUESTED, OrderStatus.AWAITING_GOODS_RETURN,
+        OrderStatus.REFUNDING, OrderStatus.GOODS_RECEIVED_FROM_CUSTOMER, OrderStatus.GOODS_RETURNED_TO_WAREHOUSE
+    );
+
+    private static final List<OrderStatus> REFUNDED_STATUSES = Arrays.asList(
+        OrderStatus.REFUNDED, OrderStatus.PARTIALLY_REFUNDED
+    );
+
+    private static final List<OrderStatus> CANCELED_STATUSES = Arrays.asList(OrderStatus.CANCELED);
+
+    // Mỗi khoảng thời gian = 6 cột SUM trong loadWindowTotals
+    private static final int MAX_WINDOWS_PER_QUERY = 62;
+
     @Override
     public OrderOverviewResponse getOrderOverview() {
         log.info("Getting simple order overview statistics");
@@ -47,36 +69,26 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
         Long monthStart = getStartOfMonth(0);
         Long monthEnd = getEndOfMonth(0);
         
-        // Tổng số đơn hàng (TẤT CẢ trạng thái)
-        Long totalOrdersToday = orderRepository.countAllOrdersByDateRange(todayStart, todayEnd);
-        Long totalOrdersThisMonth = orderRepository.countAllOrdersByDateRange(monthStart, monthEnd);
-        
-        // Doanh thu thuần từ đơn đã DELIVERED trở lên (đã thu tiền thực sự)
-        // Chỉ trừ đi khi REFUNDED hoàn tất (chứ không phải REFUND_REQUESTED)
-        BigDecimal netRevenueToday = calculateTrueNetRevenue(todayStart, todayEnd);
-        BigDecimal netRevenueThisMonth = calculateTrueNetRevenue(monthStart, monthEnd);
-        
-        // Số đơn hoàn trả (đã hoàn thành việc hoàn trả)
-        Long refundedOrdersToday = orderRepository.countByDateRangeAndStatuses(todayStart, todayEnd, 
-            Arrays.asList(OrderStatus.REFUNDED, OrderStatus.PARTIALLY_REFUNDED));
-        Long refundedOrdersThisMonth = orderRepository.countByDateRangeAndStatuses(monthStart, monthEnd,
-            Arrays.asList(OrderStatus.REFUNDED, OrderStatus.PARTIALLY_REFUNDED));
-        
-        // Số đơn hủy
-        Long canceledOrdersToday = orderRepository.countByDateRangeAndStatuses(todayStart, todayEnd, 
-            Arrays.asList(OrderStatus.CANCELED));
-        Long canceledOrdersThisMonth = orderRepository.countByDateRangeAndStatuses(monthStart, monthEnd,
-            Arrays.asList(OrderStatus.CANCELED));
+        // 1 query cho cả 2 khoảng thời gian
+        List<WindowTotals> totals = loadWindowTotals(Arrays.asList(
+            new Long[]{todayStart, todayEnd}, new Long[]{monthStart, monthEnd}));
+        WindowTotals today = totals.get(0);
+        WindowTotals month = totals.get(1);
         
         return OrderOverviewResponse.builder()
-            .totalOrdersToday(totalOrdersToday)
-            .totalOrdersThisMonth(totalOrdersThisMonth)
-            .netRevenueToday(netRevenueToday)
-            .netRevenueThisMonth(netRevenueThisMonth)
-            .refundedOrdersToday(refundedOrdersToday)
-            .refundedOrdersThisMonth(refundedOrdersThisMonth)
-            .canceledOrdersToday(canceledOrdersToday)
-            .canceledOrdersThisMonth(canceledOrdersThisMonth)
+            // Tổng số đơn hàng (TẤT CẢ trạng thái)
+            .totalOrdersToday(today.countAll())
+            .totalOrdersThisMonth(month.countAll())
+            // Doanh thu thuần từ đơn đã DELIVERED trở lên (đã thu tiền thực sự)
+            // Chỉ trừ đi khi REFUNDED hoàn tất (chứ không phải REFUND_REQUESTED)
+            .netRevenueToday(today.netRevenue())
+            .netRevenueThisMonth(month.netRevenue())
+            // Số đơn hoàn trả (đã hoàn thành việc hoàn trả)
+            .refundedOrdersToday(today.count(REFUNDED_STATUSES))
+            .refundedOrdersThisMonth(month.count(REFUNDED_STATUSES))
+            // Số đơn hủy
+            .canceledOrdersToday(today.count(CANCELED_STATUSES))
+            .canceledOrdersThisMonth(month.count(CANCELED_STATUSES))
             .build();
     }
 
@@ -89,11 +101,16 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
         Long monthStart = getStartOfMonth(0);
         Long monthEnd = getEndOfMonth(0);
         
-        Long totalOrdersToday = orderRepository.countAllOrdersByDateRange(todayStart, todayEnd);
-        Long totalOrdersThisMonth = orderRepository.countAllOrdersByDateRange(monthStart, monthEnd);
+        List<WindowTotals> totals = loadWindowTotals(Arrays.asList(
+            new Long[]{todayStart, todayEnd}, new Long[]{monthStart, monthEnd}));
+        WindowTotals today = totals.get(0);
+        WindowTotals month = totals.get(1);
+        
+        Long totalOrdersToday = today.countAll();
+        Long totalOrdersThisMonth = month.countAll();
         
-        BigDecimal revenueToday = calculateNetRevenue(todayStart, todayEnd);
-        BigDecimal revenueThisMonth = calculateNetRevenue(monthStart, monthEnd);
+        BigDecimal revenueToday = today.netRevenue();
+        BigDecimal revenueThisMonth = month.netRevenue();
         
         return OrderStatisticsResponse.builder()
             // Tổng số đơn hàng (TẤT CẢ trạng thái - đây là số đơn được đặt)
@@ -109,32 +126,28 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
             .averageRevenuePerOrderThisMonth(calculateAverageRevenuePerOrder(revenueThisMonth, totalOrdersThisMonth))
             
             // Lợi nhuận ròng (doanh thu - chi phí vận chuyển, tạm tính đơn giản)
-            .netProfitToday(calculateNetProfit(todayStart, todayEnd))
-            .netProfitThisMonth(calculateNetProfit(monthStart, monthEnd))
+            .netProfitToday(calculateNetProfit(today))
+            .netProfitThisMonth(calculateNetProfit(month))
             
             // Chi phí vận chuyển
-            .totalShippingCostToday(orderRepository.sumShippingFeeByDateRangeAndStatuses(todayStart, todayEnd, SUCCESS_STATUSES))
-            .totalShippingCostThisMonth(orderRepository.sumShippingFeeByDateRangeAndStatuses(monthStart, monthEnd, SUCCESS_STATUSES))
+            .totalShippingCostToday(today.shippingFee(SUCCESS_STATUSES))
+            .totalShippingCostThisMonth(month.shippingFee(SUCCESS_STATUSES))
             
             // Tỷ lệ COD
-            .codRateToday(calculateCodRate(todayStart, todayEnd))
-            .codRateThisMonth(calculateCodRate(monthStart, monthEnd))
+            .codRateToday(calculateCodRate(today))
+            .codRateThisMonth(calculateCodRate(month))
             
             // Đơn hàng hoàn trả/hủy
-            .refundedOrdersToday(orderRepository.countByDateRangeAndStatuses(todayStart, todayEnd, 
-                Arrays.asList(OrderStatus.REFUNDED, OrderStatus.PARTIALLY_REFUNDED)))
-            .refundedOrdersThisMonth(orderRepository.countByDateRangeAndStatuses(monthStart, monthEnd,
-                Arrays.asList(OrderStatus.REFUNDED, OrderStatus.PARTIALLY_REFUNDED)))
-            .canceledOrdersToday(orderRepository.countByDateRangeAndStatuses(todayStart, todayEnd, 
-                Arrays.asList(OrderStatus.CANCELED)))
-            .canceledOrdersThisMonth(orderRepository.countByDateRangeAndStatuses(monthStart, monthEnd,
-                Arrays.asList(OrderStatus.CANCELED)))
+            .refundedOrdersToday(today.count(REFUNDED_STATUSES))
+            .refundedOrdersThisMonth(month.count(REFUNDED_STATUSES))
+            .canceledOrdersToday(today.count(CANCELED_STATUSES))
+            .canceledOrdersThisMonth(month.count(CANCELED_STATUSES))
                 
             // COD thất bại
-            .failedCodOrdersToday(orderRepository.countFailedCodOrdersByDateRange(todayStart, todayEnd, FAILED_COD_STATUSES))
-            .failedCodOrdersThisMonth(orderRepository.countFailedCodOrdersByDateRange(monthStart, monthEnd, FAILED_COD_STATUSES))
-            .failedCodRateToday(calculateFailedCodRate(todayStart, todayEnd))
-            .failedCodRateThisMonth(calculateFailedCodRate(monthStart, monthEnd))
+            .failedCodOrdersToday(today.codCount(FAILED_COD_STATUSES))
+            .failedCodOrdersThisMonth(month.codCount(FAILED_COD_STATUSES))
+            .failedCodRateToday(calculateFailedCodRate(today))
+            .failedCodRateThisMonth(calculateFailedCodRate(month))
             .build();
     }
 
@@ -352,17 +365,22 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
         Long lastMonthStart = getStartOfMonth(-1);
         Long lastMonthEnd = getEndOfMonth(-1);
         
-        BigDecimal currentWeekRevenue = orderRepository.sumRevenueByDateRangeAndStatuses(thisWeekStart, thisWeekEnd, SUCCESS_STATUSES);
-        BigDecimal previousWeekRevenue = orderRepository.sumRevenueByDateRangeAndStatuses(lastWeekStart, lastWeekEnd, SUCCESS_STATUSES);
+        // 1 query cho cả 4 khoảng thời gian
+        List<WindowTotals> totals = loadWindowTotals(Arrays.asList(
+            new Long[]{thisWeekStart, thisWeekEnd}, new Long[]{lastWeekStart, lastWeekEnd},
+            new Long[]{thisMonthStart, thisMonthEnd}, new Long[]{lastMonthStart, lastMonthEnd}));
+        
+        BigDecimal currentWeekRevenue = totals.get(0).subtotal(SUCCESS_STATUSES);
+        BigDecimal previousWeekRevenue = totals.get(1).subtotal(SUCCESS_STATUSES);
         
-        BigDecimal currentMonthRevenue = orderRepository.sumRevenueByDateRangeAndStatuses(thisMonthStart, thisMonthEnd, SUCCESS_STATUSES);
-        BigDecimal previousMonthRevenue = orderRepository.sumRevenueByDateRangeAndStatuses(lastMonthStart, lastMonthEnd, SUCCESS_STATUSES);
+        BigDecimal currentMonthRevenue = totals.get(2).subtotal(SUCCESS_STATUSES);
+        BigDecimal previousMonthRevenue = totals.get(3).subtotal(SUCCESS_STATUSES);
         
-        Long currentWeekOrders = orderRepository.countByDateRangeAndStatuses(thisWeekStart, thisWeekEnd, SUCCESS_STATUSES);
-        Long previousWeekOrders = orderRepository.countByDateRangeAndStatuses(lastWeekStart, lastWeekEnd, SUCCESS_STATUSES);
+        Long currentWeekOrders = totals.get(0).count(SUCCESS_STATUSES);
+        Long previousWeekOrders = totals.get(1).count(SUCCESS_STATUSES);
         
-        Long currentMonthOrders = orderRepository.countByDateRangeAndStatuses(thisMonthStart, thisMonthEnd, SUCCESS_STATUSES);
-        Long previousMonthOrders = orderRepository.countByDateRangeAndStatuses(lastMonthStart, lastMonthEnd, SUCCESS_STATUSES);
+        Long currentMonthOrders = totals.get(2).count(SUCCESS_STATUSES);
+        Long previousMonthOrders = totals.get(3).count(SUCCESS_STATUSES);
         
         return RevenueComparisonResponse.builder()
             .currentWeekRevenue(currentWeekRevenue)
@@ -452,69 +470,14 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
     
     // ============ PRIVATE HELPER METHODS ============
     
-    //   FIXED: Tính doanh thu ròng theo CÙNG logic như summary API để đảm bảo consistency
-    private BigDecimal calculateNetRevenue(Long startTime, Long endTime) {
-        log.info("🔧 DEBUG: Calculating NET revenue for period {} to {} using UNIFIED TRUE logic", startTime, endTime);
-        
-        // ✅ SỬ DỤNG CHÍNH XÁC CÙNG LOGIC như getOrderOverview() 
-        // Để đảm bảo consistency giữa Overview và Summary APIs
-        return calculateTrueNetRevenue(startTime, endTime);
-    }
-    
     /**
      * FINAL FIX: Tính net revenue chính xác cho từng trạng thái order
+     * - Đơn chưa hoàn trả gì (FULL_REVENUE_STATUSES): subtotal - discounts
+     * - Đơn PARTIALLY_REFUNDED: subtotal - discounts - số tiền đã hoàn (refund COMPLETED)
+     * - Đơn REFUNDED: không tính
      */
     private BigDecimal calculateTrueNetRevenue(Long startTime, Long endTime) {
-        log.info("DEBUG: FINAL FIX - Calculating net revenue for period {} to {}", startTime, endTime);
-        
-        BigDecimal totalNetRevenue = BigDecimal.ZERO;
-        
-        // 1. Các đơn chưa hoàn trả gì: Tính full subtotal - discounts
-        List<OrderStatus> fullRevenueStatuses = Arrays.asList(
-            OrderStatus.DELIVERED, OrderStatus.REFUND_REQUESTED, OrderStatus.AWAITING_GOODS_RETURN,  
-            OrderStatus.REFUNDING, OrderStatus.GOODS_RECEIVED_FROM_CUSTOMER, OrderStatus.GOODS_RETURNED_TO_WAREHOUSE
-        );
-        
-        BigDecimal fullRevenue = orderRepository.sumRevenueByDateRangeAndStatuses(startTime, endTime, fullRevenueStatuses);
-        if (fullRevenue == null) fullRevenue = BigDecimal.ZERO;
-        
-        BigDecimal fullDiscounts = orderRepository.sumTotalDiscountsByDateRangeAndStatuses(startTime, endTime, fullRevenueStatuses);
-        if (fullDiscounts == null) fullDiscounts = BigDecimal.ZERO;
-        
-        totalNetRevenue = totalNetRevenue.add(fullRevenue.subtract(fullDiscounts));
-        
-        // 2. Các đơn PARTIALLY_REFUNDED: subtotal - discounts - actual refunded amount
-        List<OrderStatus> partialStatuses = Arrays.asList(OrderStatus.PARTIALLY_REFUNDED);
-        
-        BigDecimal partialSubtotal = orderRepository.sumRevenueByDateRangeAndStatuses(startTime, endTime, partialStatuses);
-        if (partialSubtotal == null) partialSubtotal = BigDecimal.ZERO;
-        
-        BigDecimal partialDiscounts = orderRepository.sumTotalDiscountsByDateRangeAndStatuses(startTime, endTime, partialStatuses);
-        if (partialDiscounts == null) partialDiscounts = BigDecimal.ZERO;
-        
-        // CHÍNH XÁC: Chỉ lấy refunded amount từ orders PARTIALLY_REFUNDED trong khoảng thời gian này
-        BigDecimal partialRefunded = getRefundedAmountFromPartialOrders(startTime, endTime);
-        
-        BigDecimal partialNetRevenue = partialSubtotal.subtract(partialDiscounts).subtract(partialRefunded);
-        totalNetRevenue = totalNetRevenue.add(partialNetRevenue);
-        
-        // 3. Các đơn REFUNDED: Net revenue = 0 (không tính vào)
-        
-        log.info("DEBUG: Full Revenue = {} - {} = {}, Partial = {} - {} - {} = {}, Total = {}", 
-                fullRevenue, fullDiscounts, fullRevenue.subtract(fullDiscounts),
-                partialSubtotal, partialDiscounts, partialRefunded, partialNetRevenue,
-                totalNetRevenue);
-        
-        return totalNetRevenue;
-    }
-    
-    /**
-     * Lấy chính xác số tiền đã hoàn từ các đơn PARTIALLY_REFUNDED
-     */
-    private BigDecimal getRefundedAmountFromPartialOrders(Long startTime, Long endTime) {
-        // Query chỉ lấy refunded amount từ orders có status = PARTIALLY_REFUNDED trong thời gian
-        BigDecimal result = orderRepository.sumRefundedAmountFromPartialOrdersByDateRange(startTime, endTime);
-        return result != null ? result : BigDecimal.ZERO;
+        return loadWindowTotals(Collections.singletonList(new Long[]{startTime, endTime})).get(0).netRevenue();
     }
     
     /**
@@ -525,6 +488,13 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
     public BigDecimal calculateNetRevenueForPeriod(Long startTime, Long endTime) {
         return calculateTrueNetRevenue(startTime, endTime);
     }
+
+    @Override
+    public List<BigDecimal> calculateNetRevenueForPeriods(List<Long[]> periods) {
+        return loadWindowTotals(periods).stream()
+            .map(WindowTotals::netRevenue)
+            .collect(Collectors.toList());
+    }
     
     //  THÊM: Tính doanh thu trung bình trên mỗi đơn
     private BigDecimal calculateAverageRevenuePerOrder(BigDecimal totalRevenue, Long totalOrders) {
@@ -534,30 +504,97 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
         return totalRevenue.divide(BigDecimal.valueOf(totalOrders), 2, RoundingMode.HALF_UP);
     }
     
-    private BigDecimal calculateNetProfit(Long startTime, Long endTime) {
-        //  SỬA: Sử dụng doanh thu ròng thay vì gross revenue
-        BigDecimal netRevenue = calculateNetRevenue(startTime, endTime);
-        BigDecimal shippingCost = orderRepository.sumShippingFeeByDateRangeAndStatuses(startTime, endTime, SUCCESS_STATUSES);
+    private BigDecimal calculateNetProfit(WindowTotals totals) {
         // Tạm thời tính lợi nhuận = doanh thu ròng - phí ship (có thể mở rộng thêm chi phí khác)
-        return netRevenue.subtract(shippingCost);
+        return totals.netRevenue().subtract(totals.shippingFee(SUCCESS_STATUSES));
     }
     
-    private Double calculateCodRate(Long startTime, Long endTime) {
-        Long totalOrders = orderRepository.countByDateRangeAndStatuses(startTime, endTime, SUCCESS_STATUSES);
-        Long codOrders = orderRepository.countCodOrdersByDateRangeAndStatuses(startTime, endTime, SUCCESS_STATUSES);
+    private Double calculateCodRate(WindowTotals totals) {
+        long totalOrders = totals.count(SUCCESS_STATUSES);
+        long codOrders = totals.codCount(SUCCESS_STATUSES);
         
         if (totalOrders == 0) return 0.0;
         return Math.round((codOrders * 100.0 / totalOrders) * 100.0) / 100.0;
     }
     
-    private Double calculateFailedCodRate(Long startTime, Long endTime) {
-        Long totalCodOrders = orderRepository.countCodOrdersByDateRangeAndStatuses(startTime, endTime, 
-            Arrays.asList(OrderStatus.values())); // Tất cả trạng thái
-        Long failedCodOrders = orderRepository.countFailedCodOrdersByDateRange(startTime, endTime, FAILED_COD_STATUSES);
+    private Double calculateFailedCodRate(WindowTotals totals) {
+        long totalCodOrders = totals.codCountAll(); // Tất cả trạng thái
+        long failedCodOrders = totals.codCount(FAILED_COD_STATUSES);
         
         if (totalCodOrders == 0) return 0.0;
         return Math.round((failedCodOrders * 100.0 / totalCodOrders) * 100.0) / 100.0;
     }
+
+    /**
+     * Tổng hợp đơn hàng theo trạng thái cho nhiều khoảng thời gian trong 1 query:
+     * quét 1 lần khoảng bao [min start, max end], mỗi khoảng là 1 nhóm cột SUM(CASE ...)
+     * - Số tiền hoàn được gom trước theo đơn (refund COMPLETED) để không nhân bản dòng đơn hàng
+     * - Kết quả theo đúng thứ tự periods ({start, end}, đều tính cả 2 đầu như các query cũ)
+     */
+    private List<WindowTotals> loadWindowTotals(List<Long[]> periods) {
+        List<WindowTotals> result = new ArrayList<>(periods.size());
+        if (periods.isEmpty()) {
+            return result;
+        }
+        if (periods.size() > MAX_WINDOWS_PER_QUERY) {
+            // Giới hạn số cột / tham số của 1 câu SQL (vd: thống kê theo ngày cả năm)
+            for (int i = 0; i < periods.size(); i += MAX_WINDOWS_PER_QUERY) {
+                result.addAll(loadWindowTotals(periods.subList(i, Math.min(i + MAX_WINDOWS_PER_QUERY, periods.size()))));
+            }
+            return result;
+        }
+        long minStart = Long.MAX_VALUE;
+        long maxEnd = Long.MIN_VALUE;
+        StringBuilder jpql = new StringBuilder("SELECT o.orderStatus");
+        for (int i = 0; i < periods.size(); i++) {
+            minStart = Math.min(minStart, periods.get(i)[0]);
+            maxEnd = Math.max(maxEnd, periods.get(i)[1]);
+            String inWindow = "o.orderDate >= :s" + i + " AND o.orderDate <= :e" + i;
+            jpql.append(", SUM(CASE WHEN ").append(inWindow).append(" THEN 1 ELSE 0 END)")
+                .append(", SUM(CASE WHEN ").append(inWindow).append(" AND o.paymentMethod = 'COD' THEN 1 ELSE 0 END)")
+                .append(", SUM(CASE WHEN ").append(inWindow).append(" THEN o.subtotal END)")
+                .append(", SUM(CASE WHEN ").append(inWindow).append(" THEN o.discountAmount + o.discountShipping END)")
+                .append(", SUM(CASE WHEN ").append(inWindow).append(" THEN o.shippingFee END)")
+                .append(", SUM(CASE WHEN ").append(inWindow).append(" THEN refund.amount END)");
+        }
+        jpql.append(" FROM Order o")
+            .append(" LEFT JOIN (SELECT rr.order.id as orderId, SUM(rr.totalRefundAmount) as amount")
+            .append(" FROM RefundRequest rr WHERE rr.status = 'COMPLETED' GROUP BY rr.order.id) refund")
+            .append(" ON refund.orderId = o.id")
+            .append(" WHERE o.orderDate >= :minStart AND o.orderDate <= :maxEnd")
+            .append(" GROUP BY o.orderStatus");
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class)
+            .setParameter("minStart", minStart)
+            .setParameter("maxEnd", maxEnd);
+        for (int i = 0; i < periods.size(); i++) {
+            query.setParameter("s" + i, periods.get(i)[0]);
+            query.setParameter("e" + i, periods.get(i)[1]);
+            result.add(new WindowTotals());
+        }
+
+        for (Object[] row : query.getResultList()) {
+            OrderStatus status = (OrderStatus) row[0];
+            for (int i = 0; i < periods.size(); i++) {
+                int col = 1 + i * 6;
+                result.get(i).byStatus.put(status, new StatusTotals(
+                    toLong(row[col]), toLong(row[col + 1]), toBigDecimal(row[col + 2]),
+                    toBigDecimal(row[col + 3]), toBigDecimal(row[col + 4]), toBigDecimal(row[col + 5])));
+            }
+        }
+        return result;
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+    }
     
     private String formatPeriodDisplay(String dateStr, String period) {
         //  FIX: Format hiển thị theo period type
@@ -708,4 +745,69 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
             .atZone(ZoneId.systemDefault())
             .toInstant().toEpochMilli();
     }
+
+    private static final class StatusTotals {
+        final long orders;
+        final long codOrders;
+        final BigDecimal subtotal;
+        final BigDecimal discounts;
+        final BigDecimal shippingFee;
+        final BigDecimal refunded;
+
+        StatusTotals(long orders, long codOrders, BigDecimal subtotal, BigDecimal discounts,
+                BigDecimal shippingFee, BigDecimal refunded) {
+            this.orders = orders;
+            this.codOrders = codOrders;
+            this.subtotal = subtotal;
+            this.discounts = discounts;
+            this.shippingFee = shippingFee;
+            this.refunded = refunded;
+        }
+    }
+
+    /**
+     * Số liệu 1 khoảng thời gian, theo trạng thái đơn; mọi KPI được suy ra từ đây
+     */
+    private static final class WindowTotals {
+        final Map<OrderStatus, StatusTotals> byStatus = new EnumMap<>(OrderStatus.class);
+
+        long countAll() {
+            return byStatus.values().stream().mapToLong(t -> t.orders).sum();
+        }
+
+        long codCountAll() {
+            return byStatus.values().stream().mapToLong(t -> t.codOrders).sum();
+        }
+
+        long count(List<OrderStatus> statuses) {
+            return totals(statuses).mapToLong(t -> t.orders).sum();
+        }
+
+        long codCount(List<OrderStatus> statuses) {
+            return totals(statuses).mapToLong(t -> t.codOrders).sum();
+        }
+
+        BigDecimal subtotal(List<OrderStatus> statuses) {
+            return totals(statuses).map(t -> t.subtotal).reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+
+        BigDecimal shippingFee(List<OrderStatus> statuses) {
+            return totals(statuses).map(t -> t.shippingFee).reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+
+        BigDecimal netRevenue() {
+            BigDecimal net = totals(FULL_REVENUE_STATUSES)
+                .map(t -> t.subtotal.subtract(t.discounts))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+            StatusTotals partial = byStatus.get(OrderStatus.PARTIALLY_REFUNDED);
+            if (partial != null) {
+                net = net.add(partial.subtotal.subtract(partial.discounts).subtract(partial.refunded));
+            }
+            return net;
+        }
+
+        private Stream<StatusTotals> totals(List<OrderStatus> statuses) {
+            return statuses.stream().map(byStatus::get).filter(Objects::nonNull);
+        }
+    }
 }
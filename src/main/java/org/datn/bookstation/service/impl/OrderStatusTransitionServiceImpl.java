@@ -10,6 +10,7 @@ import org.datn.bookstation.entity.enums.OrderStatus;
 import org.datn.bookstation.repository.*;
 import org.datn.bookstation.service.OrderStatusTransitionService;
 import org.datn.bookstation.service.PointManagementService;
+import org.datn.bookstation.service.StockReservationService;
 import org.datn.bookstation.service.VoucherManagementService;
 import org.datn.bookstation.service.OrderService; //  THÊM import OrderService
 import org.datn.bookstation.utils.OrderStatusUtil;
@@ -37,6 +38,7 @@ public class OrderStatusTransitionServiceImpl implements OrderStatusTransitionSe
     private final PointManagementService pointManagementService;
     private final VoucherManagementService voucherManagementService;
     private final OrderService orderService; //  Gọi updateStatus với đầy đủ business logic
+    private final StockReservationService stockReservationService;
     
     public OrderStatusTransitionServiceImpl(
             OrderRepository orderRepository,
@@ -47,7 +49,8 @@ public class OrderStatusTransitionServiceImpl implements OrderStatusTransitionSe
             RefundRequestRepository refundRequestRepository,
             PointManagementService pointManagementService,
             VoucherManagementService voucherManagementService,
-            @Lazy OrderService orderService //  @Lazy để tránh circular dependency
+            @Lazy OrderService orderService, //  @Lazy để tránh circular dependency
+            StockReservationService stockReservationService
     ) {
         this.orderRepository = orderRepository;
         this.orderDetailRepository = orderDetailRepository;
@@ -58,6 +61,7 @@ public class OrderStatusTransitionServiceImpl implements OrderStatusTransitionSe
         this.pointManagementService = pointManagementService;
         this.voucherManagementService = voucherManagementService;
         this.orderService = orderService;
+        this.stockReservationService = stockReservationService;
     }
     
     // Định nghĩa các luồng chuyển đổi trạng thái hợp lệ
@@ -332,6 +336,8 @@ public class OrderStatusTransitionServiceImpl implements OrderStatusTransitionSe
         
         try {
             List<OrderDetail> orderDetails = orderDetailRepository.findByOrderId(order.getId());
+            // Dòng cần hoàn kho khi hủy: hoàn 1 lần sau vòng lặp, khóa dòng cùng thứ tự với lúc tạo đơn
+            List<OrderDetail> detailsToRelease = new ArrayList<>();
             
             for (OrderDetail detail : orderDetails) {
                 Book book = detail.getBook();
@@ -362,15 +368,8 @@ public class OrderStatusTransitionServiceImpl implements OrderStatusTransitionSe
                     case CANCELED:
                         // KHÔNG cộng stock khi hủy đơn - chỉ khi đã shipped
                         if (order.getOrderStatus() == OrderStatus.SHIPPED || order.getOrderStatus() == OrderStatus.CONFIRMED) {
-                            // Khôi phục stock vì hàng chưa giao
-                            if (detail.getFlashSaleItem() != null) {
-                                FlashSaleItem flashSaleItem = detail.getFlashSaleItem();
-                                flashSaleItem.setStockQuantity(flashSaleItem.getStockQuantity() + quantity);
-                                flashSaleItemRepository.save(flashSaleItem);
-                            } else {
-                                book.setStockQuantity(book.getStockQuantity() + quantity);
-                                bookRepository.save(book);
-                            }
+                            // Khôi phục stock vì hàng chưa giao (cùng cách hoàn như OrderServiceImpl khi hủy đơn)
+                            detailsToRelease.add(detail);
                             adjustments.add(OrderStatusTransitionResponse.BusinessImpactSummary.StockImpact.StockAdjustment.builder()
                                 .bookId(book.getId())
                                 .bookTitle(book.getBookName())
@@ -418,19 +417,17 @@ public class OrderStatusTransitionServiceImpl implements OrderStatusTransitionSe
                             if (detail.getFlashSaleItem() != null) {
                                 //  Flash sale: CỘNG STOCK CHO CẢ FLASH SALE ITEM VÀ BOOK GỐC
                                 FlashSaleItem flashSaleItem = detail.getFlashSaleItem();
-                                flashSaleItem.setStockQuantity(flashSaleItem.getStockQuantity() + warehouseRefundQuantity);
-                                flashSaleItemRepository.save(flashSaleItem);
+                                stockReservationService.releaseFlashSaleStock(flashSaleItem,
+                                        order.getUser() != null ? order.getUser().getId() : null, warehouseRefundQuantity);
                                 
                                 // CỘNG STOCK CHO BOOK GỐC LUÔN
-                                book.setStockQuantity(book.getStockQuantity() + warehouseRefundQuantity);
-                                bookRepository.save(book);
+                                stockReservationService.releaseBookStock(book, warehouseRefundQuantity);
                                 
                                 log.info(" Restored stock for flash sale item {}: {} units and book {}: {} units", 
                                          flashSaleItem.getId(), warehouseRefundQuantity, book.getId(), warehouseRefundQuantity);
                             } else {
                                 //  Book thường: CHỈ CỘNG STOCK CHO BOOK
-                                book.setStockQuantity(book.getStockQuantity() + warehouseRefundQuantity);
-                                bookRepository.save(book);
+                                stockReservationService.releaseBookStock(book, warehouseRefundQuantity);
                                 
                                 log.info(" Restored stock for book {}: {} units (regular book)", 
                                          book.getId(), warehouseRefundQuantity);
@@ -449,6 +446,7 @@ public class OrderStatusTransitionServiceImpl implements OrderStatusTransitionSe
                         break;
                 }
             }
+            stockReservationService.releaseOrderDetailStocks(detailsToRelease);
         } catch (Exception e) {
             log.error("Lỗi xử lý kho hàng: {}", e.getMessage(), e);
         }
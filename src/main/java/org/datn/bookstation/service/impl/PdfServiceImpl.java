@@ -1,33 +1,102 @@
 package org.datn.bookstation.service.impl;
 
+import com.openhtmltopdf.extend.impl.FSDefaultCacheStore;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.datn.bookstation.dto.response.PdfResponse;
 import org.datn.bookstation.entity.*;
 import org.datn.bookstation.repository.OrderRepository;
 import org.datn.bookstation.service.PdfService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-
-// ✅ Thêm import này
-import java.util.Base64;
-
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 🧾 PDF SERVICE IMPLEMENTATION
+ * - Font DejaVu Sans và logo được đọc 1 lần khi khởi động; metrics font dùng chung qua cache của openhtmltopdf
+ * - Template "invoice" được Thymeleaf parse 1 lần và cache (spring.thymeleaf.cache)
+ * - Render trên pool worker giới hạn (pdf.render.*) vào buffer, hàng đợi đầy thì thread gọi tự render;
+ * controller chỉ trả response khi đã render xong (lỗi render → 500, không phải 200 với file cụt)
+ * - In hàng loạt gom nhiều hóa đơn vào 1 file ZIP; 1 hóa đơn lỗi thì hủy các lần render còn lại
+ */
 @Service
+@Slf4j
 public class PdfServiceImpl implements PdfService {
 
+    private static final String FONT_FAMILY = "DejaVu Sans";
+    private static final String FONT_PATH = "/fonts/DejaVuSans.ttf";
+    private static final String LOGO_PATH = "/static/images/bookstation-logo.png";
+
     @Autowired
     private TemplateEngine templateEngine;
 
     @Autowired
     private OrderRepository orderRepository;
 
+    @Value("${pdf.render.pool-size:0}")
+    private int poolSize;
+
+    @Value("${pdf.render.queue-capacity:100}")
+    private int queueCapacity;
+
+    private byte[] fontBytes;
+    private String logoBase64;
+    // Metrics font đã parse, dùng chung giữa các lần render (thread-safe)
+    private final FSDefaultCacheStore fontMetricsCache = new FSDefaultCacheStore();
+    private ThreadPoolExecutor renderPool;
+
+    @PostConstruct
+    public void init() {
+        fontBytes = readResource(FONT_PATH);
+        if (fontBytes == null) {
+            log.warn("🧾 PDF: Font not found in {}, invoices will use the default font", FONT_PATH);
+        }
+        byte[] logoBytes = readResource(LOGO_PATH);
+        // Không có logo thì template hiển thị logo text
+        logoBase64 = logoBytes != null ? "data:image/png;base64," + Base64.getEncoder().encodeToString(logoBytes) : "";
+
+        int threads = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors());
+        AtomicInteger threadIndex = new AtomicInteger();
+        renderPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-render-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        renderPool.allowCoreThreadTimeOut(true);
+        log.info("🧾 PDF: Render pool ready with {} threads", threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdown();
+    }
+
     @Override
     public byte[] generateInvoicePdf(Integer orderId) throws Exception {
         PdfResponse invoiceData = getInvoiceData(orderId);
@@ -36,13 +105,80 @@ public class PdfServiceImpl implements PdfService {
 
     @Override
     public byte[] generateInvoicePdf(PdfResponse invoiceData) throws Exception {
+        return await(submitRender(invoiceData));
+    }
+
+    @Override
+    public byte[] generateInvoiceZip(List<PdfResponse> invoices) throws IOException {
+        long start = System.currentTimeMillis();
+        List<byte[]> pdfs = renderAll(invoices);
+
+        int totalSize = pdfs.stream().mapToInt(pdf -> pdf.length).sum();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(totalSize + 1024);
+        Set<String> entryNames = new HashSet<>();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < invoices.size(); i++) {
+                String name = "invoice-" + invoices.get(i).getOrderCode();
+                // Tên trùng (mã đơn trùng / rỗng) thì thêm số thứ tự
+                String entryName = entryNames.add(name) ? name + ".pdf" : name + "-" + (i + 1) + ".pdf";
+                entryNames.add(entryName);
+                zip.putNextEntry(new ZipEntry(entryName));
+                zip.write(pdfs.get(i));
+                zip.closeEntry();
+            }
+        }
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info("🧾 PDF: Rendered {} invoices into ZIP in {} ms ({} invoices/s)",
+                invoices.size(), elapsed, invoices.size() * 1000L / elapsed);
+        return out.toByteArray();
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    /**
+     * Render 1 hóa đơn trên pool worker vào buffer
+     */
+    private Future<byte[]> submitRender(PdfResponse invoiceData) {
+        return renderPool.submit(() -> {
+            ByteArrayOutputStream os = new ByteArrayOutputStream(32 * 1024);
+            renderInvoice(invoiceData, os);
+            return os.toByteArray();
+        });
+    }
+
+    /**
+     * Render toàn bộ hóa đơn (giữ thứ tự); chỉ gửi trước tối đa 2 x số worker để không chiếm hết
+     * hàng đợi của pool. Lỗi ở 1 hóa đơn thì hủy các lần render đang chờ rồi ném lỗi
+     */
+    private List<byte[]> renderAll(List<PdfResponse> invoices) throws IOException {
+        int window = renderPool.getMaximumPoolSize() * 2;
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        List<byte[]> pdfs = new ArrayList<>(invoices.size());
+        int next = 0;
+        try {
+            for (int i = 0; i < invoices.size(); i++) {
+                while (next < invoices.size() && next - i < window) {
+                    pending.add(submitRender(invoices.get(next++)));
+                }
+                pdfs.add(await(pending.poll()));
+            }
+            return pdfs;
+        } catch (IOException | RuntimeException e) {
+            pending.forEach(future -> future.cancel(true));
+            log.warn("🧾 PDF: Bulk render failed after {}/{} invoices, cancelled {} pending renders",
+                    pdfs.size(), invoices.size(), pending.size());
+            throw e;
+        }
+    }
+
+    private void renderInvoice(PdfResponse invoiceData, OutputStream out) throws IOException {
         Context context = new Context();
 
         // Set locale UTF-8
         context.setLocale(java.util.Locale.forLanguageTag("vi-VN"));
 
-        // Thêm logo Base64
-        String logoBase64 = getLogoAsBase64();
+        // Logo Base64 (đọc sẵn khi khởi động)
         context.setVariable("logoBase64", logoBase64);
 
         // Set variables
@@ -69,69 +205,71 @@ public class PdfServiceImpl implements PdfService {
 
         String html = templateEngine.process("invoice", context);
 
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
         PdfRendererBuilder builder = new PdfRendererBuilder();
         builder.useFastMode();
-
-        // ✅ Load font DejaVu Sans đúng cách
-        try {
-            // Cách 1: Load từ resources
-            InputStream fontStream = this.getClass().getResourceAsStream("/fonts/DejaVuSans.ttf");
-            if (fontStream != null) {
-                builder.useFont(() -> this.getClass().getResourceAsStream("/fonts/DejaVuSans.ttf"), "DejaVu Sans");
-                System.out.println("✅ DejaVu Sans font loaded from resources");
-            } else {
-                System.out.println("❌ Font not found in /fonts/DejaVuSans.ttf");
-            }
-        } catch (Exception e) {
-            System.out.println("❌ Error loading DejaVu font: " + e.getMessage());
+        builder.useCacheStore(PdfRendererBuilder.CacheStore.PDF_FONT_METRICS, fontMetricsCache);
+        if (fontBytes != null) {
+            builder.useFont(() -> new ByteArrayInputStream(fontBytes), FONT_FAMILY);
         }
-
-        // ✅ Cách 2: Load từ file system (backup)
-        try {
-            java.io.File fontFile = new java.io.File("src/main/resources/fonts/DejaVuSans.ttf");
-            if (fontFile.exists()) {
-                builder.useFont(fontFile, "DejaVu Sans");
-                System.out.println("✅ DejaVu Sans font loaded from file system");
-            }
-        } catch (Exception e) {
-            System.out.println("❌ Error loading font from file system: " + e.getMessage());
-        }
-
         builder.withHtmlContent(html, null);
-        builder.toStream(os);
+        builder.toStream(out);
         builder.run();
-
-        return os.toByteArray();
     }
 
-    private String getLogoAsBase64() {
+    private static <T> T await(Future<T> future) throws IOException {
         try {
-            // Đọc logo từ resources
-            InputStream logoStream = this.getClass().getResourceAsStream("/static/images/bookstation-logo.png");
-            if (logoStream == null) {
-                // Fallback: tạo logo text nếu không tìm thấy file
-                return "";
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Render PDF bị gián đoạn", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
             }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Lỗi khi render PDF", cause);
+        }
+    }
 
-            byte[] logoBytes = logoStream.readAllBytes();
-            String base64Logo = Base64.getEncoder().encodeToString(logoBytes);
-            return "data:image/png;base64," + base64Logo;
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ""; // Trả về empty nếu có lỗi
+    private byte[] readResource(String path) {
+        try (InputStream in = this.getClass().getResourceAsStream(path)) {
+            return in != null ? in.readAllBytes() : null;
+        } catch (IOException e) {
+            log.error("🧾 PDF: Error reading resource {}", path, e);
+            return null;
         }
     }
 
     @Override
+    @Transactional(readOnly = true)
     public PdfResponse getInvoiceData(Integer orderId) {
         Optional<Order> orderOpt = orderRepository.findById(orderId);
         if (orderOpt.isEmpty()) {
             throw new RuntimeException("Không tìm thấy đơn hàng với ID: " + orderId);
         }
+        return toInvoiceData(orderOpt.get());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PdfResponse> getInvoiceData(List<Integer> orderIds) {
+        Map<Integer, Order> orders = orderRepository.findAllById(orderIds).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        List<PdfResponse> result = new ArrayList<>(orderIds.size());
+        for (Integer orderId : orderIds) {
+            Order order = orders.get(orderId);
+            if (order == null) {
+                throw new RuntimeException("Không tìm thấy đơn hàng với ID: " + orderId);
+            }
+            result.add(toInvoiceData(order));
+        }
+        return result;
+    }
 
-        Order order = orderOpt.get();
+    private PdfResponse toInvoiceData(Order order) {
         PdfResponse response = new PdfResponse();
 
         // Thông tin đơn hàng
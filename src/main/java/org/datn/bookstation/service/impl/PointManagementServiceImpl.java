@@ -5,6 +5,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.datn.bookstation.entity.*;
 import org.datn.bookstation.repository.*;
 import org.datn.bookstation.service.PointManagementService;
+import org.datn.bookstation.service.RankLadderService;
+import org.datn.bookstation.service.StatisticsSnapshotService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,6 +24,8 @@ public class PointManagementServiceImpl implements PointManagementService {
     private final UserRepository userRepository;
     private final RankRepository rankRepository;
     private final UserRankRepository userRankRepository;
+    private final RankLadderService rankLadderService;
+    private final StatisticsSnapshotService statisticsSnapshotService;
     
     @Override
     public void earnPointsFromOrder(Order order, User user) {
@@ -71,6 +75,7 @@ public class PointManagementServiceImpl implements PointManagementService {
         user.setTotalSpent(currentTotalSpent.add(order.getTotalAmount()));
         user.setUpdatedAt(System.currentTimeMillis());
         userRepository.save(user);
+        statisticsSnapshotService.onPointsChanged(earnedPoints, earnedPoints, 0);
         
         // Cập nhật rank
         updateUserRank(user);
@@ -131,6 +136,7 @@ public class PointManagementServiceImpl implements PointManagementService {
         user.setTotalSpent(newTotalSpent);
         user.setUpdatedAt(System.currentTimeMillis());
         userRepository.save(user);
+        statisticsSnapshotService.onPointsChanged(newTotalPoints - currentTotalPoints, 0, totalPointsToDeduct);
         
         // Cập nhật rank
         updateUserRank(user);
@@ -178,6 +184,7 @@ public class PointManagementServiceImpl implements PointManagementService {
             int currentPoints = user.getTotalPoint() != null ? user.getTotalPoint() : 0;
             user.setTotalPoint(Math.max(0, currentPoints - pointsToDeduct)); // Không cho phép âm
             userRepository.save(user);
+            statisticsSnapshotService.onPointsChanged(user.getTotalPoint() - currentPoints, 0, pointsToDeduct);
             
             log.info("✅ Deducted {} points for partial refund {} VND from order {}", 
                     pointsToDeduct, refundAmount, order.getCode());
@@ -209,34 +216,25 @@ public class PointManagementServiceImpl implements PointManagementService {
             return;
         }
         
-        // Tìm rank phù hợp nhất với tổng chi tiêu hiện tại
-        List<Rank> activeRanks = rankRepository.findAll().stream()
-            .filter(rank -> rank.getStatus() != null && rank.getStatus() == 1)
-            .filter(rank -> rank.getMinSpent() != null)
-            .filter(rank -> user.getTotalSpent().compareTo(rank.getMinSpent()) >= 0)
-            .sorted((r1, r2) -> r2.getMinSpent().compareTo(r1.getMinSpent())) // Sắp xếp giảm dần
-            .toList();
+        // Tìm rank phù hợp nhất với tổng chi tiêu hiện tại (ladder trong bộ nhớ, tìm nhị phân)
+        Integer newRankId = rankLadderService.resolveRankId(user.getTotalSpent());
         
-        if (activeRanks.isEmpty()) {
+        if (newRankId == null) {
             log.info("No suitable rank found for user {} with total spent: {}", 
                      user.getEmail(), user.getTotalSpent());
             return;
         }
-        
-        Rank newRank = activeRanks.get(0); // Rank cao nhất phù hợp
+        String newRankName = rankLadderService.getRankName(newRankId);
         
         // Kiểm tra rank hiện tại của user
-        List<UserRank> currentActiveRanks = userRankRepository.findAll().stream()
-            .filter(ur -> ur.getUser() != null && ur.getUser().getId().equals(user.getId()) 
-                         && ur.getStatus() != null && ur.getStatus() == 1)
-            .toList();
+        List<UserRank> currentActiveRanks = userRankRepository.findByUserIdAndStatus(user.getId(), (byte) 1);
         
         // Nếu đã có rank này rồi thì không cần cập nhật
         boolean alreadyHasThisRank = currentActiveRanks.stream()
-            .anyMatch(ur -> ur.getRank() != null && ur.getRank().getId().equals(newRank.getId()));
+            .anyMatch(ur -> ur.getRank() != null && ur.getRank().getId().equals(newRankId));
         
         if (alreadyHasThisRank) {
-            log.info("User {} already has rank {}", user.getEmail(), newRank.getRankName());
+            log.info("User {} already has rank {}", user.getEmail(), newRankName);
             return;
         }
         
@@ -248,14 +246,12 @@ public class PointManagementServiceImpl implements PointManagementService {
         }
         
         // Tạo hoặc activate rank mới
-        List<UserRank> existingUserRanks = userRankRepository.findAll().stream()
-            .filter(ur -> ur.getUser() != null && ur.getUser().getId().equals(user.getId()) 
-                         && ur.getRank() != null && ur.getRank().getId().equals(newRank.getId()))
-            .toList();
+        UserRank existingUserRank = userRankRepository
+            .findFirstByUserIdAndRankIdOrderByIdAsc(user.getId(), newRankId)
+            .orElse(null);
         
-        if (!existingUserRanks.isEmpty()) {
+        if (existingUserRank != null) {
             // Activate rank đã tồn tại
-            UserRank existingUserRank = existingUserRanks.get(0);
             existingUserRank.setStatus((byte) 1);
             existingUserRank.setUpdatedAt(System.currentTimeMillis());
             userRankRepository.save(existingUserRank);
@@ -263,13 +259,25 @@ public class PointManagementServiceImpl implements PointManagementService {
             // Tạo mới UserRank
             UserRank newUserRank = new UserRank();
             newUserRank.setUser(user);
-            newUserRank.setRank(newRank);
+            newUserRank.setRank(rankRepository.getReferenceById(newRankId));
             newUserRank.setStatus((byte) 1);
             newUserRank.setCreatedAt(System.currentTimeMillis());
             userRankRepository.save(newUserRank);
         }
         
-        log.info("Updated rank for user {} to {}", user.getEmail(), newRank.getRankName());
+        log.info("Updated rank for user {} to {}", user.getEmail(), newRankName);
+    }
+    
+    @Override
+    public int reRankAllUsers() {
+        long start = System.currentTimeMillis();
+        // Chạy theo thứ tự: tắt hạng cũ → bật lại dòng hạng đích đã có → tạo dòng mới
+        int deactivated = userRankRepository.deactivateRanksOfChangedUsers(start);
+        int reactivated = userRankRepository.reactivateTargetRanks(start);
+        int inserted = userRankRepository.insertTargetRanks(start);
+        log.info("🏅 RE-RANK: {} users moved to a new rank ({} reactivated, {} created, "
+                + "{} old ranks deactivated) in {} ms", reactivated + inserted, reactivated, inserted, deactivated, System.currentTimeMillis() - start);
+        return reactivated + inserted;
     }
     
     @Override
@@ -289,10 +297,7 @@ public class PointManagementServiceImpl implements PointManagementService {
         }
         
         // Tìm rank hiện tại của user
-        List<UserRank> activeUserRanks = userRankRepository.findAll().stream()
-            .filter(ur -> ur.getUser() != null && ur.getUser().getId().equals(user.getId()) 
-                         && ur.getStatus() != null && ur.getStatus() == 1)
-            .toList();
+        List<UserRank> activeUserRanks = userRankRepository.findByUserIdAndStatus(user.getId(), (byte) 1);
         
         if (activeUserRanks.isEmpty()) {
             return BigDecimal.ONE; // Mặc định 1.0 nếu không có rank
@@ -0,0 +1,116 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.entity.Rank;
+import org.datn.bookstation.repository.RankRepository;
+import org.datn.bookstation.service.RankLadderService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 🏅 RANK LADDER SERVICE IMPLEMENTATION
+ * - Hạng đang hoạt động (status = 1, có minSpent) sắp tăng dần theo minSpent
+ * - resolveRankId tìm nhị phân; cùng minSpent thì chọn hạng id nhỏ nhất (giống cách chọn cũ)
+ * - Nạp lần đầu khi được dùng, nạp lại sau khi thêm/sửa/xóa/đổi trạng thái hạng
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RankLadderServiceImpl implements RankLadderService {
+
+    private final RankRepository rankRepository;
+
+    private volatile Rung[] ladder;
+
+    @Override
+    public Integer resolveRankId(BigDecimal totalSpent) {
+        if (totalSpent == null) {
+            return null;
+        }
+        Rung[] rungs = currentLadder();
+        // Vị trí cuối cùng có minSpent <= totalSpent
+        int low = 0;
+        int high = rungs.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (rungs[mid].minSpent.compareTo(totalSpent) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found >= 0 ? rungs[found].rankId : null;
+    }
+
+    @Override
+    public String getRankName(Integer rankId) {
+        for (Rung rung : currentLadder()) {
+            if (rung.rankId.equals(rankId)) {
+                return rung.rankName;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void refresh() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload();
+                }
+            });
+        } else {
+            reload();
+        }
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private Rung[] currentLadder() {
+        Rung[] current = ladder;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (ladder == null) {
+                reload();
+            }
+            return ladder;
+        }
+    }
+
+    private synchronized void reload() {
+        List<Rank> ranks = rankRepository.findAll();
+        ladder = ranks.stream()
+                .filter(rank -> rank.getStatus() != null && rank.getStatus() == 1)
+                .filter(rank -> rank.getMinSpent() != null)
+                // Tăng dần theo minSpent; cùng minSpent thì id lớn trước để phần tử cuối là id nhỏ nhất
+                .sorted(Comparator.comparing(Rank::getMinSpent)
+                        .thenComparing(Rank::getId, Comparator.reverseOrder()))
+                .map(rank -> new Rung(rank.getId(), rank.getRankName(), rank.getMinSpent()))
+                .toArray(Rung[]::new);
+        log.debug("🏅 RANK LADDER: Loaded {} active ranks", ladder.length);
+    }
+
+    private static final class Rung {
+        final Integer rankId;
+        final String rankName;
+        final BigDecimal minSpent;
+
+        Rung(Integer rankId, String rankName, BigDecimal minSpent) {
+            this.rankId = rankId;
+            this.rankName = rankName;
+            this.minSpent = minSpent;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.datn.bookstation.service.impl;
 import lombok.AllArgsConstructor;
 import org.datn.bookstation.entity.Rank;
 import org.datn.bookstation.repository.RankRepository;
+import org.datn.bookstation.service.RankLadderService;
 import org.datn.bookstation.service.RankService;
 import org.springframework.stereotype.Service;
 import org.datn.bookstation.dto.request.RankRequest;
@@ -26,6 +27,7 @@ public class RankServiceImpl implements RankService {
     private final RankRepository rankRepository;
     private final RankMapper rankMapper;
     private final RankResponseMapper rankResponseMapper;
+    private final RankLadderService rankLadderService;
 
     @Override
     public List<Rank> getAll() {
@@ -52,6 +54,7 @@ public class RankServiceImpl implements RankService {
         Rank rank = rankMapper.toRank(rankRequest);
         rank.setCreatedAt(java.time.Instant.now().toEpochMilli());
         Rank saved = rankRepository.save(rank);
+        rankLadderService.refresh();
         return new ApiResponse<>(201, "Tạo mới thành công", saved);
     }
 
@@ -61,12 +64,15 @@ public class RankServiceImpl implements RankService {
         rank.setId(id);
         rank.setCreatedAt(existing.getCreatedAt());
         rank.setUpdatedAt(Instant.now().toEpochMilli());
-        return rankRepository.save(rank);
+        Rank saved = rankRepository.save(rank);
+        rankLadderService.refresh();
+        return saved;
     }
 
     @Override
     public void delete(Integer id) {
         rankRepository.deleteById(id);
+        rankLadderService.refresh();
     }
 
     @Override
@@ -97,6 +103,7 @@ public class RankServiceImpl implements RankService {
         }
         rank.setUpdatedAt(Instant.now().toEpochMilli());
         rankRepository.save(rank);
+        rankLadderService.refresh();
         return new ApiResponse<>(200, "Cập nhật trạng thái thành công", rank);
     }
 }
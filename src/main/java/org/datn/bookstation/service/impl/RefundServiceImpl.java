@@ -17,6 +17,9 @@ import org.datn.bookstation.repository.UserRepository;
 import org.datn.bookstation.repository.RefundItemRepository;
 import org.datn.bookstation.repository.OrderDetailRepository;
 import org.datn.bookstation.service.RefundService;
+import org.datn.bookstation.service.BookProcessingQuantityService;
+import org.datn.bookstation.service.DailySalesRollupService;
+import org.datn.bookstation.service.TrendingScoreService;
 import org.datn.bookstation.utils.RefundReasonUtil; //  THÊM IMPORT MỚI
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -58,6 +61,15 @@ public class RefundServiceImpl implements RefundService {
     @Autowired
     private OrderDetailRepository orderDetailRepository;
 
+    @Autowired
+    private TrendingScoreService trendingScoreService;
+
+    @Autowired
+    private BookProcessingQuantityService bookProcessingQuantityService;
+
+    @Autowired
+    private DailySalesRollupService dailySalesRollupService;
+
     @Override
     public RefundRequestResponse createRefundRequest(RefundRequestCreate request, Integer userId) {
         log.info(" CREATING REFUND REQUEST: orderId={}, userId={}, type={}", 
@@ -134,10 +146,14 @@ public class RefundServiceImpl implements RefundService {
         // Cho phép từ DELIVERED hoặc PARTIALLY_REFUNDED
         if (order.getOrderStatus() == OrderStatus.DELIVERED || 
             order.getOrderStatus() == OrderStatus.PARTIALLY_REFUNDED) {
+            OrderStatus oldStatus = order.getOrderStatus();
             order.setOrderStatus(OrderStatus.REFUND_REQUESTED);
             order.setUpdatedAt(System.currentTimeMillis());
             order.setUpdatedBy(userId);
             orderRepository.save(order);
+            trendingScoreService.onOrderStatusChanged(order, oldStatus, OrderStatus.REFUND_REQUESTED);
+            bookProcessingQuantityService.invalidateOrder(order);
+            dailySalesRollupService.markDirty(order);
         } else {
             throw new RuntimeException("Chỉ có thể tạo yêu cầu hoàn trả từ trạng thái DELIVERED hoặc PARTIALLY_REFUNDED");
         }
@@ -191,6 +207,7 @@ public class RefundServiceImpl implements RefundService {
 
         //  CHUYỂN TRẠNG THÁI ĐỌN HÀNG THEO NGHIỆP VỤ THỰC TẾ
         Order order = request.getOrder();
+        OrderStatus oldStatus = order.getOrderStatus();
         if (approval.getStatus().equals("APPROVED")) {
             //  SỬA: Phê duyệt → Chuyển sang AWAITING_GOODS_RETURN (chờ lấy hàng hoàn trả)
             order.setOrderStatus(OrderStatus.AWAITING_GOODS_RETURN);
@@ -203,6 +220,9 @@ public class RefundServiceImpl implements RefundService {
         order.setUpdatedAt(System.currentTimeMillis());
         order.setUpdatedBy(adminId);
         orderRepository.save(order);
+        trendingScoreService.onOrderStatusChanged(order, oldStatus, order.getOrderStatus());
+        bookProcessingQuantityService.invalidateOrder(order);
+        dailySalesRollupService.markDirty(order);
 
         RefundRequest savedRequest = refundRequestRepository.save(request);
 
@@ -238,10 +258,14 @@ public class RefundServiceImpl implements RefundService {
 
         //  Trả về DELIVERED khi từ chối hoàn trả
         Order order = request.getOrder();
+        OrderStatus oldStatus = order.getOrderStatus();
         order.setOrderStatus(OrderStatus.DELIVERED);
         order.setUpdatedAt(System.currentTimeMillis());
         order.setUpdatedBy(adminId);
         orderRepository.save(order);
+        trendingScoreService.onOrderStatusChanged(order, oldStatus, OrderStatus.DELIVERED);
+        bookProcessingQuantityService.invalidateOrder(order);
+        dailySalesRollupService.markDirty(order);
 
         RefundRequest savedRequest = refundRequestRepository.save(request);
 
@@ -280,10 +304,14 @@ public class RefundServiceImpl implements RefundService {
             ? OrderStatus.REFUNDED 
             : OrderStatus.PARTIALLY_REFUNDED;
         
+        OrderStatus oldStatus = order.getOrderStatus();
         order.setOrderStatus(finalStatus);
         order.setUpdatedAt(System.currentTimeMillis());
         order.setUpdatedBy(adminId);
         orderRepository.save(order);
+        trendingScoreService.onOrderStatusChanged(order, oldStatus, finalStatus);
+        bookProcessingQuantityService.invalidateOrder(order);
+        dailySalesRollupService.markDirty(order);
 
         // Update refund request status
         request.setStatus(RefundStatus.COMPLETED);
@@ -17,6 +17,7 @@ import org.datn.bookstation.repository.BookRepository;
 import org.datn.bookstation.repository.ReviewRepository;
 import org.datn.bookstation.repository.UserRepository;
 import org.datn.bookstation.service.ReviewService;
+import org.datn.bookstation.service.TrendingScoreService;
 import org.datn.bookstation.specification.ReviewSpecification;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -41,6 +42,9 @@ public class ReviewServiceImpl implements ReviewService {
     @Autowired
     private ReviewMapper reviewMapper;
 
+    @Autowired
+    private TrendingScoreService trendingScoreService;
+
     @Override
     public ApiResponse<PaginationResponse<ReviewResponse>> getAllWithFilter(int page, int size, Integer rating, Integer bookId, Integer userId, Long from, Long to, ReviewStatus status, String sortBy, String sortDirection) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.valueOf(sortDirection), sortBy));
@@ -85,6 +89,7 @@ public class ReviewServiceImpl implements ReviewService {
         review.setBook(book);
         review.setUser(user);
         reviewRepository.save(review);
+        trendingScoreService.onReviewChanged(book.getId());
         return new ApiResponse<>(201, "Tạo đánh giá thành công", reviewMapper.toResponse(review));
     }
 
@@ -108,6 +113,7 @@ public class ReviewServiceImpl implements ReviewService {
             existing.setReviewStatus(ReviewStatus.valueOf(request.getReviewStatus()));
         }
         reviewRepository.save(existing);
+        trendingScoreService.onReviewChanged(existing.getBook().getId());
         return new ApiResponse<>(200, "Cập nhật đánh giá thành công", reviewMapper.toResponse(existing));
     }
 
@@ -121,6 +127,7 @@ public class ReviewServiceImpl implements ReviewService {
         ReviewStatus next = current == ReviewStatus.APPROVED ? ReviewStatus.HIDDEN : ReviewStatus.APPROVED;
         review.setReviewStatus(next);
         reviewRepository.save(review);
+        trendingScoreService.onReviewChanged(review.getBook().getId());
         return new ApiResponse<>(200, "Cập nhật trạng thái đánh giá thành công", reviewMapper.toResponse(review));
     }
 
@@ -0,0 +1,224 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.dto.response.statistics.*;
+import org.datn.bookstation.service.StatisticsService;
+import org.datn.bookstation.service.StatisticsSnapshotService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 📊 STATISTICS SNAPSHOT SERVICE IMPLEMENTATION
+ * - Snapshot 5 loại thống kê được tính bằng StatisticsServiceImpl (lần đọc đầu + StatisticsSnapshotScheduler)
+ * - Tổng user / user hoạt động / user mới / tổng điểm / điểm kiếm-tiêu trong tháng được cộng dồn
+ * từ sự kiện và áp lên snapshot khi đọc
+ * - Các số còn lại (rank, top, NXB, NCC, user đã mua hàng, điểm trung bình) chỉ đổi khi tính lại;
+ * snapshotAt trong response cho biết thời điểm tính
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatisticsSnapshotServiceImpl implements StatisticsSnapshotService {
+
+    private final StatisticsService statisticsService;
+
+    private volatile Snapshot snapshot;
+
+    // Chênh lệch đã commit kể từ lần tính snapshot
+    private final AtomicLong totalUsersDelta = new AtomicLong();
+    private final AtomicLong activeUsersDelta = new AtomicLong();
+    private final AtomicLong newUsersDelta = new AtomicLong();
+    private final AtomicLong totalPointsDelta = new AtomicLong();
+    private final AtomicLong pointsEarnedDelta = new AtomicLong();
+    private final AtomicLong pointsSpentDelta = new AtomicLong();
+
+    @Override
+    public UserStatisticsResponse getUserStatistics() {
+        UserStatisticsResponse base = getSnapshot().users;
+        long totalUsers = base.getTotalUsers() + totalUsersDelta.get();
+        long activeUsers = base.getActiveUsers() + activeUsersDelta.get();
+        long newUsers = newUsersDelta.get();
+        long purchasingUsers = base.getPurchasingUsers();
+        return UserStatisticsResponse.builder()
+                .totalUsers(totalUsers)
+                .activeUsers(activeUsers)
+                .activityRate(rate(activeUsers, totalUsers))
+                .newUsersThisWeek(base.getNewUsersThisWeek() + newUsers)
+                .newUsersThisMonth(base.getNewUsersThisMonth() + newUsers)
+                .usersByRank(base.getUsersByRank())
+                .topUsersByPoint(base.getTopUsersByPoint())
+                .purchasingUsers(purchasingUsers)
+                .registeredOnlyUsers(Math.max(0, totalUsers - purchasingUsers))
+                .purchaseRate(rate(purchasingUsers, totalUsers))
+                .snapshotAt(base.getSnapshotAt())
+                .build();
+    }
+
+    @Override
+    public RankStatisticsResponse getRankStatistics() {
+        return getSnapshot().ranks;
+    }
+
+    @Override
+    public PointStatisticsResponse getPointStatistics() {
+        PointStatisticsResponse base = getSnapshot().points;
+        return PointStatisticsResponse.builder()
+                .averagePointsPerUser(base.getAveragePointsPerUser())
+                .totalSystemPoints(Math.max(0, base.getTotalSystemPoints() + totalPointsDelta.get()))
+                .pointsEarnedThisMonth(base.getPointsEarnedThisMonth() + pointsEarnedDelta.get())
+                .pointsSpentThisMonth(base.getPointsSpentThisMonth() + pointsSpentDelta.get())
+                .topPointEarners(base.getTopPointEarners())
+                .snapshotAt(base.getSnapshotAt())
+                .build();
+    }
+
+    @Override
+    public PublisherStatisticsResponse getPublisherStatistics() {
+        return getSnapshot().publishers;
+    }
+
+    @Override
+    public SupplierStatisticsResponse getSupplierStatistics() {
+        return getSnapshot().suppliers;
+    }
+
+    @Override
+    public synchronized void refresh() {
+        long start = System.currentTimeMillis();
+        // Chụp chênh lệch trước khi tính: sự kiện commit trong lúc tính có thể bị đếm 2 lần
+        // tới lần tính lại sau, nhưng không bao giờ bị mất
+        long[] captured = {
+                totalUsersDelta.get(), activeUsersDelta.get(), newUsersDelta.get(),
+                totalPointsDelta.get(), pointsEarnedDelta.get(), pointsSpentDelta.get()
+        };
+
+        UserStatisticsResponse users = statisticsService.getUserStatistics();
+        RankStatisticsResponse ranks = statisticsService.getRankStatistics();
+        PointStatisticsResponse points = statisticsService.getPointStatistics();
+        PublisherStatisticsResponse publishers = statisticsService.getPublisherStatistics();
+        SupplierStatisticsResponse suppliers = statisticsService.getSupplierStatistics();
+        users.setSnapshotAt(start);
+        ranks.setSnapshotAt(start);
+        points.setSnapshotAt(start);
+        publishers.setSnapshotAt(start);
+        suppliers.setSnapshotAt(start);
+
+        snapshot = new Snapshot(users, ranks, points, publishers, suppliers);
+        totalUsersDelta.addAndGet(-captured[0]);
+        activeUsersDelta.addAndGet(-captured[1]);
+        newUsersDelta.addAndGet(-captured[2]);
+        totalPointsDelta.addAndGet(-captured[3]);
+        pointsEarnedDelta.addAndGet(-captured[4]);
+        pointsSpentDelta.addAndGet(-captured[5]);
+
+        log.info("📊 STATISTICS SNAPSHOT: Refreshed in {} ms", System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void onUserCreated(Byte status, Integer totalPoint) {
+        afterCommit(() -> {
+            totalUsersDelta.incrementAndGet();
+            newUsersDelta.incrementAndGet();
+            if (isActive(status)) {
+                activeUsersDelta.incrementAndGet();
+            }
+            if (totalPoint != null) {
+                totalPointsDelta.addAndGet(totalPoint);
+            }
+        });
+    }
+
+    @Override
+    public void onUserStatusChanged(Byte oldStatus, Byte newStatus) {
+        boolean wasActive = isActive(oldStatus);
+        boolean nowActive = isActive(newStatus);
+        if (wasActive == nowActive) {
+            return;
+        }
+        afterCommit(() -> activeUsersDelta.addAndGet(nowActive ? 1 : -1));
+    }
+
+    @Override
+    public void onUserDeleted(Byte status, Integer totalPoint) {
+        afterCommit(() -> {
+            totalUsersDelta.decrementAndGet();
+            if (isActive(status)) {
+                activeUsersDelta.decrementAndGet();
+            }
+            if (totalPoint != null) {
+                totalPointsDelta.addAndGet(-totalPoint);
+            }
+        });
+    }
+
+    @Override
+    public void onPointsChanged(int totalPointDelta, int earned, int spent) {
+        if (totalPointDelta == 0 && earned == 0 && spent == 0) {
+            return;
+        }
+        afterCommit(() -> {
+            totalPointsDelta.addAndGet(totalPointDelta);
+            pointsEarnedDelta.addAndGet(earned);
+            pointsSpentDelta.addAndGet(spent);
+        });
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static boolean isActive(Byte status) {
+        return status != null && status == 1;
+    }
+
+    // Giống StatisticsServiceImpl: phần trăm, làm tròn 2 chữ số
+    private static double rate(long part, long total) {
+        double value = total > 0 ? (double) part / total * 100 : 0.0;
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Snapshot {
+        final UserStatisticsResponse users;
+        final RankStatisticsResponse ranks;
+        final PointStatisticsResponse points;
+        final PublisherStatisticsResponse publishers;
+        final SupplierStatisticsResponse suppliers;
+
+        Snapshot(UserStatisticsResponse users, RankStatisticsResponse ranks, PointStatisticsResponse points,
+                PublisherStatisticsResponse publishers, SupplierStatisticsResponse suppliers) {
+            this.users = users;
+            this.ranks = ranks;
+            this.points = points;
+            this.publishers = publishers;
+            this.suppliers = suppliers;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.datn.bookstation.service.impl;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.entity.Book;
+import org.datn.bookstation.entity.FlashSaleItem;
+import org.datn.bookstation.entity.OrderDetail;
+import org.datn.bookstation.repository.BookRepository;
+import org.datn.bookstation.repository.FlashSaleItemRepository;
+import org.datn.bookstation.service.FlashSaleStockCounterService;
+import org.datn.bookstation.service.StockReservationService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * 📦 STOCK RESERVATION SERVICE IMPLEMENTATION
+ * - Mọi thay đổi tồn kho khi đặt / hủy đơn đều đi qua UPDATE ... WHERE stock >= :quantity
+ * - Thay đổi đang chờ được flush trước UPDATE; Book/FlashSaleItem dùng @DynamicUpdate nên
+ * tồn kho cũ trong entity không bị ghi đè, chỉ refresh khi trừ thất bại để báo tồn kho hiện tại
+ * - Đơn nhiều dòng dùng batch JDBC (sắp theo id để các đơn đồng thời khóa dòng cùng thứ tự)
+ * - Hoàn kho khi hủy đơn khóa dòng cùng thứ tự: flash sale item rồi sách, mỗi loại theo id
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private final BookRepository bookRepository;
+    private final FlashSaleItemRepository flashSaleItemRepository;
+    private final FlashSaleStockCounterService flashSaleStockCounterService;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private static final String DECREASE_BOOK_STOCK_SQL =
+            "UPDATE book SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+    private static final String DECREASE_FLASH_SALE_STOCK_SQL =
+            "UPDATE flash_sale_item SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+
+    @Override
+    public boolean reserveBookStock(Book book, int quantity) {
+        boolean reserved = bookRepository.decreaseStockIfAvailable(book.getId(), quantity) == 1;
+        if (!reserved) {
+            refreshIfManaged(book);
+            log.warn("Stock reservation failed for book {}: requested {}, available {}",
+                    book.getId(), quantity, book.getStockQuantity());
+        }
+        return reserved;
+    }
+
+    @Override
+    public boolean reserveFlashSaleStock(FlashSaleItem flashSaleItem, int quantity) {
+        boolean reserved = flashSaleItemRepository.decreaseStockIfAvailable(flashSaleItem.getId(), quantity) == 1;
+        if (!reserved) {
+            refreshIfManaged(flashSaleItem);
+            log.warn("Stock reservation failed for flash sale item {}: requested {}, available {}",
+                    flashSaleItem.getId(), quantity, flashSaleItem.getStockQuantity());
+        }
+        return reserved;
+    }
+
+    @Override
+    public List<Book> reserveBookStocks(Map<Book, Integer> quantities) {
+        List<Book> failed = batchDecrease(DECREASE_BOOK_STOCK_SQL, quantities, Book::getId);
+        for (Book book : failed) {
+            refreshIfManaged(book);
+            log.warn("Stock reservation failed for book {}: requested {}, available {}",
+                    book.getId(), quantities.get(book), book.getStockQuantity());
+        }
+        return failed;
+    }
+
+    @Override
+    public List<FlashSaleItem> reserveFlashSaleStocks(Map<FlashSaleItem, Integer> quantities) {
+        List<FlashSaleItem> failed = batchDecrease(DECREASE_FLASH_SALE_STOCK_SQL, quantities, FlashSaleItem::getId);
+        for (FlashSaleItem flashSaleItem : failed) {
+            refreshIfManaged(flashSaleItem);
+            log.warn("Stock reservation failed for flash sale item {}: requested {}, available {}",
+                    flashSaleItem.getId(), quantities.get(flashSaleItem), flashSaleItem.getStockQuantity());
+        }
+        return failed;
+    }
+
+    @Override
+    public void releaseBookStock(Book book, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        bookRepository.increaseStock(book.getId(), quantity);
+    }
+
+    @Override
+    public void releaseFlashSaleStock(FlashSaleItem flashSaleItem, Integer userId, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        if (flashSaleStockCounterService.release(flashSaleItem.getId(), userId, quantity)) {
+            // Bộ đếm in-memory sẽ ghi dồn xuống DB
+            return;
+        }
+        flashSaleItemRepository.increaseStock(flashSaleItem.getId(), quantity);
+    }
+
+    @Override
+    public void releaseOrderDetailStock(OrderDetail detail) {
+        releaseOrderDetailStocks(List.of(detail));
+    }
+
+    @Override
+    public void releaseOrderDetailStocks(List<OrderDetail> details) {
+        // flashSaleItemId / bookId -> số lượng, TreeMap để cộng lại theo id tăng dần
+        Map<Integer, Integer> flashSaleQuantities = new TreeMap<>();
+        Map<Integer, FlashSaleItem> flashSaleItems = new HashMap<>();
+        Map<Integer, Integer> flashSaleUsers = new HashMap<>();
+        Map<Integer, Integer> bookQuantities = new TreeMap<>();
+        for (OrderDetail detail : details) {
+            int quantity = detail.getQuantity() != null ? detail.getQuantity() : 0;
+            if (quantity <= 0) {
+                continue;
+            }
+            FlashSaleItem flashSaleItem = detail.getFlashSaleItem();
+            if (flashSaleItem != null) {
+                flashSaleQuantities.merge(flashSaleItem.getId(), quantity, Integer::sum);
+                flashSaleItems.put(flashSaleItem.getId(), flashSaleItem);
+                if (detail.getOrder() != null && detail.getOrder().getUser() != null) {
+                    flashSaleUsers.put(flashSaleItem.getId(), detail.getOrder().getUser().getId());
+                }
+            }
+            // Sách flash sale cũng đã trừ tồn kho sách khi tạo đơn
+            bookQuantities.merge(detail.getBook().getId(), quantity, Integer::sum);
+        }
+        flashSaleQuantities.forEach((flashSaleItemId, quantity) -> releaseFlashSaleStock(
+                flashSaleItems.get(flashSaleItemId), flashSaleUsers.get(flashSaleItemId), quantity));
+        bookQuantities.forEach(bookRepository::increaseStock);
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    /**
+     * Chạy 1 batch UPDATE có điều kiện, trả về các entity có dòng không được cập nhật (không đủ tồn kho)
+     */
+    private <T> List<T> batchDecrease(String sql, Map<T, Integer> quantities, Function<T, Integer> idGetter) {
+        if (quantities == null || quantities.isEmpty()) {
+            return List.of();
+        }
+        // Đẩy thay đổi đang chờ xuống DB trước khi UPDATE ngoài Hibernate
+        entityManager.flush();
+        List<T> entities = new ArrayList<>(quantities.keySet());
+        entities.sort(Comparator.comparing(idGetter));
+        List<Object[]> args = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            int quantity = quantities.get(entity);
+            args.add(new Object[] { quantity, idGetter.apply(entity), quantity });
+        }
+        int[] counts = jdbcTemplate.batchUpdate(sql, args);
+        List<T> failed = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                failed.add(entities.get(i));
+            }
+        }
+        return failed;
+    }
+
+    private void refreshIfManaged(Object entity) {
+        if (entityManager.contains(entity)) {
+            entityManager.refresh(entity);
+        }
+    }
+}
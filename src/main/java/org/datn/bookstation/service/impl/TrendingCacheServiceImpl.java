@@ -1,86 +1,276 @@
 package org.datn.bookstation.service.impl;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.dto.request.TrendingRequest;
+import org.datn.bookstation.dto.response.PaginationResponse;
+import org.datn.bookstation.dto.response.TrendingBookResponse;
 import org.datn.bookstation.service.TrendingCacheService;
-// import org.springframework.cache.CacheManager; // DISABLED - Cache manager không cần thiết nữa
-// import org.springframework.cache.annotation.CacheEvict; // DISABLED
-// import org.springframework.scheduling.annotation.Async; // DISABLED
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.time.LocalDateTime;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
- *  REAL-TIME TRENDING CACHE SERVICE IMPLEMENTATION
- * DISABLED - Cache đã được tắt theo yêu cầu
+ * 🔥 REAL-TIME TRENDING CACHE SERVICE IMPLEMENTATION
+ * - Cache LRU giới hạn số entry + TTL cho các trang getTrendingBooks (key: type-page-size)
+ * - Mỗi entry nhớ danh sách bookId/categoryId của trang để invalidate chọn lọc
+ * - Sự kiện không nằm trong trang nào được gom lại, đủ ngưỡng mới xóa cả loại
+ * - Invalidate trong transaction được hoãn tới sau commit để không cache lại dữ liệu cũ
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class TrendingCacheServiceImpl implements TrendingCacheService {
-    
-    // private final CacheManager cacheManager; // DISABLED - Cache manager không cần thiết nữa
-    
+
+    private static final String DAILY_TRENDING = "DAILY_TRENDING";
+    private static final String HOT_DISCOUNT = "HOT_DISCOUNT";
+
+    // Giới hạn cache
+    private static final int MAX_CACHE_ENTRIES = 200; // type x page x size
+    private static final long CACHE_TTL_MS = 5 * 60 * 1000L; // 5 phút
+
+    // Thresholds cho smart invalidation
+    private static final int MIN_ORDERS_FOR_INVALIDATION = 5; // Tối thiểu 5 đơn hàng mới invalidate
+    private static final int MIN_REVIEWS_FOR_INVALIDATION = 3; // Tối thiểu 3 review mới invalidate
+    private static final long CACHE_REBUILD_INTERVAL_MS = 6 * 60 * 60 * 1000L; // 6 giờ
+
+    // LRU theo thứ tự truy cập, mọi thao tác đều synchronized trên chính map
+    private final Map<String, CacheEntry> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            if (size() > MAX_CACHE_ENTRIES) {
+                sizeEvictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Tăng mỗi lần invalidate: kết quả load bắt đầu trước đó sẽ không được cache
+    private final AtomicLong version = new AtomicLong();
+
+    // Sự kiện đang chờ (sách không nằm trong trang nào đang cache)
+    private final AtomicInteger pendingOrders = new AtomicInteger(0);
+    private final AtomicInteger pendingReviews = new AtomicInteger(0);
+
     // Statistics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sizeEvictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong evictedEntries = new AtomicLong();
     private final AtomicInteger orderInvalidations = new AtomicInteger(0);
     private final AtomicInteger reviewInvalidations = new AtomicInteger(0);
     private final AtomicInteger flashSaleInvalidations = new AtomicInteger(0);
     private final AtomicLong lastInvalidationTime = new AtomicLong();
-    
-    // Thresholds cho smart invalidation
-    private static final int MIN_ORDERS_FOR_INVALIDATION = 5; // Tối thiểu 5 đơn hàng mới invalidate
-    private static final int MIN_REVIEWS_FOR_INVALIDATION = 3; // Tối thiểu 3 review mới invalidate
-    private static final long CACHE_REBUILD_INTERVAL_MS = 6 * 60 * 60 * 1000L; // 6 giờ
-    
+    private final AtomicLong lastFullInvalidationTime = new AtomicLong(System.currentTimeMillis());
+
+    @Override
+    public PaginationResponse<TrendingBookResponse> getOrLoad(TrendingRequest request,
+            Supplier<PaginationResponse<TrendingBookResponse>> loader) {
+        String key = request.getType() + "-" + request.getPage() + "-" + request.getSize();
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                cache.remove(key);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+
+        long versionBeforeLoad = version.get();
+        PaginationResponse<TrendingBookResponse> value = loader.get();
+        if (value == null || value.getContent() == null) {
+            return value;
+        }
+
+        CacheEntry entry = new CacheEntry(request.getType(), value, System.currentTimeMillis() + CACHE_TTL_MS,
+                value.getContent().stream().map(TrendingBookResponse::getId)
+                        .filter(Objects::nonNull).collect(Collectors.toSet()),
+                value.getContent().stream().map(TrendingBookResponse::getCategoryId)
+                        .filter(Objects::nonNull).collect(Collectors.toSet()));
+        synchronized (cache) {
+            // Có invalidate trong lúc load → dữ liệu có thể đã cũ, không cache
+            if (version.get() == versionBeforeLoad) {
+                cache.put(key, entry);
+            }
+        }
+        return value;
+    }
+
     @Override
-    // @Async // DISABLED
     public void invalidateCacheOnNewOrder(Integer bookId, Integer quantity) {
-        // Cache đã được tắt - không làm gì cả
-        log.debug("Cache invalidation disabled - Order: BookId={}, Quantity={}", bookId, quantity);
+        afterCommit(() -> {
+            orderInvalidations.incrementAndGet();
+            int removed = evict(e -> e.bookIds.contains(bookId));
+            if (removed == 0 && pendingOrders.incrementAndGet() >= MIN_ORDERS_FOR_INVALIDATION) {
+                // Đủ đơn mới cho các sách ngoài trang → thứ hạng có thể đổi, xóa DAILY_TRENDING
+                pendingOrders.set(0);
+                removed = evict(e -> DAILY_TRENDING.equals(e.type));
+            }
+            log.debug("Trending cache - Order: BookId={}, Quantity={}, evicted {} entries",
+                    bookId, quantity, removed);
+        });
     }
-    
+
     @Override
-    // @Async // DISABLED
     public void invalidateCacheOnNewReview(Integer bookId, Double rating) {
-        // Cache đã được tắt - không làm gì cả
-        log.debug("Cache invalidation disabled - Review: BookId={}, Rating={}", bookId, rating);
+        afterCommit(() -> {
+            reviewInvalidations.incrementAndGet();
+            int removed = evict(e -> e.bookIds.contains(bookId));
+            if (removed == 0 && pendingReviews.incrementAndGet() >= MIN_REVIEWS_FOR_INVALIDATION) {
+                pendingReviews.set(0);
+                removed = evict(e -> DAILY_TRENDING.equals(e.type));
+            }
+            log.debug("Trending cache - Review: BookId={}, Rating={}, evicted {} entries",
+                    bookId, rating, removed);
+        });
     }
-    
+
     @Override
-    // @Async // DISABLED
     public void invalidateCacheOnFlashSaleChange(Integer bookId, boolean isStarted) {
-        // Cache đã được tắt - không làm gì cả
-        log.debug("Cache invalidation disabled - FlashSale: BookId={}, Started={}", bookId, isStarted);
+        afterCommit(() -> {
+            flashSaleInvalidations.incrementAndGet();
+            // HOT_DISCOUNT phụ thuộc toàn bộ tập flash sale; DAILY chỉ đổi giá/điểm của sách đó
+            int removed = evict(e -> HOT_DISCOUNT.equals(e.type) || bookId == null || e.bookIds.contains(bookId));
+            log.debug("Trending cache - FlashSale: BookId={}, Started={}, evicted {} entries",
+                    bookId, isStarted, removed);
+        });
     }
-    
+
     @Override
-    // @CacheEvict(value = {"trending-books", "trending-books-by-category"}, allEntries = true) // DISABLED
     public void invalidateAllTrendingCache() {
-        // Cache đã được tắt - không làm gì cả
-        log.debug("Cache invalidation disabled - All trending cache would be cleared");
+        afterCommit(() -> {
+            int removed = evict(e -> true);
+            pendingOrders.set(0);
+            pendingReviews.set(0);
+            lastFullInvalidationTime.set(System.currentTimeMillis());
+            log.debug("Trending cache - All entries cleared ({})", removed);
+        });
     }
-    
+
     @Override
-    // @CacheEvict(value = "trending-books-by-category", key = "#categoryId") // DISABLED
     public void invalidateCacheByCategory(Integer categoryId) {
-        // Cache đã được tắt - không làm gì cả
-        log.debug("Cache invalidation disabled - Category: {}", categoryId);
+        afterCommit(() -> {
+            int removed = evict(e -> e.categoryIds.contains(categoryId));
+            log.debug("Trending cache - Category: {}, evicted {} entries", categoryId, removed);
+        });
     }
-    
+
     @Override
     public void checkAndRebuildCacheIfNeeded() {
-        // Cache đã được tắt - không làm gì cả
-        log.debug("Cache rebuild disabled");
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        synchronized (cache) {
+            Iterator<CacheEntry> it = cache.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().expiresAt <= now) {
+                    it.remove();
+                    expired++;
+                }
+            }
+        }
+        expirations.addAndGet(expired);
+
+        if (now - lastFullInvalidationTime.get() >= CACHE_REBUILD_INTERVAL_MS) {
+            log.info("🔥 TRENDING CACHE: Rebuild interval reached, clearing all entries");
+            invalidateAllTrendingCache();
+        }
     }
-    
+
     @Override
     public String getCacheStatistics() {
-        return " Cache Statistics: DISABLED - Cache đã được tắt theo yêu cầu";
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        double hitRate = total == 0 ? 0.0 : hitCount * 100.0 / total;
+        long lastInvalidation = lastInvalidationTime.get();
+        return String.format(
+                "🔥 Trending Cache: size=%d/%d, ttl=%ds, hits=%d, misses=%d, hitRate=%.1f%%, "
+                        + "sizeEvictions=%d, expirations=%d, invalidatedEntries=%d, "
+                        + "orderEvents=%d (pending %d/%d), reviewEvents=%d (pending %d/%d), flashSaleEvents=%d, "
+                        + "lastInvalidation=%s",
+                size, MAX_CACHE_ENTRIES, CACHE_TTL_MS / 1000, hitCount, missCount, hitRate,
+                sizeEvictions.get(), expirations.get(), evictedEntries.get(),
+                orderInvalidations.get(), pendingOrders.get(), MIN_ORDERS_FOR_INVALIDATION,
+                reviewInvalidations.get(), pendingReviews.get(), MIN_REVIEWS_FOR_INVALIDATION,
+                flashSaleInvalidations.get(),
+                lastInvalidation == 0 ? "never" : Instant.ofEpochMilli(lastInvalidation).toString());
     }
-    
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private int evict(Predicate<CacheEntry> predicate) {
+        int removed = 0;
+        synchronized (cache) {
+            version.incrementAndGet();
+            Iterator<CacheEntry> it = cache.values().iterator();
+            while (it.hasNext()) {
+                if (predicate.test(it.next())) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        evictedEntries.addAndGet(removed);
+        updateLastInvalidationTime();
+        return removed;
+    }
+
+    /**
+     * Chạy sau khi transaction hiện tại commit (nếu có), tránh request khác load lại
+     * dữ liệu chưa commit rồi cache nó
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     private void updateLastInvalidationTime() {
         lastInvalidationTime.set(System.currentTimeMillis());
     }
+
+    private static final class CacheEntry {
+        final String type;
+        final PaginationResponse<TrendingBookResponse> value;
+        final long expiresAt;
+        final Set<Integer> bookIds;
+        final Set<Integer> categoryIds;
+
+        CacheEntry(String type, PaginationResponse<TrendingBookResponse> value, long expiresAt,
+                Set<Integer> bookIds, Set<Integer> categoryIds) {
+            this.type = type;
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.bookIds = bookIds;
+            this.categoryIds = categoryIds;
+        }
+    }
 }
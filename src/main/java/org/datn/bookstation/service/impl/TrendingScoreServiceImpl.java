@@ -0,0 +1,329 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.dto.response.TrendingScoreConsistencyResponse;
+import org.datn.bookstation.entity.Book;
+import org.datn.bookstation.entity.BookTrendingScore;
+import org.datn.bookstation.entity.Order;
+import org.datn.bookstation.entity.OrderDetail;
+import org.datn.bookstation.entity.enums.OrderStatus;
+import org.datn.bookstation.repository.BookRepository;
+import org.datn.bookstation.repository.BookTrendingScoreRepository;
+import org.datn.bookstation.repository.FlashSaleItemRepository;
+import org.datn.bookstation.repository.OrderDetailRepository;
+import org.datn.bookstation.repository.ReviewRepository;
+import org.datn.bookstation.service.TrendingCacheService;
+import org.datn.bookstation.service.TrendingScoreService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 🔥 TRENDING SCORE SERVICE IMPLEMENTATION
+ * - Bộ đếm theo sách được tính lại khi đơn hàng vào/ra trạng thái "đã bán" và
+ * khi review thay đổi
+ * - Cập nhật theo đơn hàng chạy sau khi transaction của đơn commit, trong transaction riêng:
+ * lỗi bảng điểm chỉ ghi log (job trượt cửa sổ / rebuild sẽ sửa), không rollback hay chặn đơn hàng
+ * - Job định kỳ trượt cửa sổ thời gian (30 ngày bán, 60 ngày review)
+ * - Có lệnh rebuild toàn bộ và đối soát với query trực tiếp
+ */
+@Service
+@Slf4j
+public class TrendingScoreServiceImpl implements TrendingScoreService {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final long SALES_WINDOW_MS = 30 * DAY_MS;
+    private static final long REVIEW_WINDOW_MS = 60 * DAY_MS;
+    private static final int CHUNK_SIZE = 500;
+
+    // Trạng thái được tính là "đã bán" (giống OrderDetailRepository.countSoldQuantityByBook)
+    private static final List<OrderStatus> SOLD_STATUSES = List.of(
+            OrderStatus.DELIVERED, OrderStatus.PARTIALLY_REFUNDED);
+
+    private final BookTrendingScoreRepository bookTrendingScoreRepository;
+    private final BookRepository bookRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final ReviewRepository reviewRepository;
+    private final FlashSaleItemRepository flashSaleItemRepository;
+    private final TrendingCacheService trendingCacheService;
+    private final TransactionTemplate requiresNewTemplate;
+
+    public TrendingScoreServiceImpl(BookTrendingScoreRepository bookTrendingScoreRepository,
+            BookRepository bookRepository,
+            OrderDetailRepository orderDetailRepository,
+            ReviewRepository reviewRepository,
+            FlashSaleItemRepository flashSaleItemRepository,
+            TrendingCacheService trendingCacheService,
+            PlatformTransactionManager transactionManager) {
+        this.bookTrendingScoreRepository = bookTrendingScoreRepository;
+        this.bookRepository = bookRepository;
+        this.orderDetailRepository = orderDetailRepository;
+        this.reviewRepository = reviewRepository;
+        this.flashSaleItemRepository = flashSaleItemRepository;
+        this.trendingCacheService = trendingCacheService;
+        // afterCommit vẫn gắn với transaction cũ (đã commit) → phải mở transaction mới để ghi
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    @Transactional
+    public void refreshBooks(Collection<Integer> bookIds) {
+        if (bookIds == null || bookIds.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = bookIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ids.size(); i += CHUNK_SIZE) {
+            refreshChunk(ids.subList(i, Math.min(i + CHUNK_SIZE, ids.size())), now);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void removeBook(Integer bookId) {
+        if (bookId != null && bookTrendingScoreRepository.existsById(bookId)) {
+            bookTrendingScoreRepository.deleteById(bookId);
+        }
+    }
+
+    @Override
+    public void onOrderStatusChanged(Order order, OrderStatus oldStatus, OrderStatus newStatus) {
+        // Chỉ đơn vào/ra (hoặc đổi số lượng trong) nhóm "đã bán" mới ảnh hưởng bộ đếm
+        if (!isSold(oldStatus) && !isSold(newStatus)) {
+            return;
+        }
+        Integer orderId = order.getId();
+        String orderCode = order.getCode();
+        // Transaction đơn hàng rollback thì không cập nhật; lỗi bảng điểm không làm hỏng đơn đã commit
+        Runnable refresh = () -> {
+            try {
+                requiresNewTemplate.executeWithoutResult(status ->
+                        refreshOrderBooks(orderId, orderCode, oldStatus, newStatus));
+            } catch (Exception e) {
+                log.error("🔥 ERROR: Failed to refresh trending score for order {} ({} -> {})",
+                        orderCode, oldStatus, newStatus, e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh.run();
+                }
+            });
+        } else {
+            refresh.run();
+        }
+    }
+
+    @Override
+    @Transactional
+    public void onReviewChanged(Integer bookId) {
+        if (bookId != null) {
+            refreshBooks(List.of(bookId));
+            trendingCacheService.invalidateCacheOnNewReview(bookId, null);
+        }
+    }
+
+    @Override
+    @Transactional
+    public int applyWindowDecay() {
+        long now = System.currentTimeMillis();
+        // Sách đang có điểm (có thể rơi khỏi cửa sổ) + sách vừa vào flash sale
+        Set<Integer> ids = new LinkedHashSet<>(bookTrendingScoreRepository.findBookIdsWithPositiveScore());
+        ids.addAll(flashSaleItemRepository.findAllBookIdsInActiveFlashSale(now));
+        ids.addAll(bookRepository.findIdsCreatedSince(now - SALES_WINDOW_MS));
+        refreshBooks(ids);
+        log.info("🔥 TRENDING SCORE: Window decay refreshed {} books", ids.size());
+        return ids.size();
+    }
+
+    @Override
+    @Transactional
+    public int rebuildAll() {
+        long start = System.currentTimeMillis();
+        int deleted = bookTrendingScoreRepository.deleteAllScores();
+        List<Integer> allIds = bookRepository.findAllIds();
+        refreshBooks(allIds);
+        trendingCacheService.invalidateAllTrendingCache();
+        log.info("🔥 TRENDING SCORE: Rebuilt {} books (deleted {} old rows) in {} ms",
+                allIds.size(), deleted, System.currentTimeMillis() - start);
+        return allIds.size();
+    }
+
+    @Override
+    public TrendingScoreConsistencyResponse checkConsistency(int topSize) {
+        long now = System.currentTimeMillis();
+        List<BookTrendingScore> stored = bookTrendingScoreRepository.findTopByScore(PageRequest.of(0, topSize));
+        List<Integer> storedIds = stored.stream().map(BookTrendingScore::getBookId).collect(Collectors.toList());
+        Map<Integer, BookTrendingScore> live = computeLive(storedIds, now);
+
+        List<TrendingScoreConsistencyResponse.Mismatch> mismatches = new ArrayList<>();
+        for (BookTrendingScore s : stored) {
+            BookTrendingScore l = live.get(s.getBookId());
+            if (l == null) {
+                continue;
+            }
+            boolean same = Objects.equals(s.getSoldCount(), l.getSoldCount())
+                    && Objects.equals(s.getReviewCount(), l.getReviewCount())
+                    && Objects.equals(s.getRatingSum(), l.getRatingSum());
+            if (!same) {
+                mismatches.add(TrendingScoreConsistencyResponse.Mismatch.builder()
+                        .bookId(s.getBookId())
+                        .storedSoldCount(s.getSoldCount())
+                        .liveSoldCount(l.getSoldCount())
+                        .storedReviewCount(s.getReviewCount())
+                        .liveReviewCount(l.getReviewCount())
+                        .storedRatingSum(s.getRatingSum())
+                        .liveRatingSum(l.getRatingSum())
+                        .storedScore(s.getScore())
+                        .liveScore(l.getScore())
+                        .build());
+            }
+        }
+
+        // So thứ hạng với query cũ (4 subquery) trên cùng top N
+        Integer overlap = null;
+        try {
+            Set<Integer> storedIdSet = Set.copyOf(storedIds);
+            overlap = (int) bookRepository.findTrendingBooksData(
+                    now - SALES_WINDOW_MS, now - REVIEW_WINDOW_MS, now, PageRequest.of(0, topSize))
+                    .getContent().stream()
+                    .map(data -> (Integer) data[0])
+                    .filter(storedIdSet::contains)
+                    .count();
+        } catch (Exception e) {
+            log.warn("Không thể chạy query trending cũ để đối soát: {}", e.getMessage());
+        }
+
+        return TrendingScoreConsistencyResponse.builder()
+                .checkedBooks(stored.size())
+                .mismatchedBooks(mismatches.size())
+                .legacyTopOverlap(overlap)
+                .topSize(topSize)
+                .checkedAt(now)
+                .mismatches(mismatches)
+                .build();
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    /**
+     * oldStatus = null khi đơn vừa tạo (List.of không nhận contains(null))
+     */
+    private static boolean isSold(OrderStatus status) {
+        return status != null && SOLD_STATUSES.contains(status);
+    }
+
+    private void refreshOrderBooks(Integer orderId, String orderCode, OrderStatus oldStatus, OrderStatus newStatus) {
+        List<OrderDetail> details = orderDetailRepository.findByOrderId(orderId);
+        List<Integer> bookIds = details.stream()
+                .map(OrderDetail::getBook)
+                .filter(Objects::nonNull)
+                .map(Book::getId)
+                .collect(Collectors.toList());
+        refreshBooks(bookIds);
+        details.stream()
+                .filter(detail -> detail.getBook() != null)
+                .forEach(detail -> trendingCacheService.invalidateCacheOnNewOrder(
+                        detail.getBook().getId(), detail.getQuantity()));
+        log.debug("Trending score refreshed for order {} ({} -> {}), {} books",
+                orderCode, oldStatus, newStatus, bookIds.size());
+    }
+
+    private void refreshChunk(List<Integer> chunk, long now) {
+        Map<Integer, BookTrendingScore> live = computeLive(chunk, now);
+        Map<Integer, BookTrendingScore> existing = bookTrendingScoreRepository.findAllById(chunk).stream()
+                .collect(Collectors.toMap(BookTrendingScore::getBookId, s -> s));
+
+        List<BookTrendingScore> toSave = new ArrayList<>();
+        for (Integer bookId : chunk) {
+            BookTrendingScore computed = live.get(bookId);
+            BookTrendingScore row = existing.get(bookId);
+            if (computed == null) {
+                // Sách không còn tồn tại
+                if (row != null) {
+                    bookTrendingScoreRepository.delete(row);
+                }
+                continue;
+            }
+            if (row == null) {
+                row = new BookTrendingScore();
+                row.setBook(bookRepository.getReferenceById(bookId));
+            }
+            row.setSoldCount(computed.getSoldCount());
+            row.setOrderCount(computed.getOrderCount());
+            row.setReviewCount(computed.getReviewCount());
+            row.setRatingSum(computed.getRatingSum());
+            row.setIsNew(computed.getIsNew());
+            row.setInFlashSale(computed.getInFlashSale());
+            row.recalculateScore();
+            toSave.add(row);
+        }
+        bookTrendingScoreRepository.saveAll(toSave);
+    }
+
+    /**
+     * Tính bộ đếm trực tiếp từ OrderDetail/Review/FlashSaleItem cho danh sách sách
+     * (3 query group by + 1 query thời điểm tạo, không phụ thuộc số sách)
+     */
+    private Map<Integer, BookTrendingScore> computeLive(List<Integer> bookIds, long now) {
+        Map<Integer, BookTrendingScore> result = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return result;
+        }
+        long thirtyDaysAgo = now - SALES_WINDOW_MS;
+        long sixtyDaysAgo = now - REVIEW_WINDOW_MS;
+
+        for (Object[] row : bookRepository.findCreatedAtByIds(bookIds)) {
+            Integer bookId = (Integer) row[0];
+            Long createdAt = (Long) row[1];
+            BookTrendingScore score = new BookTrendingScore();
+            score.setBookId(bookId);
+            score.setIsNew(createdAt != null && createdAt >= thirtyDaysAgo);
+            result.put(bookId, score);
+        }
+
+        for (Object[] row : orderDetailRepository.sumTrendingSalesByBookIds(bookIds, SOLD_STATUSES, thirtyDaysAgo)) {
+            BookTrendingScore score = result.get((Integer) row[0]);
+            if (score != null) {
+                score.setSoldCount(((Number) row[1]).intValue());
+                score.setOrderCount(((Number) row[2]).intValue());
+            }
+        }
+
+        for (Object[] row : reviewRepository.sumTrendingReviewsByBookIds(bookIds, sixtyDaysAgo)) {
+            BookTrendingScore score = result.get((Integer) row[0]);
+            if (score != null) {
+                score.setReviewCount(((Number) row[1]).intValue());
+                score.setRatingSum(((Number) row[2]).longValue());
+            }
+        }
+
+        for (Integer bookId : flashSaleItemRepository.findBookIdsInActiveFlashSale(bookIds, now)) {
+            BookTrendingScore score = result.get(bookId);
+            if (score != null) {
+                score.setInFlashSale(true);
+            }
+        }
+
+        result.values().forEach(BookTrendingScore::recalculateScore);
+        return result;
+    }
+}
@@ -13,6 +13,7 @@ import org.datn.bookstation.entity.User;
 import org.datn.bookstation.mapper.UserMapper;
 import org.datn.bookstation.repository.RoleRepository;
 import org.datn.bookstation.repository.UserRepository;
+import org.datn.bookstation.service.StatisticsSnapshotService;
 import org.datn.bookstation.service.UserService;
 import org.datn.bookstation.specification.UserRankSpecification;
 import org.springframework.data.domain.Page;
@@ -38,6 +39,7 @@ public class UserServiceImpl implements UserService {
     private final UserMapper userMapper;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final StatisticsSnapshotService statisticsSnapshotService;
     @Override
     public PaginationResponse<UserResponse> getAllWithPagination(int page, int size, String fullName, String email,
             String phoneNumber, Integer roleId, String status,Integer userId) {
@@ -137,6 +139,7 @@ public class UserServiceImpl implements UserService {
         user.setRole(roleRepository.findById(req.getRole_id()).get());
         
         User saved = userRepository.save(user);
+        statisticsSnapshotService.onUserCreated(saved.getStatus(), saved.getTotalPoint());
         return new ApiResponse<>(201, "Tạo mới thành công", toResponse(saved));
     }
 
@@ -152,6 +155,8 @@ public class UserServiceImpl implements UserService {
                 && userRepository.findByEmail(req.getEmail()).isPresent()) {
             return new ApiResponse<>(400, "Email đã tồn tại", null);
         }
+        Byte oldStatus = user.getStatus();
+        int oldPoint = user.getTotalPoint() != null ? user.getTotalPoint() : 0;
         user.setFullName(req.getFull_name());
         user.setEmail(req.getEmail());
         user.setPhoneNumber(req.getPhone_number());
@@ -164,12 +169,17 @@ public class UserServiceImpl implements UserService {
             user.setRole(roleRepository.findById(req.getRole_id()).orElse(user.getRole()));
         }
         User saved = userRepository.save(user);
+        statisticsSnapshotService.onUserStatusChanged(oldStatus, saved.getStatus());
+        statisticsSnapshotService.onPointsChanged(
+                (saved.getTotalPoint() != null ? saved.getTotalPoint() : 0) - oldPoint, 0, 0);
         return new ApiResponse<>(200, "Cập nhật thành công", toResponse(saved));
     }
 
     @Override
     public void deleteById(Integer id) {
+        Optional<User> userOpt = userRepository.findById(id);
         userRepository.deleteById(id);
+        userOpt.ifPresent(user -> statisticsSnapshotService.onUserDeleted(user.getStatus(), user.getTotalPoint()));
     }
 
     @Override
@@ -179,9 +189,11 @@ public class UserServiceImpl implements UserService {
             return new ApiResponse<>(404, "Không tìm thấy", null);
         }
         User user = userOpt.get();
+        Byte oldStatus = user.getStatus();
         user.setStatus(user.getStatus() != null && user.getStatus() == 1 ? (byte) 0 : (byte) 1);
         user.setUpdatedAt(System.currentTimeMillis());
         User saved = userRepository.save(user);
+        statisticsSnapshotService.onUserStatusChanged(oldStatus, saved.getStatus());
         return new ApiResponse<>(200, "Cập nhật trạng thái thành công", toResponse(saved));
     }
 
@@ -250,6 +262,7 @@ public class UserServiceImpl implements UserService {
                 user.setRole(role);
                 System.out.println(user);
                 User userSave = userRepository.save(user);
+                statisticsSnapshotService.onUserCreated(userSave.getStatus(), userSave.getTotalPoint());
                 return new ApiResponse<>(200, "Thêm khách vãng lai thành công", userSave);
             } else {
                 return new ApiResponse<>(400, "Số điện thoại đã tồn tại ", null);
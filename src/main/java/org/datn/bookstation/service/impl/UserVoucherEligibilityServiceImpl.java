@@ -0,0 +1,120 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.datn.bookstation.repository.UserVoucherRepository;
+import org.datn.bookstation.service.UserVoucherEligibilityService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 🎫 USER VOUCHER ELIGIBILITY SERVICE IMPLEMENTATION
+ * - 1 query group by voucher cho toàn bộ voucher của user (không quét cả bảng user_voucher)
+ * - Cache theo userId (voucher.eligibility.cache-ttl-ms, 0 = tắt), giới hạn số user được cache;
+ * chỉ phục vụ danh sách voucher hiển thị, kiểm tra lúc checkout (getRemainingUses) luôn đọc DB
+ * - Chỉ usedCount thay đổi kết quả: bị xóa sau commit khi dùng voucher (updateVoucherUsage)
+ * và khi phát voucher theo hạng
+ */
+@Service
+@RequiredArgsConstructor
+public class UserVoucherEligibilityServiceImpl implements UserVoucherEligibilityService {
+
+    private static final int MAX_CACHED_USERS = 10_000;
+
+    private final UserVoucherRepository userVoucherRepository;
+
+    @Value("${voucher.eligibility.cache-ttl-ms:30000}")
+    private long cacheTtlMs;
+
+    // userId -> (voucherId -> số lần đã dùng)
+    private final Map<Integer, CachedUsage> cache = new ConcurrentHashMap<>();
+
+    @Override
+    public Map<Integer, Integer> getUsedCounts(Integer userId) {
+        if (userId == null) {
+            return Map.of();
+        }
+        long now = System.currentTimeMillis();
+        CachedUsage cached = cacheTtlMs > 0 ? cache.get(userId) : null;
+        if (cached != null && cached.expiresAt > now) {
+            return cached.usedCounts;
+        }
+
+        Map<Integer, Integer> usedCounts = new HashMap<>();
+        for (Object[] row : userVoucherRepository.sumUsedCountByUserGroupByVoucher(userId)) {
+            usedCounts.put((Integer) row[0], ((Number) row[1]).intValue());
+        }
+        usedCounts = Map.copyOf(usedCounts);
+
+        if (cacheTtlMs > 0) {
+            if (cache.size() >= MAX_CACHED_USERS) {
+                evictExpired(now);
+            }
+            cache.put(userId, new CachedUsage(usedCounts, now + cacheTtlMs));
+        }
+        return usedCounts;
+    }
+
+    @Override
+    public int getRemainingUses(Integer userId, Integer voucherId, Integer usageLimitPerUser) {
+        if (usageLimitPerUser == null) {
+            return 0;
+        }
+        // Bước chặn lúc đặt hàng: đọc DB, không dùng số liệu cache có thể đã cũ
+        Long usedCount = userVoucherRepository.sumUsedCountByUserAndVoucher(userId, voucherId);
+        return usageLimitPerUser - (usedCount != null ? usedCount.intValue() : 0);
+    }
+
+    @Override
+    public void invalidateUser(Integer userId) {
+        if (userId != null) {
+            invalidateUsers(List.of(userId));
+        }
+    }
+
+    @Override
+    public void invalidateUsers(Collection<Integer> userIds) {
+        if (cacheTtlMs <= 0 || userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(userIds);
+        // Xóa sau commit để request khác không nạp lại dữ liệu chưa commit vào cache
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ids.forEach(cache::remove);
+                }
+            });
+        } else {
+            ids.forEach(cache::remove);
+        }
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private void evictExpired(long now) {
+        cache.values().removeIf(entry -> entry.expiresAt <= now);
+        if (cache.size() >= MAX_CACHED_USERS) {
+            cache.clear();
+        }
+    }
+
+    private static final class CachedUsage {
+        final Map<Integer, Integer> usedCounts;
+        final long expiresAt;
+
+        CachedUsage(Map<Integer, Integer> usedCounts, long expiresAt) {
+            this.usedCounts = usedCounts;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
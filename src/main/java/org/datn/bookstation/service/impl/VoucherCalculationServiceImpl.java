@@ -9,7 +9,9 @@ import org.datn.bookstation.entity.enums.VoucherCategory;
 import org.datn.bookstation.entity.enums.DiscountType;
 import org.datn.bookstation.repository.UserVoucherRepository;
 import org.datn.bookstation.repository.VoucherRepository;
+import org.datn.bookstation.service.UserVoucherEligibilityService;
 import org.datn.bookstation.service.VoucherCalculationService;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -27,6 +29,7 @@ public class VoucherCalculationServiceImpl implements VoucherCalculationService
 
     private final VoucherRepository voucherRepository;
     private final UserVoucherRepository userVoucherRepository;
+    private final UserVoucherEligibilityService userVoucherEligibilityService;
 
     @Override
     public VoucherCalculationResult calculateVoucherDiscount(Order order, List<Integer> voucherIds, Integer userId) {
@@ -236,20 +239,12 @@ public class VoucherCalculationServiceImpl implements VoucherCalculationService
         if (voucher == null || voucher.getUsageLimitPerUser() == null) return false;
 
         //  UPDATED: Đếm số lần user đã sử dụng voucher này
-        // Không dùng quantity nữa, dựa vào usedCount của các UserVoucher records
-        List<UserVoucher> userVouchers = userVoucherRepository.findAll().stream()
-                .filter(uv -> uv.getUser().getId().equals(userId) && 
-                             uv.getVoucher().getId().equals(voucherId))
-                .toList();
+        // Không dùng quantity nữa, dựa vào tổng usedCount của các UserVoucher records (1 query, không cache vì là bước chặn lúc đặt hàng)
+        int remainingUses = userVoucherEligibilityService.getRemainingUses(userId, voucherId,
+                voucher.getUsageLimitPerUser());
         
-        int totalUsedCount = userVouchers.stream()
-                .mapToInt(uv -> uv.getUsedCount() != null ? uv.getUsedCount() : 0)
-                .sum();
-        
-        int remainingUses = voucher.getUsageLimitPerUser() - totalUsedCount; // Fix: So sánh với usageLimitPerUser
-        
-        log.debug(" canUserUseVoucher: userId={}, voucherId={}, totalRecords={}, totalUsedCount={}, remainingUses={}, usageLimitPerUser={}", 
-            userId, voucherId, userVouchers.size(), totalUsedCount, remainingUses, voucher.getUsageLimitPerUser());
+        log.debug(" canUserUseVoucher: userId={}, voucherId={}, remainingUses={}, usageLimitPerUser={}", 
+            userId, voucherId, remainingUses, voucher.getUsageLimitPerUser());
         
         return remainingUses > 0; // Fix: User can use if still has remaining uses
     }
@@ -265,14 +260,11 @@ public class VoucherCalculationServiceImpl implements VoucherCalculationService
             }
 
             //  UPDATED: Tìm UserVoucher record chưa sử dụng đầu tiên và mark là đã sử dụng
-            List<UserVoucher> userVouchers = userVoucherRepository.findAll().stream()
-                    .filter(uv -> uv.getUser().getId().equals(userId) && 
-                                 uv.getVoucher().getId().equals(voucherId) &&
-                                 (uv.getUsedCount() == null || uv.getUsedCount() == 0))
-                    .toList();
+            UserVoucher firstAvailable = userVoucherRepository
+                    .findUnusedByUserAndVoucher(userId, voucherId, PageRequest.of(0, 1))
+                    .stream().findFirst().orElse(null);
             
-            if (!userVouchers.isEmpty()) {
-                UserVoucher firstAvailable = userVouchers.get(0);
+            if (firstAvailable != null) {
                 firstAvailable.setUsedCount(1); // Mark as used
                 userVoucherRepository.save(firstAvailable);
                 
@@ -282,5 +274,6 @@ public class VoucherCalculationServiceImpl implements VoucherCalculationService
                 log.warn(" Attempted to use voucher {} but user {} has no available voucher records", voucherId, userId);
             }
         }
+        userVoucherEligibilityService.invalidateUser(userId);
     }
 }
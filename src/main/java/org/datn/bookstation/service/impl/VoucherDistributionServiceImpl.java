@@ -0,0 +1,243 @@
+package org.datn.bookstation.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.dto.response.VoucherDistributionJobResponse;
+import org.datn.bookstation.entity.Rank;
+import org.datn.bookstation.repository.RankRepository;
+import org.datn.bookstation.repository.UserRankRepository;
+import org.datn.bookstation.repository.UserVoucherRepository;
+import org.datn.bookstation.repository.VoucherRepository;
+import org.datn.bookstation.service.UserVoucherEligibilityService;
+import org.datn.bookstation.service.VoucherDistributionService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 🎫 VOUCHER DISTRIBUTION SERVICE IMPLEMENTATION
+ * - Duyệt user CUSTOMER của hạng theo user id tăng dần, mỗi lô 1 câu INSERT ... SELECT
+ * bỏ qua user đã có voucher, commit riêng từng lô
+ * - Job nền chạy tuần tự trên 1 thread riêng, tiến độ lưu trong bộ nhớ
+ * - Job lỗi chạy tiếp từ lô sau lastUserId; do INSERT bỏ qua user đã có voucher nên
+ * phát lại từ đầu (sau khi restart) cũng không tạo bản ghi trùng
+ * - Job đã xong / lỗi được giữ FINISHED_JOB_RETENTION_MS rồi bỏ khỏi bộ nhớ
+ */
+@Service
+@Slf4j
+public class VoucherDistributionServiceImpl implements VoucherDistributionService {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final long FINISHED_JOB_RETENTION_MS = 24 * 60 * 60 * 1000L;
+
+    private final VoucherRepository voucherRepository;
+    private final RankRepository rankRepository;
+    private final UserRankRepository userRankRepository;
+    private final UserVoucherRepository userVoucherRepository;
+    private final UserVoucherEligibilityService userVoucherEligibilityService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, DistributionJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "voucher-distribution");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public VoucherDistributionServiceImpl(VoucherRepository voucherRepository,
+            RankRepository rankRepository,
+            UserRankRepository userRankRepository,
+            UserVoucherRepository userVoucherRepository,
+            UserVoucherEligibilityService userVoucherEligibilityService,
+            PlatformTransactionManager transactionManager) {
+        this.voucherRepository = voucherRepository;
+        this.rankRepository = rankRepository;
+        this.userRankRepository = userRankRepository;
+        this.userVoucherRepository = userVoucherRepository;
+        this.userVoucherEligibilityService = userVoucherEligibilityService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public VoucherDistributionJobResponse distribute(Integer voucherId, String rankName) {
+        DistributionJob job = prepare(voucherId, rankName);
+        run(job);
+        if (job.status == JobStatus.FAILED) {
+            throw new RuntimeException(job.message);
+        }
+        return job.toResponse();
+    }
+
+    @Override
+    public VoucherDistributionJobResponse startJob(Integer voucherId, String rankName) {
+        DistributionJob job = prepare(voucherId, rankName);
+        removeExpiredJobs();
+        jobs.put(job.jobId, job);
+        executor.submit(() -> run(job));
+        log.info("🎫 VOUCHER DISTRIBUTION: Job {} queued - voucher {} to rank {} ({} customers)",
+                job.jobId, voucherId, rankName, job.totalUsers);
+        return job.toResponse();
+    }
+
+    @Override
+    public VoucherDistributionJobResponse getJob(String jobId) {
+        DistributionJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Không tìm thấy job phát voucher: " + jobId);
+        }
+        return job.toResponse();
+    }
+
+    @Override
+    public VoucherDistributionJobResponse resumeJob(String jobId) {
+        DistributionJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Không tìm thấy job phát voucher: " + jobId);
+        }
+        synchronized (job) {
+            if (job.status != JobStatus.FAILED) {
+                return job.toResponse();
+            }
+            job.status = JobStatus.PENDING;
+            job.message = null;
+            job.finishedAt = null;
+        }
+        executor.submit(() -> run(job));
+        log.info("🎫 VOUCHER DISTRIBUTION: Job {} resumed after user {}", jobId, job.lastUserId);
+        return job.toResponse();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    /**
+     * Kiểm tra giống cách phát cũ, lỗi được ném ra ngay (trước khi tạo job)
+     */
+    private DistributionJob prepare(Integer voucherId, String rankName) {
+        if (voucherId == null || !voucherRepository.existsById(voucherId)) {
+            throw new RuntimeException("Voucher không tồn tại");
+        }
+        Rank rank = rankRepository.findByRankName(rankName)
+                .orElseThrow(() -> new RuntimeException("Hạng không tồn tại"));
+        if (userRankRepository.countByRankId(rank.getId()) == 0) {
+            throw new RuntimeException("Không có user nào thuộc hạng " + rankName);
+        }
+        long customers = userRankRepository.countCustomersByRankId(rank.getId());
+        if (customers == 0) {
+            throw new RuntimeException("Không có user CUSTOMER nào thuộc hạng " + rankName);
+        }
+        return new DistributionJob(voucherId, rank.getId(), rankName, (int) customers);
+    }
+
+    private void run(DistributionJob job) {
+        job.status = JobStatus.RUNNING;
+        try {
+            while (true) {
+                List<Integer> userIds = userRankRepository.findCustomerIdsByRankIdAfter(
+                        job.rankId, job.lastUserId, CHUNK_SIZE);
+                if (userIds.isEmpty()) {
+                    break;
+                }
+                long now = System.currentTimeMillis();
+                Integer inserted = transactionTemplate.execute(status ->
+                        userVoucherRepository.insertForUsersWithoutVoucher(job.voucherId, userIds, now));
+                int distributed = inserted != null ? inserted : 0;
+                job.distributedCount += distributed;
+                job.skippedCount += userIds.size() - distributed;
+                job.processedUsers += userIds.size();
+                job.lastUserId = userIds.get(userIds.size() - 1);
+                userVoucherEligibilityService.invalidateUsers(userIds);
+            }
+            job.totalUsers = job.processedUsers;
+            job.message = buildMessage(job);
+            job.status = JobStatus.COMPLETED;
+            log.info("🎫 VOUCHER DISTRIBUTION: {} - {}", job.jobId, job.message);
+        } catch (Exception e) {
+            job.message = "Lỗi khi phát voucher: " + e.getMessage();
+            job.status = JobStatus.FAILED;
+            log.error("🎫 ERROR: Voucher distribution job {} failed after user {}", job.jobId, job.lastUserId, e);
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    private String buildMessage(DistributionJob job) {
+        if (job.distributedCount == 0) {
+            return "Tất cả " + job.totalUsers + " người dùng hạng " + job.rankName + " đã có voucher này";
+        }
+        if (job.skippedCount == 0) {
+            return "Đã phát voucher cho " + job.distributedCount + " người dùng hạng " + job.rankName;
+        }
+        return "Đã phát voucher cho " + job.distributedCount + " người dùng hạng " + job.rankName + ", "
+                + job.skippedCount + " người bị bỏ qua (đã có voucher)";
+    }
+
+    /**
+     * Bỏ job đã kết thúc (xong hoặc lỗi) quá thời gian lưu; job lỗi chỉ resume được trong khoảng này
+     */
+    private void removeExpiredJobs() {
+        long cutoff = System.currentTimeMillis() - FINISHED_JOB_RETENTION_MS;
+        jobs.values().removeIf(job -> {
+            // Cùng khóa với resumeJob để không bỏ job vừa được chạy lại
+            synchronized (job) {
+                return (job.status == JobStatus.COMPLETED || job.status == JobStatus.FAILED)
+                        && job.finishedAt != null && job.finishedAt < cutoff;
+            }
+        });
+    }
+
+    private enum JobStatus {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    private static final class DistributionJob {
+        final String jobId = UUID.randomUUID().toString();
+        final Integer voucherId;
+        final Integer rankId;
+        final String rankName;
+        final long startedAt = System.currentTimeMillis();
+        volatile JobStatus status = JobStatus.PENDING;
+        volatile int totalUsers;
+        volatile int processedUsers;
+        volatile int distributedCount;
+        volatile int skippedCount;
+        volatile int lastUserId;
+        volatile String message;
+        volatile Long finishedAt;
+
+        DistributionJob(Integer voucherId, Integer rankId, String rankName, int totalUsers) {
+            this.voucherId = voucherId;
+            this.rankId = rankId;
+            this.rankName = rankName;
+            this.totalUsers = totalUsers;
+        }
+
+        VoucherDistributionJobResponse toResponse() {
+            return VoucherDistributionJobResponse.builder()
+                    .jobId(jobId)
+                    .voucherId(voucherId)
+                    .rankName(rankName)
+                    .status(status.name())
+                    .totalUsers(totalUsers)
+                    .processedUsers(processedUsers)
+                    .distributedCount(distributedCount)
+                    .skippedCount(skippedCount)
+                    .lastUserId(lastUserId)
+                    .message(message)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
@@ -8,14 +8,10 @@ import org.datn.bookstation.dto.response.VoucherStatsResponse;
 import org.datn.bookstation.dto.response.VoucherDropdownResponse;
 import org.datn.bookstation.entity.Voucher;
 import org.datn.bookstation.entity.User;
-import org.datn.bookstation.entity.UserVoucher;
-import org.datn.bookstation.entity.UserRank;
-import org.datn.bookstation.entity.Rank;
 import org.datn.bookstation.repository.VoucherRepository;
 import org.datn.bookstation.repository.UserRepository;
-import org.datn.bookstation.repository.UserRankRepository;
-import org.datn.bookstation.repository.UserVoucherRepository;
-import org.datn.bookstation.repository.RankRepository;
+import org.datn.bookstation.service.UserVoucherEligibilityService;
+import org.datn.bookstation.service.VoucherDistributionService;
 import org.datn.bookstation.service.VoucherService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.data.web.SpringDataWebProperties;
@@ -33,17 +29,23 @@ import java.util.stream.Collectors;
 @Service
 public class VoucherServiceImpl implements VoucherService {
     @Autowired
-    private org.datn.bookstation.service.VoucherCalculationService voucherCalculationService;
+    private UserVoucherEligibilityService userVoucherEligibilityService;
+
+    @Autowired
+    private VoucherDistributionService voucherDistributionService;
 
     @Override
     public java.util.List<org.datn.bookstation.dto.response.AvailableVoucherResponse> getAvailableVouchersForUser(
             Integer userId) {
         PaginationResponse<VoucherResponse> allVouchers = getAllWithPagination(0, 1000, null, null, null, null, (byte) 1);
         long currentTime = System.currentTimeMillis();
+        // Số lần đã dùng của user cho mọi voucher: 1 query (có cache) thay vì canUserUseVoucher từng voucher
+        java.util.Map<Integer, Integer> usedCounts = userVoucherEligibilityService.getUsedCounts(userId);
         return allVouchers.getContent().stream()
                 .filter(voucher -> {
                     boolean isTimeValid = voucher.getStartTime() <= currentTime && currentTime <= voucher.getEndTime();
-                    boolean canUserUse = voucherCalculationService.canUserUseVoucher(userId, voucher.getId());
+                    boolean canUserUse = voucher.getUsageLimitPerUser() != null
+                            && voucher.getUsageLimitPerUser() - usedCounts.getOrDefault(voucher.getId(), 0) > 0;
                     boolean hasUsageLimit = voucher.getUsageLimit() == null
                             || voucher.getUsedCount() < voucher.getUsageLimit();
                     return isTimeValid && canUserUse && hasUsageLimit;
@@ -102,15 +104,6 @@ public class VoucherServiceImpl implements VoucherService {
     @Autowired
     private UserRepository userRepository;
 
-    @Autowired
-    private UserRankRepository userRankRepository;
-
-    @Autowired
-    private UserVoucherRepository userVoucherRepository;
-
-    @Autowired
-    private RankRepository rankRepository;
-
     @Override
     public PaginationResponse<VoucherResponse> getAllWithPagination(
             int page, int size, String code, String name, String voucherCategory, String discountType, Byte status) {
@@ -539,115 +532,26 @@ public class VoucherServiceImpl implements VoucherService {
 
     @Override
     public ApiResponse<String> distributeVouchersToSilverRank(Integer voucherId) {
-        try {
-            int[] result = distributeVouchersByRank(voucherId, "BẠC");
-            int distributedCount = result[0];
-            int skippedCount = result[1];
-            int totalCount = result[2];
-            
-            String message;
-            if (distributedCount == 0) {
-                message = "Tất cả " + totalCount + " người dùng hạng BẠC đã có voucher này";
-            } else if (skippedCount == 0) {
-                message = "Đã phát voucher cho " + distributedCount + " người dùng hạng BẠC";
-            } else {
-                message = "Đã phát voucher cho " + distributedCount + " người dùng hạng BẠC, " + skippedCount + " người bị bỏ qua (đã có voucher)";
-            }
-            
-            return new ApiResponse<>(200, message, "Thành công");
-        } catch (Exception e) {
-            return new ApiResponse<>(400, "Lỗi khi phát voucher: " + e.getMessage(), null);
-        }
+        return distributeVouchersByRank(voucherId, "BẠC");
     }
 
     @Override
     public ApiResponse<String> distributeVouchersToGoldRank(Integer voucherId) {
-        try {
-            int[] result = distributeVouchersByRank(voucherId, "VÀNG");
-            int distributedCount = result[0];
-            int skippedCount = result[1];
-            int totalCount = result[2];
-            
-            String message;
-            if (distributedCount == 0) {
-                message = "Tất cả " + totalCount + " người dùng hạng VÀNG đã có voucher này";
-            } else if (skippedCount == 0) {
-                message = "Đã phát voucher cho " + distributedCount + " người dùng hạng VÀNG";
-            } else {
-                message = "Đã phát voucher cho " + distributedCount + " người dùng hạng VÀNG, " + skippedCount + " người bị bỏ qua (đã có voucher)";
-            }
-            
-            return new ApiResponse<>(200, message, "Thành công");
-        } catch (Exception e) {
-            return new ApiResponse<>(400, "Lỗi khi phát voucher: " + e.getMessage(), null);
-        }
+        return distributeVouchersByRank(voucherId, "VÀNG");
     }
 
     @Override
     public ApiResponse<String> distributeVouchersToDiamondRank(Integer voucherId) {
+        return distributeVouchersByRank(voucherId, "KIM CƯƠNG");
+    }
+
+    private ApiResponse<String> distributeVouchersByRank(Integer voucherId, String rankName) {
         try {
-            int[] result = distributeVouchersByRank(voucherId, "KIM CƯƠNG");
-            int distributedCount = result[0];
-            int skippedCount = result[1];
-            int totalCount = result[2];
-            
-            String message;
-            if (distributedCount == 0) {
-                message = "Tất cả " + totalCount + " người dùng hạng KIM CƯƠNG đã có voucher này";
-            } else if (skippedCount == 0) {
-                message = "Đã phát voucher cho " + distributedCount + " người dùng hạng KIM CƯƠNG";
-            } else {
-                message = "Đã phát voucher cho " + distributedCount + " người dùng hạng KIM CƯƠNG, " + skippedCount + " người bị bỏ qua (đã có voucher)";
-            }
-            
+            // Phát theo lô bằng INSERT ... SELECT, bỏ qua user đã có voucher
+            String message = voucherDistributionService.distribute(voucherId, rankName).getMessage();
             return new ApiResponse<>(200, message, "Thành công");
         } catch (Exception e) {
             return new ApiResponse<>(400, "Lỗi khi phát voucher: " + e.getMessage(), null);
         }
     }
-
-    private int[] distributeVouchersByRank(Integer voucherId, String rankName) {
-        Voucher voucher = voucherRepository.findById(voucherId)
-                .orElseThrow(() -> new RuntimeException("Voucher không tồn tại"));
-
-        Rank rank = rankRepository.findByRankName(rankName)
-                .orElseThrow(() -> new RuntimeException("Hạng không tồn tại"));
-
-        List<UserRank> userRanks = userRankRepository.findByRankId(rank.getId());
-        
-        if (userRanks.isEmpty()) {
-            throw new RuntimeException("Không có user nào thuộc hạng " + rankName);
-        }
-
-        List<UserRank> eligibleUsers = userRanks.stream()
-                .filter(userRank -> userRank.getUser().getRole() != null && 
-                        userRank.getUser().getRole().getRoleName() == org.datn.bookstation.entity.enums.RoleName.CUSTOMER)
-                .collect(java.util.stream.Collectors.toList());
-
-        if (eligibleUsers.isEmpty()) {
-            throw new RuntimeException("Không có user CUSTOMER nào thuộc hạng " + rankName);
-        }
-
-        int totalUsers = eligibleUsers.size();
-        int skippedUsers = 0;
-        List<UserVoucher> userVouchers = new java.util.ArrayList<>();
-
-        for (UserRank userRank : eligibleUsers) {
-            if (userVoucherRepository.existsByUser_IdAndVoucher_Id(userRank.getUser().getId(), voucherId)) {
-                skippedUsers++;
-            } else {
-                UserVoucher uv = new UserVoucher();
-                uv.setUser(userRank.getUser());
-                uv.setVoucher(voucher);
-                uv.setUsedCount(0);
-                userVouchers.add(uv);
-            }
-        }
-
-        if (!userVouchers.isEmpty()) {
-            userVoucherRepository.saveAll(userVouchers);
-        }
-
-        return new int[]{userVouchers.size(), skippedUsers, totalUsers};
-    }
 }
@@ -0,0 +1,167 @@
+package org.datn.bookstation.service.impl.minigame;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.entity.BoxHistory;
+import org.datn.bookstation.entity.Point;
+import org.datn.bookstation.repository.BoxHistoryRepository;
+import org.datn.bookstation.repository.PointRepository;
+import org.datn.bookstation.service.BoxHistoryWriterService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 🎁 BOX HISTORY WRITER SERVICE IMPLEMENTATION
+ * - Bản ghi Point (sổ điểm) luôn lưu trong transaction mở hộp, cùng lúc với thay đổi totalPoint
+ * - Ghi dồn: BoxHistory của lần mở đã commit được xếp hàng trong bộ nhớ, job định kỳ ghi bằng
+ * batch JDBC, 1 transaction mỗi lô (thay vì 1 INSERT trong mỗi request mở hộp)
+ * - Hàng đợi nằm trong bộ nhớ: instance bị kill/crash thì mất BoxHistory chưa ghi (tối đa
+ * ~minigame.history.flush-interval-ms gần nhất). Điểm, stock phần thưởng, lượt mở và sổ Point
+ * không bị ảnh hưởng; chỉ lịch sử / thống kê thắng-thua thiếu các lần mở đó
+ * - Hàng đợi đầy hoặc tắt ghi dồn: lưu ngay bằng repository như trước
+ */
+@Service
+@Slf4j
+public class BoxHistoryWriterServiceImpl implements BoxHistoryWriterService {
+
+    private static final String INSERT_HISTORY_SQL =
+            "INSERT INTO box_history (user_id, campaign_id, open_type, open_date, reward_id, reward_value, "
+                    + "points_spent, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final BoxHistoryRepository boxHistoryRepository;
+    private final PointRepository pointRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${minigame.history.batch-write.enabled:false}")
+    private boolean enabled;
+
+    @Value("${minigame.history.batch-size:500}")
+    private int batchSize;
+
+    @Value("${minigame.history.queue-capacity:100000}")
+    private int queueCapacity;
+
+    private final Queue<PendingOpen> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public BoxHistoryWriterServiceImpl(BoxHistoryRepository boxHistoryRepository,
+            PointRepository pointRepository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.boxHistoryRepository = boxHistoryRepository;
+        this.pointRepository = pointRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public Integer write(BoxHistory history, List<Point> points) {
+        // Sổ điểm phải khớp totalPoint → luôn ghi cùng transaction
+        pointRepository.saveAll(points);
+        if (!enabled || queued.get() >= queueCapacity) {
+            return boxHistoryRepository.save(history).getId();
+        }
+
+        long now = System.currentTimeMillis();
+        history.setOpenDate(now);
+        history.setCreatedAt(now);
+        PendingOpen pending = new PendingOpen(history);
+        // Transaction mở hộp rollback thì không ghi nhật ký
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(pending);
+                }
+            });
+        } else {
+            enqueue(pending);
+        }
+        return null;
+    }
+
+    @Override
+    public int flushPending() {
+        int written = 0;
+        while (true) {
+            List<PendingOpen> batch = drain();
+            if (batch.isEmpty()) {
+                return written;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertBatch(batch));
+                written += batch.size();
+            } catch (Exception e) {
+                // Giữ lại để ghi lần sau
+                batch.forEach(this::enqueue);
+                log.error("🎁 ERROR: Failed to write {} box histories, will retry", batch.size(), e);
+                return written;
+            }
+        }
+    }
+
+    @Override
+    public int getPendingCount() {
+        return queued.get();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int written = flushPending();
+        if (written > 0 || queued.get() > 0) {
+            log.info("🎁 BOX HISTORY: Flushed {} histories on shutdown, {} left", written, queued.get());
+        }
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private void enqueue(PendingOpen pending) {
+        queue.add(pending);
+        queued.incrementAndGet();
+    }
+
+    private List<PendingOpen> drain() {
+        List<PendingOpen> batch = new ArrayList<>();
+        PendingOpen pending;
+        while (batch.size() < batchSize && (pending = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(pending);
+        }
+        return batch;
+    }
+
+    private void insertBatch(List<PendingOpen> batch) {
+        jdbcTemplate.batchUpdate(INSERT_HISTORY_SQL, batch, batch.size(), (ps, pending) -> {
+            BoxHistory history = pending.history;
+            ps.setInt(1, history.getUser().getId());
+            ps.setInt(2, history.getCampaign().getId());
+            ps.setString(3, history.getOpenType().name());
+            ps.setLong(4, history.getOpenDate());
+            ps.setObject(5, history.getReward() != null ? history.getReward().getId() : null, Types.INTEGER);
+            ps.setObject(6, history.getRewardValue(), Types.INTEGER);
+            ps.setObject(7, history.getPointsSpent(), Types.INTEGER);
+            ps.setLong(8, history.getCreatedAt());
+        });
+    }
+
+    private static final class PendingOpen {
+        final BoxHistory history;
+
+        PendingOpen(BoxHistory history) {
+            this.history = history;
+        }
+    }
+}
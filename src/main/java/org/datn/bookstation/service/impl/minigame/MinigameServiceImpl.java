@@ -1,6 +1,8 @@
 package org.datn.bookstation.service.impl.minigame;
 
-import lombok.AllArgsConstructor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.datn.bookstation.dto.request.minigame.OpenBoxRequest;
 import org.datn.bookstation.dto.response.minigame.OpenBoxResponse;
@@ -10,29 +12,38 @@ import org.datn.bookstation.entity.*;
 import org.datn.bookstation.entity.enums.BoxOpenType;
 import org.datn.bookstation.entity.enums.RewardType;
 import org.datn.bookstation.repository.*;
+import org.datn.bookstation.service.BoxHistoryWriterService;
 import org.datn.bookstation.service.MinigameService;
+import org.datn.bookstation.service.RewardSamplerService;
+import org.datn.bookstation.service.StatisticsSnapshotService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 import java.util.stream.Collectors;
 
 @Service
-@AllArgsConstructor
+@RequiredArgsConstructor
 @Slf4j
 @Transactional
 public class MinigameServiceImpl implements MinigameService {
 
+    // Số lần bốc lại khi phần thưởng vừa bốc được đã hết stock
+    private static final int MAX_DRAW_ATTEMPTS = 3;
+
     private final CampaignRepository campaignRepository;
     private final RewardRepository rewardRepository;
     private final UserCampaignRepository userCampaignRepository;
     private final BoxHistoryRepository boxHistoryRepository;
     private final UserRepository userRepository;
-    private final PointRepository pointRepository;
     private final UserVoucherRepository userVoucherRepository;
-    
-    private final Random random = new Random();
+    private final BoxHistoryWriterService boxHistoryWriterService;
+    private final StatisticsSnapshotService statisticsSnapshotService;
+    private final RewardSamplerService rewardSamplerService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Override
     public OpenBoxResponse openBox(OpenBoxRequest request) {
@@ -60,47 +71,45 @@ public class MinigameServiceImpl implements MinigameService {
         User user = userRepository.findById(request.getUserId())
                 .orElseThrow(() -> new RuntimeException("Người dùng không tồn tại"));
 
-        // 3. Get or create UserCampaign
-        UserCampaign userCampaign = userCampaignRepository.findByUserIdAndCampaignId(request.getUserId(), request.getCampaignId())
-                .orElseGet(() -> {
-                    UserCampaign newUserCampaign = new UserCampaign();
-                    newUserCampaign.setUser(user);
-                    newUserCampaign.setCampaign(campaign);
-                    newUserCampaign.setFreeOpenedCount(0);
-                    newUserCampaign.setTotalOpenedCount(0);
-                    return userCampaignRepository.save(newUserCampaign);
-                });
+        // 3. Get or create UserCampaign (INSERT ... ON CONFLICT: request đồng thời không tạo bản ghi trùng)
+        UserCampaign userCampaign = getOrCreateUserCampaign(user, campaign);
 
-        // 4. Validate open type and user eligibility
+        // 4. Trừ lượt mở / điểm nguyên tử (UPDATE ... WHERE còn lượt / đủ điểm)
+        // Luôn khóa dòng user_campaign trước nên các lần mở của cùng 1 user được xếp hàng
+        long now = System.currentTimeMillis();
+        int pointsSpent = 0;
         if (request.getOpenType() == BoxOpenType.FREE) {
-            if (userCampaign.getFreeOpenedCount() >= campaign.getConfigFreeLimit()) {
+            if (userCampaignRepository.consumeFreeOpen(userCampaign.getId(), campaign.getConfigFreeLimit(), now) == 0) {
                 return new OpenBoxResponse(false, "Bạn đã hết lượt mở miễn phí", BoxOpenType.FREE, 
-                                         0, user.getTotalPoint());
+                                         0, userRepository.findTotalPointById(user.getId()));
             }
-        } else if (request.getOpenType() == BoxOpenType.POINT) {
-            if (user.getTotalPoint() < campaign.getConfigPointCost()) {
-                return new OpenBoxResponse(false, "Bạn không đủ điểm để mở hộp", BoxOpenType.POINT,
-                                         campaign.getConfigFreeLimit() - userCampaign.getFreeOpenedCount(),
-                                         user.getTotalPoint());
+        } else {
+            userCampaignRepository.incrementTotalOpened(userCampaign.getId(), now);
+            if (request.getOpenType() == BoxOpenType.POINT) {
+                pointsSpent = campaign.getConfigPointCost();
+                if (userRepository.deductPointsIfEnough(user.getId(), pointsSpent) == 0) {
+                    // Hoàn lại lượt mở vừa tăng (dòng user_campaign vẫn đang bị transaction này khóa)
+                    userCampaignRepository.decrementTotalOpened(userCampaign.getId(), now);
+                    return new OpenBoxResponse(false, "Bạn không đủ điểm để mở hộp", BoxOpenType.POINT,
+                                             campaign.getConfigFreeLimit() - userCampaign.getFreeOpenedCount(),
+                                             userRepository.findTotalPointById(user.getId()));
+                }
             }
         }
+        // Đọc lại bộ đếm sau UPDATE (dòng đang bị khóa bởi transaction này nên chính xác)
+        entityManager.refresh(userCampaign);
 
-        // 5. Get available rewards
-        List<Reward> availableRewards = rewardRepository.findAvailableByCampaignId(request.getCampaignId());
-        if (availableRewards.isEmpty()) {
-            throw new RuntimeException("Chiến dịch không có phần thưởng nào khả dụng");
-        }
-
-        // 6. Calculate win probability boost based on user open count (càng mở nhiều, tỷ lệ trúng càng cao)
-        double winProbabilityBoost = calculateWinProbabilityBoost(userCampaign.getTotalOpenedCount());
-        log.info("User {} has opened {} times, win probability boost: {}%", 
-                 user.getId(), userCampaign.getTotalOpenedCount(), winProbabilityBoost * 100);
+        // 5. Calculate win probability boost based on user open count (càng mở nhiều, tỷ lệ trúng càng cao)
+        int openedBefore = userCampaign.getTotalOpenedCount() - 1;
+        double winProbabilityBoost = calculateWinProbabilityBoost(openedBefore);
+        log.debug("User {} has opened {} times, win probability boost: {}%", 
+                 user.getId(), openedBefore, winProbabilityBoost * 100);
 
-        // 7. Random reward selection
-        Reward selectedReward = selectReward(availableRewards, winProbabilityBoost);
+        // 6. Random reward selection (bảng alias, O(1)) + trừ stock nguyên tử
+        Reward selectedReward = drawReward(request.getCampaignId(), winProbabilityBoost);
 
-        // 8. Process the box opening
-        return processBoxOpening(user, campaign, userCampaign, selectedReward, request.getOpenType());
+        // 7. Process the box opening
+        return processBoxOpening(user, campaign, userCampaign, selectedReward, request.getOpenType(), pointsSpent);
     }
 
     @Override
@@ -171,140 +180,99 @@ public class MinigameServiceImpl implements MinigameService {
         if (totalOpenedCount == null) totalOpenedCount = 0;
         
         // Base boost formula: 0.5% per open, max 20% boost at 40 opens
+        // (RewardSamplerServiceImpl dựng sẵn bảng alias theo từng mức 0.5% này)
         double boost = Math.min(totalOpenedCount * 0.005, 0.20);
         return boost;
     }
 
     /**
-     * Chọn phần thưởng dựa trên xác suất và boost
+     * Bốc phần thưởng bằng bảng alias đã biên dịch và trừ stock nguyên tử (UPDATE ... WHERE stock > 0)
+     * Phần thưởng vừa bị request khác lấy suất cuối thì bảng được biên dịch lại và bốc lại;
+     * vẫn không được thì coi như không trúng (null)
      */
-    private Reward selectReward(List<Reward> availableRewards, double winProbabilityBoost) {
-        // Sort rewards: NONE first, then POINTS, then VOUCHER (valuable rewards last)
-        availableRewards.sort((r1, r2) -> {
-            int typeOrder1 = getRewardTypeOrder(r1.getType());
-            int typeOrder2 = getRewardTypeOrder(r2.getType());
-            return Integer.compare(typeOrder1, typeOrder2);
-        });
-
-        double totalProbability = 0;
-        for (Reward reward : availableRewards) {
-            double adjustedProbability = reward.getProbability().doubleValue();
-            
-            // Apply boost only to valuable rewards (POINTS, VOUCHER)
-            if (reward.getType() != RewardType.NONE) {
-                adjustedProbability += winProbabilityBoost * 100; // Convert to percentage
-                adjustedProbability = Math.min(adjustedProbability, 100.0); // Cap at 100%
-            }
-            
-            totalProbability += adjustedProbability;
-        }
-
-        // Random selection
-        double randomValue = random.nextDouble() * totalProbability;
-        double cumulativeProbability = 0;
-
-        for (Reward reward : availableRewards) {
-            double adjustedProbability = reward.getProbability().doubleValue();
-            if (reward.getType() != RewardType.NONE) {
-                adjustedProbability += winProbabilityBoost * 100;
-                adjustedProbability = Math.min(adjustedProbability, 100.0);
+    private Reward drawReward(Integer campaignId, double winProbabilityBoost) {
+        for (int attempt = 0; attempt < MAX_DRAW_ATTEMPTS; attempt++) {
+            Integer rewardId = rewardSamplerService.sample(campaignId, winProbabilityBoost);
+            if (rewardId == null) {
+                if (attempt == 0) {
+                    throw new RuntimeException("Chiến dịch không có phần thưởng nào khả dụng");
+                }
+                return null;
             }
-            
-            cumulativeProbability += adjustedProbability;
-            
-            if (randomValue <= cumulativeProbability) {
-                log.info("Selected reward: {} (type: {}, probability: {}%, adjusted: {}%)", 
-                         reward.getName(), reward.getType(), 
-                         reward.getProbability(), adjustedProbability);
+            Reward reward = rewardRepository.findById(rewardId).orElse(null);
+            if (reward != null && (reward.getType() == RewardType.NONE
+                    || rewardRepository.decreaseStockIfAvailable(rewardId) == 1)) {
+                log.debug("Selected reward: {} (type: {}, probability: {}%, boost: {}%)",
+                         reward.getName(), reward.getType(), reward.getProbability(), winProbabilityBoost * 100);
                 return reward;
             }
+            log.info("Reward {} ran out of stock concurrently, selecting again", rewardId);
+            rewardSamplerService.onRewardUnavailable(campaignId, rewardId);
         }
-
-        // Fallback to first reward (should not happen)
-        return availableRewards.get(0);
+        return null;
     }
 
-    private int getRewardTypeOrder(RewardType type) {
-        switch (type) {
-            case NONE: return 1;
-            case POINTS: return 2;
-            case VOUCHER: return 3;
-            default: return 1;
-        }
+    private UserCampaign getOrCreateUserCampaign(User user, Campaign campaign) {
+        return userCampaignRepository.findByUserIdAndCampaignId(user.getId(), campaign.getId())
+                .orElseGet(() -> {
+                    userCampaignRepository.insertIfAbsent(user.getId(), campaign.getId(), System.currentTimeMillis());
+                    return userCampaignRepository.findByUserIdAndCampaignId(user.getId(), campaign.getId())
+                            .orElseThrow(() -> new RuntimeException("Không thể tạo lượt tham gia chiến dịch"));
+                });
     }
 
     /**
-     * Xử lý mở hộp và cập nhật dữ liệu
+     * Xử lý mở hộp: phát thưởng, ghi lịch sử và dựng response
+     * Lượt mở, điểm mở hộp và stock phần thưởng đã được trừ nguyên tử ở openBox
      */
     private OpenBoxResponse processBoxOpening(User user, Campaign campaign, UserCampaign userCampaign, 
-                                            Reward selectedReward, BoxOpenType openType) {
-        
-        // 1. Update user campaign stats
-        userCampaign.setTotalOpenedCount(userCampaign.getTotalOpenedCount() + 1);
-        Integer pointsSpent = 0;
-        
-        if (openType == BoxOpenType.FREE) {
-            userCampaign.setFreeOpenedCount(userCampaign.getFreeOpenedCount() + 1);
-        } else if (openType == BoxOpenType.POINT) {
-            pointsSpent = campaign.getConfigPointCost();
-            user.setTotalPoint(user.getTotalPoint() - pointsSpent);
-            userRepository.save(user);
-            
-            // 🔄 KHÔNG tạo bản ghi Point riêng cho việc tiêu điểm ở đây
-            // Sẽ được gộp chung với phần thưởng điểm (nếu có) trong processReward()
-            log.info("User {} spent {} points to open box in campaign {}", user.getId(), pointsSpent, campaign.getName());
-        }
-        
-        userCampaignRepository.save(userCampaign);
-
-        // 2. Process reward if not NONE
-        if (selectedReward.getType() != RewardType.NONE && selectedReward.getStock() > 0) {
-            processReward(user, selectedReward, campaign.getName(), pointsSpent);
-            
-            // Update reward stock
-            selectedReward.setStock(selectedReward.getStock() - 1);
-            rewardRepository.save(selectedReward);
+                                            Reward selectedReward, BoxOpenType openType, int pointsSpent) {
+        boolean hasReward = selectedReward != null && selectedReward.getType() != RewardType.NONE;
+        List<Point> points = new ArrayList<>();
+        int pointsEarned = 0;
+
+        // 1. Process reward if not NONE
+        if (hasReward) {
+            pointsEarned = processReward(user, selectedReward, campaign.getName(), pointsSpent, points);
         } else if (pointsSpent > 0) {
             //  FIX: Trường hợp không trúng gì (NONE) nhưng đã chi điểm
-            Point spentOnlyPoint = new Point();
-            spentOnlyPoint.setUser(user);
-            spentOnlyPoint.setPointSpent(pointsSpent);
-            spentOnlyPoint.setDescription("Mở hộp chiến dịch: " + campaign.getName() + " (chi " + pointsSpent + " điểm, không trúng thưởng)");
-            spentOnlyPoint.setCreatedAt(System.currentTimeMillis());
-            spentOnlyPoint.setStatus((byte) 1);
-            pointRepository.save(spentOnlyPoint);
-            log.info("Created point record for {} points spent with no reward", pointsSpent);
+            points.add(newPoint(user, null, pointsSpent,
+                    "Mở hộp chiến dịch: " + campaign.getName() + " (chi " + pointsSpent + " điểm, không trúng thưởng)"));
+        }
+        if (pointsSpent > 0) {
+            log.debug("User {} spent {} points to open box in campaign {}", user.getId(), pointsSpent, campaign.getName());
         }
 
-        // 3. Save box history
+        // 2. Save box history (ghi ngay hoặc ghi dồn theo lô, xem BoxHistoryWriterService)
         BoxHistory history = new BoxHistory();
         history.setUser(user);
         history.setCampaign(campaign);
         history.setOpenType(openType);
         history.setPointsSpent(pointsSpent);
-        
-        if (selectedReward.getType() != RewardType.NONE && selectedReward.getStock() >= 0) {
+        if (hasReward) {
             history.setReward(selectedReward);
             history.setRewardValue(getRewardValue(selectedReward));
         }
-        
-        boxHistoryRepository.save(history);
+        Integer historyId = boxHistoryWriterService.write(history, points);
+
+        // Sau khi mọi thao tác ghi đã xong; snapshot chỉ cộng delta khi transaction commit (afterCommit)
+        statisticsSnapshotService.onPointsChanged(pointsEarned - pointsSpent, pointsEarned, pointsSpent);
 
-        // 4. Build response
+        // 3. Build response
         OpenBoxResponse response = new OpenBoxResponse();
         response.setSuccess(true);
-        response.setHistoryId(history.getId());
+        response.setHistoryId(historyId);
         response.setOpenType(openType);
         response.setOpenDate(history.getOpenDate());
         response.setPointsSpent(pointsSpent);
         
         // User info after opening
         response.setUserRemainingFreeOpens(campaign.getConfigFreeLimit() - userCampaign.getFreeOpenedCount());
-        response.setUserCurrentPoints(user.getTotalPoint());
+        response.setUserCurrentPoints(userRepository.findTotalPointById(user.getId()));
         response.setUserTotalOpenedInCampaign(userCampaign.getTotalOpenedCount());
 
         // Reward info
-        if (selectedReward.getType() != RewardType.NONE) {
+        if (hasReward) {
             response.setHasReward(true);
             response.setRewardType(selectedReward.getType());
             response.setRewardName(selectedReward.getName());
@@ -325,52 +293,42 @@ public class MinigameServiceImpl implements MinigameService {
             response.setMessage("Chúc bạn may mắn lần sau!");
         }
 
-        log.info("Box opening completed for user {} in campaign {}: {} - {}", 
-                 user.getId(), campaign.getId(), selectedReward.getType(), selectedReward.getName());
+        log.debug("Box opening completed for user {} in campaign {}: {}", 
+                 user.getId(), campaign.getId(), hasReward ? selectedReward.getName() : "no reward");
 
         return response;
     }
 
-    private void processReward(User user, Reward reward, String campaignName, Integer pointsSpent) {
+    /**
+     * Phát thưởng và thêm bản ghi Point tương ứng vào points, trả về số điểm được cộng
+     */
+    private int processReward(User user, Reward reward, String campaignName, int pointsSpent, List<Point> points) {
         switch (reward.getType()) {
             case POINTS:
-                // Add points to user
-                user.setTotalPoint(user.getTotalPoint() + reward.getPointValue());
-                userRepository.save(user);
+                // Cộng điểm tương đối, không ghi đè totalPoint đọc trước đó
+                userRepository.addPoints(user.getId(), reward.getPointValue());
                 
                 //  FIX: Tạo 1 bản ghi Point duy nhất với cả pointSpent và pointEarned
-                Point combinedPoint = new Point();
-                combinedPoint.setUser(user);
-                combinedPoint.setPointEarned(reward.getPointValue());
-                
                 if (pointsSpent > 0) {
                     //  GỘP: Bao gồm cả điểm chi và điểm nhận trong 1 record
-                    combinedPoint.setPointSpent(pointsSpent);
-                    combinedPoint.setDescription("Trúng thưởng " + reward.getPointValue() + " điểm từ chiến dịch " + campaignName + 
-                                               " (đã chi " + pointsSpent + " điểm để mở hộp)");
+                    Point combinedPoint = newPoint(user, reward.getPointValue(), pointsSpent,
+                            "Trúng thưởng " + reward.getPointValue() + " điểm từ chiến dịch " + campaignName + 
+                            " (đã chi " + pointsSpent + " điểm để mở hộp)");
+                    points.add(combinedPoint);
                 } else {
-                    combinedPoint.setDescription("Trúng thưởng " + reward.getPointValue() + " điểm từ chiến dịch " + campaignName + 
-                                               " (mở miễn phí)");
+                    points.add(newPoint(user, reward.getPointValue(), null,
+                            "Trúng thưởng " + reward.getPointValue() + " điểm từ chiến dịch " + campaignName + 
+                            " (mở miễn phí)"));
                 }
-                combinedPoint.setCreatedAt(System.currentTimeMillis());
-                combinedPoint.setStatus((byte) 1);
-                pointRepository.save(combinedPoint);
-                
-                log.info(" FIXED: Combined point record - Awarded {} points to user {} (spent {} points to open box)", 
+                log.debug("Awarded {} points to user {} (spent {} points to open box)", 
                          reward.getPointValue(), user.getId(), pointsSpent);
-                break;
+                return reward.getPointValue();
                 
             case VOUCHER:
                 //  Tạo bản ghi riêng cho việc tiêu điểm (nếu có) khi nhận voucher
                 if (pointsSpent > 0) {
-                    Point spentPoint = new Point();
-                    spentPoint.setUser(user);
-                    spentPoint.setPointSpent(pointsSpent);
-                    spentPoint.setDescription("Mở hộp chiến dịch: " + campaignName + " (chi " + pointsSpent + " điểm)");
-                    spentPoint.setCreatedAt(System.currentTimeMillis());
-                    spentPoint.setStatus((byte) 1);
-                    pointRepository.save(spentPoint);
-                    log.info("Created separate point record for spending {} points to get voucher", pointsSpent);
+                    points.add(newPoint(user, null, pointsSpent,
+                            "Mở hộp chiến dịch: " + campaignName + " (chi " + pointsSpent + " điểm)"));
                 }
                 
                 if (reward.getVoucher() != null) {
@@ -380,18 +338,28 @@ public class MinigameServiceImpl implements MinigameService {
                     userVoucher.setUser(user);
                     userVoucher.setVoucher(reward.getVoucher());
                     userVoucherRepository.save(userVoucher);
-                    log.info(" FIXED: Always awarded voucher {} to user {} (new record created)", 
-                             reward.getVoucher().getCode(), user.getId());
+                    log.debug("Awarded voucher {} to user {}", reward.getVoucher().getCode(), user.getId());
                 }
-                break;
+                return 0;
                 
             case NONE:
             default:
                 // No reward processing needed
-                break;
+                return 0;
         }
     }
 
+    private Point newPoint(User user, Integer pointEarned, Integer pointSpent, String description) {
+        Point point = new Point();
+        point.setUser(user);
+        point.setPointEarned(pointEarned);
+        point.setPointSpent(pointSpent);
+        point.setDescription(description);
+        point.setCreatedAt(System.currentTimeMillis());
+        point.setStatus((byte) 1);
+        return point;
+    }
+
     private Integer getRewardValue(Reward reward) {
         switch (reward.getType()) {
             case POINTS:
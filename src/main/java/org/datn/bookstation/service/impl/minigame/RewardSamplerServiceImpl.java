@@ -0,0 +1,192 @@
+package org.datn.bookstation.service.impl.minigame;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.entity.Reward;
+import org.datn.bookstation.entity.enums.RewardType;
+import org.datn.bookstation.repository.RewardRepository;
+import org.datn.bookstation.service.RewardSamplerService;
+import org.datn.bookstation.util.AliasTable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 🎲 REWARD SAMPLER SERVICE IMPLEMENTATION
+ * - Mỗi chiến dịch: danh sách phần thưởng khả dụng (status = 1, stock > 0) được nạp 1 lần
+ * - Boost của MinigameServiceImpl là bội số của 0.5% (tối đa 20%) → 41 mức; bảng alias của
+ * mỗi mức được dựng lần đầu cần tới, cùng trọng số như cách chọn tuần tự trước đây:
+ * NONE giữ nguyên xác suất, POINTS/VOUCHER cộng boost và chặn ở 100%
+ * - Phần thưởng hết stock (UPDATE trừ stock thất bại) → bỏ bảng, lần bốc sau nạp lại từ DB
+ * - Admin sửa phần thưởng → bỏ bảng sau commit; lần nạp bắt đầu trước đó không được cache
+ * - Bảng hết hạn sau minigame.reward-sampler.ttl-ms: thay đổi từ instance khác (invalidate chỉ chạy
+ * trên instance xử lý request admin) có hiệu lực chậm nhất sau TTL
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RewardSamplerServiceImpl implements RewardSamplerService {
+
+    private static final double BOOST_STEP = 0.005;
+    private static final int MAX_BOOST_TIER = 40;
+
+    private final RewardRepository rewardRepository;
+
+    @Value("${minigame.reward-sampler.ttl-ms:30000}")
+    private long ttlMs;
+
+    // campaignId -> bảng đã biên dịch
+    private final Map<Integer, CampaignSampler> samplers = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidate: kết quả nạp bắt đầu trước đó sẽ không được cache
+    private final AtomicLong version = new AtomicLong();
+
+    @Override
+    public Integer sample(Integer campaignId, double winProbabilityBoost) {
+        CampaignSampler sampler = samplers.get(campaignId);
+        if (sampler == null || sampler.isExpired(System.currentTimeMillis())) {
+            sampler = load(campaignId);
+        }
+        if (sampler.rewardIds.length == 0) {
+            return null;
+        }
+        int tier = (int) Math.max(0, Math.min(MAX_BOOST_TIER, Math.round(winProbabilityBoost / BOOST_STEP)));
+        return sampler.rewardIds[sampler.table(tier).sample(ThreadLocalRandom.current())];
+    }
+
+    @Override
+    public void onRewardUnavailable(Integer campaignId, Integer rewardId) {
+        CampaignSampler sampler = samplers.get(campaignId);
+        if (sampler == null || !sampler.contains(rewardId)) {
+            return;
+        }
+        // UPDATE trừ stock thất bại nghĩa là stock = 0 đã commit, nạp lại ngay được
+        synchronized (samplers) {
+            version.incrementAndGet();
+            if (samplers.remove(campaignId, sampler)) {
+                log.info("🎲 REWARD SAMPLER: Reward {} of campaign {} unavailable, recompiling", rewardId, campaignId);
+            }
+        }
+    }
+
+    @Override
+    public void invalidate(Integer campaignId) {
+        afterCommit(() -> {
+            synchronized (samplers) {
+                version.incrementAndGet();
+                samplers.remove(campaignId);
+            }
+            log.debug("🎲 REWARD SAMPLER: Campaign {} invalidated", campaignId);
+        });
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private CampaignSampler load(Integer campaignId) {
+        long versionBeforeLoad = version.get();
+        List<Reward> rewards = new ArrayList<>(rewardRepository.findAvailableByCampaignId(campaignId));
+        // Cùng thứ tự NONE → POINTS → VOUCHER như cách chọn cũ (chỉ ảnh hưởng khi tổng xác suất bằng 0)
+        rewards.sort(Comparator.comparingInt(reward -> getRewardTypeOrder(reward.getType())));
+        CampaignSampler loaded = new CampaignSampler(rewards, System.currentTimeMillis() + ttlMs);
+
+        synchronized (samplers) {
+            if (version.get() != versionBeforeLoad) {
+                return loaded;
+            }
+            // Thread khác vừa nạp xong thì dùng bảng của nó; bảng hết hạn thì thay
+            CampaignSampler existing = samplers.get(campaignId);
+            if (existing != null && !existing.isExpired(System.currentTimeMillis())) {
+                return existing;
+            }
+            samplers.put(campaignId, loaded);
+        }
+        log.debug("🎲 REWARD SAMPLER: Compiled {} rewards of campaign {}", rewards.size(), campaignId);
+        return loaded;
+    }
+
+    private int getRewardTypeOrder(RewardType type) {
+        if (type == null) {
+            return 1;
+        }
+        switch (type) {
+            case POINTS: return 2;
+            case VOUCHER: return 3;
+            case NONE:
+            default: return 1;
+        }
+    }
+
+    /**
+     * Chạy sau khi transaction hiện tại commit (nếu có), tránh nạp lại phần thưởng chưa commit
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class CampaignSampler {
+        final int[] rewardIds;
+        final double[] probabilities;
+        final boolean[] boosted;
+        final long expiresAt;
+        // Bảng alias theo mức boost, dựng khi cần (bảng bất biến nên ghi đè đồng thời cũng an toàn)
+        final AliasTable[] tables = new AliasTable[MAX_BOOST_TIER + 1];
+
+        CampaignSampler(List<Reward> rewards, long expiresAt) {
+            this.expiresAt = expiresAt;
+            int n = rewards.size();
+            this.rewardIds = new int[n];
+            this.probabilities = new double[n];
+            this.boosted = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                Reward reward = rewards.get(i);
+                rewardIds[i] = reward.getId();
+                probabilities[i] = reward.getProbability() != null ? reward.getProbability().doubleValue() : 0;
+                boosted[i] = reward.getType() != RewardType.NONE;
+            }
+        }
+
+        AliasTable table(int tier) {
+            AliasTable table = tables[tier];
+            if (table == null) {
+                double boost = tier * BOOST_STEP * 100; // Convert to percentage
+                double[] weights = new double[rewardIds.length];
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] = boosted[i] ? Math.min(probabilities[i] + boost, 100.0) : probabilities[i];
+                }
+                table = new AliasTable(weights);
+                tables[tier] = table;
+            }
+            return table;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+
+        boolean contains(Integer rewardId) {
+            for (int id : rewardIds) {
+                if (rewardId != null && id == rewardId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.datn.bookstation.dto.response.minigame.CampaignProbabilityResponse;
 import org.datn.bookstation.entity.*;
 import org.datn.bookstation.entity.enums.RewardType;
 import org.datn.bookstation.repository.*;
+import org.datn.bookstation.service.RewardSamplerService;
 import org.datn.bookstation.service.RewardService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,6 +27,7 @@ public class RewardServiceImpl implements RewardService {
     private final CampaignRepository campaignRepository;
     private final VoucherRepository voucherRepository;
     private final BoxHistoryRepository boxHistoryRepository;
+    private final RewardSamplerService rewardSamplerService;
 
     @Override
     public List<RewardResponse> getRewardsByCampaign(Integer campaignId) {
@@ -88,6 +90,7 @@ public class RewardServiceImpl implements RewardService {
         reward.setCreatedBy(request.getCreatedBy());
         
         rewardRepository.save(reward);
+        rewardSamplerService.invalidate(campaign.getId());
         log.info("Created new reward: {} for campaign: {}", reward.getName(), campaign.getName());
     }
 
@@ -147,6 +150,7 @@ public class RewardServiceImpl implements RewardService {
         reward.setUpdatedBy(request.getUpdatedBy());
         
         rewardRepository.save(reward);
+        rewardSamplerService.invalidate(reward.getCampaign().getId());
         log.info("Updated reward: {}", reward.getName());
     }
 
@@ -163,6 +167,7 @@ public class RewardServiceImpl implements RewardService {
         reward.setStatus(status);
         reward.setUpdatedBy(updatedBy);
         rewardRepository.save(reward);
+        rewardSamplerService.invalidate(reward.getCampaign().getId());
         log.info("Updated reward status: {} -> {}", reward.getName(), status);
     }
 
@@ -180,6 +185,7 @@ public class RewardServiceImpl implements RewardService {
         reward.setStatus(newStatus);
         reward.setUpdatedBy(updatedBy);
         rewardRepository.save(reward);
+        rewardSamplerService.invalidate(reward.getCampaign().getId());
         log.info("Toggled reward status: {} -> {}", reward.getName(), newStatus);
     }
 
@@ -201,6 +207,7 @@ public class RewardServiceImpl implements RewardService {
         }
 
         rewardRepository.delete(reward);
+        rewardSamplerService.invalidate(reward.getCampaign().getId());
         log.info("Deleted reward: {}", reward.getName());
     }
 
@@ -4,6 +4,7 @@ import org.datn.bookstation.entity.Book;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 public class BookSpecification {
@@ -73,7 +74,12 @@ public class BookSpecification {
         };
     }
 
-    public static Specification<Book> filterBy(String bookName, Integer categoryId, Integer parentCategoryId,
+    /**
+     * categoryIds: danh mục con cháu của danh mục cha được chọn (CategoryTreeService.getDescendantIds),
+     * null = không lọc
+     */
+    public static Specification<Book> filterBy(String bookName, Collection<Integer> categoryIds,
+            Integer parentCategoryId,
             List<Integer> authorId,
             Integer publisherId,
             BigDecimal minPrice, BigDecimal maxPrice) {
@@ -104,10 +110,10 @@ public class BookSpecification {
                 predicates = criteriaBuilder.and(predicates,
                         criteriaBuilder.equal(root.get("category").get("id"), parentCategoryId));
             }
-            if (categoryId != null) {
-                System.out.println(categoryId);
-                predicates = criteriaBuilder.and(predicates,
-                        criteriaBuilder.equal(root.get("category").get("parentCategory").get("id"), categoryId));
+            if (categoryIds != null) {
+                predicates = criteriaBuilder.and(predicates, categoryIds.isEmpty()
+                        ? criteriaBuilder.disjunction()
+                        : root.get("category").get("id").in(categoryIds));
             }
             if (publisherId != null) {
                 predicates = criteriaBuilder.and(predicates,
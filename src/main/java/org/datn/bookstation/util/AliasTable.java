@@ -0,0 +1,78 @@
+package org.datn.bookstation.util;
+
+import java.util.Random;
+
+/**
+ * Bảng alias (phương pháp Vose) để bốc mẫu phân phối rời rạc trong O(1) mỗi lần.
+ * Dựng 1 lần O(n) từ trọng số không âm (không cần chuẩn hóa); bảng bất biến nên dùng chung giữa các thread.
+ * Tổng trọng số bằng 0 thì luôn trả về phần tử đầu tiên.
+ */
+public final class AliasTable {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("Cần ít nhất 1 trọng số");
+        }
+        this.probability = new double[n];
+        this.alias = new int[n];
+
+        double total = 0;
+        for (double weight : weights) {
+            total += Math.max(0, weight);
+        }
+        if (total <= 0) {
+            probability[0] = 1.0;
+            return;
+        }
+
+        // Chia cột: mỗi cột cao 1, phần thiếu của cột "nhỏ" được lấp bằng 1 phần tử "lớn"
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = Math.max(0, weights[i]) * n / total;
+            if (scaled[i] < 1.0) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+        while (smallSize > 0 && largeSize > 0) {
+            int less = small[--smallSize];
+            int more = large[--largeSize];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        // Phần còn lại chỉ lệch 1 do sai số làm tròn
+        while (largeSize > 0) {
+            probability[large[--largeSize]] = 1.0;
+        }
+        while (smallSize > 0) {
+            probability[small[--smallSize]] = 1.0;
+        }
+    }
+
+    /**
+     * Bốc 1 chỉ số theo phân phối trọng số
+     */
+    public int sample(Random random) {
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    public int size() {
+        return probability.length;
+    }
+}
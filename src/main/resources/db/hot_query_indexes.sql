@@ -0,0 +1,41 @@
+-- 📇 INDEX CHO CÁC QUERY NÓNG (PostgreSQL)
+-- Cùng tập index với các @Index khai báo trên entity (ddl-auto=update tự tạo khi khởi động).
+-- Chạy tay trên môi trường không dùng ddl-auto; CONCURRENTLY để không khóa ghi bảng đang chạy,
+-- vì vậy không chạy trong transaction (psql -f, không bọc BEGIN/COMMIT).
+
+-- "order": thống kê theo khoảng order_date + trạng thái, danh sách đơn của user, tra cứu theo mã
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_status_order_date ON "order" (order_status, order_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_user_order_date ON "order" (user_id, order_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_created_at_status ON "order" (created_at, order_status);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_code ON "order" (code);
+
+-- order_detail: khóa chính (order_id, book_id) không phục vụ được lọc theo book_id
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_detail_book ON order_detail (book_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_detail_flash_sale_item ON order_detail (flash_sale_item_id);
+
+-- book: danh sách sách đang bán theo danh mục, sách mới
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_book_status_category ON book (status, category_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_book_created_at ON book (created_at);
+
+-- review: review đã duyệt theo sách, review của user
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_review_book_status ON review (book_id, review_status);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_review_user ON review (user_id);
+
+-- cart_item
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_cart_item_cart ON cart_item (cart_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_cart_item_book ON cart_item (book_id);
+
+-- flash sale: flash sale đang chạy theo sách, item theo đợt
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_flash_sale_item_book_status ON flash_sale_item (book_id, status);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_flash_sale_item_flash_sale ON flash_sale_item (flash_sale_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_flash_sale_time_range ON flash_sale (start_time, end_time);
+
+-- checkout_session: job dọn phiên hết hạn, phiên đang mở của user
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_checkout_session_status_expires ON checkout_session (status, expires_at);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_checkout_session_user_status ON checkout_session (user_id, status);
+
+-- user_rank: hạng đang active của user
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_rank_user_status ON user_rank (user_id, status);
+
+-- refund_request: yêu cầu hoàn trả theo đơn (danh sách đơn, thống kê hoàn tiền)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_refund_request_order_status ON refund_request (order_id, status);
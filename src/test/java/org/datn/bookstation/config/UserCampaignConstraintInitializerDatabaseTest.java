@@ -0,0 +1,162 @@
+package org.datn.bookstation.config;
+
+import org.datn.bookstation.entity.Campaign;
+import org.datn.bookstation.entity.User;
+import org.datn.bookstation.repository.CampaignRepository;
+import org.datn.bookstation.repository.RoleRepository;
+import org.datn.bookstation.repository.UserCampaignRepository;
+import org.datn.bookstation.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 🎁 Bảng user_campaign cũ không có ràng buộc UNIQUE (user_id, campaign_id) và đã có dòng trùng
+ * (trường hợp ddl-auto=update bỏ qua ràng buộc): khi khởi động phải gộp dòng trùng và tạo lại unique index
+ * để INSERT ... ON CONFLICT của insertIfAbsent hoạt động
+ * Chỉ chạy khi có TEST_DATABASE_URL (DB PostgreSQL riêng cho test, test xóa rồi tạo lại ràng buộc):
+ * TEST_DATABASE_URL=jdbc:postgresql://localhost:5432/bookstation_test TEST_DATABASE_USER=... \
+ * TEST_DATABASE_PASSWORD=... mvn test -Dtest=UserCampaignConstraintInitializerDatabaseTest
+ */
+@SpringBootTest(properties = {
+        "APP_BASE_URL=http://localhost",
+        "VNPAY_TMN_CODE=test",
+        "VNPAY_HASH_SECRET=test",
+        "flashsale.in-memory-stock.enabled=false"
+})
+@EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+class UserCampaignConstraintInitializerDatabaseTest {
+
+    private static final String INSERT_ROW_SQL =
+            "INSERT INTO user_campaign (user_id, campaign_id, free_opened_count, total_opened_count, created_at, "
+                    + "updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DATABASE_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv("TEST_DATABASE_USER"));
+        registry.add("spring.datasource.password", () -> System.getenv("TEST_DATABASE_PASSWORD"));
+    }
+
+    @Autowired
+    private UserCampaignConstraintInitializer initializer;
+
+    @Autowired
+    private UserCampaignRepository userCampaignRepository;
+
+    @Autowired
+    private CampaignRepository campaignRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void mergesDuplicatesAndRestoresUniqueIndex() {
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        Integer userId = newUser(run).getId();
+        Integer otherUserId = newUser(run + "b").getId();
+        Integer campaignId = newCampaign(run).getId();
+
+        dropUniqueConstraints();
+        jdbcTemplate.update(INSERT_ROW_SQL, userId, campaignId, 1, 4, 1_000L, 5_000L);
+        jdbcTemplate.update(INSERT_ROW_SQL, userId, campaignId, 2, 3, 2_000L, 9_000L);
+        jdbcTemplate.update(INSERT_ROW_SQL, userId, campaignId, 0, 1, 3_000L, 3_000L);
+        jdbcTemplate.update(INSERT_ROW_SQL, otherUserId, campaignId, 1, 1, 1_000L, 1_000L);
+
+        initializer.ensureUniqueConstraint();
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT free_opened_count, total_opened_count, created_at, updated_at FROM user_campaign "
+                        + "WHERE user_id = ? AND campaign_id = ?", userId, campaignId);
+        assertEquals(1, rows.size());
+        assertEquals(3, ((Number) rows.get(0).get("free_opened_count")).intValue());
+        assertEquals(8, ((Number) rows.get(0).get("total_opened_count")).intValue());
+        assertEquals(1_000L, ((Number) rows.get(0).get("created_at")).longValue());
+        assertEquals(9_000L, ((Number) rows.get(0).get("updated_at")).longValue());
+        assertEquals(1, countRows(otherUserId, campaignId));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_indexes WHERE tablename = 'user_campaign' AND indexname = ?",
+                Integer.class, UserCampaignConstraintInitializer.INDEX_NAME));
+
+        // ON CONFLICT dùng được trở lại: không tạo dòng mới cho cặp đã có, tạo được cho cặp mới
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Integer existing = tx.execute(status -> userCampaignRepository.insertIfAbsent(userId, campaignId, 1L));
+        assertEquals(0, existing);
+        Integer newUserId = newUser(run + "c").getId();
+        Integer inserted = tx.execute(status -> userCampaignRepository.insertIfAbsent(newUserId, campaignId, 1L));
+        assertEquals(1, inserted);
+        assertEquals(1, countRows(userId, campaignId));
+
+        // Chạy lại khi đã có index: không làm gì
+        initializer.ensureUniqueConstraint();
+        assertEquals(1, countRows(userId, campaignId));
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    /**
+     * Giả lập schema cũ: bỏ mọi ràng buộc / index UNIQUE của user_campaign (trừ khóa chính)
+     */
+    private void dropUniqueConstraints() {
+        List<String> constraints = jdbcTemplate.queryForList(
+                "SELECT conname FROM pg_constraint WHERE conrelid = 'user_campaign'::regclass AND contype = 'u'",
+                String.class);
+        constraints.forEach(name -> jdbcTemplate.execute("ALTER TABLE user_campaign DROP CONSTRAINT \"" + name + "\""));
+        List<String> indexes = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid "
+                        + "WHERE i.indrelid = 'user_campaign'::regclass AND i.indisunique AND NOT i.indisprimary",
+                String.class);
+        indexes.forEach(name -> jdbcTemplate.execute("DROP INDEX \"" + name + "\""));
+    }
+
+    private int countRows(Integer userId, Integer campaignId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_campaign WHERE user_id = ? AND campaign_id = ?",
+                Integer.class, userId, campaignId);
+    }
+
+    private User newUser(String run) {
+        User user = new User();
+        user.setEmail("campaign-test-" + run + "@example.com");
+        user.setPassword("not-used");
+        user.setFullName("Campaign Test User");
+        user.setRole(roleRepository.findAll().get(0));
+        user.setStatus((byte) 1);
+        user.setTotalPoint(0);
+        user.setTotalSpent(BigDecimal.ZERO);
+        return userRepository.save(user);
+    }
+
+    private Campaign newCampaign(String run) {
+        long now = System.currentTimeMillis();
+        Campaign campaign = new Campaign();
+        campaign.setName("Constraint test " + run);
+        campaign.setStartDate(now - 60_000);
+        campaign.setEndDate(now + 3_600_000);
+        campaign.setStatus((byte) 1);
+        campaign.setConfigFreeLimit(3);
+        campaign.setConfigPointCost(10);
+        campaign.setCreatedBy(1);
+        return campaignRepository.save(campaign);
+    }
+}
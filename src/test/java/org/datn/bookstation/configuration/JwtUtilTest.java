@@ -0,0 +1,135 @@
+package org.datn.bookstation.configuration;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.entity.Role;
+import org.datn.bookstation.entity.User;
+import org.datn.bookstation.entity.enums.RoleName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache claims của JwtUtil (không cần DB):
+ * - Claims trả về chỉ đọc, caller không sửa được bản dùng chung trong cache
+ * - Token sai chữ ký / hết hạn vẫn bị từ chối khi bật cache
+ * - Đo ns/op parse có cache và không cache (log, không assert thời gian)
+ */
+@Slf4j
+class JwtUtilTest {
+
+    private static final String SECRET = "BookStationTestSecret";
+    private static final int WARMUP_ITERATIONS = 5_000;
+    private static final int MEASURED_ITERATIONS = 20_000;
+
+    @Test
+    void cachedClaimsAreReadOnly() {
+        JwtUtil jwtUtil = newJwtUtil(10_000);
+        String token = jwtUtil.generateToken(newUser());
+
+        Claims first = jwtUtil.parseClaims(token);
+        assertNotNull(first);
+        assertThrows(UnsupportedOperationException.class, () -> first.put("role", "ADMIN"));
+        assertThrows(UnsupportedOperationException.class, () -> first.setSubject("attacker@example.com"));
+        assertThrows(UnsupportedOperationException.class, () -> first.remove("id"));
+
+        Claims second = jwtUtil.parseClaims(token);
+        assertEquals("CUSTOMER", second.get("role"));
+        assertEquals("user@example.com", second.getSubject());
+        assertEquals(7, jwtUtil.extractUserId(token));
+        assertEquals("CUSTOMER", jwtUtil.extractRole(token));
+    }
+
+    @Test
+    void uncachedClaimsAreReadOnlyToo() {
+        JwtUtil jwtUtil = newJwtUtil(0);
+        Claims claims = jwtUtil.parseClaims(jwtUtil.generateToken(newUser()));
+        assertNotNull(claims);
+        assertThrows(UnsupportedOperationException.class, () -> claims.put("role", "ADMIN"));
+    }
+
+    @Test
+    void rejectsInvalidAndExpiredTokens() {
+        JwtUtil jwtUtil = newJwtUtil(10_000);
+        String token = jwtUtil.generateToken(newUser());
+        assertTrue(jwtUtil.validateToken(token));
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        assertFalse(jwtUtil.validateToken(tampered));
+        assertNull(jwtUtil.parseClaims("not-a-jwt"));
+        assertNull(jwtUtil.parseClaims(null));
+
+        String expired = Jwts.builder()
+                .setSubject("user@example.com")
+                .claim("id", 7)
+                .setExpiration(new Date(System.currentTimeMillis() - 1_000))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+        assertFalse(jwtUtil.validateToken(expired));
+
+        String otherSecret = Jwts.builder()
+                .setSubject("user@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS256, "AnotherSecret")
+                .compact();
+        assertFalse(jwtUtil.validateToken(otherSecret));
+    }
+
+    @Test
+    void measuresCachedVsUncachedParse() {
+        JwtUtil cached = newJwtUtil(10_000);
+        JwtUtil uncached = newJwtUtil(0);
+        String token = cached.generateToken(newUser());
+
+        double cachedNs = measureNsPerOp(cached, token);
+        double uncachedNs = measureNsPerOp(uncached, token);
+        log.info("🔑 JWT benchmark: cached {} ns/op, uncached {} ns/op ({} iterations)",
+                String.format("%.0f", cachedNs), String.format("%.0f", uncachedNs), MEASURED_ITERATIONS);
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private static double measureNsPerOp(JwtUtil jwtUtil, String token) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += jwtUtil.parseClaims(token).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += jwtUtil.parseClaims(token).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return (double) elapsed / MEASURED_ITERATIONS;
+    }
+
+    private static JwtUtil newJwtUtil(int cacheMaxEntries) {
+        JwtProperties props = new JwtProperties();
+        props.setSecret(SECRET);
+        props.setExpiration(60_000);
+        props.setCacheMaxEntries(cacheMaxEntries);
+        return new JwtUtil(props);
+    }
+
+    private static User newUser() {
+        Role role = new Role();
+        role.setRoleName(RoleName.CUSTOMER);
+        User user = new User();
+        user.setId(7);
+        user.setEmail("user@example.com");
+        user.setFullName("Test User");
+        user.setRole(role);
+        user.setStatus((byte) 1);
+        user.setEmailVerified((byte) 1);
+        return user;
+    }
+}
@@ -0,0 +1,358 @@
+package org.datn.bookstation.filter;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Phục vụ /uploads/** bằng UploadResourceFilter (request giả lập, không cần Tomcat):
+ * - ETag / Cache-Control cho file theo hash (cas) và file cũ, If-None-Match → 304
+ * - Range 1 đoạn (a-b, a-, -n), If-Range, Range sai cú pháp bị bỏ qua, không thỏa mãn → 416
+ * - sendfile của Tomcat: chỉ đặt attribute, không tự ghi body
+ * - Chặn ../ ra ngoài thư mục upload và file / thư mục bắt đầu bằng "."
+ * - Đo requests/s ảnh bìa: filter so với ResourceHttpRequestHandler trước đây (log, không assert thời gian)
+ */
+@Slf4j
+class UploadResourceFilterTest {
+
+    private static final String HASH = "ab" + "0123456789abcdef".repeat(3) + "0123456789abcd";
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final int COVER_SIZE = 60 * 1024;
+    private static final int WARMUP_REQUESTS = 5_000;
+    private static final int MEASURED_REQUESTS = 20_000;
+
+    @TempDir
+    Path root;
+
+    private UploadResourceFilter filter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        filter = new UploadResourceFilter(root, "/uploads/");
+        Files.createDirectories(root.resolve("products"));
+        Files.write(root.resolve("products/legacy.jpg"), CONTENT);
+        Files.createDirectories(root.resolve("cas/ab"));
+        Files.write(root.resolve("cas/ab/" + HASH + "_thumb.jpg"), CONTENT);
+    }
+
+    @Test
+    void servesLegacyFileWithRevalidatingEtag() throws Exception {
+        MockHttpServletResponse response = get("/uploads/products/legacy.jpg");
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertEquals("image/jpeg", response.getContentType());
+        assertEquals(CONTENT.length, response.getContentLengthLong());
+        assertEquals("public, max-age=3600, must-revalidate", response.getHeader("Cache-Control"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        long lastModified = Files.getLastModifiedTime(root.resolve("products/legacy.jpg")).toMillis();
+        assertEquals("\"" + Long.toHexString(CONTENT.length) + "-" + Long.toHexString(lastModified) + "\"",
+                response.getHeader("ETag"));
+    }
+
+    @Test
+    void servesContentAddressedFileAsImmutable() throws Exception {
+        MockHttpServletResponse response = get("/uploads/cas/ab/" + HASH + "_thumb.jpg");
+
+        assertEquals(200, response.getStatus());
+        assertEquals("\"" + HASH + "_thumb\"", response.getHeader("ETag"));
+        assertEquals("public, max-age=31536000, immutable", response.getHeader("Cache-Control"));
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    @Test
+    void returnsNotModifiedForMatchingEtag() throws Exception {
+        String uri = "/uploads/cas/ab/" + HASH + "_thumb.jpg";
+        String etag = get(uri).getHeader("ETag");
+
+        for (String ifNoneMatch : List.of(etag, "W/" + etag, "\"other\", " + etag, "*")) {
+            MockHttpServletResponse response = send(request("GET", uri, "If-None-Match", ifNoneMatch));
+            assertEquals(304, response.getStatus(), ifNoneMatch);
+            assertEquals(0, response.getContentAsByteArray().length);
+            assertEquals(etag, response.getHeader("ETag"));
+        }
+        assertEquals(200, send(request("GET", uri, "If-None-Match", "\"other\"")).getStatus());
+    }
+
+    @Test
+    void servesSingleByteRanges() throws Exception {
+        assertPartial("bytes=2-5", 2, 5);
+        assertPartial("bytes=7-", 7, 9);
+        assertPartial("bytes=-3", 7, 9);
+        // Suffix dài hơn file → cả file, đầu cuối vượt quá → cắt về byte cuối
+        assertPartial("bytes=-100", 0, 9);
+        assertPartial("bytes=8-100", 8, 9);
+        assertPartial("bytes=3-99999999999999999999", 3, 9);
+    }
+
+    @Test
+    void ignoresInvalidOrMultipleRanges() throws Exception {
+        for (String range : List.of("bytes=5-2", "bytes=0-1,4-5", "bytes=-", "items=0-1", "bytes=a-b")) {
+            MockHttpServletResponse response = send(request("GET", "/uploads/products/legacy.jpg", "Range", range));
+            assertEquals(200, response.getStatus(), range);
+            assertNull(response.getHeader("Content-Range"), range);
+            assertArrayEquals(CONTENT, response.getContentAsByteArray(), range);
+        }
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws Exception {
+        for (String range : List.of("bytes=10-", "bytes=10-20", "bytes=-0", "bytes=99999999999999999999-")) {
+            MockHttpServletResponse response = send(request("GET", "/uploads/products/legacy.jpg", "Range", range));
+            assertEquals(416, response.getStatus(), range);
+            assertEquals("bytes */" + CONTENT.length, response.getHeader("Content-Range"), range);
+            assertEquals(0, response.getContentAsByteArray().length, range);
+        }
+    }
+
+    @Test
+    void honoursIfRange() throws Exception {
+        String uri = "/uploads/products/legacy.jpg";
+        String etag = get(uri).getHeader("ETag");
+
+        MockHttpServletRequest matching = request("GET", uri, "Range", "bytes=0-1");
+        matching.addHeader("If-Range", etag);
+        MockHttpServletResponse partial = send(matching);
+        assertEquals(206, partial.getStatus());
+        assertEquals("bytes 0-1/10", partial.getHeader("Content-Range"));
+
+        // File đã đổi (ETag khác / ETag yếu / dạng ngày) → trả cả file
+        for (String ifRange : List.of("\"stale\"", "W/" + etag, "Wed, 21 Oct 2015 07:28:00 GMT")) {
+            MockHttpServletRequest stale = request("GET", uri, "Range", "bytes=0-1");
+            stale.addHeader("If-Range", ifRange);
+            MockHttpServletResponse full = send(stale);
+            assertEquals(200, full.getStatus(), ifRange);
+            assertArrayEquals(CONTENT, full.getContentAsByteArray(), ifRange);
+        }
+    }
+
+    @Test
+    void delegatesBodyToSendfileWhenSupported() throws Exception {
+        MockHttpServletRequest request = request("GET", "/uploads/products/legacy.jpg", "Range", "bytes=2-5");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(4, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(root.resolve("products/legacy.jpg").toString(),
+                request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(2L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        // end của Tomcat không bao gồm byte cuối
+        assertEquals(6L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+
+        MockHttpServletRequest unsupported = request("GET", "/uploads/products/legacy.jpg", null, null);
+        send(unsupported);
+        assertNull(unsupported.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    @Test
+    void headSendsHeadersOnly() throws Exception {
+        MockHttpServletResponse response = send(request("HEAD", "/uploads/products/legacy.jpg", null, null));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT.length, response.getContentLengthLong());
+        assertNotNull(response.getHeader("ETag"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void rejectsTraversalAndHiddenFiles() throws Exception {
+        Path outside = root.resolveSibling(root.getFileName() + "-secret.txt");
+        Files.write(outside, CONTENT);
+        Files.write(root.resolve(".upload123.tmp"), CONTENT);
+        Files.createDirectories(root.resolve("products/.derivatives"));
+        Files.write(root.resolve("products/.derivatives/cover.jpg"), CONTENT);
+        try {
+            String outsideName = outside.getFileName().toString();
+            for (String uri : List.of(
+                    "/uploads/../" + outsideName,
+                    "/uploads/%2e%2e/" + outsideName,
+                    "/uploads/products/..%2f..%2f" + outsideName,
+                    "/uploads/.upload123.tmp",
+                    "/uploads/products/.derivatives/cover.jpg",
+                    "/uploads/products/%2ederivatives/cover.jpg",
+                    "/uploads/products/missing.jpg",
+                    "/uploads/products",
+                    "/uploads/")) {
+                MockHttpServletResponse response = get(uri);
+                assertEquals(404, response.getStatus(), uri);
+                assertEquals(0, response.getContentAsByteArray().length, uri);
+            }
+        } finally {
+            Files.deleteIfExists(outside);
+        }
+    }
+
+    @Test
+    void passesOtherMethodsDown() throws Exception {
+        MockHttpServletRequest request = request("POST", "/uploads/products/legacy.jpg", null, null);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        assertSame(request, chain.getRequest());
+    }
+
+    @Test
+    void measuresCoverImageRequestsPerSecond() throws Exception {
+        byte[] cover = new byte[COVER_SIZE];
+        ThreadLocalRandom.current().nextBytes(cover);
+        Files.createDirectories(root.resolve("cas/cd"));
+        String casName = "cd" + HASH.substring(2);
+        Files.write(root.resolve("cas/cd/" + casName + "_list.jpg"), cover);
+        Files.write(root.resolve("products/cover.jpg"), cover);
+
+        // Trước: ResourceHttpRequestHandler (addResourceHandlers("/uploads/**")), không tính DispatcherServlet
+        ResourceHttpRequestHandler handler = new ResourceHttpRequestHandler();
+        handler.setLocations(List.of(new FileSystemResource(root.toString() + "/")));
+        handler.setServletContext(new MockServletContext());
+        handler.afterPropertiesSet();
+        // Trước đây không có ETag, trình duyệt kiểm tra lại bằng If-Modified-Since
+        long lastModified = Files.getLastModifiedTime(root.resolve("products/cover.jpg")).toMillis();
+        String legacyEtag = get("/uploads/products/cover.jpg").getHeader("ETag");
+        String casEtag = get("/uploads/cas/cd/" + casName + "_list.jpg").getHeader("ETag");
+
+        String coverUri = "/uploads/products/cover.jpg";
+        String casCoverUri = "/uploads/cas/cd/" + casName + "_list.jpg";
+        double handlerFull = measureRequestsPerSecond(response ->
+                handler.handleRequest(handlerRequest("products/cover.jpg", -1), response), 200, COVER_SIZE);
+        double handlerConditional = measureRequestsPerSecond(response ->
+                handler.handleRequest(handlerRequest("products/cover.jpg", lastModified), response), 304, 0);
+        double filterFull = measureRequestsPerSecond(response ->
+                filter.doFilter(request("GET", coverUri, null, null), response, new MockFilterChain()), 200, COVER_SIZE);
+        double filterConditional = measureRequestsPerSecond(response -> filter.doFilter(
+                request("GET", coverUri, "If-None-Match", legacyEtag), response, new MockFilterChain()), 304, 0);
+        double filterCasConditional = measureRequestsPerSecond(response -> filter.doFilter(
+                request("GET", casCoverUri, "If-None-Match", casEtag), response, new MockFilterChain()), 304, 0);
+
+        log.info("🖼️ Cover image ({} KB) req/s, {} requests: handler full {}, handler revalidate {}, "
+                        + "filter full {}, filter 304 {}, filter cas 304 {}",
+                COVER_SIZE / 1024, MEASURED_REQUESTS, format(handlerFull), format(handlerConditional),
+                format(filterFull), format(filterConditional), format(filterCasConditional));
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private void assertPartial(String range, int start, int end) throws Exception {
+        MockHttpServletResponse response = send(request("GET", "/uploads/products/legacy.jpg", "Range", range));
+        assertEquals(206, response.getStatus(), range);
+        assertEquals("bytes " + start + "-" + end + "/" + CONTENT.length, response.getHeader("Content-Range"), range);
+        assertEquals(end - start + 1, response.getContentLengthLong(), range);
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, start, end + 1), response.getContentAsByteArray(), range);
+    }
+
+    private MockHttpServletResponse get(String uri) throws Exception {
+        return send(request("GET", uri, null, null));
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String header, String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        if (header != null) {
+            request.addHeader(header, value);
+        }
+        return request;
+    }
+
+    private static MockHttpServletRequest handlerRequest(String path, long ifModifiedSince) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uploads/" + path);
+        request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, path);
+        if (ifModifiedSince >= 0) {
+            request.addHeader("If-Modified-Since", ifModifiedSince);
+        }
+        return request;
+    }
+
+    /**
+     * Body ghi vào stream chỉ đếm byte: MockHttpServletResponse ghi từng byte nên không dùng để đo
+     */
+    private static double measureRequestsPerSecond(Exchange exchange, int expectedStatus, long expectedBytes)
+            throws Exception {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            exchange.run(new CountingResponse());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            CountingResponse response = new CountingResponse();
+            exchange.run(response);
+            assertEquals(expectedStatus, response.getStatus());
+            assertEquals(expectedBytes, response.written);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed > 0);
+        return MEASURED_REQUESTS * 1_000_000_000.0 / elapsed;
+    }
+
+    private static String format(double requestsPerSecond) {
+        return String.format("%.0f", requestsPerSecond);
+    }
+
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        long written;
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                written += len;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+
+        CountingResponse() {
+            super(new MockHttpServletResponse());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Exchange {
+        void run(HttpServletResponse response) throws Exception;
+    }
+}
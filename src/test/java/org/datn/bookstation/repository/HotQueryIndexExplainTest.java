@@ -0,0 +1,111 @@
+package org.datn.bookstation.repository;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 📇 Kiểm tra index của các query nóng (db/hot_query_indexes.sql, @Index trên entity) bằng EXPLAIN.
+ * Chỉ chạy khi có EXPLAIN_DATABASE_URL (JDBC URL PostgreSQL đã có schema, vd: bản sao staging):
+ * EXPLAIN_DATABASE_URL=jdbc:postgresql://host/db EXPLAIN_DATABASE_USER=... EXPLAIN_DATABASE_PASSWORD=... \
+ * mvn test -Dtest=HotQueryIndexExplainTest
+ * Chỉ EXPLAIN (không ANALYZE) nên không đọc / ghi dữ liệu. enable_seqscan = off để kết quả không phụ thuộc
+ * kích thước bảng: plan phải dùng đúng index, tức index tồn tại và dùng được cho dạng query đó.
+ */
+@EnabledIfEnvironmentVariable(named = "EXPLAIN_DATABASE_URL", matches = ".+")
+class HotQueryIndexExplainTest {
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void connect() throws SQLException {
+        connection = DriverManager.getConnection(System.getenv("EXPLAIN_DATABASE_URL"),
+                System.getenv("EXPLAIN_DATABASE_USER"), System.getenv("EXPLAIN_DATABASE_PASSWORD"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET enable_seqscan = off");
+        }
+    }
+
+    @AfterAll
+    static void close() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+                Arguments.of("idx_order_status_order_date",
+                        "SELECT id FROM \"order\" WHERE order_status = 'DELIVERED' AND order_date BETWEEN 0 AND 1"),
+                Arguments.of("idx_order_user_order_date",
+                        "SELECT id FROM \"order\" WHERE user_id = 1 ORDER BY order_date DESC LIMIT 20"),
+                Arguments.of("idx_order_created_at_status",
+                        "SELECT id FROM \"order\" WHERE created_at BETWEEN 0 AND 1"),
+                Arguments.of("idx_order_code",
+                        "SELECT id FROM \"order\" WHERE code = 'ORD0'"),
+                Arguments.of("idx_order_detail_book",
+                        "SELECT order_id FROM order_detail WHERE book_id = 1"),
+                Arguments.of("idx_order_detail_flash_sale_item",
+                        "SELECT order_id FROM order_detail WHERE flash_sale_item_id = 1"),
+                Arguments.of("idx_book_status_category",
+                        "SELECT id FROM book WHERE status = 1 AND category_id = 1"),
+                Arguments.of("idx_book_created_at",
+                        "SELECT id FROM book ORDER BY created_at DESC LIMIT 20"),
+                Arguments.of("idx_review_book_status",
+                        "SELECT id FROM review WHERE book_id = 1 AND review_status = 'APPROVED'"),
+                Arguments.of("idx_review_user",
+                        "SELECT id FROM review WHERE user_id = 1"),
+                Arguments.of("idx_cart_item_cart",
+                        "SELECT id FROM cart_item WHERE cart_id = 1"),
+                Arguments.of("idx_cart_item_book",
+                        "SELECT id FROM cart_item WHERE book_id = 1"),
+                Arguments.of("idx_flash_sale_item_book_status",
+                        "SELECT id FROM flash_sale_item WHERE book_id = 1 AND status = 1"),
+                Arguments.of("idx_flash_sale_item_flash_sale",
+                        "SELECT id FROM flash_sale_item WHERE flash_sale_id = 1"),
+                Arguments.of("idx_flash_sale_time_range",
+                        "SELECT id FROM flash_sale WHERE start_time <= 1 AND end_time >= 1"),
+                Arguments.of("idx_checkout_session_status_expires",
+                        "SELECT id FROM checkout_session WHERE status = 1 AND expires_at < 1"),
+                Arguments.of("idx_checkout_session_user_status",
+                        "SELECT id FROM checkout_session WHERE user_id = 1 AND status = 1"),
+                Arguments.of("idx_user_rank_user_status",
+                        "SELECT id FROM user_rank WHERE user_id = 1 AND status = 1"),
+                Arguments.of("idx_refund_request_order_status",
+                        "SELECT id FROM refund_request WHERE order_id = 1 AND status = 'PENDING'"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void hotQueryUsesIndex(String indexName, String sql) throws SQLException {
+        try (PreparedStatement exists = connection.prepareStatement(
+                "SELECT 1 FROM pg_indexes WHERE indexname = ?")) {
+            exists.setString(1, indexName);
+            try (ResultSet rs = exists.executeQuery()) {
+                assertTrue(rs.next(), "index " + indexName + " does not exist");
+            }
+        }
+
+        StringBuilder plan = new StringBuilder();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+            while (rs.next()) {
+                plan.append(rs.getString(1)).append('\n');
+            }
+        }
+        assertTrue(plan.toString().contains(" " + indexName), "expected " + indexName + " in plan:\n" + plan);
+    }
+}
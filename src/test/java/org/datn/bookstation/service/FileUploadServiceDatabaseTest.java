@@ -0,0 +1,173 @@
+package org.datn.bookstation.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 🖼️ Đếm tham chiếu ảnh lưu theo hash trên PostgreSQL thật (upload_file_reference):
+ * - Upload trùng nội dung +1, xóa theo URL -1, về 0 thì xóa file gốc và bản thu nhỏ
+ * - Nhiều luồng cùng upload rồi xóa 1 ảnh: ngay sau khi upload trả về, file phải có trên đĩa
+ * (lượt xóa đồng thời không được xóa mất file vừa được tham chiếu); cuối cùng không còn dòng / file nào
+ * Chỉ chạy khi có TEST_DATABASE_URL:
+ * TEST_DATABASE_URL=jdbc:postgresql://localhost:5432/bookstation_test TEST_DATABASE_USER=... \
+ * TEST_DATABASE_PASSWORD=... mvn test -Dtest=FileUploadServiceDatabaseTest
+ */
+@SpringBootTest(properties = {
+        "APP_BASE_URL=http://localhost",
+        "VNPAY_TMN_CODE=test",
+        "VNPAY_HASH_SECRET=test",
+        "flashsale.in-memory-stock.enabled=false"
+})
+@EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+class FileUploadServiceDatabaseTest {
+
+    private static final String BASE_URL = "http://localhost/uploads/";
+    private static final int THREADS = 8;
+    private static final int ROUNDS_PER_THREAD = 25;
+    private static final Path UPLOAD_ROOT = createUploadRoot();
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DATABASE_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv("TEST_DATABASE_USER"));
+        registry.add("spring.datasource.password", () -> System.getenv("TEST_DATABASE_PASSWORD"));
+        registry.add("upload.path", UPLOAD_ROOT::toString);
+        registry.add("upload.base-url", () -> BASE_URL);
+    }
+
+    @Autowired
+    private FileUploadService fileUploadService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void referenceCountFollowsUploadsAndDeletes() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "cover.png", "image/png", uniqueImage());
+
+        String url = fileUploadService.saveImage(file, "products");
+        assertEquals(url, fileUploadService.saveImage(file, "products"));
+        String relativePath = url.substring(BASE_URL.length());
+        assertEquals(List.of(2), refCount(relativePath));
+
+        assertTrue(fileUploadService.deleteImage(url));
+        assertEquals(List.of(1), refCount(relativePath));
+        assertTrue(Files.exists(UPLOAD_ROOT.resolve(relativePath)));
+
+        assertTrue(fileUploadService.deleteImage(url));
+        assertEquals(List.of(), refCount(relativePath));
+        awaitNoFiles(UPLOAD_ROOT.resolve(relativePath).getParent());
+    }
+
+    @Test
+    void concurrentUploadAndDeleteNeverRemoveReferencedFile() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "cover.png", "image/png", uniqueImage());
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<String> seenUrls = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int round = 0; round < ROUNDS_PER_THREAD; round++) {
+                        String url = fileUploadService.saveImage(file, "products");
+                        seenUrls.add(url);
+                        // Lượt upload này còn giữ tham chiếu → file phải còn
+                        if (!Files.exists(UPLOAD_ROOT.resolve(url.substring(BASE_URL.length())))) {
+                            failures.add("missing after upload: " + url);
+                        }
+                        fileUploadService.deleteImage(url);
+                    }
+                } catch (Exception e) {
+                    failures.add(e.toString());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(List.of(), List.copyOf(failures));
+        assertEquals(1, seenUrls.stream().distinct().count());
+        String relativePath = seenUrls.peek().substring(BASE_URL.length());
+        assertEquals(List.of(), refCount(relativePath));
+        awaitNoFiles(UPLOAD_ROOT.resolve(relativePath).getParent());
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private List<Integer> refCount(String relativePath) {
+        return jdbcTemplate.queryForList("SELECT ref_count FROM upload_file_reference WHERE path = ?",
+                Integer.class, relativePath);
+    }
+
+    // Bản thu nhỏ được tạo nền: chờ tác vụ đang chạy dọn xong các bản ghi sau khi ảnh gốc bị xóa
+    private static void awaitNoFiles(Path directory) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        List<Path> files = listFiles(directory);
+        while (!files.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            files = listFiles(directory);
+        }
+        assertEquals(List.of(), files);
+    }
+
+    private static List<Path> listFiles(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+
+    // Mỗi lần chạy 1 ảnh khác nội dung → không đụng dòng tham chiếu của lần chạy trước
+    private static byte[] uniqueImage() throws IOException {
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(System.nanoTime());
+        for (int y = 0; y < image.getHeight(); y += 8) {
+            for (int x = 0; x < image.getWidth(); x += 8) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static Path createUploadRoot() {
+        try {
+            return Files.createTempDirectory("bookstation-uploads");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
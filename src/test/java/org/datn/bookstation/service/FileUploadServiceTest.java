@@ -0,0 +1,230 @@
+package org.datn.bookstation.service;
+
+import org.datn.bookstation.configuration.UploadProperties;
+import org.datn.bookstation.exception.FileUploadException;
+import org.datn.bookstation.repository.UploadFileReferenceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lưu / xóa ảnh upload trên thư mục tạm (repository tham chiếu được mock):
+ * - Kiểm tra header: kích thước tối thiểu, file không phải ảnh, content-type; lỗi không để lại file tạm
+ * - Module dùng chung: lưu tại {module}/cas/{hh}/{sha256}.{ext}, ext theo định dạng thực, ảnh trùng dùng chung URL
+ * - Module riêng (refund-evidence): mỗi lần upload 1 file tên ngẫu nhiên, không qua bảng tham chiếu
+ * - Xóa ảnh theo hash: còn tham chiếu thì giữ, hết tham chiếu thì xóa file gốc và bản thu nhỏ,
+ * không có bản ghi (ảnh cũ) thì giữ
+ */
+class FileUploadServiceTest {
+
+    private static final String BASE_URL = "http://localhost/uploads/";
+
+    @TempDir
+    Path root;
+
+    private ImageDerivativeService imageDerivativeService;
+    private UploadFileReferenceRepository referenceRepository;
+    private FileUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        UploadProperties properties = new UploadProperties();
+        properties.setPath(root.toString());
+        properties.setBaseUrl(BASE_URL);
+
+        imageDerivativeService = spy(new ImageDerivativeService(properties));
+        doNothing().when(imageDerivativeService).generateAsync(anyString());
+        referenceRepository = mock(UploadFileReferenceRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        service = new FileUploadService(properties, imageDerivativeService, referenceRepository, transactionManager);
+    }
+
+    @Test
+    void storesSharedModuleImageUnderContentHash() throws Exception {
+        byte[] png = image("png", 300, 240, 1);
+        // Tên file / content-type nói JPEG nhưng nội dung là PNG → phần mở rộng theo nội dung
+        String url = service.saveImage(new MockMultipartFile("file", "cover.jpg", "image/jpeg", png), "products");
+
+        String hash = sha256(png);
+        String relativePath = "products/cas/" + hash.substring(0, 2) + "/" + hash + ".png";
+        assertEquals(BASE_URL + relativePath, url);
+        assertArrayEquals(png, Files.readAllBytes(root.resolve(relativePath)));
+        verify(referenceRepository).addReference(eq(relativePath), anyLong());
+        verify(imageDerivativeService).generateAsync(relativePath);
+        assertEquals(List.of(root.resolve(relativePath)), regularFiles());
+    }
+
+    @Test
+    void extensionFollowsDetectedFormat() throws Exception {
+        String jpeg = service.saveImage(new MockMultipartFile("file", "a.png", "image/png", image("jpeg", 250, 250, 2)), "events");
+        String gif = service.saveImage(new MockMultipartFile("file", "b.jpg", "image/gif", image("gif", 250, 250, 3)), "categories");
+
+        assertTrue(jpeg.matches(BASE_URL + "events/cas/[0-9a-f]{2}/[0-9a-f]{64}\\.jpg"), jpeg);
+        assertTrue(gif.matches(BASE_URL + "categories/cas/[0-9a-f]{2}/[0-9a-f]{64}\\.gif"), gif);
+    }
+
+    @Test
+    void duplicateContentSharesFileAndAddsReference() throws Exception {
+        byte[] png = image("png", 300, 300, 4);
+        String first = service.saveImage(new MockMultipartFile("file", "one.png", "image/png", png), "products");
+        String second = service.saveImage(new MockMultipartFile("file", "two.png", "image/png", png), "products");
+        String other = service.saveImage(new MockMultipartFile("file", "three.png", "image/png", image("png", 300, 300, 5)), "products");
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        verify(referenceRepository, times(2)).addReference(eq(first.substring(BASE_URL.length())), anyLong());
+        assertEquals(2, regularFiles().size());
+    }
+
+    @Test
+    void privateModuleGetsOwnFilePerUpload() throws Exception {
+        byte[] png = image("png", 300, 300, 6);
+        String first = service.saveImage(new MockMultipartFile("file", "a.png", "image/png", png), "refund-evidence");
+        String second = service.saveImage(new MockMultipartFile("file", "a.png", "image/png", png), "refund-evidence");
+
+        String pattern = BASE_URL + "refund-evidence/\\d{4}/\\d{2}/image\\d+_[A-Za-z0-9]{12}\\.png";
+        assertTrue(first.matches(pattern), first);
+        assertTrue(second.matches(pattern), second);
+        assertNotEquals(first, second);
+        verify(referenceRepository, never()).addReference(anyString(), anyLong());
+        verify(imageDerivativeService, never()).generateAsync(anyString());
+
+        assertTrue(service.deleteImage(first));
+        assertFalse(Files.exists(root.resolve(first.substring(BASE_URL.length()))));
+        assertTrue(Files.exists(root.resolve(second.substring(BASE_URL.length()))));
+        verify(referenceRepository, never()).lockRefCount(anyString());
+    }
+
+    @Test
+    void rejectsInvalidUploadsWithoutLeavingFiles() throws Exception {
+        assertRejected("INVALID_DIMENSIONS", new MockMultipartFile("file", "s.png", "image/png", image("png", 199, 400, 7)), "products");
+        assertRejected("INVALID_DIMENSIONS", new MockMultipartFile("file", "s.png", "image/png", image("png", 400, 150, 8)), "products");
+        assertRejected("INVALID_IMAGE", new MockMultipartFile("file", "x.png", "image/png",
+                "not an image at all".getBytes(StandardCharsets.US_ASCII)), "products");
+        assertRejected("INVALID_FILE_TYPE", new MockMultipartFile("file", "x.pdf", "application/pdf", image("png", 300, 300, 9)), "products");
+        assertRejected("EMPTY_FILE", new MockMultipartFile("file", "e.png", "image/png", new byte[0]), "products");
+        assertRejected("FILE_TOO_LARGE", new MockMultipartFile("file", "l.png", "image/png", new byte[5 * 1024 * 1024 + 1]), "products");
+        assertRejected("INVALID_MODULE", new MockMultipartFile("file", "m.png", "image/png", image("png", 300, 300, 10)), "secrets");
+
+        assertEquals(List.of(), regularFiles());
+        verify(referenceRepository, never()).addReference(anyString(), anyLong());
+    }
+
+    @Test
+    void deleteKeepsSharedImageWhileReferenced() throws Exception {
+        String url = service.saveImage(new MockMultipartFile("file", "a.png", "image/png", image("png", 300, 300, 11)), "products");
+        String relativePath = url.substring(BASE_URL.length());
+        when(referenceRepository.lockRefCount(relativePath)).thenReturn(Optional.of(2));
+
+        assertTrue(service.deleteImage(url));
+
+        assertTrue(Files.exists(root.resolve(relativePath)));
+        verify(referenceRepository).decrementReference(eq(relativePath), anyLong());
+        verify(referenceRepository, never()).deleteReference(anyString());
+    }
+
+    @Test
+    void deleteRemovesSharedImageAndDerivativesOnLastReference() throws Exception {
+        String url = service.saveImage(new MockMultipartFile("file", "a.png", "image/png", image("png", 300, 300, 12)), "products");
+        String relativePath = url.substring(BASE_URL.length());
+        String stem = relativePath.substring(0, relativePath.lastIndexOf('.'));
+        for (String suffix : List.of("thumb", "list", "detail")) {
+            Files.write(root.resolve(stem + "_" + suffix + ".jpg"), new byte[]{1});
+        }
+        when(referenceRepository.lockRefCount(relativePath)).thenReturn(Optional.of(1));
+
+        assertTrue(service.deleteImage(url));
+
+        assertEquals(List.of(), regularFiles());
+        verify(referenceRepository).deleteReference(relativePath);
+        verify(referenceRepository, never()).decrementReference(anyString(), anyLong());
+    }
+
+    @Test
+    void deleteKeepsSharedImageWithoutReferenceRecord() throws Exception {
+        String url = service.saveImage(new MockMultipartFile("file", "a.png", "image/png", image("png", 300, 300, 13)), "products");
+        String relativePath = url.substring(BASE_URL.length());
+        when(referenceRepository.lockRefCount(relativePath)).thenReturn(Optional.empty());
+
+        assertTrue(service.deleteImage(url));
+
+        assertTrue(Files.exists(root.resolve(relativePath)));
+        verify(referenceRepository, never()).decrementReference(anyString(), anyLong());
+        verify(referenceRepository, never()).deleteReference(anyString());
+    }
+
+    @Test
+    void deleteRejectsForeignUrl() {
+        FileUploadException e = assertThrows(FileUploadException.class,
+                () -> service.deleteImage("http://example.com/uploads/products/a.png"));
+        assertEquals("INVALID_URL", e.getErrorCode());
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private void assertRejected(String errorCode, MockMultipartFile file, String module) {
+        FileUploadException e = assertThrows(FileUploadException.class, () -> service.saveImage(file, module));
+        assertEquals(errorCode, e.getErrorCode());
+    }
+
+    // Ảnh màu ngẫu nhiên theo seed: seed khác → nội dung (hash) khác
+    private static byte[] image(String format, int width, int height, int seed) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y += 10) {
+            for (int x = 0; x < width; x += 10) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private List<Path> regularFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.entity.Author;
+import org.datn.bookstation.entity.AuthorBook;
+import org.datn.bookstation.entity.Book;
+import org.datn.bookstation.entity.Category;
+import org.datn.bookstation.entity.Publisher;
+import org.datn.bookstation.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chỉ mục tìm kiếm sách trong bộ nhớ (không cần DB):
+ * - fold / tokenize: bỏ dấu tiếng Việt (kể cả đ/Đ), viết thường, tách từ
+ * - Xếp hạng: trùng từ > prefix > giữa từ, mã/ISBN > tên > tác giả > NXB, khớp nhiều từ khóa xếp trước
+ * - Sửa / xóa sách trong lúc rebuild đang chạy không bị index mới ghi đè
+ * - Đo độ trễ search trên chỉ mục nhiều sách (log, không assert thời gian)
+ */
+@Slf4j
+class BookSearchIndexServiceImplTest {
+
+    private static final int BENCHMARK_BOOKS = 10_000;
+    private static final int WARMUP_SEARCHES = 500;
+    private static final int MEASURED_SEARCHES = 1_000;
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final BookSearchIndexServiceImpl service = new BookSearchIndexServiceImpl(bookRepository, transactionManager);
+
+    @Test
+    void foldRemovesVietnameseDiacritics() {
+        assertEquals("dac nhan tam", BookSearchIndexServiceImpl.fold("Đắc Nhân Tâm"));
+        assertEquals("duong ve nha", BookSearchIndexServiceImpl.fold("đường về nhà"));
+        assertEquals("do an tot nghiep", BookSearchIndexServiceImpl.fold("ĐỒ ÁN TỐT NGHIỆP"));
+        assertEquals("uu o a e", BookSearchIndexServiceImpl.fold("Ưu ơ ă ê"));
+        assertEquals("harry potter tap 1", BookSearchIndexServiceImpl.fold("  Harry-Potter: Tập 1!! "));
+        assertEquals("bk 001", BookSearchIndexServiceImpl.fold("BK-001"));
+        assertEquals("", BookSearchIndexServiceImpl.fold(null));
+        assertEquals("", BookSearchIndexServiceImpl.fold(""));
+        assertEquals("", BookSearchIndexServiceImpl.fold("!!! --- ..."));
+    }
+
+    @Test
+    void tokenizeSplitsFoldedWords() {
+        assertEquals(List.of("nha", "gia", "kim", "tai", "ban", "2020"),
+                BookSearchIndexServiceImpl.tokenize("Nhà Giả Kim (tái bản 2020)"));
+        assertEquals(List.of("dac", "nhan", "tam"), BookSearchIndexServiceImpl.tokenize("  Đắc   nhân\ttâm "));
+        assertEquals(List.of("978", "604", "1"), BookSearchIndexServiceImpl.tokenize("978-604-1"));
+        assertEquals(List.of(), BookSearchIndexServiceImpl.tokenize("---"));
+        assertEquals(List.of(), BookSearchIndexServiceImpl.tokenize(null));
+    }
+
+    @Test
+    void ranksByMatchKindAndField() {
+        when(bookRepository.findAllForSearchIndex()).thenReturn(List.of(
+                book(1, "Nhà Giả Kim", null, "Paulo Coelho", "NXB Văn Học"),
+                book(2, "Kimono Nhật Bản", null, null, null),
+                book(3, "Trạm Akimbo", null, null, null),
+                book(4, "Tuyển tập truyện ngắn", "KIM-01", null, null),
+                book(5, "Vợ nhặt", null, "Kim Lân", null),
+                book(6, "Truyện cổ tích", null, null, "NXB Kim Đồng"),
+                book(7, "Lập trình Java", "BK-001", null, null)));
+        service.rebuild();
+
+        // Mã (5x3) > tên trùng từ (4x3) > tên prefix (4x2) > tác giả (2x3) > tên giữa từ (4x1) > NXB (1x3)
+        assertEquals(List.of(4, 1, 2, 5, 3, 6), service.search("kim", null, false, 0));
+        assertEquals(List.of(4, 1), service.search("KIM", null, false, 2));
+        // Khớp nhiều từ khóa xếp trước dù điểm từng từ thấp hơn
+        assertEquals(1, service.search("nha kim", null, false, 0).get(0));
+        // Không dấu / có dấu đều khớp
+        assertEquals(List.of(1), service.search("NHÀ giả", null, false, 1));
+        assertEquals(List.of(1), service.search("nha gia", null, false, 1));
+        // Mã sách gõ liền hoặc gõ dở
+        assertEquals(List.of(7), service.search("bk001", null, false, 0));
+        assertEquals(List.of(7), service.search("bk00", null, false, 0));
+        // Từ khóa 1-2 ký tự: quét token để tìm giữa từ
+        assertTrue(service.search("im", null, false, 0).contains(3));
+        assertEquals(List.of(), service.search("zzz", null, false, 0));
+        assertEquals(List.of(), service.search("  ", null, false, 0));
+    }
+
+    @Test
+    void filtersByStatusAndCategory() {
+        Book inactive = book(1, "Sapiens lược sử loài người", null, null, null);
+        inactive.setStatus((byte) 0);
+        Book other = book(2, "Sapiens bản đặc biệt", null, null, null);
+        other.getCategory().setId(20);
+        when(bookRepository.findAllForSearchIndex()).thenReturn(List.of(inactive, other));
+        service.rebuild();
+
+        assertEquals(List.of(2, 1), service.search("sapiens", null, false, 0));
+        assertEquals(List.of(2), service.search("sapiens", null, true, 0));
+        assertEquals(List.of(1), service.search("sapiens", 10, false, 0));
+    }
+
+    @Test
+    void removedBookStopsMatching() {
+        when(bookRepository.findAllForSearchIndex()).thenReturn(List.of(
+                book(3, "Trạm Akimbo", null, null, null),
+                book(4, "Akimbo tập 2", null, null, null)));
+        service.rebuild();
+        assertEquals(List.of(3, 4), service.search("kimb", null, false, 0));
+
+        // Không có transaction: xóa áp dụng ngay
+        service.removeBook(3);
+        assertEquals(List.of(4), service.search("kimb", null, false, 0));
+        service.removeBook(4);
+        assertEquals(List.of(), service.search("kimb", null, false, 0));
+        assertEquals(List.of(), service.search("akimbo", null, false, 0));
+    }
+
+    @Test
+    void appliesUpdatesThatLandDuringRebuild() throws Exception {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        Book removed = book(2, "Sách sắp bị xóa", null, null, null);
+        CountDownLatch rebuildStarted = new CountDownLatch(1);
+        CountDownLatch releaseRebuild = new CountDownLatch(1);
+        AtomicInteger rebuilds = new AtomicInteger();
+        when(bookRepository.findAllForSearchIndex()).thenAnswer(invocation -> {
+            if (rebuilds.incrementAndGet() > 1) {
+                rebuildStarted.countDown();
+                assertTrue(releaseRebuild.await(10, TimeUnit.SECONDS));
+            }
+            // Ảnh chụp DB lúc rebuild bắt đầu đọc: chưa có thay đổi
+            return List.of(book(1, "Tên cũ", null, null, null), removed);
+        });
+        service.rebuild();
+
+        Thread rebuild = new Thread(service::rebuild);
+        rebuild.start();
+        assertTrue(rebuildStarted.await(10, TimeUnit.SECONDS));
+
+        // Sửa sách 1 và xóa sách 2 commit trong lúc rebuild vẫn đang đọc DB
+        when(bookRepository.findByIdForSearchIndex(1)).thenReturn(Optional.of(book(1, "Tên mới", null, null, null)));
+        Thread update = new Thread(() -> {
+            service.indexBook(1);
+            service.removeBook(2);
+        });
+        update.start();
+        waitUntilBlocked(update);
+        assertEquals(List.of(1), service.search("cu", null, false, 0));
+
+        releaseRebuild.countDown();
+        rebuild.join(10_000);
+        update.join(10_000);
+
+        assertEquals(List.of(1), service.search("moi", null, false, 0));
+        assertEquals(List.of(), service.search("cu", null, false, 0));
+        assertEquals(List.of(), service.search("xoa", null, false, 0));
+    }
+
+    @Test
+    void measuresSearchLatency() {
+        when(bookRepository.findAllForSearchIndex()).thenReturn(syntheticBooks());
+        long start = System.nanoTime();
+        service.rebuild();
+        long rebuildMs = (System.nanoTime() - start) / 1_000_000;
+
+        for (String query : List.of("bk4321", "kieu nguyen du", "nguyen", "ngu", "yen", "ky", "a")) {
+            double[] latency = measureMicros(query);
+            log.info("🔎 Search '{}' over {} books: avg {} us, p99 {} us, {} results",
+                    query, BENCHMARK_BOOKS, String.format("%.1f", latency[0]), String.format("%.1f", latency[1]),
+                    service.search(query, null, true, 0).size());
+        }
+        log.info("🔎 Rebuild of {} books took {} ms", BENCHMARK_BOOKS, rebuildMs);
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    /**
+     * {trung bình, p99} micro giây cho search(query, limit 20) như trang tìm kiếm
+     */
+    private double[] measureMicros(String query) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP_SEARCHES; i++) {
+            sink += service.search(query, null, true, 20).size();
+        }
+        long[] samples = new long[MEASURED_SEARCHES];
+        for (int i = 0; i < MEASURED_SEARCHES; i++) {
+            long start = System.nanoTime();
+            sink += service.search(query, null, true, 20).size();
+            samples[i] = System.nanoTime() - start;
+        }
+        assertTrue(sink >= 0);
+        Arrays.sort(samples);
+        double average = Arrays.stream(samples).average().orElse(0) / 1_000.0;
+        double p99 = samples[(int) (MEASURED_SEARCHES * 0.99)] / 1_000.0;
+        return new double[]{average, p99};
+    }
+
+    private static List<Book> syntheticBooks() {
+        String[] words = {"Lịch", "sử", "Việt", "Nam", "Nguyễn", "Du", "Truyện", "Kiều", "Yên", "Tử", "Kỹ", "năng",
+                "sống", "Đắc", "nhân", "tâm", "Người", "xưa", "Ngữ", "văn", "Toán", "học", "Hà", "Nội", "Sài", "Gòn",
+                "Thế", "giới", "phẳng", "Tư", "duy", "nhanh", "chậm", "Khéo", "ăn", "nói", "Cây", "cam", "ngọt"};
+        String[] authors = {"Nguyễn Nhật Ánh", "Tô Hoài", "Nam Cao", "Dale Carnegie", "Yuval Noah Harari", "Vũ Trọng Phụng"};
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>();
+        for (int id = 1; id <= BENCHMARK_BOOKS; id++) {
+            StringBuilder name = new StringBuilder();
+            for (int w = 2 + random.nextInt(5); w > 0; w--) {
+                name.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            books.add(book(id, name.toString().trim(), "BK-" + id, authors[random.nextInt(authors.length)],
+                    "NXB " + words[random.nextInt(words.length)]));
+        }
+        return books;
+    }
+
+    private static void waitUntilBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (thread.getState() != Thread.State.BLOCKED) {
+            assertTrue(System.currentTimeMillis() < deadline, "Index update did not wait for rebuild");
+            Thread.sleep(5);
+        }
+    }
+
+    private static Book book(int id, String name, String code, String authorName, String publisherName) {
+        Book book = new Book();
+        book.setId(id);
+        book.setBookName(name);
+        book.setBookCode(code);
+        book.setStatus((byte) 1);
+        Category category = new Category();
+        category.setId(10);
+        book.setCategory(category);
+        if (authorName != null) {
+            Author author = new Author();
+            author.setAuthorName(authorName);
+            AuthorBook authorBook = new AuthorBook();
+            authorBook.setAuthor(author);
+            book.getAuthorBooks().add(authorBook);
+        }
+        if (publisherName != null) {
+            Publisher publisher = new Publisher();
+            publisher.setPublisherName(publisherName);
+            book.setPublisher(publisher);
+        }
+        return book;
+    }
+}
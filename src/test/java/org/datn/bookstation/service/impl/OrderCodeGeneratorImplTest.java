@@ -0,0 +1,84 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mã đơn hàng sinh đồng thời từ nhiều thread (vài triệu mã) phải duy nhất và đúng định dạng
+ */
+@Slf4j
+class OrderCodeGeneratorImplTest {
+
+    private static final int THREADS = 16;
+    // 4 triệu mã
+    private static final int CODES_PER_THREAD = 250_000;
+    private static final Pattern CODE_FORMAT = Pattern.compile("ORD\\d{13}07\\d{3}");
+
+    @Test
+    void concurrentCodesAreUnique() throws Exception {
+        OrderCodeGeneratorImpl generator = new OrderCodeGeneratorImpl(7);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                // Lưu (millis * 1000 + seq) thay vì String để giữ vài triệu mã trong bộ nhớ
+                long[] states = new long[CODES_PER_THREAD];
+                for (int i = 0; i < CODES_PER_THREAD; i++) {
+                    String code = generator.nextCode();
+                    if (!CODE_FORMAT.matcher(code).matches()) {
+                        throw new AssertionError("Sai định dạng: " + code);
+                    }
+                    states[i] = Long.parseLong(code.substring(3, 16)) * 1000 + Long.parseLong(code.substring(18));
+                }
+                return states;
+            }));
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        long[] all = new long[THREADS * CODES_PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            System.arraycopy(futures.get(t).get(5, TimeUnit.MINUTES), 0, all, t * CODES_PER_THREAD, CODES_PER_THREAD);
+        }
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+        executor.shutdown();
+
+        // Hơn 1000 mã / ms nên chắc chắn có lúc phải mượn millisecond kế tiếp
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(all[i] != all[i - 1], "Trùng mã: " + all[i]);
+        }
+        log.info("🧾 {} codes from {} threads in {} ms, all unique", all.length, THREADS, elapsedMs);
+    }
+
+    @Test
+    void codesIncreaseWithinOneThread() {
+        OrderCodeGeneratorImpl generator = new OrderCodeGeneratorImpl(0);
+        String previous = generator.nextCode();
+        for (int i = 0; i < 5_000; i++) {
+            String next = generator.nextCode();
+            assertTrue(next.compareTo(previous) > 0, previous + " >= " + next);
+            previous = next;
+        }
+    }
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderCodeGeneratorImpl(100));
+        assertThrows(IllegalArgumentException.class, () -> new OrderCodeGeneratorImpl(-1));
+    }
+}
@@ -0,0 +1,299 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.dto.request.OrderDetailRequest;
+import org.datn.bookstation.dto.request.OrderRequest;
+import org.datn.bookstation.entity.Book;
+import org.datn.bookstation.entity.FlashSale;
+import org.datn.bookstation.entity.FlashSaleItem;
+import org.datn.bookstation.entity.User;
+import org.datn.bookstation.entity.enums.OrderStatus;
+import org.datn.bookstation.repository.BookRepository;
+import org.datn.bookstation.repository.FlashSaleItemRepository;
+import org.datn.bookstation.repository.FlashSaleRepository;
+import org.datn.bookstation.repository.RoleRepository;
+import org.datn.bookstation.repository.UserRepository;
+import org.datn.bookstation.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 📦 Số câu lệnh JDBC của OrderServiceImpl.create theo số dòng đơn trên PostgreSQL thật
+ * - Đếm ở tầng DataSource (cả Hibernate lẫn JdbcTemplate) trên thread gọi create: mỗi lần execute là 1 lượt
+ * gửi tới DB, 1 batch (insert order_detail, UPDATE tồn kho) tính 1 lượt dù gồm nhiều dòng
+ * - Đơn 1, 5, 20 dòng; 1/4 số dòng chỉ định flash sale item, 1/4 để service tự áp dụng flash sale
+ * - Lấy giá trị nhỏ nhất qua nhiều lần đo (cache của service có thể làm lần đầu tốn thêm truy vấn)
+ * - Số câu lệnh không được tăng theo số dòng: thêm 19 dòng chỉ được thêm vài câu lệnh cố định
+ * Chỉ chạy khi có TEST_DATABASE_URL (DB PostgreSQL riêng cho test: schema tạo bằng ddl-auto, test ghi dữ liệu):
+ * TEST_DATABASE_URL=jdbc:postgresql://localhost:5432/bookstation_test TEST_DATABASE_USER=... \
+ * TEST_DATABASE_PASSWORD=... mvn test -Dtest=OrderServiceImplStatementCountDatabaseTest
+ */
+@Slf4j
+@SpringBootTest(properties = {
+        "APP_BASE_URL=http://localhost",
+        "VNPAY_TMN_CODE=test",
+        "VNPAY_HASH_SECRET=test",
+        "flashsale.in-memory-stock.enabled=false"
+})
+@EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+class OrderServiceImplStatementCountDatabaseTest {
+
+    private static final int[] LINE_COUNTS = {1, 5, 20};
+    private static final int REPEATS = 3;
+    private static final int INITIAL_STOCK = 10_000;
+    // Chênh lệch tối đa giữa đơn 20 dòng và đơn 1 dòng (các truy vấn gom theo lô chỉ xuất hiện khi có dòng flash sale)
+    private static final int MAX_EXTRA_STATEMENTS = 6;
+
+    // Chỉ đếm câu lệnh chạy trên thread đang đo
+    private static volatile Thread countedThread;
+    private static final AtomicInteger EXECUTIONS = new AtomicInteger();
+    private static final AtomicInteger BATCHED_ROWS = new AtomicInteger();
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DATABASE_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv("TEST_DATABASE_USER"));
+        registry.add("spring.datasource.password", () -> System.getenv("TEST_DATABASE_PASSWORD"));
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private FlashSaleItemRepository flashSaleItemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void statementCountDoesNotGrowWithOrderLines() {
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        Integer staffId = newUser(run, "staff").getId();
+        // Khách có tài khoản: áp dụng giới hạn mua flash sale per-user
+        Integer customerId = newUser(run, "customer").getId();
+        int maxLines = LINE_COUNTS[LINE_COUNTS.length - 1];
+        List<Book> books = new ArrayList<>();
+        List<FlashSaleItem> flashSaleItems = new ArrayList<>();
+        FlashSale flashSale = newFlashSale(run);
+        for (int i = 0; i < maxLines; i++) {
+            Book book = newBook(run, i);
+            books.add(book);
+            // 1/2 số sách có flash sale: 1 nửa dòng chỉ định flash sale item, nửa còn lại để service tự áp dụng
+            flashSaleItems.add(i % 4 < 2 ? newFlashSaleItem(flashSale, book) : null);
+        }
+
+        // Làm nóng: cache metadata, cache câu lệnh của driver, lazy init các bean
+        createOrder(staffId, customerId, books, flashSaleItems, maxLines);
+
+        Map<Integer, String> statements = new LinkedHashMap<>();
+        Map<Integer, Integer> executions = new LinkedHashMap<>();
+        for (int lines : LINE_COUNTS) {
+            int best = Integer.MAX_VALUE;
+            int bestRows = 0;
+            for (int repeat = 0; repeat < REPEATS; repeat++) {
+                EXECUTIONS.set(0);
+                BATCHED_ROWS.set(0);
+                countedThread = Thread.currentThread();
+                Integer orderId;
+                try {
+                    orderId = createOrder(staffId, customerId, books, flashSaleItems, lines);
+                } finally {
+                    countedThread = null;
+                }
+                assertEquals(lines, jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM order_detail WHERE order_id = ?", Integer.class, orderId));
+                if (EXECUTIONS.get() < best) {
+                    best = EXECUTIONS.get();
+                    bestRows = BATCHED_ROWS.get();
+                }
+            }
+            executions.put(lines, best);
+            statements.put(lines, best + " executions (" + bestRows + " batched rows)");
+        }
+
+        log.info("📦 JDBC statements per OrderServiceImpl.create (lines -> statements): {}", statements);
+        int oneLine = executions.get(LINE_COUNTS[0]);
+        int manyLines = executions.get(maxLines);
+        assertTrue(manyLines - oneLine <= MAX_EXTRA_STATEMENTS,
+                "Statements grew with order lines: " + statements);
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private Integer createOrder(Integer staffId, Integer customerId, List<Book> books,
+                                List<FlashSaleItem> flashSaleItems, int lines) {
+        List<OrderDetailRequest> details = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            Book book = books.get(i);
+            FlashSaleItem flashSaleItem = flashSaleItems.get(i);
+            OrderDetailRequest detail = new OrderDetailRequest();
+            detail.setBookId(book.getId());
+            detail.setQuantity(1);
+            if (flashSaleItem != null && i % 4 == 0) {
+                detail.setFlashSaleItemId(flashSaleItem.getId());
+                detail.setUnitPrice(flashSaleItem.getDiscountPrice());
+            } else {
+                detail.setUnitPrice(book.getPrice());
+            }
+            details.add(detail);
+        }
+
+        OrderRequest request = new OrderRequest();
+        request.setOrderType("COUNTER");
+        request.setStaffId(staffId);
+        request.setUserId(customerId);
+        request.setRecipientName("Khách tại quầy");
+        request.setPhoneNumber("0900000000");
+        request.setPaymentMethod("COD");
+        request.setOrderStatus(OrderStatus.PENDING);
+        request.setShippingFee(BigDecimal.ZERO);
+        request.setOrderDetails(details);
+        return orderService.create(request).getData().getId();
+    }
+
+    private User newUser(String run, String label) {
+        User user = new User();
+        user.setEmail("statement-test-" + label + "-" + run + "@example.com");
+        user.setPassword("not-used");
+        user.setFullName("Statement Test " + label);
+        user.setRole(roleRepository.findAll().get(0));
+        user.setStatus((byte) 1);
+        user.setTotalPoint(0);
+        user.setTotalSpent(BigDecimal.ZERO);
+        return userRepository.save(user);
+    }
+
+    private Book newBook(String run, int index) {
+        Book book = new Book();
+        book.setBookName("Statement test " + run + " #" + index);
+        book.setBookCode("STM-" + run + "-" + index);
+        book.setPrice(BigDecimal.valueOf(100_000));
+        book.setStockQuantity(INITIAL_STOCK);
+        book.setStatus((byte) 1);
+        book.setCreatedBy(1);
+        return bookRepository.save(book);
+    }
+
+    private FlashSale newFlashSale(String run) {
+        long now = System.currentTimeMillis();
+        FlashSale flashSale = new FlashSale();
+        flashSale.setName("Statement test " + run);
+        flashSale.setStartTime(now - 60_000);
+        flashSale.setEndTime(now + 3_600_000);
+        flashSale.setStatus((byte) 1);
+        return flashSaleRepository.save(flashSale);
+    }
+
+    private FlashSaleItem newFlashSaleItem(FlashSale flashSale, Book book) {
+        FlashSaleItem item = new FlashSaleItem();
+        item.setFlashSale(flashSale);
+        item.setBook(book);
+        item.setDiscountPrice(BigDecimal.valueOf(50_000));
+        item.setDiscountPercentage(BigDecimal.valueOf(50));
+        item.setStockQuantity(INITIAL_STOCK);
+        // Có giới hạn mua per-user: create phải tra số lượng user đã mua
+        item.setMaxPurchasePerUser(INITIAL_STOCK);
+        item.setStatus((byte) 1);
+        return flashSaleItemRepository.save(item);
+    }
+
+    /**
+     * Bọc DataSource của ứng dụng để đếm câu lệnh (Hibernate và JdbcTemplate dùng chung bean này)
+     */
+    @TestConfiguration
+    static class StatementCountingConfig {
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource)
+                            ? new CountingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    private static final class CountingDataSource extends DelegatingDataSource {
+
+        CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return countingProxy(super.getConnection(), Connection.class);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return countingProxy(super.getConnection(username, password), Connection.class);
+        }
+    }
+
+    /**
+     * Connection: bọc các Statement được tạo ra; Statement: đếm execute* và addBatch
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T countingProxy(T target, Class<T> type) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (Thread.currentThread() == countedThread) {
+                if (method.getName().startsWith("execute")) {
+                    EXECUTIONS.incrementAndGet();
+                } else if (method.getName().equals("addBatch")) {
+                    BATCHED_ROWS.incrementAndGet();
+                }
+            }
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return countingProxy(result, (Class<Object>) method.getReturnType());
+            }
+            return result;
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
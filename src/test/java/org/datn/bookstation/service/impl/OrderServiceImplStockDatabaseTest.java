@@ -0,0 +1,288 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.dto.request.OrderDetailRequest;
+import org.datn.bookstation.dto.request.OrderRequest;
+import org.datn.bookstation.entity.Book;
+import org.datn.bookstation.entity.FlashSale;
+import org.datn.bookstation.entity.FlashSaleItem;
+import org.datn.bookstation.entity.User;
+import org.datn.bookstation.entity.enums.OrderStatus;
+import org.datn.bookstation.exception.BusinessException;
+import org.datn.bookstation.repository.BookRepository;
+import org.datn.bookstation.repository.FlashSaleItemRepository;
+import org.datn.bookstation.repository.FlashSaleRepository;
+import org.datn.bookstation.repository.RoleRepository;
+import org.datn.bookstation.repository.UserRepository;
+import org.datn.bookstation.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 📦 Nhiều đơn đồng thời qua OrderServiceImpl.create / cancelOrder trên PostgreSQL thật:
+ * UPDATE ... WHERE stock >= :quantity, batch JDBC sắp theo id và hoàn kho khi hủy.
+ * - Mỗi đơn 3 dòng: sách có flash sale (chỉ định flash sale item hoặc để service tự áp dụng) + 2 sách thường,
+ * thứ tự dòng xáo trộn; cả suất flash sale lẫn tồn kho sách đều bị bán hết
+ * - Pha 2: hủy 1 nửa đơn đã tạo trong khi đơn mới vẫn đang đặt
+ * - Không đơn nào bán vượt tồn kho, tồn kho cuối = ban đầu - số lượng trong các đơn còn hiệu lực,
+ * lỗi duy nhất được phép là BusinessException (không deadlock / lỗi SQL)
+ * Chỉ chạy khi có TEST_DATABASE_URL (DB PostgreSQL riêng cho test: schema tạo bằng ddl-auto, test ghi dữ liệu):
+ * TEST_DATABASE_URL=jdbc:postgresql://localhost:5432/bookstation_test TEST_DATABASE_USER=... \
+ * TEST_DATABASE_PASSWORD=... mvn test -Dtest=OrderServiceImplStockDatabaseTest
+ */
+@Slf4j
+@SpringBootTest(properties = {
+        "APP_BASE_URL=http://localhost",
+        "VNPAY_TMN_CODE=test",
+        "VNPAY_HASH_SECRET=test",
+        "flashsale.in-memory-stock.enabled=false"
+})
+@EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+class OrderServiceImplStockDatabaseTest {
+
+    private static final int THREADS = 16;
+    private static final int ORDERS = 300;
+    private static final int INITIAL_BOOK_STOCK = 150;
+    private static final int INITIAL_FLASH_SALE_STOCK = 60;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DATABASE_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv("TEST_DATABASE_USER"));
+        registry.add("spring.datasource.password", () -> System.getenv("TEST_DATABASE_PASSWORD"));
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> THREADS + 4);
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private FlashSaleItemRepository flashSaleItemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentMultiLineOrdersNeverOversell() throws Exception {
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        Integer staffId = newStaff(run).getId();
+        Book flashSaleBook = newBook(run, 1);
+        Book bookB = newBook(run, 2);
+        Book bookC = newBook(run, 3);
+        FlashSaleItem flashSaleItem = newFlashSaleItem(run, flashSaleBook);
+
+        List<Integer> created = Collections.synchronizedList(new ArrayList<>());
+        Map<String, AtomicInteger> rejected = new ConcurrentHashMap<>();
+        List<Throwable> unexpected = Collections.synchronizedList(new ArrayList<>());
+
+        // Pha 1: đặt đồng thời
+        long start = System.nanoTime();
+        runConcurrently(ORDERS, index -> placeOrder(staffId, flashSaleBook, bookB, bookC, flashSaleItem,
+                created, rejected, unexpected));
+        long phase1Ms = (System.nanoTime() - start) / 1_000_000;
+        int createdInPhase1 = created.size();
+        assertTrue(unexpected.isEmpty(), "Unexpected errors: " + unexpected);
+        assertStockConsistent(flashSaleBook, bookB, bookC, flashSaleItem, created);
+
+        // Pha 2: hủy 1 nửa đơn đã tạo trong khi tiếp tục đặt đơn mới
+        List<Integer> toCancel = new ArrayList<>(created.subList(0, created.size() / 2));
+        List<Integer> canceled = Collections.synchronizedList(new ArrayList<>());
+        runConcurrently(toCancel.size() + ORDERS / 2, index -> {
+            if (index < toCancel.size()) {
+                Integer orderId = toCancel.get(index);
+                try {
+                    orderService.cancelOrder(orderId, "concurrency test", null);
+                    canceled.add(orderId);
+                } catch (Throwable e) {
+                    unexpected.add(e);
+                }
+            } else {
+                placeOrder(staffId, flashSaleBook, bookB, bookC, flashSaleItem, created, rejected, unexpected);
+            }
+        });
+        assertTrue(unexpected.isEmpty(), "Unexpected errors: " + unexpected);
+        assertEquals(toCancel.size(), canceled.size());
+
+        List<Integer> active = new ArrayList<>(created);
+        active.removeAll(canceled);
+        assertStockConsistent(flashSaleBook, bookB, bookC, flashSaleItem, active);
+
+        log.info("📦 Stock concurrency: phase 1 created {}/{} orders in {} ms, total created {}, canceled {}, "
+                + "rejected {}", createdInPhase1, ORDERS, phase1Ms, created.size(), canceled.size(), rejected);
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private void placeOrder(Integer staffId, Book flashSaleBook, Book bookB, Book bookC, FlashSaleItem flashSaleItem,
+            List<Integer> created, Map<String, AtomicInteger> rejected, List<Throwable> unexpected) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<OrderDetailRequest> details = new ArrayList<>();
+        // Nửa số đơn chỉ định flash sale item, nửa còn lại để service tự áp dụng (hết suất → giá thường)
+        details.add(detail(flashSaleBook, random.nextBoolean() ? flashSaleItem : null, random.nextInt(1, 4)));
+        details.add(detail(bookB, null, random.nextInt(1, 4)));
+        details.add(detail(bookC, null, random.nextInt(1, 3)));
+        // Thứ tự dòng khác nhau giữa các đơn: thứ tự khóa dòng phải do service quyết định
+        Collections.shuffle(details, random);
+
+        OrderRequest request = new OrderRequest();
+        request.setOrderType("COUNTER");
+        request.setStaffId(staffId);
+        request.setRecipientName("Khách tại quầy");
+        request.setPhoneNumber("0900000000");
+        request.setPaymentMethod("COD");
+        request.setOrderStatus(OrderStatus.PENDING);
+        request.setShippingFee(BigDecimal.ZERO);
+        request.setOrderDetails(details);
+        try {
+            created.add(orderService.create(request).getData().getId());
+        } catch (BusinessException e) {
+            String message = e.getMessage();
+            String reason = message.startsWith("Không đủ số lượng flash sale") ? "flash-sale"
+                    : message.startsWith("Flash sale chỉ còn") ? "flash-sale-partial"
+                    : message.startsWith("Không đủ số lượng tồn kho") ? "book-stock" : message;
+            rejected.computeIfAbsent(reason, key -> new AtomicInteger()).incrementAndGet();
+        } catch (Throwable e) {
+            unexpected.add(e);
+        }
+    }
+
+    /**
+     * Tồn kho còn lại + số lượng trong các đơn còn hiệu lực phải đúng bằng tồn kho ban đầu
+     */
+    private void assertStockConsistent(Book flashSaleBook, Book bookB, Book bookC, FlashSaleItem flashSaleItem,
+            List<Integer> activeOrderIds) {
+        String ids = activeOrderIds.isEmpty() ? "NULL"
+                : activeOrderIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        for (Book book : List.of(flashSaleBook, bookB, bookC)) {
+            int stock = jdbcTemplate.queryForObject("SELECT stock_quantity FROM book WHERE id = ?",
+                    Integer.class, book.getId());
+            int ordered = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM order_detail "
+                    + "WHERE book_id = ? AND order_id IN (" + ids + ")", Integer.class, book.getId());
+            assertTrue(stock >= 0, "Book " + book.getId() + " stock went negative: " + stock);
+            assertEquals(INITIAL_BOOK_STOCK, stock + ordered, "Book " + book.getId() + " stock accounting");
+        }
+        int flashStock = jdbcTemplate.queryForObject("SELECT stock_quantity FROM flash_sale_item WHERE id = ?",
+                Integer.class, flashSaleItem.getId());
+        int flashOrdered = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM order_detail "
+                + "WHERE flash_sale_item_id = ? AND order_id IN (" + ids + ")", Integer.class, flashSaleItem.getId());
+        assertTrue(flashStock >= 0, "Flash sale stock went negative: " + flashStock);
+        assertEquals(INITIAL_FLASH_SALE_STOCK, flashStock + flashOrdered, "Flash sale stock accounting");
+    }
+
+    private void runConcurrently(int tasks, TaskBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    ready.await();
+                    body.run(index);
+                    return null;
+                }));
+            }
+            ready.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static OrderDetailRequest detail(Book book, FlashSaleItem flashSaleItem, int quantity) {
+        OrderDetailRequest detail = new OrderDetailRequest();
+        detail.setBookId(book.getId());
+        detail.setQuantity(quantity);
+        if (flashSaleItem != null) {
+            detail.setFlashSaleItemId(flashSaleItem.getId());
+            detail.setUnitPrice(flashSaleItem.getDiscountPrice());
+        } else {
+            detail.setUnitPrice(book.getPrice());
+        }
+        return detail;
+    }
+
+    private User newStaff(String run) {
+        User staff = new User();
+        staff.setEmail("stock-test-" + run + "@example.com");
+        staff.setPassword("not-used");
+        staff.setFullName("Stock Test Staff");
+        staff.setRole(roleRepository.findAll().get(0));
+        staff.setStatus((byte) 1);
+        staff.setTotalPoint(0);
+        staff.setTotalSpent(BigDecimal.ZERO);
+        return userRepository.save(staff);
+    }
+
+    private Book newBook(String run, int index) {
+        Book book = new Book();
+        book.setBookName("Stock test " + run + " #" + index);
+        book.setBookCode("STK-" + run + "-" + index);
+        book.setPrice(BigDecimal.valueOf(100_000));
+        book.setStockQuantity(INITIAL_BOOK_STOCK);
+        book.setStatus((byte) 1);
+        book.setCreatedBy(1);
+        return bookRepository.save(book);
+    }
+
+    private FlashSaleItem newFlashSaleItem(String run, Book book) {
+        long now = System.currentTimeMillis();
+        FlashSale flashSale = new FlashSale();
+        flashSale.setName("Stock test " + run);
+        flashSale.setStartTime(now - 60_000);
+        flashSale.setEndTime(now + 3_600_000);
+        flashSale.setStatus((byte) 1);
+        flashSale = flashSaleRepository.save(flashSale);
+
+        FlashSaleItem item = new FlashSaleItem();
+        item.setFlashSale(flashSale);
+        item.setBook(book);
+        item.setDiscountPrice(BigDecimal.valueOf(50_000));
+        item.setDiscountPercentage(BigDecimal.valueOf(50));
+        item.setStockQuantity(INITIAL_FLASH_SALE_STOCK);
+        item.setStatus((byte) 1);
+        return flashSaleItemRepository.save(item);
+    }
+
+    @FunctionalInterface
+    private interface TaskBody {
+        void run(int index) throws Exception;
+    }
+}
@@ -0,0 +1,185 @@
+package org.datn.bookstation.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.dto.response.PdfResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.IContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Render hóa đơn bằng template / font thật (không cần DB):
+ * - Lỗi render ném lỗi thay vì trả PDF / ZIP thiếu (controller trả 500 thay vì 200 cụt)
+ * - In hàng loạt: 1 hóa đơn lỗi thì các hóa đơn chưa render bị hủy
+ * - Đo thông lượng in hàng loạt (log invoices/s)
+ */
+@Slf4j
+class PdfServiceImplTest {
+
+    private static final int BULK_INVOICES = 20;
+
+    private PdfServiceImpl pdfService;
+
+    @AfterEach
+    void tearDown() {
+        if (pdfService != null) {
+            pdfService.shutdown();
+        }
+    }
+
+    @Test
+    void rendersCompletePdf() throws Exception {
+        pdfService = newService(templateEngine(), 0);
+
+        assertPdf(pdfService.generateInvoicePdf(invoice(1)));
+    }
+
+    @Test
+    void renderFailureThrowsInsteadOfReturningPartialPdf() {
+        TemplateEngine failing = mock(TemplateEngine.class);
+        when(failing.process(anyString(), any(IContext.class))).thenThrow(new IllegalStateException("template lỗi"));
+        pdfService = newService(failing, 0);
+
+        assertThrows(IllegalStateException.class, () -> pdfService.generateInvoicePdf(invoice(1)));
+    }
+
+    @Test
+    void bulkZipFailureCancelsRemainingRenders() {
+        TemplateEngine engine = templateEngine();
+        TemplateEngine failing = mock(TemplateEngine.class);
+        AtomicInteger calls = new AtomicInteger();
+        // Hóa đơn thứ 2 lỗi
+        when(failing.process(anyString(), any(IContext.class))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new IllegalStateException("template lỗi");
+            }
+            return engine.process(invocation.getArgument(0, String.class), invocation.getArgument(1, IContext.class));
+        });
+        pdfService = newService(failing, 2);
+        List<PdfResponse> invoices = new ArrayList<>();
+        for (int i = 1; i <= BULK_INVOICES; i++) {
+            invoices.add(invoice(i));
+        }
+
+        assertThrows(IllegalStateException.class, () -> pdfService.generateInvoiceZip(invoices));
+        // 2 worker → tối đa 4 hóa đơn được gửi trước khi phát hiện lỗi, phần còn lại không render
+        assertTrue(calls.get() < BULK_INVOICES, "rendered " + calls.get() + " invoices");
+    }
+
+    @Test
+    void bulkZipThroughput() throws Exception {
+        pdfService = newService(templateEngine(), 0);
+        List<PdfResponse> invoices = new ArrayList<>();
+        for (int i = 1; i <= BULK_INVOICES; i++) {
+            invoices.add(invoice(i));
+        }
+        // Làm nóng: nạp font metrics / template cache trước khi đo
+        pdfService.generateInvoicePdf(invoices.get(0));
+
+        long start = System.nanoTime();
+        byte[] zipBytes = pdfService.generateInvoiceZip(invoices);
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        int entries = 0;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                assertTrue(entry.getName().startsWith("invoice-ORD"), entry.getName());
+                assertPdf(zip.readAllBytes());
+                entries++;
+            }
+        }
+        assertEquals(BULK_INVOICES, entries);
+        log.info("🧾 PDF benchmark: {} invoices in {} ms ({} invoices/s, {} render threads)",
+                BULK_INVOICES, elapsedMs, BULK_INVOICES * 1000L / elapsedMs,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private PdfServiceImpl newService(TemplateEngine templateEngine, int poolSize) {
+        PdfServiceImpl service = new PdfServiceImpl();
+        ReflectionTestUtils.setField(service, "templateEngine", templateEngine);
+        ReflectionTestUtils.setField(service, "poolSize", poolSize);
+        ReflectionTestUtils.setField(service, "queueCapacity", 100);
+        service.init();
+        return service;
+    }
+
+    private static TemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    private static PdfResponse invoice(int index) {
+        PdfResponse invoice = new PdfResponse();
+        invoice.setOrderCode("ORD" + (1_700_000_000_000L + index) + "00000");
+        invoice.setOrderDate(new Date());
+        invoice.setOrderType("ONLINE");
+        invoice.setPaymentMethod("COD");
+        invoice.setOrderStatus("DELIVERED");
+        invoice.setCustomerName("Nguyễn Văn An");
+        invoice.setCustomerPhone("0900000000");
+        invoice.setCustomerEmail("an@example.com");
+        invoice.setDeliveryAddress("1 Đường Láng, Hà Nội");
+        invoice.setStaffName("Trần Thị Bình");
+
+        List<PdfResponse.OrderItemDto> items = new ArrayList<>();
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (int i = 1; i <= 5; i++) {
+            PdfResponse.OrderItemDto item = new PdfResponse.OrderItemDto();
+            item.setBookName("Sách tiếng Việt số " + i);
+            item.setBookCode("BK" + i);
+            item.setQuantity(i);
+            item.setOriginalPrice(BigDecimal.valueOf(100_000));
+            item.setUnitPrice(BigDecimal.valueOf(90_000));
+            item.setItemDiscountAmount(BigDecimal.valueOf(10_000));
+            item.setVoucherDiscountAmount(BigDecimal.ZERO);
+            item.setTotalAmount(BigDecimal.valueOf(90_000L * i));
+            item.setIsFlashSale(false);
+            items.add(item);
+            subtotal = subtotal.add(item.getTotalAmount());
+        }
+        invoice.setOrderItems(items);
+        invoice.setSubtotal(subtotal);
+        invoice.setTotalDiscountAmount(BigDecimal.ZERO);
+        invoice.setShippingFee(BigDecimal.valueOf(30_000));
+        invoice.setShippingDiscount(BigDecimal.ZERO);
+        invoice.setTotalAmount(subtotal.add(BigDecimal.valueOf(30_000)));
+        invoice.setAppliedVouchers(new ArrayList<>());
+        return invoice;
+    }
+
+    private static void assertPdf(byte[] pdf) {
+        assertTrue(pdf.length > 1000, "PDF too small: " + pdf.length);
+        assertEquals("%PDF", new String(pdf, 0, 4, StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,219 @@
+package org.datn.bookstation.service.impl;
+
+import jakarta.persistence.EntityManager;
+import org.datn.bookstation.entity.Book;
+import org.datn.bookstation.entity.FlashSaleItem;
+import org.datn.bookstation.entity.Order;
+import org.datn.bookstation.entity.OrderDetail;
+import org.datn.bookstation.entity.User;
+import org.datn.bookstation.repository.BookRepository;
+import org.datn.bookstation.repository.FlashSaleItemRepository;
+import org.datn.bookstation.service.FlashSaleStockCounterService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Nhiều đơn đồng thời giành cùng tồn kho không được bán vượt số lượng.
+ * Bảng book / flash_sale_item được giả lập trong bộ nhớ: mỗi UPDATE ... WHERE stock >= :quantity
+ * là 1 thao tác nguyên tử trên 1 dòng như trên DB; đơn có dòng thất bại thì "rollback" các dòng đã trừ.
+ */
+class StockReservationServiceImplConcurrencyTest {
+
+    private static final int BOOKS = 3;
+    private static final int INITIAL_BOOK_STOCK = 40;
+    private static final int FLASH_SALE_ITEM_ID = 100;
+    private static final int INITIAL_FLASH_SALE_STOCK = 15;
+    private static final int ORDERS = 400;
+
+    private final Map<Integer, AtomicInteger> bookStock = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> flashSaleStock = new ConcurrentHashMap<>();
+    private final List<Book> books = new ArrayList<>();
+
+    private StockReservationServiceImpl stockReservationService;
+
+    @BeforeEach
+    void setUp() {
+        for (int id = 1; id <= BOOKS; id++) {
+            Book book = new Book();
+            book.setId(id);
+            books.add(book);
+            bookStock.put(id, new AtomicInteger(INITIAL_BOOK_STOCK));
+        }
+        flashSaleStock.put(FLASH_SALE_ITEM_ID, new AtomicInteger(INITIAL_FLASH_SALE_STOCK));
+
+        BookRepository bookRepository = mock(BookRepository.class);
+        when(bookRepository.decreaseStockIfAvailable(anyInt(), anyInt())).thenAnswer(invocation ->
+                decrease(bookStock, invocation.getArgument(0), invocation.getArgument(1)));
+        when(bookRepository.increaseStock(anyInt(), anyInt())).thenAnswer(invocation ->
+                bookStock.get(invocation.<Integer>getArgument(0)).addAndGet(invocation.getArgument(1)) >= 0 ? 1 : 0);
+
+        FlashSaleItemRepository flashSaleItemRepository = mock(FlashSaleItemRepository.class);
+        when(flashSaleItemRepository.decreaseStockIfAvailable(anyInt(), anyInt())).thenAnswer(invocation ->
+                decrease(flashSaleStock, invocation.getArgument(0), invocation.getArgument(1)));
+        when(flashSaleItemRepository.increaseStock(anyInt(), anyInt())).thenAnswer(invocation ->
+                flashSaleStock.get(invocation.<Integer>getArgument(0)).addAndGet(invocation.getArgument(1)) >= 0 ? 1 : 0);
+
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            Map<Integer, AtomicInteger> table = sql.startsWith("UPDATE book ") ? bookStock : flashSaleStock;
+            List<Object[]> args = invocation.getArgument(1);
+            int[] counts = new int[args.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = decrease(table, (Integer) args.get(i)[1], (Integer) args.get(i)[0]);
+            }
+            return counts;
+        });
+
+        // Flash sale không được bộ đếm in-memory theo dõi → đi thẳng xuống DB
+        FlashSaleStockCounterService counterService = mock(FlashSaleStockCounterService.class);
+
+        stockReservationService = new StockReservationServiceImpl(bookRepository, flashSaleItemRepository,
+                counterService, jdbcTemplate);
+        ReflectionTestUtils.setField(stockReservationService, "entityManager", mock(EntityManager.class));
+    }
+
+    @Test
+    void concurrentMultiLineOrdersNeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<Book, Integer>>> futures = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            futures.add(executor.submit(() -> {
+                Map<Book, Integer> order = randomOrder();
+                start.await();
+                List<Book> shortages = stockReservationService.reserveBookStocks(order);
+                if (shortages.isEmpty()) {
+                    return order;
+                }
+                // Đơn bị từ chối → transaction rollback các dòng đã trừ trong batch
+                order.forEach((book, quantity) -> {
+                    if (!shortages.contains(book)) {
+                        stockReservationService.releaseBookStock(book, quantity);
+                    }
+                });
+                return null;
+            }));
+        }
+        start.countDown();
+
+        int[] sold = new int[BOOKS + 1];
+        int accepted = 0;
+        for (Future<Map<Book, Integer>> future : futures) {
+            Map<Book, Integer> order = future.get(30, TimeUnit.SECONDS);
+            if (order != null) {
+                accepted++;
+                order.forEach((book, quantity) -> sold[book.getId()] += quantity);
+            }
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(accepted > 0 && accepted < ORDERS, "test must produce contention");
+        for (int id = 1; id <= BOOKS; id++) {
+            int remaining = bookStock.get(id).get();
+            assertTrue(remaining >= 0, "negative stock for book " + id);
+            assertTrue(sold[id] <= INITIAL_BOOK_STOCK, "oversold book " + id);
+            assertEquals(INITIAL_BOOK_STOCK - sold[id], remaining, "stock of book " + id);
+        }
+    }
+
+    @Test
+    void concurrentSingleReservationsNeverOversell() throws Exception {
+        FlashSaleItem flashSaleItem = new FlashSaleItem();
+        flashSaleItem.setId(FLASH_SALE_ITEM_ID);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return stockReservationService.reserveFlashSaleStock(flashSaleItem, 1);
+            }));
+        }
+        start.countDown();
+
+        int reserved = 0;
+        for (Future<Boolean> future : futures) {
+            if (future.get(30, TimeUnit.SECONDS)) {
+                reserved++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(INITIAL_FLASH_SALE_STOCK, reserved);
+        assertEquals(0, flashSaleStock.get(FLASH_SALE_ITEM_ID).get());
+    }
+
+    @Test
+    void releaseOrderDetailStockRestoresFlashSaleAndBookStock() {
+        FlashSaleItem flashSaleItem = new FlashSaleItem();
+        flashSaleItem.setId(FLASH_SALE_ITEM_ID);
+        Map<Book, Integer> bookLine = new LinkedHashMap<>();
+        bookLine.put(books.get(0), 2);
+        assertTrue(stockReservationService.reserveFlashSaleStock(flashSaleItem, 2));
+        assertTrue(stockReservationService.reserveBookStocks(bookLine).isEmpty());
+
+        User user = new User();
+        user.setId(1);
+        Order order = new Order();
+        order.setUser(user);
+        OrderDetail detail = new OrderDetail();
+        detail.setOrder(order);
+        detail.setBook(books.get(0));
+        detail.setFlashSaleItem(flashSaleItem);
+        detail.setQuantity(2);
+        stockReservationService.releaseOrderDetailStock(detail);
+
+        assertEquals(INITIAL_FLASH_SALE_STOCK, flashSaleStock.get(FLASH_SALE_ITEM_ID).get());
+        assertEquals(INITIAL_BOOK_STOCK, bookStock.get(1).get());
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private Map<Book, Integer> randomOrder() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Book, Integer> order = new LinkedHashMap<>();
+        for (Book book : books) {
+            if (order.isEmpty() || random.nextBoolean()) {
+                order.put(book, 1 + random.nextInt(3));
+            }
+        }
+        return order;
+    }
+
+    private static int decrease(Map<Integer, AtomicInteger> table, Integer id, Integer quantity) {
+        AtomicInteger stock = table.get(id);
+        int current;
+        do {
+            current = stock.get();
+            if (current < quantity) {
+                return 0;
+            }
+        } while (!stock.compareAndSet(current, current - quantity));
+        return 1;
+    }
+}
@@ -0,0 +1,122 @@
+package org.datn.bookstation.service.impl;
+
+import org.datn.bookstation.entity.Order;
+import org.datn.bookstation.entity.enums.OrderStatus;
+import org.datn.bookstation.repository.BookRepository;
+import org.datn.bookstation.repository.BookTrendingScoreRepository;
+import org.datn.bookstation.repository.FlashSaleItemRepository;
+import org.datn.bookstation.repository.OrderDetailRepository;
+import org.datn.bookstation.repository.ReviewRepository;
+import org.datn.bookstation.service.TrendingCacheService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cập nhật điểm trending theo đơn hàng (không cần DB):
+ * - Chỉ chạy sau khi transaction đơn hàng commit, rollback thì bỏ qua
+ * - Lỗi bảng điểm chỉ ghi log, không ném ra cho luồng đơn hàng
+ */
+class TrendingScoreServiceImplTest {
+
+    private final OrderDetailRepository orderDetailRepository = mock(OrderDetailRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final TrendingScoreServiceImpl service = new TrendingScoreServiceImpl(
+            mock(BookTrendingScoreRepository.class),
+            mock(BookRepository.class),
+            orderDetailRepository,
+            mock(ReviewRepository.class),
+            mock(FlashSaleItemRepository.class),
+            mock(TrendingCacheService.class),
+            transactionManager);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void refreshesOnlyAfterCommit() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(orderDetailRepository.findByOrderId(anyInt())).thenReturn(List.of());
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.onOrderStatusChanged(newOrder(), OrderStatus.SHIPPED, OrderStatus.DELIVERED);
+        verify(orderDetailRepository, never()).findByOrderId(anyInt());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        verify(orderDetailRepository).findByOrderId(11);
+    }
+
+    @Test
+    void skipsRefreshOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.onOrderStatusChanged(newOrder(), OrderStatus.SHIPPED, OrderStatus.DELIVERED);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        verify(orderDetailRepository, never()).findByOrderId(anyInt());
+    }
+
+    @Test
+    void ignoresStatusesOutsideSoldGroup() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.onOrderStatusChanged(newOrder(), OrderStatus.PENDING, OrderStatus.CONFIRMED);
+        assertEquals(0, TransactionSynchronizationManager.getSynchronizations().size());
+    }
+
+    @Test
+    void handlesNewOrderWithoutOldStatus() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(orderDetailRepository.findByOrderId(anyInt())).thenReturn(List.of());
+        TransactionSynchronizationManager.initSynchronization();
+
+        // OrderServiceImpl.create: đơn mới chưa có trạng thái cũ
+        assertDoesNotThrow(() -> service.onOrderStatusChanged(newOrder(), null, OrderStatus.PENDING));
+        assertEquals(0, TransactionSynchronizationManager.getSynchronizations().size());
+
+        // Bán tại quầy: tạo thẳng ở trạng thái đã bán
+        service.onOrderStatusChanged(newOrder(), null, OrderStatus.DELIVERED);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(orderDetailRepository).findByOrderId(11);
+    }
+
+    @Test
+    void swallowsRefreshFailure() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(orderDetailRepository.findByOrderId(anyInt())).thenThrow(new IllegalStateException("db down"));
+
+        // Không có transaction đang chạy -> chạy ngay, lỗi chỉ ghi log
+        assertDoesNotThrow(() ->
+                service.onOrderStatusChanged(newOrder(), OrderStatus.DELIVERED, OrderStatus.REFUNDED));
+        verify(orderDetailRepository).findByOrderId(11);
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private static Order newOrder() {
+        Order order = new Order();
+        order.setId(11);
+        order.setCode("ORD-TEST-11");
+        return order;
+    }
+}
@@ -0,0 +1,91 @@
+package org.datn.bookstation.service.impl;
+
+import org.datn.bookstation.repository.UserVoucherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cache số lần đã dùng voucher chỉ phục vụ danh sách hiển thị; kiểm tra lúc checkout luôn đọc DB
+ */
+class UserVoucherEligibilityServiceImplTest {
+
+    private static final int USER_ID = 7;
+
+    private UserVoucherRepository userVoucherRepository;
+    private UserVoucherEligibilityServiceImpl eligibilityService;
+
+    @BeforeEach
+    void setUp() {
+        userVoucherRepository = mock(UserVoucherRepository.class);
+        eligibilityService = new UserVoucherEligibilityServiceImpl(userVoucherRepository);
+        ReflectionTestUtils.setField(eligibilityService, "cacheTtlMs", 60_000L);
+    }
+
+    @Test
+    void remainingUsesAlwaysReadsDatabase() {
+        when(userVoucherRepository.sumUsedCountByUserAndVoucher(USER_ID, 1)).thenReturn(0L, 1L);
+        // Nạp cache danh sách trước: kết quả checkout không được lấy từ đây
+        when(userVoucherRepository.sumUsedCountByUserGroupByVoucher(USER_ID)).thenReturn(List.of());
+        eligibilityService.getUsedCounts(USER_ID);
+
+        assertEquals(1, eligibilityService.getRemainingUses(USER_ID, 1, 1));
+        assertEquals(0, eligibilityService.getRemainingUses(USER_ID, 1, 1));
+        verify(userVoucherRepository, times(2)).sumUsedCountByUserAndVoucher(USER_ID, 1);
+    }
+
+    @Test
+    void remainingUsesIsZeroWithoutPerUserLimit() {
+        assertEquals(0, eligibilityService.getRemainingUses(USER_ID, 1, null));
+    }
+
+    @Test
+    void usedCountsLoadAllVouchersInOneQueryAndAreCached() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int voucherId = 1; voucherId <= 1000; voucherId++) {
+            rows.add(new Object[]{voucherId, (long) (voucherId % 3)});
+        }
+        when(userVoucherRepository.sumUsedCountByUserGroupByVoucher(USER_ID)).thenReturn(rows);
+
+        Map<Integer, Integer> usedCounts = eligibilityService.getUsedCounts(USER_ID);
+        eligibilityService.getUsedCounts(USER_ID);
+
+        assertEquals(1000, usedCounts.size());
+        assertEquals(2, usedCounts.get(5));
+        verify(userVoucherRepository, times(1)).sumUsedCountByUserGroupByVoucher(USER_ID);
+    }
+
+    @Test
+    void invalidateUserReloadsUsedCounts() {
+        List<Object[]> before = new ArrayList<>();
+        before.add(new Object[]{1, 0L});
+        List<Object[]> after = new ArrayList<>();
+        after.add(new Object[]{1, 1L});
+        when(userVoucherRepository.sumUsedCountByUserGroupByVoucher(USER_ID)).thenReturn(before, after);
+
+        assertEquals(0, eligibilityService.getUsedCounts(USER_ID).get(1));
+        eligibilityService.invalidateUser(USER_ID);
+        assertEquals(1, eligibilityService.getUsedCounts(USER_ID).get(1));
+    }
+
+    @Test
+    void zeroTtlDisablesCache() {
+        ReflectionTestUtils.setField(eligibilityService, "cacheTtlMs", 0L);
+        when(userVoucherRepository.sumUsedCountByUserGroupByVoucher(USER_ID)).thenReturn(List.of());
+
+        eligibilityService.getUsedCounts(USER_ID);
+        eligibilityService.getUsedCounts(USER_ID);
+
+        verify(userVoucherRepository, times(2)).sumUsedCountByUserGroupByVoucher(USER_ID);
+    }
+}
@@ -0,0 +1,338 @@
+package org.datn.bookstation.service.impl.minigame;
+
+import jakarta.persistence.EntityManager;
+import org.datn.bookstation.dto.request.minigame.OpenBoxRequest;
+import org.datn.bookstation.dto.response.minigame.OpenBoxResponse;
+import org.datn.bookstation.entity.BoxHistory;
+import org.datn.bookstation.entity.Campaign;
+import org.datn.bookstation.entity.Point;
+import org.datn.bookstation.entity.Reward;
+import org.datn.bookstation.entity.User;
+import org.datn.bookstation.entity.UserCampaign;
+import org.datn.bookstation.entity.enums.BoxOpenType;
+import org.datn.bookstation.entity.enums.RewardType;
+import org.datn.bookstation.repository.BoxHistoryRepository;
+import org.datn.bookstation.repository.CampaignRepository;
+import org.datn.bookstation.repository.RewardRepository;
+import org.datn.bookstation.repository.UserCampaignRepository;
+import org.datn.bookstation.repository.UserRepository;
+import org.datn.bookstation.repository.UserVoucherRepository;
+import org.datn.bookstation.service.BoxHistoryWriterService;
+import org.datn.bookstation.service.StatisticsSnapshotService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Nhiều request mở hộp đồng thời (FREE + POINT, nhiều user) không được làm lệch stock phần thưởng,
+ * điểm và bộ đếm lượt mở.
+ * Repository được giả lập bằng kho trong bộ nhớ: mỗi UPDATE có điều kiện là 1 thao tác nguyên tử,
+ * giống UPDATE ... WHERE trên 1 dòng của DB; không cần DB thật.
+ */
+class MinigameServiceImplConcurrencyTest {
+
+    private static final int CAMPAIGN_ID = 1;
+    private static final int USERS = 12;
+    private static final int OPENS_PER_USER = 12;
+    private static final int INITIAL_POINTS = 50;
+    private static final int FREE_LIMIT = 3;
+    private static final int POINT_COST = 10;
+    private static final int POINT_REWARD_VALUE = 5;
+    private static final int POINT_REWARD_ID = 2;
+    private static final int VOUCHER_REWARD_ID = 3;
+
+    private Campaign campaign;
+    private final Map<Integer, Reward> rewards = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> stock = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> userPoints = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> openCounts = new ConcurrentHashMap<>(); // userCampaignId -> {free, total}
+    private final List<BoxHistory> histories = Collections.synchronizedList(new ArrayList<>());
+    private final List<Point> ledger = Collections.synchronizedList(new ArrayList<>());
+
+    private MinigameServiceImpl minigameService;
+
+    @BeforeEach
+    void setUp() {
+        long now = System.currentTimeMillis();
+        campaign = new Campaign();
+        campaign.setId(CAMPAIGN_ID);
+        campaign.setName("Concurrent campaign");
+        campaign.setStatus((byte) 1);
+        campaign.setStartDate(now - 60_000);
+        campaign.setEndDate(now + 3_600_000);
+        campaign.setConfigFreeLimit(FREE_LIMIT);
+        campaign.setConfigPointCost(POINT_COST);
+
+        addReward(1, RewardType.NONE, "40", 0);
+        addReward(POINT_REWARD_ID, RewardType.POINTS, "40", 25);
+        addReward(VOUCHER_REWARD_ID, RewardType.VOUCHER, "20", 10);
+        for (int userId = 1; userId <= USERS; userId++) {
+            userPoints.put(userId, new AtomicInteger(INITIAL_POINTS));
+        }
+
+        RewardRepository rewardRepository = mock(RewardRepository.class);
+        when(rewardRepository.findAvailableByCampaignId(CAMPAIGN_ID)).thenAnswer(invocation -> {
+            List<Reward> available = new ArrayList<>();
+            rewards.values().forEach(reward -> {
+                if (reward.getType() == RewardType.NONE || stock.get(reward.getId()).get() > 0) {
+                    available.add(reward);
+                }
+            });
+            return available;
+        });
+        when(rewardRepository.findById(anyInt()))
+                .thenAnswer(invocation -> Optional.ofNullable(rewards.get(invocation.<Integer>getArgument(0))));
+        when(rewardRepository.decreaseStockIfAvailable(anyInt())).thenAnswer(invocation -> {
+            AtomicInteger remaining = stock.get(invocation.<Integer>getArgument(0));
+            int current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return 0;
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            return 1;
+        });
+
+        CampaignRepository campaignRepository = mock(CampaignRepository.class);
+        when(campaignRepository.findById(CAMPAIGN_ID)).thenReturn(Optional.of(campaign));
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findById(anyInt())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(invocation.getArgument(0));
+            // Giá trị frontend đang hiển thị; điểm thật nằm trong userPoints
+            user.setTotalPoint(INITIAL_POINTS);
+            return Optional.of(user);
+        });
+        when(userRepository.deductPointsIfEnough(anyInt(), anyInt())).thenAnswer(invocation -> {
+            AtomicInteger points = userPoints.get(invocation.<Integer>getArgument(0));
+            int cost = invocation.getArgument(1);
+            int current;
+            do {
+                current = points.get();
+                if (current < cost) {
+                    return 0;
+                }
+            } while (!points.compareAndSet(current, current - cost));
+            return 1;
+        });
+        when(userRepository.addPoints(anyInt(), anyInt())).thenAnswer(invocation -> {
+            userPoints.get(invocation.<Integer>getArgument(0)).addAndGet(invocation.getArgument(1));
+            return 1;
+        });
+        when(userRepository.findTotalPointById(anyInt()))
+                .thenAnswer(invocation -> userPoints.get(invocation.<Integer>getArgument(0)).get());
+
+        UserCampaignRepository userCampaignRepository = mock(UserCampaignRepository.class);
+        when(userCampaignRepository.findByUserIdAndCampaignId(anyInt(), anyInt())).thenAnswer(invocation -> {
+            Integer userId = invocation.getArgument(0);
+            if (!openCounts.containsKey(userId)) {
+                return Optional.empty();
+            }
+            // Bản đọc trước khi khóa dòng (bộ đếm chỉ đúng sau refresh)
+            UserCampaign userCampaign = new UserCampaign();
+            userCampaign.setId(userId);
+            return Optional.of(userCampaign);
+        });
+        when(userCampaignRepository.insertIfAbsent(anyInt(), anyInt(), anyLong())).thenAnswer(invocation ->
+                openCounts.putIfAbsent(invocation.getArgument(0), new int[2]) == null ? 1 : 0);
+        when(userCampaignRepository.consumeFreeOpen(anyInt(), anyInt(), anyLong())).thenAnswer(invocation -> {
+            int[] counts = openCounts.get(invocation.<Integer>getArgument(0));
+            synchronized (counts) {
+                if (counts[0] >= invocation.<Integer>getArgument(1)) {
+                    return 0;
+                }
+                counts[0]++;
+                counts[1]++;
+                return 1;
+            }
+        });
+        when(userCampaignRepository.incrementTotalOpened(anyInt(), anyLong())).thenAnswer(invocation -> {
+            int[] counts = openCounts.get(invocation.<Integer>getArgument(0));
+            synchronized (counts) {
+                counts[1]++;
+                return 1;
+            }
+        });
+        when(userCampaignRepository.decrementTotalOpened(anyInt(), anyLong())).thenAnswer(invocation -> {
+            int[] counts = openCounts.get(invocation.<Integer>getArgument(0));
+            synchronized (counts) {
+                if (counts[1] <= 0) {
+                    return 0;
+                }
+                counts[1]--;
+                return 1;
+            }
+        });
+
+        EntityManager entityManager = mock(EntityManager.class);
+        doAnswer(invocation -> {
+            UserCampaign userCampaign = invocation.getArgument(0);
+            int[] counts = openCounts.get(userCampaign.getId());
+            synchronized (counts) {
+                userCampaign.setFreeOpenedCount(counts[0]);
+                userCampaign.setTotalOpenedCount(counts[1]);
+            }
+            return null;
+        }).when(entityManager).refresh(any(UserCampaign.class));
+
+        BoxHistoryWriterService boxHistoryWriterService = mock(BoxHistoryWriterService.class);
+        when(boxHistoryWriterService.write(any(BoxHistory.class), anyList())).thenAnswer(invocation -> {
+            histories.add(invocation.getArgument(0));
+            ledger.addAll(invocation.getArgument(1));
+            return histories.size();
+        });
+
+        RewardSamplerServiceImpl rewardSamplerService = new RewardSamplerServiceImpl(rewardRepository);
+        ReflectionTestUtils.setField(rewardSamplerService, "ttlMs", 60_000L);
+
+        minigameService = new MinigameServiceImpl(campaignRepository, rewardRepository, userCampaignRepository,
+                mock(BoxHistoryRepository.class), userRepository, mock(UserVoucherRepository.class),
+                boxHistoryWriterService, mock(StatisticsSnapshotService.class), rewardSamplerService);
+        ReflectionTestUtils.setField(minigameService, "entityManager", entityManager);
+    }
+
+    @Test
+    void concurrentOpensKeepStockPointsAndCountsConsistent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<OpenBoxResponse>> futures = new ArrayList<>();
+        List<OpenBoxRequest> requests = new ArrayList<>();
+        for (int i = 0; i < OPENS_PER_USER; i++) {
+            for (int userId = 1; userId <= USERS; userId++) {
+                // Mỗi user gửi nhiều lượt FREE hơn giới hạn và nhiều lượt POINT hơn số điểm cho phép
+                OpenBoxRequest request = request(userId, i % 2 == 0 ? BoxOpenType.FREE : BoxOpenType.POINT);
+                requests.add(request);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return minigameService.openBox(request);
+                }));
+            }
+        }
+        start.countDown();
+
+        int[] successfulFree = new int[USERS + 1];
+        int[] successfulPoint = new int[USERS + 1];
+        for (int i = 0; i < futures.size(); i++) {
+            OpenBoxResponse response = futures.get(i).get(30, TimeUnit.SECONDS);
+            if (response.isSuccess()) {
+                OpenBoxRequest request = requests.get(i);
+                if (request.getOpenType() == BoxOpenType.FREE) {
+                    successfulFree[request.getUserId()]++;
+                } else {
+                    successfulPoint[request.getUserId()]++;
+                }
+            }
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Stock: mỗi lần trúng trừ đúng 1 suất, không bao giờ âm
+        assertRewardStock(POINT_REWARD_ID, 25);
+        assertRewardStock(VOUCHER_REWARD_ID, 10);
+
+        int successful = 0;
+        for (int userId = 1; userId <= USERS; userId++) {
+            int[] counts = openCounts.get(userId);
+            int opens = successfulFree[userId] + successfulPoint[userId];
+            successful += opens;
+            assertTrue(successfulFree[userId] <= FREE_LIMIT, "free opens over limit for user " + userId);
+            assertEquals(successfulFree[userId], counts[0], "free open count of user " + userId);
+            assertEquals(opens, counts[1], "total open count of user " + userId);
+
+            // Điểm = ban đầu - chi mở hộp + trúng thưởng, không âm và khớp sổ Point
+            int earned = countWins(userId, POINT_REWARD_ID) * POINT_REWARD_VALUE;
+            int points = userPoints.get(userId).get();
+            assertTrue(points >= 0, "negative points for user " + userId);
+            assertEquals(INITIAL_POINTS - successfulPoint[userId] * POINT_COST + earned, points,
+                    "points of user " + userId);
+            assertEquals(points, INITIAL_POINTS + ledgerBalance(userId), "point ledger of user " + userId);
+        }
+        assertEquals(successful, histories.size());
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    private void assertRewardStock(int rewardId, int initialStock) {
+        int wins = 0;
+        for (int userId = 1; userId <= USERS; userId++) {
+            wins += countWins(userId, rewardId);
+        }
+        int remaining = stock.get(rewardId).get();
+        assertTrue(remaining >= 0, "negative stock for reward " + rewardId);
+        assertEquals(initialStock - wins, remaining, "stock of reward " + rewardId);
+    }
+
+    private int countWins(int userId, int rewardId) {
+        synchronized (histories) {
+            return (int) histories.stream()
+                    .filter(history -> history.getUser().getId() == userId)
+                    .filter(history -> history.getReward() != null && history.getReward().getId() == rewardId)
+                    .count();
+        }
+    }
+
+    private int ledgerBalance(int userId) {
+        synchronized (ledger) {
+            return ledger.stream()
+                    .filter(point -> point.getUser().getId() == userId)
+                    .mapToInt(point -> (point.getPointEarned() != null ? point.getPointEarned() : 0)
+                            - (point.getPointSpent() != null ? point.getPointSpent() : 0))
+                    .sum();
+        }
+    }
+
+    private void addReward(int id, RewardType type, String probability, int initialStock) {
+        Reward reward = new Reward();
+        reward.setId(id);
+        reward.setCampaign(campaign);
+        reward.setType(type);
+        reward.setName(type.name() + " " + id);
+        reward.setProbability(new BigDecimal(probability));
+        reward.setStock(initialStock);
+        if (type == RewardType.POINTS) {
+            reward.setPointValue(POINT_REWARD_VALUE);
+        }
+        rewards.put(id, reward);
+        stock.put(id, new AtomicInteger(initialStock));
+    }
+
+    private OpenBoxRequest request(int userId, BoxOpenType openType) {
+        OpenBoxRequest request = new OpenBoxRequest();
+        request.setCampaignId(CAMPAIGN_ID);
+        request.setUserId(userId);
+        request.setOpenType(openType);
+        request.setFrontendFreeLimit(FREE_LIMIT);
+        request.setFrontendPointCost(POINT_COST);
+        request.setFrontendStartDate(campaign.getStartDate());
+        request.setFrontendEndDate(campaign.getEndDate());
+        request.setFrontendUserPoint(INITIAL_POINTS);
+        request.setFrontendFreeOpenedCount(0);
+        return request;
+    }
+}
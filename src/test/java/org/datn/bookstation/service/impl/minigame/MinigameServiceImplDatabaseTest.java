@@ -0,0 +1,321 @@
+package org.datn.bookstation.service.impl.minigame;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datn.bookstation.dto.request.minigame.OpenBoxRequest;
+import org.datn.bookstation.dto.response.minigame.OpenBoxResponse;
+import org.datn.bookstation.entity.Campaign;
+import org.datn.bookstation.entity.Reward;
+import org.datn.bookstation.entity.User;
+import org.datn.bookstation.entity.enums.BoxOpenType;
+import org.datn.bookstation.entity.enums.RewardType;
+import org.datn.bookstation.repository.CampaignRepository;
+import org.datn.bookstation.repository.RewardRepository;
+import org.datn.bookstation.repository.RoleRepository;
+import org.datn.bookstation.repository.UserRepository;
+import org.datn.bookstation.service.BoxHistoryWriterService;
+import org.datn.bookstation.service.MinigameService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 🎁 Nhiều request mở hộp đồng thời qua MinigameServiceImpl.openBox trên PostgreSQL thật
+ * (UPDATE có điều kiện cho lượt mở / điểm / stock phần thưởng, INSERT ... ON CONFLICT cho user_campaign,
+ * BoxHistory ghi dồn theo lô)
+ * - Nhiều user, mỗi user nhiều lần mở FREE + POINT xáo trộn; các lần mở của cùng 1 user chạy chồng nhau
+ * - Request dựng từ trạng thái đọc ngay trước khi gửi (như frontend); bị từ chối vì dữ liệu vừa đổi
+ * (lần mở khác của cùng user) là kết quả hợp lệ
+ * - Sau cùng đối soát chính xác: điểm user, sổ Point, stock phần thưởng, bộ đếm user_campaign và box_history
+ * - Log số lần mở thành công / giây sau 1 lượt làm nóng (không assert thời gian)
+ * Chỉ chạy khi có TEST_DATABASE_URL (DB PostgreSQL riêng cho test: schema tạo bằng ddl-auto, test ghi dữ liệu):
+ * TEST_DATABASE_URL=jdbc:postgresql://localhost:5432/bookstation_test TEST_DATABASE_USER=... \
+ * TEST_DATABASE_PASSWORD=... mvn test -Dtest=MinigameServiceImplDatabaseTest
+ */
+@Slf4j
+@SpringBootTest(properties = {
+        "APP_BASE_URL=http://localhost",
+        "VNPAY_TMN_CODE=test",
+        "VNPAY_HASH_SECRET=test",
+        "flashsale.in-memory-stock.enabled=false",
+        "minigame.history.batch-write.enabled=true"
+})
+@EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+class MinigameServiceImplDatabaseTest {
+
+    private static final int THREADS = 16;
+    private static final int WARMUP_USERS = 40;
+    private static final int USERS = 200;
+    private static final int OPENS_PER_USER = 25;
+    private static final int INITIAL_POINTS = 100;
+    private static final int FREE_LIMIT = 5;
+    private static final int POINT_COST = 10;
+    private static final int POINT_REWARD_VALUE = 5;
+    private static final int POINT_REWARD_STOCK = 2_000;
+    private static final int VOUCHER_REWARD_STOCK = 150;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DATABASE_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv("TEST_DATABASE_USER"));
+        registry.add("spring.datasource.password", () -> System.getenv("TEST_DATABASE_PASSWORD"));
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> THREADS + 4);
+    }
+
+    @Autowired
+    private MinigameService minigameService;
+
+    @Autowired
+    private BoxHistoryWriterService boxHistoryWriterService;
+
+    @Autowired
+    private CampaignRepository campaignRepository;
+
+    @Autowired
+    private RewardRepository rewardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentOpensKeepExactAccounting() throws Exception {
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        // Làm nóng JIT / pool kết nối trên chiến dịch riêng (vẫn đối soát), số đo lấy ở lượt sau
+        runLoad("warm-up", run + "w", WARMUP_USERS);
+        runLoad("measured", run, USERS);
+    }
+
+    // ================== PRIVATE HELPER METHODS ==================
+
+    /**
+     * Tạo chiến dịch + phần thưởng + user riêng, mở hộp đồng thời rồi đối soát và log opens/s
+     */
+    private void runLoad(String label, String run, int users) throws Exception {
+        Campaign campaign = newCampaign(run);
+        Reward pointReward = newReward(campaign, RewardType.POINTS, POINT_REWARD_VALUE, POINT_REWARD_STOCK, 30);
+        Reward voucherReward = newReward(campaign, RewardType.VOUCHER, null, VOUCHER_REWARD_STOCK, 5);
+        newReward(campaign, RewardType.NONE, null, 1, 65);
+        List<Integer> userIds = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            userIds.add(newUser(run, i).getId());
+        }
+
+        // Mỗi user: lần mở FREE/POINT ngẫu nhiên, toàn bộ xáo trộn nên lần mở của cùng user chạy chồng nhau
+        List<OpenTask> tasks = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (Integer userId : userIds) {
+            for (int i = 0; i < OPENS_PER_USER; i++) {
+                tasks.add(new OpenTask(userId, random.nextInt(100) < 30 ? BoxOpenType.FREE : BoxOpenType.POINT));
+            }
+        }
+        Collections.shuffle(tasks, random);
+
+        AtomicInteger opened = new AtomicInteger();
+        Map<String, AtomicInteger> rejected = new ConcurrentHashMap<>();
+        List<Throwable> unexpected = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        runConcurrently(tasks.size(), index -> {
+            OpenTask task = tasks.get(index);
+            try {
+                OpenBoxResponse response = minigameService.openBox(newRequest(campaign, task));
+                if (response.isSuccess()) {
+                    opened.incrementAndGet();
+                } else {
+                    String reason = response.isNeedReload() ? "stale" : response.getMessage();
+                    rejected.computeIfAbsent(reason, key -> new AtomicInteger()).incrementAndGet();
+                }
+            } catch (Throwable e) {
+                unexpected.add(e);
+            }
+        });
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        int flushed = boxHistoryWriterService.flushPending();
+
+        assertTrue(unexpected.isEmpty(), "Unexpected errors: " + unexpected);
+        assertEquals(0, boxHistoryWriterService.getPendingCount());
+        assertEquals(opened.get(), count("SELECT COUNT(*) FROM box_history WHERE campaign_id = ?", campaign.getId()));
+        assertRewardStock(pointReward, POINT_REWARD_STOCK);
+        assertRewardStock(voucherReward, VOUCHER_REWARD_STOCK);
+        for (Integer userId : userIds) {
+            assertUserAccounting(campaign, pointReward, userId);
+        }
+
+        log.info("🎁 Minigame DB load ({}): {} opens accepted of {} requests in {} ms ({} opens/s, {} requests/s, "
+                        + "{} threads, {} users), {} histories flushed at the end, rejected {}",
+                label, opened.get(), tasks.size(), elapsedMs, opened.get() * 1000L / elapsedMs,
+                tasks.size() * 1000L / elapsedMs, THREADS, users, flushed, rejected);
+    }
+
+    /**
+     * Điểm hiện tại = ban đầu + điểm trúng - điểm chi (theo box_history, khớp với sổ Point);
+     * bộ đếm user_campaign = số lần mở trong box_history, không vượt lượt FREE
+     */
+    private void assertUserAccounting(Campaign campaign, Reward pointReward, Integer userId) {
+        Map<String, Object> history = jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS opens, "
+                        + "COUNT(*) FILTER (WHERE open_type = 'FREE') AS free_opens, "
+                        + "COALESCE(SUM(points_spent), 0) AS spent, "
+                        + "COALESCE(SUM(reward_value) FILTER (WHERE reward_id = ?), 0) AS earned "
+                        + "FROM box_history WHERE user_id = ? AND campaign_id = ?",
+                pointReward.getId(), userId, campaign.getId());
+        int opens = ((Number) history.get("opens")).intValue();
+        int freeOpens = ((Number) history.get("free_opens")).intValue();
+        int spent = ((Number) history.get("spent")).intValue();
+        int earned = ((Number) history.get("earned")).intValue();
+
+        int totalPoint = userRepository.findTotalPointById(userId);
+        assertTrue(totalPoint >= 0, "User " + userId + " points went negative: " + totalPoint);
+        assertEquals(INITIAL_POINTS + earned - spent, totalPoint, "User " + userId + " points");
+
+        Map<String, Object> ledger = jdbcTemplate.queryForMap(
+                "SELECT COALESCE(SUM(point_earned), 0) AS earned, COALESCE(SUM(point_spent), 0) AS spent "
+                        + "FROM point WHERE user_id = ?", userId);
+        assertEquals(earned, ((Number) ledger.get("earned")).intValue(), "User " + userId + " ledger earned");
+        assertEquals(spent, ((Number) ledger.get("spent")).intValue(), "User " + userId + " ledger spent");
+
+        if (opens == 0) {
+            return;
+        }
+        List<Map<String, Object>> counters = jdbcTemplate.queryForList(
+                "SELECT free_opened_count, total_opened_count FROM user_campaign WHERE user_id = ? AND campaign_id = ?",
+                userId, campaign.getId());
+        assertEquals(1, counters.size(), "User " + userId + " user_campaign rows");
+        assertEquals(freeOpens, ((Number) counters.get(0).get("free_opened_count")).intValue(),
+                "User " + userId + " free opens");
+        assertEquals(opens, ((Number) counters.get(0).get("total_opened_count")).intValue(),
+                "User " + userId + " total opens");
+        assertTrue(freeOpens <= FREE_LIMIT, "User " + userId + " exceeded free limit: " + freeOpens);
+    }
+
+    private void assertRewardStock(Reward reward, int initialStock) {
+        int stock = count("SELECT stock FROM reward WHERE id = ?", reward.getId());
+        int won = count("SELECT COUNT(*) FROM box_history WHERE reward_id = ?", reward.getId());
+        assertTrue(stock >= 0, "Reward " + reward.getId() + " stock went negative: " + stock);
+        assertEquals(initialStock, stock + won, "Reward " + reward.getId() + " stock accounting");
+    }
+
+    private int count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, args);
+    }
+
+    /**
+     * Dựng request như frontend: đọc điểm và số lượt FREE đã dùng ngay trước khi gửi
+     */
+    private OpenBoxRequest newRequest(Campaign campaign, OpenTask task) {
+        List<Integer> freeOpened = jdbcTemplate.queryForList(
+                "SELECT free_opened_count FROM user_campaign WHERE user_id = ? AND campaign_id = ?",
+                Integer.class, task.userId, campaign.getId());
+        OpenBoxRequest request = new OpenBoxRequest();
+        request.setCampaignId(campaign.getId());
+        request.setUserId(task.userId);
+        request.setOpenType(task.openType);
+        request.setFrontendFreeLimit(campaign.getConfigFreeLimit());
+        request.setFrontendPointCost(campaign.getConfigPointCost());
+        request.setFrontendStartDate(campaign.getStartDate());
+        request.setFrontendEndDate(campaign.getEndDate());
+        request.setFrontendUserPoint(userRepository.findTotalPointById(task.userId));
+        request.setFrontendFreeOpenedCount(freeOpened.isEmpty() ? 0 : freeOpened.get(0));
+        return request;
+    }
+
+    private void runConcurrently(int tasks, TaskBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    ready.await();
+                    body.run(index);
+                    return null;
+                }));
+            }
+            ready.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private User newUser(String run, int index) {
+        User user = new User();
+        user.setEmail("minigame-test-" + run + "-" + index + "@example.com");
+        user.setPassword("not-used");
+        user.setFullName("Minigame Test User " + index);
+        user.setRole(roleRepository.findAll().get(0));
+        user.setStatus((byte) 1);
+        user.setTotalPoint(INITIAL_POINTS);
+        user.setTotalSpent(BigDecimal.ZERO);
+        return userRepository.save(user);
+    }
+
+    private Campaign newCampaign(String run) {
+        long now = System.currentTimeMillis();
+        Campaign campaign = new Campaign();
+        campaign.setName("Minigame load test " + run);
+        campaign.setStartDate(now - 60_000);
+        campaign.setEndDate(now + 3_600_000);
+        campaign.setStatus((byte) 1);
+        campaign.setConfigFreeLimit(FREE_LIMIT);
+        campaign.setConfigPointCost(POINT_COST);
+        campaign.setCreatedBy(1);
+        return campaignRepository.save(campaign);
+    }
+
+    private Reward newReward(Campaign campaign, RewardType type, Integer pointValue, int stock, int probability) {
+        Reward reward = new Reward();
+        reward.setCampaign(campaign);
+        reward.setType(type);
+        reward.setName(type.name() + " reward");
+        reward.setPointValue(pointValue);
+        reward.setStock(stock);
+        reward.setProbability(BigDecimal.valueOf(probability));
+        reward.setStatus((byte) 1);
+        reward.setCreatedBy(1);
+        return rewardRepository.save(reward);
+    }
+
+    private static final class OpenTask {
+        final Integer userId;
+        final BoxOpenType openType;
+
+        OpenTask(Integer userId, BoxOpenType openType) {
+            this.userId = userId;
+            this.openType = openType;
+        }
+    }
+
+    @FunctionalInterface
+    private interface TaskBody {
+        void run(int index) throws Exception;
+    }
+}
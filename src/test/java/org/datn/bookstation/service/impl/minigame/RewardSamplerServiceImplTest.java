@@ -0,0 +1,151 @@
+package org.datn.bookstation.service.impl.minigame;
+
+import org.datn.bookstation.entity.Reward;
+import org.datn.bookstation.entity.enums.RewardType;
+import org.datn.bookstation.repository.RewardRepository;
+import org.datn.bookstation.util.AliasTableTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Phân phối bốc thưởng theo từng mức boost phải khớp công thức của MinigameServiceImpl:
+ * NONE giữ nguyên xác suất, POINTS/VOUCHER cộng boost (%) và chặn ở 100
+ */
+class RewardSamplerServiceImplTest {
+
+    private static final int CAMPAIGN_ID = 1;
+    private static final int SAMPLES = 400_000;
+
+    private RewardRepository rewardRepository;
+    private RewardSamplerServiceImpl sampler;
+    private List<Reward> rewards;
+
+    @BeforeEach
+    void setUp() {
+        rewards = new ArrayList<>(List.of(
+                reward(1, RewardType.NONE, "60"),
+                reward(2, RewardType.POINTS, "30"),
+                reward(3, RewardType.VOUCHER, "9.5"),
+                reward(4, RewardType.VOUCHER, "0.5"),
+                reward(5, RewardType.POINTS, "0")));
+        rewardRepository = mock(RewardRepository.class);
+        when(rewardRepository.findAvailableByCampaignId(CAMPAIGN_ID)).thenAnswer(invocation -> new ArrayList<>(rewards));
+        sampler = new RewardSamplerServiceImpl(rewardRepository);
+        ReflectionTestUtils.setField(sampler, "ttlMs", 60_000L);
+    }
+
+    @Test
+    void matchesConfiguredProbabilitiesWithoutBoost() {
+        assertBoostTier(0.0);
+    }
+
+    @Test
+    void matchesEveryBoostTier() {
+        // 0.5% mỗi lần mở, tối đa 20% sau 40 lần
+        for (int opens = 0; opens <= 40; opens += 5) {
+            assertBoostTier(Math.min(opens * 0.005, 0.20));
+        }
+    }
+
+    @Test
+    void boostAboveCapUsesTopTier() {
+        long[] capped = sampleCounts(0.20);
+        long[] above = sampleCounts(0.35);
+        AliasTableTest.assertChiSquare(expectedWeights(0.20), above, SAMPLES);
+        assertTrue(capped[4] > 0 && above[4] > 0);
+    }
+
+    @Test
+    void zeroProbabilityRewardOnlyWinsWithBoost() {
+        assertEquals(0, sampleCounts(0.0)[4]);
+        assertTrue(sampleCounts(0.10)[4] > 0);
+    }
+
+    @Test
+    void compilesOnceAndReloadsAfterInvalidate() {
+        sampler.sample(CAMPAIGN_ID, 0.0);
+        sampler.sample(CAMPAIGN_ID, 0.1);
+        verify(rewardRepository, times(1)).findAvailableByCampaignId(CAMPAIGN_ID);
+
+        rewards.removeIf(reward -> reward.getId() != 1);
+        sampler.invalidate(CAMPAIGN_ID);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(1, sampler.sample(CAMPAIGN_ID, 0.2));
+        }
+        verify(rewardRepository, times(2)).findAvailableByCampaignId(CAMPAIGN_ID);
+    }
+
+    @Test
+    void reloadsAfterTtl() {
+        ReflectionTestUtils.setField(sampler, "ttlMs", 0L);
+        sampler.sample(CAMPAIGN_ID, 0.0);
+        sampler.sample(CAMPAIGN_ID, 0.0);
+        verify(rewardRepository, times(2)).findAvailableByCampaignId(CAMPAIGN_ID);
+    }
+
+    @Test
+    void soldOutRewardIsDroppedOnReload() {
+        sampler.sample(CAMPAIGN_ID, 0.0);
+        rewards.removeIf(reward -> reward.getId() == 2);
+        sampler.onRewardUnavailable(CAMPAIGN_ID, 2);
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(sampler.sample(CAMPAIGN_ID, 0.0) != 2);
+        }
+    }
+
+    @Test
+    void returnsNullWhenNoRewardAvailable() {
+        rewards.clear();
+        assertNull(sampler.sample(CAMPAIGN_ID, 0.0));
+    }
+
+    // ================== HELPERS ==================
+
+    private void assertBoostTier(double boost) {
+        AliasTableTest.assertChiSquare(expectedWeights(boost), sampleCounts(boost), SAMPLES);
+    }
+
+    private long[] sampleCounts(double boost) {
+        long[] counts = new long[rewards.size()];
+        for (int i = 0; i < SAMPLES; i++) {
+            counts[sampler.sample(CAMPAIGN_ID, boost) - 1]++;
+        }
+        return counts;
+    }
+
+    // Trọng số theo công thức selectReward cũ, tính độc lập với RewardSamplerServiceImpl
+    private double[] expectedWeights(double boost) {
+        double[] weights = new double[rewards.size()];
+        for (Reward reward : rewards) {
+            double probability = reward.getProbability().doubleValue();
+            if (reward.getType() != RewardType.NONE) {
+                probability = Math.min(probability + boost * 100, 100.0);
+            }
+            weights[reward.getId() - 1] = probability;
+        }
+        return weights;
+    }
+
+    private static Reward reward(int id, RewardType type, String probability) {
+        Reward reward = new Reward();
+        reward.setId(id);
+        reward.setType(type);
+        reward.setName("Reward " + id);
+        reward.setProbability(new BigDecimal(probability));
+        reward.setStock(100);
+        return reward;
+    }
+}
@@ -0,0 +1,97 @@
+package org.datn.bookstation.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Kiểm định chi-square: phân phối bốc mẫu từ bảng alias phải khớp trọng số cấu hình
+ */
+public class AliasTableTest {
+
+    private static final int SAMPLES = 1_000_000;
+
+    @Test
+    void matchesUniformWeights() {
+        assertDistribution(new double[] {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1});
+    }
+
+    @Test
+    void matchesSkewedWeights() {
+        assertDistribution(new double[] {50, 30, 15, 5});
+        assertDistribution(new double[] {0.1, 99.9});
+        assertDistribution(new double[] {90, 5, 2.5, 1.5, 0.75, 0.25});
+    }
+
+    @Test
+    void neverSamplesZeroWeights() {
+        long[] counts = assertDistribution(new double[] {33.3, 0, 66.7, 0, -5});
+        assertEquals(0, counts[1]);
+        assertEquals(0, counts[3]);
+        assertEquals(0, counts[4]);
+    }
+
+    @Test
+    void zeroTotalAlwaysReturnsFirst() {
+        AliasTable table = new AliasTable(new double[] {0, 0, 0});
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(0, table.sample(random));
+        }
+    }
+
+    @Test
+    void rejectsEmptyWeights() {
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[0]));
+    }
+
+    /**
+     * Bốc SAMPLES lần, so tần suất với kỳ vọng bằng chi-square ở mức ý nghĩa 0.1%
+     */
+    static long[] assertDistribution(double[] weights) {
+        AliasTable table = new AliasTable(weights);
+        long[] counts = new long[weights.length];
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            counts[table.sample(random)]++;
+        }
+        assertChiSquare(weights, counts, SAMPLES);
+        return counts;
+    }
+
+    public static void assertChiSquare(double[] weights, long[] counts, long samples) {
+        double total = 0;
+        for (double weight : weights) {
+            total += Math.max(0, weight);
+        }
+        double chiSquare = 0;
+        int degreesOfFreedom = -1;
+        for (int i = 0; i < weights.length; i++) {
+            double expected = samples * Math.max(0, weights[i]) / total;
+            if (expected == 0) {
+                assertEquals(0, counts[i], "Phần tử trọng số 0 không được bốc trúng");
+                continue;
+            }
+            chiSquare += (counts[i] - expected) * (counts[i] - expected) / expected;
+            degreesOfFreedom++;
+        }
+        if (degreesOfFreedom > 0) {
+            double critical = chiSquareCritical(degreesOfFreedom);
+            assertTrue(chiSquare < critical,
+                    String.format("chi2 = %.2f vượt ngưỡng %.2f (df = %d)", chiSquare, critical, degreesOfFreedom));
+        }
+    }
+
+    /**
+     * Ngưỡng chi-square ở mức ý nghĩa 0.1% (xấp xỉ Wilson-Hilferty, z = 3.09)
+     */
+    public static double chiSquareCritical(int degreesOfFreedom) {
+        double k = degreesOfFreedom;
+        double term = 1 - 2 / (9 * k) + 3.09 * Math.sqrt(2 / (9 * k));
+        return k * term * term * term;
+    }
+}